@@ -0,0 +1,28 @@
+package com.library.config;
+
+import com.library.notification.ConsoleNotificationSender;
+import com.library.notification.FileNotificationSender;
+import com.library.notification.NotificationSender;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+@Configuration
+public class NotificationConfig {
+
+    /**
+     * CONSOLE：印到標準輸出；FILE：以 mbox 格式附加到本機信箱檔（模擬 SMTP）
+     */
+    @Bean
+    public NotificationSender notificationSender(
+            @Value("${library.notifications.sender:CONSOLE}") String sender,
+            @Value("${library.notifications.file.path:notifications/outbox.mbox}") String path,
+            @Value("${library.notifications.from:library@localhost}") String from) {
+        if ("FILE".equalsIgnoreCase(sender)) {
+            return new FileNotificationSender(Path.of(path), from);
+        }
+        return new ConsoleNotificationSender();
+    }
+}
@@ -0,0 +1,23 @@
+package com.library.config;
+
+import com.library.search.NGramTokenizer;
+import com.library.search.Tokenizer;
+import com.library.search.WordTokenizer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class SearchConfig {
+
+    /**
+     * NGRAM：中文 bigram + 拉丁文詞，支援任意子字串查詢；WORD：僅以詞切分，查詢詞以前綴比對
+     */
+    @Bean
+    public Tokenizer searchTokenizer(@Value("${library.search.tokenizer:NGRAM}") String tokenizer) {
+        if ("WORD".equalsIgnoreCase(tokenizer)) {
+            return new WordTokenizer();
+        }
+        return new NGramTokenizer();
+    }
+}
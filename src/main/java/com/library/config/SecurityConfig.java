@@ -37,6 +37,9 @@ public class SecurityConfig {
                         .requestMatchers(new AntPathRequestMatcher("/api/auth/register")).permitAll()
                         .requestMatchers(new AntPathRequestMatcher("/api/auth/login")).permitAll()
                         .requestMatchers(new AntPathRequestMatcher("/api/books/search")).permitAll()
+                        .requestMatchers(new AntPathRequestMatcher("/api/books/suggest")).permitAll()
+                        // 書目匯出需先於 /api/books/{id} 比對
+                        .requestMatchers(new AntPathRequestMatcher("/api/books/export", "GET")).hasRole("LIBRARIAN")
                         .requestMatchers(new AntPathRequestMatcher("/api/books/{id}", "GET")).permitAll()
                         .requestMatchers(new AntPathRequestMatcher("/h2-console/**")).permitAll()
                         .requestMatchers(new AntPathRequestMatcher("/swagger-ui/**")).permitAll()
@@ -49,6 +52,10 @@ public class SecurityConfig {
                         .requestMatchers(new AntPathRequestMatcher("/api/books/{id}", "PUT")).hasRole("LIBRARIAN")
                         .requestMatchers(new AntPathRequestMatcher("/api/books/{id}", "DELETE")).hasRole("LIBRARIAN")
 
+                        // 監控指標 - 館員專用
+                        .requestMatchers(new AntPathRequestMatcher("/actuator/health")).permitAll()
+                        .requestMatchers(new AntPathRequestMatcher("/actuator/**")).hasRole("LIBRARIAN")
+
                         // 借閱管理 - 需要認證用戶
                         .requestMatchers(new AntPathRequestMatcher("/api/borrow/**")).hasAnyRole("MEMBER", "LIBRARIAN")
 
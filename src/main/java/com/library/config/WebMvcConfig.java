@@ -0,0 +1,43 @@
+package com.library.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    // 長時間串流輸出的匯出端點
+    private static final Set<String> EXPORT_PATHS = Set.of("/api/books/export", "/api/borrows/overdue/export");
+
+    @Value("${library.export.timeout:30m}")
+    private Duration exportTimeout;
+
+    /**
+     * 匯出端點的串流回應改用 library.export.timeout，其他非同步請求維持 spring.mvc.async.request-timeout
+     */
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new CallableProcessingInterceptor() {
+            @Override
+            public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+                // 在非同步處理開始前呼叫，此時仍可調整逾時
+                HttpServletRequest servletRequest = request.getNativeRequest(HttpServletRequest.class);
+                if (request instanceof AsyncWebRequest asyncRequest && servletRequest != null
+                        && EXPORT_PATHS.contains(servletRequest.getRequestURI()
+                                .substring(servletRequest.getContextPath().length()))) {
+                    asyncRequest.setTimeout(exportTimeout.toMillis());
+                }
+            }
+        });
+    }
+}
@@ -3,13 +3,21 @@ package com.library.controller;
 import com.library.dto.AddBookCopyRequest;
 import com.library.dto.AddBookCopyResponse;
 import com.library.dto.ApiResponse;
+import com.library.dto.BookSearchPage;
 import com.library.dto.BookSearchResponse;
+import com.library.dto.BookSuggestion;
 import com.library.dto.CreateBookRequest;
 import com.library.dto.CreateBookResponse;
+import com.library.dto.FacetedSearchResponse;
 import com.library.entity.User;
 import com.library.exception.InsufficientPermissionException;
 import com.library.repository.UserRepository;
+import com.library.search.BookSortKey;
+import com.library.search.SearchCursor;
+import com.library.search.SearchReadPath;
+import com.library.search.StockFilter;
 import com.library.service.BookService;
+import com.library.service.CatalogExportService;
 import io.swagger.v3.oas.annotations.Hidden;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -17,14 +25,19 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/books")
@@ -34,6 +47,7 @@ import java.util.List;
 public class BookController {
 
     private final BookService bookService;
+    private final CatalogExportService catalogExportService;
     private final UserRepository userRepository;
 
     /**
@@ -97,7 +111,7 @@ public class BookController {
     /**
      * 搜尋書籍（公開）
      */
-    @Operation(summary = "搜尋書籍", description = "根據書名、作者、年份或圖書館搜尋書籍。至少需要提供一個搜尋條件。")
+    @Operation(summary = "搜尋書籍", description = "根據書名、作者、年份或圖書館搜尋書籍。至少需要提供一個搜尋條件。readPath 可指定 entity 或 projection 讀取方式；availableOnly 僅列出目前可借的書籍，libraryIds 限定館藏所在圖書館（不可與 libraryId 同時指定）；fuzzy=true 時書名與作者的英文詞容許少量錯字，中文需完全相符（不可與館藏條件併用）。")
     @GetMapping("/search")
     public ResponseEntity<ApiResponse<List<BookSearchResponse>>> searchBooks(
             @RequestParam(required = false) String title,
@@ -105,7 +119,11 @@ public class BookController {
             @RequestParam(required = false) Integer year,
             @RequestParam(required = false) Long libraryId,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size) {
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String readPath,
+            @RequestParam(defaultValue = "false") boolean availableOnly,
+            @RequestParam(required = false) List<Long> libraryIds,
+            @RequestParam(defaultValue = "false") boolean fuzzy) {
         try {
             // 驗證分頁參數
             if (page < 0) {
@@ -117,18 +135,139 @@ public class BookController {
                         .body(ApiResponse.error("每頁數量必須在1-100之間"));
             }
 
+            StockFilter stockFilter = StockFilter.of(libraryIds, availableOnly);
+
             // 至少需要一個搜尋條件
-            if (title == null && author == null && year == null && libraryId == null) {
+            if (title == null && author == null && year == null && libraryId == null
+                    && stockFilter.getLibraryIds().isEmpty()) {
                 return ResponseEntity.badRequest()
                         .body(ApiResponse.error("請至少提供一個搜尋條件（書名、作者、年份或圖書館）"));
             }
 
-            List<BookSearchResponse> results = bookService.searchBooks(title, author, year, libraryId, page, size);
+            // 未指定讀取方式時使用設定值（library.search.read-path）
+            SearchReadPath path = readPath == null ? null : SearchReadPath.from(readPath);
+            List<BookSearchResponse> results;
+            if (fuzzy) {
+                results = bookService.searchBooks(title, author, year, libraryId, page, size, path, stockFilter, true);
+            } else if (path == null && stockFilter.isEmpty()) {
+                results = bookService.searchBooks(title, author, year, libraryId, page, size);
+            } else {
+                results = bookService.searchBooks(title, author, year, libraryId, page, size, path, stockFilter);
+            }
 
             String message = results.isEmpty() ? "未找到符合條件的書籍" : String.format("找到 %d 本書籍", results.size());
 
             return ResponseEntity.ok(ApiResponse.success(message, results));
 
+        } catch (IllegalArgumentException e) {
+            log.warn("書籍搜尋參數錯誤：{}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
+
+        } catch (Exception e) {
+            log.error("書籍搜尋過程中發生錯誤", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("搜尋失敗，請稍後再試"));
+        }
+    }
+
+    /**
+     * 搜尋書籍並附上分面統計（公開）
+     * 帶有 facets=true 時使用，回應另含所有符合條件書籍依出版年份、類型、圖書館的數量
+     */
+    @Operation(summary = "搜尋書籍（含分面統計）",
+            description = "facets=true 時除了目前頁的書籍，另回傳所有符合條件書籍依出版年份、類型、圖書館的數量")
+    @GetMapping(value = "/search", params = {"facets=true", "!cursor"})
+    public ResponseEntity<ApiResponse<FacetedSearchResponse>> searchBooksWithFacets(
+            @RequestParam(required = false) String title,
+            @RequestParam(required = false) String author,
+            @RequestParam(required = false) Integer year,
+            @RequestParam(required = false) Long libraryId,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        try {
+            // 驗證分頁參數
+            if (page < 0) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.error("頁數不能小於0"));
+            }
+            if (size <= 0 || size > 100) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.error("每頁數量必須在1-100之間"));
+            }
+
+            // 至少需要一個搜尋條件
+            if (title == null && author == null && year == null && libraryId == null) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.error("請至少提供一個搜尋條件（書名、作者、年份或圖書館）"));
+            }
+
+            FacetedSearchResponse result = bookService.searchBooksWithFacets(title, author, year, libraryId, page, size);
+
+            String message = result.getFacets().getTotalBooks() == 0
+                    ? "未找到符合條件的書籍"
+                    : String.format("共 %d 本符合條件的書籍", result.getFacets().getTotalBooks());
+
+            return ResponseEntity.ok(ApiResponse.success(message, result));
+
+        } catch (IllegalArgumentException e) {
+            log.warn("書籍搜尋參數錯誤：{}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
+
+        } catch (Exception e) {
+            log.error("書籍搜尋過程中發生錯誤", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("搜尋失敗，請稍後再試"));
+        }
+    }
+
+    /**
+     * 以游標分頁搜尋書籍（公開）
+     * 帶有 cursor 參數時使用，第一頁傳空字串；回應中的 nextCursor 用於取得下一頁
+     */
+    @Operation(summary = "游標分頁搜尋書籍",
+            description = "帶 cursor 參數時改用游標分頁（第一頁傳空字串），依 sort（id 或 title）排序，回應的 nextCursor 為下一頁游標")
+    @GetMapping(value = "/search", params = "cursor")
+    public ResponseEntity<ApiResponse<BookSearchPage>> searchBooksByCursor(
+            @RequestParam(required = false) String title,
+            @RequestParam(required = false) String author,
+            @RequestParam(required = false) Integer year,
+            @RequestParam(required = false) Long libraryId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "id") String sort,
+            @RequestParam(defaultValue = "20") int size) {
+        try {
+            if (size <= 0 || size > 100) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.error("每頁數量必須在1-100之間"));
+            }
+
+            // 至少需要一個搜尋條件
+            if (title == null && author == null && year == null && libraryId == null) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.error("請至少提供一個搜尋條件（書名、作者、年份或圖書館）"));
+            }
+
+            // 接續頁的排序方式以游標為準
+            SearchCursor searchCursor = (cursor == null || cursor.isEmpty())
+                    ? SearchCursor.first(BookSortKey.from(sort))
+                    : SearchCursor.decode(cursor);
+
+            BookSearchPage result = bookService.searchBooksByCursor(
+                    title, author, year, libraryId, searchCursor, size);
+
+            String message = result.getBooks().isEmpty()
+                    ? "未找到符合條件的書籍"
+                    : String.format("找到 %d 本書籍", result.getBooks().size());
+
+            return ResponseEntity.ok(ApiResponse.success(message, result));
+
+        } catch (IllegalArgumentException e) {
+            log.warn("游標搜尋參數錯誤：{}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
+
         } catch (Exception e) {
             log.error("書籍搜尋過程中發生錯誤", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -136,6 +275,62 @@ public class BookController {
         }
     }
 
+    /**
+     * 書名與作者自動完成（公開）
+     */
+    @Operation(summary = "書名與作者自動完成", description = "依輸入前綴（不分大小寫）回傳書名與作者建議，依借閱次數排序")
+    @GetMapping("/suggest")
+    public ResponseEntity<ApiResponse<List<BookSuggestion>>> suggest(
+            @RequestParam(required = false) String q,
+            @RequestParam(defaultValue = "10") int limit) {
+        try {
+            if (limit <= 0 || limit > 20) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.error("建議數量必須在1-20之間"));
+            }
+
+            List<BookSuggestion> suggestions = bookService.suggest(q, limit);
+
+            return ResponseEntity.ok(ApiResponse.success(String.format("找到 %d 筆建議", suggestions.size()), suggestions));
+
+        } catch (Exception e) {
+            log.error("自動完成查詢過程中發生錯誤", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("自動完成查詢失敗，請稍後再試"));
+        }
+    }
+
+    /**
+     * 串流匯出整個書目（館員專用）
+     * 每行一本書（NDJSON），用戶端接受 gzip 時以 gzip 壓縮輸出
+     */
+    @Operation(summary = "匯出書目", description = "以 NDJSON（每行一本書，含各圖書館館藏）串流輸出所有書籍，支援 Accept-Encoding: gzip")
+    @SecurityRequirement(name = "Bearer Authentication")
+    @PreAuthorize("hasRole('LIBRARIAN')")
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportCatalog(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ROOT).contains("gzip");
+
+        StreamingResponseBody body = output -> {
+            if (gzip) {
+                GZIPOutputStream gzipOutput = new GZIPOutputStream(output, 8192);
+                catalogExportService.exportCatalog(gzipOutput);
+                gzipOutput.finish();
+            } else {
+                catalogExportService.exportCatalog(output);
+            }
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
     /**
      * 處理缺少書籍ID的請求
      */
@@ -2,19 +2,34 @@ package com.library.controller;
 
 import com.library.dto.*;
 import com.library.entity.Book;
+import com.library.entity.BorrowRecord;
 import com.library.entity.User;
 import com.library.exception.*;
 import com.library.repository.UserRepository;
+import com.library.service.BorrowGroupCommitter;
+import com.library.service.BorrowHistoryCursor;
 import com.library.service.BorrowService;
+import com.library.service.BulkReturnService;
+import com.library.service.DueSoonNotificationService;
+import com.library.service.IdempotencyStore;
+import com.library.service.OverdueExportFormat;
+import com.library.service.OverdueReportCursor;
+import com.library.service.OverdueReportService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -24,29 +39,52 @@ import java.util.Optional;
 @Tag(name = "借閱管理", description = "書籍借閱、歸還、記錄查詢相關 API")
 public class BorrowController {
 
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
     @Autowired
     private BorrowService borrowService;
 
+    @Autowired
+    private BorrowGroupCommitter borrowGroupCommitter;
+
+    @Autowired
+    private BulkReturnService bulkReturnService;
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    @Autowired
+    private OverdueReportService overdueReportService;
+
+    @Autowired
+    private DueSoonNotificationService dueSoonNotificationService;
+
     @Autowired
     private UserRepository userRepository;
 
     /**
      * 借書
      */
-    @Operation(summary = "借書", description = "會員借閱書籍")
+    @Operation(summary = "借書", description = "會員借閱書籍；帶有 Idempotency-Key 標頭時，重送的請求回傳第一次借書的結果")
     @SecurityRequirement(name = "Bearer Authentication")
     @PostMapping
     public ResponseEntity<ApiResponse<BorrowBookResponse>> borrowBook(
             @Valid @RequestBody BorrowBookRequest request,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
             Authentication authentication) {
         try {
-            User user = getCurrentUser(authentication);
-            BorrowBookResponse response = borrowService.borrowBook(request, user);
+            // 重送的請求在查詢用戶前就回傳保存的回應
+            BorrowBookResponse response = idempotencyStore.execute(authentication.getName(), "borrow",
+                    idempotencyKey, request,
+                    () -> borrowGroupCommitter.borrowBook(request, getCurrentUser(authentication)));
             
             return ResponseEntity.ok(ApiResponse.success("借書成功", response));
         } catch (BorrowLimitExceededException e) {
             return ResponseEntity.badRequest()
                     .body(ApiResponse.error(e.getMessage()));
+        } catch (BorrowOverloadedException e) {
+            return ResponseEntity.status(503)
+                    .body(ApiResponse.error(e.getMessage()));
         } catch (BookNotAvailableException e) {
             return ResponseEntity.badRequest()
                     .body(ApiResponse.error(e.getMessage()));
@@ -56,24 +94,94 @@ public class BorrowController {
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest()
                     .body(ApiResponse.error(e.getMessage()));
+        } catch (IdempotencyKeyConflictException e) {
+            return ResponseEntity.status(409)
+                    .body(ApiResponse.error(e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.internalServerError()
                     .body(ApiResponse.error("借書失敗，請稍後再試"));
         }
     }
 
+    /**
+     * 依書名借書
+     */
+    @Operation(summary = "依書名借書", description = "指定書籍與偏好的圖書館順序，由伺服器挑選可借的書籍副本借出；支援 Idempotency-Key 標頭")
+    @SecurityRequirement(name = "Bearer Authentication")
+    @PostMapping("/by-title")
+    public ResponseEntity<ApiResponse<BorrowBookResponse>> borrowByTitle(
+            @Valid @RequestBody BorrowByTitleRequest request,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            Authentication authentication) {
+        try {
+            BorrowBookResponse response = idempotencyStore.execute(authentication.getName(), "borrow-by-title",
+                    idempotencyKey, request,
+                    () -> borrowService.borrowByTitle(request, getCurrentUser(authentication)));
+
+            return ResponseEntity.ok(ApiResponse.success("借書成功", response));
+        } catch (BorrowLimitExceededException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (BookNotAvailableException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (BookAlreadyBorrowedException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (IdempotencyKeyConflictException e) {
+            return ResponseEntity.status(409)
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.error("借書失敗，請稍後再試"));
+        }
+    }
+
+    /**
+     * 批次借書
+     */
+    @Operation(summary = "批次借書", description = "一次借閱多個書籍副本（如櫃台借出整批書籍），回傳每個副本各自的借閱結果")
+    @SecurityRequirement(name = "Bearer Authentication")
+    @PostMapping("/batch")
+    public ResponseEntity<ApiResponse<BatchBorrowResponse>> borrowBooks(
+            @Valid @RequestBody BatchBorrowRequest request,
+            Authentication authentication) {
+        try {
+            User user = getCurrentUser(authentication);
+            BatchBorrowResponse response = borrowService.borrowBooks(request, user);
+
+            String message = String.format("批次借書完成：成功 %d 本，失敗 %d 本",
+                    response.getSuccessCount(), response.getFailureCount());
+            return ResponseEntity.ok(ApiResponse.success(message, response));
+        } catch (BookNotAvailableException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.error("批次借書失敗，請稍後再試"));
+        }
+    }
+
     /**
      * 還書
      */
-    @Operation(summary = "還書", description = "會員歸還已借閱的書籍")
+    @Operation(summary = "還書", description = "會員歸還已借閱的書籍；帶有 Idempotency-Key 標頭時，重送的請求回傳第一次還書的結果")
     @SecurityRequirement(name = "Bearer Authentication")
     @PutMapping("/{borrowRecordId}/return")
     public ResponseEntity<ApiResponse<ReturnBookResponse>> returnBook(
             @PathVariable Long borrowRecordId,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
             Authentication authentication) {
         try {
-            User user = getCurrentUser(authentication);
-            ReturnBookResponse response = borrowService.returnBook(borrowRecordId, user);
+            ReturnBookResponse response = idempotencyStore.execute(authentication.getName(), "return",
+                    idempotencyKey, borrowRecordId,
+                    () -> borrowService.returnBook(borrowRecordId, getCurrentUser(authentication)));
             
             return ResponseEntity.ok(ApiResponse.success("還書成功", response));
         } catch (BorrowRecordNotFoundException e) {
@@ -84,27 +192,89 @@ public class BorrowController {
         } catch (BookAlreadyReturnedException e) {
             return ResponseEntity.badRequest()
                     .body(ApiResponse.error(e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (IdempotencyKeyConflictException e) {
+            return ResponseEntity.status(409)
+                    .body(ApiResponse.error(e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.internalServerError()
                     .body(ApiResponse.error("還書失敗，請稍後再試"));
         }
     }
 
+    /**
+     * 大量還書 (館員專用)
+     */
+    @Operation(summary = "大量還書", description = "館員一次歸還多筆借閱記錄或掃描到的書籍副本（如還書箱），回傳無法歸還的項目")
+    @SecurityRequirement(name = "Bearer Authentication")
+    @PostMapping("/returns/bulk")
+    public ResponseEntity<ApiResponse<BulkReturnResponse>> returnBooks(
+            @Valid @RequestBody BulkReturnRequest request,
+            Authentication authentication) {
+        try {
+            User user = getCurrentUser(authentication);
+
+            // 檢查是否為館員
+            if (user.getRole() != User.UserRole.LIBRARIAN) {
+                return ResponseEntity.status(403)
+                        .body(ApiResponse.error("只有館員可以大量還書"));
+            }
+
+            BulkReturnResponse response = bulkReturnService.returnBooks(request);
+
+            String message = String.format("大量還書完成：歸還 %d 本，失敗 %d 本",
+                    response.getReturned(), response.getFailures().size());
+            return ResponseEntity.ok(ApiResponse.success(message, response));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.error("大量還書失敗，請稍後再試"));
+        }
+    }
+
     /**
      * 查詢個人借閱記錄
+     * 以游標分頁，依借閱日期由新到舊；第一頁不帶 cursor，回應中的 nextCursor 用於取得下一頁
      */
-    @Operation(summary = "查詢個人借閱記錄", description = "查詢會員所有借閱歷史記錄")
+    @Operation(summary = "查詢個人借閱記錄",
+            description = "以游標分頁查詢會員借閱歷史，可依狀態（status）與借閱日期區間（from、to，yyyy-MM-dd）篩選，"
+                    + "回應的 nextCursor 為下一頁游標")
     @SecurityRequirement(name = "Bearer Authentication")
     @GetMapping("/my-records")
-    public ResponseEntity<ApiResponse<List<BorrowRecordResponse>>> getMyBorrowRecords(
+    public ResponseEntity<ApiResponse<BorrowHistoryPage>> getMyBorrowRecords(
+            @RequestParam(required = false) BorrowRecord.BorrowStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
             Authentication authentication) {
         try {
+            if (size <= 0 || size > 100) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.error("每頁數量必須在1-100之間"));
+            }
+            if (from != null && to != null && from.isAfter(to)) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.error("借閱日期區間的起日不能晚於迄日"));
+            }
+
+            BorrowHistoryCursor historyCursor = (cursor == null || cursor.isEmpty())
+                    ? BorrowHistoryCursor.first()
+                    : BorrowHistoryCursor.decode(cursor);
+
             User user = getCurrentUser(authentication);
-            List<BorrowRecordResponse> records = borrowService.getUserBorrowHistory(user);
+            BorrowHistoryPage page = borrowService.getUserBorrowHistory(user, status, from, to, historyCursor, size);
             
-            String message = records.isEmpty() ? "您目前沒有借閱記錄" : 
-                    String.format("找到 %d 筆借閱記錄", records.size());
-            return ResponseEntity.ok(ApiResponse.success(message, records));
+            String message = page.getRecords().isEmpty() ? "您目前沒有借閱記錄" : 
+                    String.format("找到 %d 筆借閱記錄", page.getRecords().size());
+            return ResponseEntity.ok(ApiResponse.success(message, page));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.internalServerError()
                     .body(ApiResponse.error("查詢借閱記錄失敗，請稍後再試"));
@@ -153,11 +323,16 @@ public class BorrowController {
 
     /**
      * 查詢逾期書籍 (館員專用)
+     * 以游標分頁，依到期日由舊到新；第一頁不帶 cursor，回應中的 nextCursor 用於取得下一頁
      */
-    @Operation(summary = "查詢逾期書籍", description = "館員查詢所有逾期未歸還的書籍")
+    @Operation(summary = "查詢逾期書籍",
+            description = "館員以游標分頁查詢逾期未歸還的書籍，可依圖書館（libraryId）篩選，回應的 nextCursor 為下一頁游標")
     @SecurityRequirement(name = "Bearer Authentication")
     @GetMapping("/overdue")
-    public ResponseEntity<ApiResponse<List<BorrowRecordResponse>>> getOverdueBooks(
+    public ResponseEntity<ApiResponse<OverdueReportPage>> getOverdueBooks(
+            @RequestParam(required = false) Long libraryId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
             Authentication authentication) {
         try {
             User user = getCurrentUser(authentication);
@@ -167,18 +342,56 @@ public class BorrowController {
                 return ResponseEntity.status(403)
                         .body(ApiResponse.error("只有館員可以查詢逾期書籍"));
             }
+            if (size <= 0 || size > 100) {
+                return ResponseEntity.badRequest()
+                        .body(ApiResponse.error("每頁數量必須在1-100之間"));
+            }
+
+            OverdueReportCursor reportCursor = (cursor == null || cursor.isEmpty())
+                    ? OverdueReportCursor.first()
+                    : OverdueReportCursor.decode(cursor);
+            OverdueReportPage page = borrowService.getOverdueBooks(libraryId, reportCursor, size);
             
-            List<BorrowRecordResponse> overdueBooks = borrowService.getOverdueBooks();
-            
-            String message = overdueBooks.isEmpty() ? "目前沒有逾期書籍" : 
-                    String.format("找到 %d 本逾期書籍", overdueBooks.size());
-            return ResponseEntity.ok(ApiResponse.success(message, overdueBooks));
+            String message = page.getRecords().isEmpty() ? "目前沒有逾期書籍" : 
+                    String.format("找到 %d 本逾期書籍", page.getRecords().size());
+            return ResponseEntity.ok(ApiResponse.success(message, page));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.internalServerError()
                     .body(ApiResponse.error("查詢逾期書籍失敗，請稍後再試"));
         }
     }
 
+    /**
+     * 匯出逾期報表 (館員專用)
+     */
+    @Operation(summary = "匯出逾期報表",
+            description = "館員以 CSV（format=csv，預設）或 NDJSON（format=ndjson）串流輸出所有逾期記錄，可依圖書館篩選")
+    @SecurityRequirement(name = "Bearer Authentication")
+    @GetMapping("/overdue/export")
+    public ResponseEntity<StreamingResponseBody> exportOverdueBooks(
+            @RequestParam(required = false) Long libraryId,
+            @RequestParam(defaultValue = "csv") String format,
+            Authentication authentication) {
+        User user = getCurrentUser(authentication);
+        if (user.getRole() != User.UserRole.LIBRARIAN) {
+            throw new InsufficientPermissionException("只有館員可以匯出逾期報表");
+        }
+        OverdueExportFormat exportFormat = OverdueExportFormat.from(format);
+
+        StreamingResponseBody body = output -> overdueReportService.exportOverdue(libraryId, exportFormat, output);
+        MediaType contentType = exportFormat == OverdueExportFormat.CSV
+                ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                : MediaType.APPLICATION_NDJSON;
+        String filename = exportFormat == OverdueExportFormat.CSV ? "overdue.csv" : "overdue.ndjson";
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .body(body);
+    }
+
     /**
      * 發送到期通知 (館員專用)
      */
@@ -196,9 +409,10 @@ public class BorrowController {
                         .body(ApiResponse.error("只有館員可以發送到期通知"));
             }
             
-            borrowService.sendDueNotifications();
+            DueSoonNotificationResult result = dueSoonNotificationService.sendDueNotifications();
             
-            return ResponseEntity.ok(ApiResponse.success("到期通知發送完成", "通知已發送至控制台"));
+            return ResponseEntity.ok(ApiResponse.success("到期通知發送完成",
+                    String.format("已發送 %d 則通知，失敗 %d 則", result.getSent(), result.getFailed())));
         } catch (Exception e) {
             return ResponseEntity.internalServerError()
                     .body(ApiResponse.error("發送到期通知失敗，請稍後再試"));
@@ -0,0 +1,138 @@
+package com.library.controller;
+
+import com.library.dto.ApiResponse;
+import com.library.dto.HoldResponse;
+import com.library.dto.PlaceHoldRequest;
+import com.library.entity.User;
+import com.library.exception.BookAlreadyBorrowedException;
+import com.library.exception.BookNotAvailableException;
+import com.library.repository.UserRepository;
+import com.library.service.HoldService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/api/holds")
+@Tag(name = "預約管理", description = "書籍副本預約排隊、查詢、取消相關 API")
+public class HoldController {
+
+    @Autowired
+    private HoldService holdService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    /**
+     * 預約書籍副本
+     */
+    @Operation(summary = "預約書籍", description = "書籍副本沒有可借數量時排隊預約，有人還書時依序保留並通知")
+    @SecurityRequirement(name = "Bearer Authentication")
+    @PostMapping
+    public ResponseEntity<ApiResponse<HoldResponse>> placeHold(
+            @Valid @RequestBody PlaceHoldRequest request,
+            Authentication authentication) {
+        try {
+            User user = getCurrentUser(authentication);
+            HoldResponse response = holdService.placeHold(request, user);
+
+            return ResponseEntity.ok(ApiResponse.success("預約成功，有人還書時會依序保留並通知", response));
+        } catch (BookNotAvailableException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (BookAlreadyBorrowedException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.error("預約失敗，請稍後再試"));
+        }
+    }
+
+    /**
+     * 查詢個人預約
+     */
+    @Operation(summary = "查詢個人預約", description = "查詢排隊中與可取書的預約")
+    @SecurityRequirement(name = "Bearer Authentication")
+    @GetMapping("/my-holds")
+    public ResponseEntity<ApiResponse<List<HoldResponse>>> getMyHolds(Authentication authentication) {
+        try {
+            User user = getCurrentUser(authentication);
+            List<HoldResponse> holds = holdService.getActiveHolds(user);
+
+            String message = holds.isEmpty() ? "您目前沒有預約" :
+                    String.format("找到 %d 筆預約", holds.size());
+            return ResponseEntity.ok(ApiResponse.success(message, holds));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.error("查詢預約失敗，請稍後再試"));
+        }
+    }
+
+    /**
+     * 查詢排隊位置
+     */
+    @Operation(summary = "查詢排隊位置", description = "查詢排隊中預約目前排在第幾位")
+    @SecurityRequirement(name = "Bearer Authentication")
+    @GetMapping("/{holdId}/position")
+    public ResponseEntity<ApiResponse<Long>> getQueuePosition(
+            @PathVariable Long holdId,
+            Authentication authentication) {
+        try {
+            User user = getCurrentUser(authentication);
+            long position = holdService.getQueuePosition(holdId, user);
+
+            String message = String.format("目前排在第 %d 位", position);
+            return ResponseEntity.ok(ApiResponse.success(message, position));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.error("查詢排隊位置失敗，請稍後再試"));
+        }
+    }
+
+    /**
+     * 取消預約
+     */
+    @Operation(summary = "取消預約", description = "取消排隊中或可取書的預約")
+    @SecurityRequirement(name = "Bearer Authentication")
+    @DeleteMapping("/{holdId}")
+    public ResponseEntity<ApiResponse<Void>> cancelHold(
+            @PathVariable Long holdId,
+            Authentication authentication) {
+        try {
+            User user = getCurrentUser(authentication);
+            holdService.cancelHold(holdId, user);
+
+            return ResponseEntity.ok(ApiResponse.success("預約已取消", null));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.error("取消預約失敗，請稍後再試"));
+        }
+    }
+
+    private User getCurrentUser(Authentication authentication) {
+        String username = authentication.getName();
+        Optional<User> userOpt = userRepository.findByUsername(username);
+        if (userOpt.isEmpty()) {
+            throw new IllegalArgumentException("用戶不存在：" + username);
+        }
+        return userOpt.get();
+    }
+}
@@ -0,0 +1,27 @@
+package com.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 批次借閱中單一書籍副本的結果：成功時附上借閱資訊，失敗時附上原因
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchBorrowItemResult {
+
+    private Long bookCopyId;
+    private boolean success;
+    private String message;
+    private BorrowBookResponse borrow;
+
+    public static BatchBorrowItemResult success(Long bookCopyId, BorrowBookResponse borrow) {
+        return new BatchBorrowItemResult(bookCopyId, true, "借書成功", borrow);
+    }
+
+    public static BatchBorrowItemResult failure(Long bookCopyId, String message) {
+        return new BatchBorrowItemResult(bookCopyId, false, message, null);
+    }
+}
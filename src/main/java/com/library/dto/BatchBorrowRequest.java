@@ -0,0 +1,20 @@
+package com.library.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchBorrowRequest {
+
+    @NotEmpty(message = "書籍副本ID清單不能為空")
+    @Size(max = 50, message = "一次最多借閱 50 個書籍副本")
+    private List<@NotNull(message = "書籍副本ID不能為空") Long> bookCopyIds;
+}
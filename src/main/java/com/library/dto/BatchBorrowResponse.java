@@ -0,0 +1,25 @@
+package com.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 批次借閱結果，項目順序與請求中的書籍副本ID相同
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchBorrowResponse {
+
+    private List<BatchBorrowItemResult> items;
+    private int successCount;
+    private int failureCount;
+
+    public static BatchBorrowResponse of(List<BatchBorrowItemResult> items) {
+        int successCount = (int) items.stream().filter(BatchBorrowItemResult::isSuccess).count();
+        return new BatchBorrowResponse(items, successCount, items.size() - successCount);
+    }
+}
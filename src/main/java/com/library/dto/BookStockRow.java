@@ -0,0 +1,28 @@
+package com.library.dto;
+
+import com.library.entity.Book;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 書籍搜尋投影查詢的一列：書籍資訊加上一筆館藏（無館藏時館藏欄位為 null）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookStockRow {
+
+    private Long bookId;
+    private String title;
+    private String author;
+    private Integer publishYear;
+    private Book.BookType type;
+    private String isbn;
+    private String publisher;
+    private Long libraryId;
+    private String libraryName;
+    private String libraryAddress;
+    private Integer totalCopies;
+    private Integer availableCopies;
+}
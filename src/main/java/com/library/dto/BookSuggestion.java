@@ -0,0 +1,21 @@
+package com.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookSuggestion {
+
+    private String text;
+    private SuggestionType type;
+    // 書名建議對應的書籍ID，作者建議為 null
+    private Long bookId;
+    private long borrowCount;
+
+    public enum SuggestionType {
+        TITLE, AUTHOR
+    }
+}
@@ -0,0 +1,24 @@
+package com.library.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BorrowByTitleRequest {
+
+    @NotNull(message = "書籍ID不能為空")
+    private Long bookId;
+
+    /**
+     * 偏好的圖書館，依順序嘗試；未指定時可從任一圖書館借出
+     */
+    @Size(max = 20, message = "偏好圖書館最多 20 個")
+    private List<@NotNull(message = "圖書館ID不能為空") Long> preferredLibraryIds;
+}
@@ -0,0 +1,32 @@
+package com.library.dto;
+
+import com.library.entity.Book;
+import com.library.entity.BorrowRecord;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * 借閱歷史投影查詢的一列：只包含 BorrowRecordResponse 需要的欄位，不載入任何實體
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BorrowHistoryRow {
+
+    private Long borrowRecordId;
+    private Long bookId;
+    private String bookTitle;
+    private String bookAuthor;
+    private Book.BookType bookType;
+    private String isbn;
+    private String publisher;
+    private String libraryName;
+    private String libraryAddress;
+    private LocalDate borrowDate;
+    private LocalDate dueDate;
+    private LocalDate returnDate;
+    private BorrowRecord.BorrowStatus status;
+}
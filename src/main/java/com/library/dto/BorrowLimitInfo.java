@@ -16,12 +16,19 @@ public class BorrowLimitInfo {
     private int availableSlots;
     
     public static BorrowLimitInfo of(Book.BookType bookType, int currentCount) {
-        int maxLimit = (bookType == Book.BookType.MAGAZINE) ? 5 : 10;
+        int maxLimit = maxLimit(bookType);
         int availableSlots = Math.max(0, maxLimit - currentCount);
         
         return new BorrowLimitInfo(bookType, currentCount, maxLimit, availableSlots);
     }
     
+    /**
+     * 各類型同時借閱上限：期刊 5 本、書籍 10 本
+     */
+    public static int maxLimit(Book.BookType bookType) {
+        return (bookType == Book.BookType.MAGAZINE) ? 5 : 10;
+    }
+
     public boolean canBorrow() {
         return availableSlots > 0;
     }
@@ -34,7 +34,7 @@ public class BorrowRecordResponse {
         LocalDate today = LocalDate.now();
         long daysUntilDue = 0;
         
-        if (borrowRecord.getStatus() == BorrowRecord.BorrowStatus.BORROWED) {
+        if (borrowRecord.isActive()) {
             daysUntilDue = today.until(borrowRecord.getDueDate()).getDays();
         }
         
@@ -57,4 +57,33 @@ public class BorrowRecordResponse {
                 daysUntilDue
         );
     }
+
+    /**
+     * 由投影查詢的一列建立，逾期、即將到期的判斷與 BorrowRecord 相同
+     */
+    public static BorrowRecordResponse from(BorrowHistoryRow row) {
+        LocalDate today = LocalDate.now();
+        boolean active = row.getStatus() == BorrowRecord.BorrowStatus.BORROWED
+                || row.getStatus() == BorrowRecord.BorrowStatus.OVERDUE;
+
+        return new BorrowRecordResponse(
+                row.getBorrowRecordId(),
+                row.getBookId(),
+                row.getBookTitle(),
+                row.getBookAuthor(),
+                row.getBookType(),
+                row.getIsbn(),
+                row.getPublisher(),
+                row.getLibraryName(),
+                row.getLibraryAddress(),
+                row.getBorrowDate(),
+                row.getDueDate(),
+                row.getReturnDate(),
+                row.getStatus(),
+                row.getStatus() == BorrowRecord.BorrowStatus.OVERDUE
+                        || active && today.isAfter(row.getDueDate()),
+                active && today.isAfter(row.getDueDate().minusDays(5)),
+                active ? today.until(row.getDueDate()).getDays() : 0
+        );
+    }
 }
\ No newline at end of file
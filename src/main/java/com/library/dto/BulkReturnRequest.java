@@ -0,0 +1,25 @@
+package com.library.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 大量還書（館員專用）：可提供借閱記錄ID，或掃描到的書籍副本ID（歸還該副本最早到期的借閱記錄）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkReturnRequest {
+
+    @Size(max = 20000, message = "一次最多歸還 20000 筆借閱記錄")
+    private List<@NotNull(message = "借閱記錄ID不能為空") Long> borrowRecordIds = new ArrayList<>();
+
+    @Size(max = 20000, message = "一次最多歸還 20000 個書籍副本")
+    private List<@NotNull(message = "書籍副本ID不能為空") Long> bookCopyIds = new ArrayList<>();
+}
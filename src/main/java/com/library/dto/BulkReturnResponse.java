@@ -0,0 +1,37 @@
+package com.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 大量還書結果：成功歸還的數量，以及無法歸還的項目與原因
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkReturnResponse {
+
+    private int requested;
+    private int returned;
+    private List<Failure> failures;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Failure {
+        private Long borrowRecordId;
+        private Long bookCopyId;
+        private String message;
+
+        public static Failure ofBorrowRecord(Long borrowRecordId, String message) {
+            return new Failure(borrowRecordId, null, message);
+        }
+
+        public static Failure ofBookCopy(Long bookCopyId, String message) {
+            return new Failure(null, bookCopyId, message);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DueSoonNotificationResult {
+
+    private LocalDate checkDate;
+    // 通知到期日在此日期（含）之前的借閱
+    private LocalDate dueBefore;
+    private long sent;
+    private long failed;
+    private long elapsedMillis;
+}
@@ -0,0 +1,26 @@
+package com.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * 到期通知投影查詢的一列：組成通知所需的借閱者、書籍與圖書館欄位，不載入任何實體
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DueSoonNotificationRow {
+
+    private Long borrowRecordId;
+    private Long userId;
+    private String username;
+    private String fullName;
+    private String email;
+    private String bookTitle;
+    private String bookAuthor;
+    private String libraryName;
+    private LocalDate dueDate;
+}
@@ -0,0 +1,16 @@
+package com.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FacetedSearchResponse {
+
+    private List<BookSearchResponse> books;
+    private SearchFacets facets;
+}
@@ -0,0 +1,34 @@
+package com.library.dto;
+
+import com.library.entity.Hold;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HoldResponse {
+
+    private Long holdId;
+    private Long bookCopyId;
+    private String bookTitle;
+    private String libraryName;
+    private Hold.HoldStatus status;
+    private LocalDateTime createdAt;
+    private LocalDateTime expiresAt;
+
+    public static HoldResponse from(Hold hold) {
+        return new HoldResponse(
+                hold.getId(),
+                hold.getBookCopy().getId(),
+                hold.getBookCopy().getBook().getTitle(),
+                hold.getBookCopy().getLibrary().getName(),
+                hold.getStatus(),
+                hold.getCreatedAt(),
+                hold.getExpiresAt()
+        );
+    }
+}
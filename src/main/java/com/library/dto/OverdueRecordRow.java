@@ -0,0 +1,40 @@
+package com.library.dto;
+
+import com.library.entity.BorrowRecord;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * 逾期報表投影查詢的一列：借閱者、書籍、圖書館與到期日，不載入任何實體
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OverdueRecordRow {
+
+    private Long borrowRecordId;
+    private Long userId;
+    private String username;
+    private String fullName;
+    private String email;
+    private Long bookId;
+    private String bookTitle;
+    private String bookAuthor;
+    private String isbn;
+    private Long libraryId;
+    private String libraryName;
+    private LocalDate borrowDate;
+    private LocalDate dueDate;
+    private BorrowRecord.BorrowStatus status;
+
+    /**
+     * 到今天為止逾期的天數
+     */
+    public long getDaysOverdue() {
+        return ChronoUnit.DAYS.between(dueDate, LocalDate.now());
+    }
+}
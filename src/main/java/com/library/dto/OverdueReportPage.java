@@ -0,0 +1,17 @@
+package com.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OverdueReportPage {
+
+    private List<OverdueRecordRow> records;
+    // 下一頁的游標，已無更多記錄時為 null
+    private String nextCursor;
+}
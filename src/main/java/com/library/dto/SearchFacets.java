@@ -0,0 +1,23 @@
+package com.library.dto;
+
+import com.library.entity.Book;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * 搜尋結果的分面統計：全部符合條件的書籍（不只目前頁）依出版年份、類型、圖書館的數量
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchFacets {
+
+    private long totalBooks;
+    private Map<Integer, Long> years;
+    private Map<Book.BookType, Long> types;
+    // 圖書館ID → 在該館有館藏的書籍數
+    private Map<Long, Long> libraries;
+}
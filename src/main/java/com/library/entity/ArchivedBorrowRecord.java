@@ -0,0 +1,64 @@
+package com.library.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 已封存的借閱記錄（冷資料）
+ * 歸還超過保存期限的借閱記錄由 BorrowRecordArchiver 從 borrow_records 整批搬到此表，ID 與欄位保持不變，
+ * borrow_records 只留下借閱中與近期歸還的記錄；借閱歷史查詢會同時讀取兩張表
+ */
+@Entity
+@Table(name = "borrow_records_archive", indexes = {
+        @Index(name = "idx_borrow_records_archive_user_borrow_date", columnList = "user_id, borrowDate, id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArchivedBorrowRecord {
+    // 沿用原借閱記錄的 ID
+    @Id
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "book_copy_id", nullable = false)
+    private BookCopy bookCopy;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "library_id", nullable = false)
+    private Library library;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "book_item_id")
+    private BookItem bookItem;
+
+    @Column(nullable = false)
+    private LocalDate borrowDate;
+
+    @Column(nullable = false)
+    private LocalDate dueDate;
+
+    private LocalDate returnDate;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private BorrowRecord.BorrowStatus status;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Column(nullable = false)
+    private LocalDateTime archivedAt;
+}
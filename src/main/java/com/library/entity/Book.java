@@ -12,7 +12,10 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "books")
+@Table(name = "books", indexes = {
+        // 游標分頁依（書名, ID）排序
+        @Index(name = "idx_books_title_id", columnList = "title, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
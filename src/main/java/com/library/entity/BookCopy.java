@@ -9,7 +9,11 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "book_copies")
+@Table(name = "book_copies", indexes = {
+        // 可借條件（availableOnly）的 EXISTS 子查詢：依書籍或依圖書館查找可借館藏
+        @Index(name = "idx_book_copies_book_available", columnList = "book_id, status, availableCopies"),
+        @Index(name = "idx_book_copies_library_available", columnList = "library_id, status, availableCopies")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -29,9 +33,14 @@ public class BookCopy {
     @Column(nullable = false)
     private Integer totalCopies;
 
+    // 逐冊追蹤的館藏由 book_items 推導，於交易提交後更新，僅作為搜尋顯示用的快取
     @Column(nullable = false)
     private Integer availableCopies;
 
+    // 是否以 book_items 逐冊追蹤；舊有館藏維持只有總數與可借數量的計數方式
+    @Column(nullable = false)
+    private Boolean itemTracked;
+
     @Version
     private Long version;
 
@@ -48,6 +57,9 @@ public class BookCopy {
     @OneToMany(mappedBy = "bookCopy", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<BorrowRecord> borrowRecords;
 
+    @OneToMany(mappedBy = "bookCopy", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    private List<BookItem> items;
+
     public enum CopyStatus {
         ACTIVE, INACTIVE, MAINTENANCE
     }
@@ -59,6 +71,9 @@ public class BookCopy {
         if (availableCopies == null) {
             availableCopies = totalCopies;
         }
+        if (itemTracked == null) {
+            itemTracked = false;
+        }
     }
 
     @PreUpdate
@@ -66,6 +81,10 @@ public class BookCopy {
         updatedAt = LocalDateTime.now();
     }
 
+    public boolean isItemTracked() {
+        return Boolean.TRUE.equals(itemTracked);
+    }
+
     public boolean isAvailable() {
         return status == CopyStatus.ACTIVE && availableCopies > 0;
     }
@@ -0,0 +1,73 @@
+package com.library.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 實體書（一冊一列，以條碼識別）
+ * 逐冊追蹤的館藏（BookCopy.itemTracked）借書時以 SKIP LOCKED 認領任一冊 AVAILABLE 的書，
+ * 同時借閱的用戶鎖定不同資料列；BookCopy 的可借數量由各冊狀態推導，於交易提交後更新
+ */
+@Entity
+@Table(name = "book_items", indexes = {
+        // 認領可借的一冊：依館藏與狀態取 ID 最小者
+        @Index(name = "idx_book_items_copy_status", columnList = "book_copy_id, status, id")
+}, uniqueConstraints = @UniqueConstraint(name = "uk_book_items_barcode", columnNames = "barcode"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookItem {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "book_copy_id", nullable = false)
+    private BookCopy bookCopy;
+
+    @Column(nullable = false, length = 32)
+    private String barcode;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private ItemStatus status;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
+    public enum ItemStatus {
+        // RESERVED：還書時保留給預約隊首，只有該預約者能借出
+        AVAILABLE, BORROWED, RESERVED, MAINTENANCE, LOST
+    }
+
+    public BookItem(BookCopy bookCopy, String barcode) {
+        this.bookCopy = bookCopy;
+        this.barcode = barcode;
+        this.status = ItemStatus.AVAILABLE;
+    }
+
+    /**
+     * 系統產生的條碼：館藏ID與館藏內的冊號
+     */
+    public static String barcodeFor(Long bookCopyId, int itemNumber) {
+        return String.format("C%08d-%04d", bookCopyId, itemNumber);
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -9,13 +9,23 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "borrow_records")
+@Table(name = "borrow_records", indexes = {
+        @Index(name = "idx_borrow_records_user_borrow_date", columnList = "user_id, borrowDate, id"),
+        // 封存作業依歸還日期找出已歸還的記錄
+        @Index(name = "idx_borrow_records_status_return_date", columnList = "status, returnDate"),
+        // 逾期、即將到期與逾期標記排程依狀態與到期日查詢
+        @Index(name = "idx_borrow_records_status_due_date", columnList = "status, dueDate, id"),
+        // 各圖書館的逾期報表
+        @Index(name = "idx_borrow_records_library_status_due_date", columnList = "library_id, status, dueDate")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class BorrowRecord {
+    // 以序列預先配置 ID（每次 50 個），批次借閱的多筆 INSERT 才能合併為一次 JDBC 批次
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "borrow_records_seq")
+    @SequenceGenerator(name = "borrow_records_seq", sequenceName = "borrow_records_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -30,6 +40,11 @@ public class BorrowRecord {
     @JoinColumn(name = "library_id", nullable = false)
     private Library library;
 
+    // 借出的實體書（逐冊追蹤的館藏才有值）
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "book_item_id")
+    private BookItem bookItem;
+
     @Column(nullable = false)
     private LocalDate borrowDate;
 
@@ -69,12 +84,20 @@ public class BorrowRecord {
         updatedAt = LocalDateTime.now();
     }
 
+    /**
+     * 是否為借閱中（尚未歸還，包含已標記逾期）
+     */
+    public boolean isActive() {
+        return status == BorrowStatus.BORROWED || status == BorrowStatus.OVERDUE;
+    }
+
     public boolean isOverdue() {
-        return status == BorrowStatus.BORROWED && LocalDate.now().isAfter(dueDate);
+        return status == BorrowStatus.OVERDUE
+                || status == BorrowStatus.BORROWED && LocalDate.now().isAfter(dueDate);
     }
 
     public boolean isDueSoon() {
-        return status == BorrowStatus.BORROWED && 
+        return isActive() && 
                LocalDate.now().isAfter(dueDate.minusDays(5));
     }
 }
\ No newline at end of file
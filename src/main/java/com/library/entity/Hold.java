@@ -0,0 +1,70 @@
+package com.library.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 書籍副本的預約（候補佇列）
+ * 同一副本的 WAITING 預約依 ID 先後排隊；還書時由 HoldService 在同一交易中把歸還的一本保留給隊首（READY），
+ * 不回到可借數量，預約者在取書期限內借閱即完成（FULFILLED），逾期未借則轉給下一位
+ */
+@Entity
+@Table(name = "holds", indexes = {
+        // 隊首查詢與排隊位置：依副本與狀態取最小 ID
+        @Index(name = "idx_holds_copy_status", columnList = "book_copy_id, status, id"),
+        @Index(name = "idx_holds_user_status", columnList = "user_id, status"),
+        @Index(name = "idx_holds_status_expires", columnList = "status, expiresAt")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Hold {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "book_copy_id", nullable = false)
+    private BookCopy bookCopy;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private HoldStatus status;
+
+    // 保留給預約者的時間與取書期限（READY 之後才有值）
+    private LocalDateTime readyAt;
+
+    private LocalDateTime expiresAt;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
+    public enum HoldStatus {
+        WAITING, READY, FULFILLED, CANCELLED, EXPIRED
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+        if (status == null) {
+            status = HoldStatus.WAITING;
+        }
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,40 @@
+package com.library.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 用戶各類型書籍的借閱中數量（反正規化計數器）
+ * 借書、還書時於同一交易中以條件式 UPDATE 增減，借閱上限檢查只需更新單一資料列；
+ * 由 BorrowCounterReconciler 定期與 borrow_records 核對
+ */
+@Entity
+@Table(name = "user_borrow_counters", uniqueConstraints =
+        @UniqueConstraint(name = "uk_user_borrow_counters_user_type", columnNames = {"user_id", "book_type"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserBorrowCounter {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "book_type", nullable = false)
+    private Book.BookType bookType;
+
+    @Column(nullable = false)
+    private Integer activeCount;
+
+    public UserBorrowCounter(User user, Book.BookType bookType, int activeCount) {
+        this.user = user;
+        this.bookType = bookType;
+        this.activeCount = activeCount;
+    }
+}
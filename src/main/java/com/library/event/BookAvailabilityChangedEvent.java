@@ -0,0 +1,18 @@
+package com.library.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 館藏可借數量變動事件，於借書、還書交易中發布
+ */
+@Getter
+@AllArgsConstructor
+public class BookAvailabilityChangedEvent {
+
+    private final Long bookId;
+    private final Long libraryId;
+
+    /** 館藏是否逐冊追蹤，是的話可借數量需由各冊狀態重新計算 */
+    private final boolean itemTracked;
+}
@@ -0,0 +1,14 @@
+package com.library.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 借書事件，於 BorrowService.borrowBook 交易中發布
+ */
+@Getter
+@AllArgsConstructor
+public class BookBorrowedEvent {
+
+    private final Long bookId;
+}
@@ -0,0 +1,16 @@
+package com.library.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 館藏副本新增事件，於 BookService.addBookCopies 交易中發布
+ */
+@Getter
+@AllArgsConstructor
+public class BookCopiesAddedEvent {
+
+    private final Long bookId;
+    private final Long libraryId;
+    private final Integer copies;
+}
@@ -0,0 +1,19 @@
+package com.library.event;
+
+import com.library.entity.Book;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 書籍新增事件，於 BookService.createBook 交易中發布
+ */
+@Getter
+@AllArgsConstructor
+public class BookCreatedEvent {
+
+    private final Long bookId;
+    private final String title;
+    private final String author;
+    private final Integer publishYear;
+    private final Book.BookType type;
+}
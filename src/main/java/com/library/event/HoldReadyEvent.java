@@ -0,0 +1,22 @@
+package com.library.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * 預約可取書事件，還書或預約轉給下一位時於同一交易中發布
+ */
+@Getter
+@AllArgsConstructor
+public class HoldReadyEvent {
+
+    private final Long holdId;
+    private final Long userId;
+    private final String username;
+    private final Long bookCopyId;
+    private final String bookTitle;
+    private final String libraryName;
+    private final LocalDateTime expiresAt;
+}
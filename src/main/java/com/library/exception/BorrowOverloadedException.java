@@ -0,0 +1,10 @@
+package com.library.exception;
+
+/**
+ * 借書請求過多或等待逾時，暫時無法處理（回應 503，用戶可稍後重試）
+ */
+public class BorrowOverloadedException extends BookNotAvailableException {
+    public BorrowOverloadedException(String message) {
+        super(message);
+    }
+}
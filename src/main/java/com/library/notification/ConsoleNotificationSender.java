@@ -0,0 +1,33 @@
+package com.library.notification;
+
+import java.io.PrintStream;
+
+/**
+ * 把通知印到標準輸出（開發與展示用）
+ * 每則通知組成完整字串後一次寫出，多個執行緒同時發送時內容不會交錯
+ */
+public class ConsoleNotificationSender implements NotificationSender {
+
+    private final PrintStream out;
+
+    public ConsoleNotificationSender() {
+        this(System.out);
+    }
+
+    ConsoleNotificationSender(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void send(Notification notification) {
+        out.print("通知發送給用戶：" + notification.getUsername() + " (ID: " + notification.getUserId() + ")\n"
+                + "主旨：" + notification.getSubject() + "\n"
+                + notification.getBody() + "\n"
+                + "---\n");
+    }
+
+    @Override
+    public void flush() {
+        out.flush();
+    }
+}
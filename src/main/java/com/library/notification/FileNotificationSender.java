@@ -0,0 +1,100 @@
+package com.library.notification;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * 把通知以 mbox 格式附加到本機信箱檔（模擬 SMTP 寄信），可用一般郵件工具開啟檢查
+ * 寫入經過緩衝，flush 或 close 時才保證寫到檔案；send 與 flush 以此物件同步，可由多個執行緒同時呼叫
+ */
+public class FileNotificationSender implements NotificationSender, Closeable {
+
+    private static final DateTimeFormatter MBOX_DATE =
+            DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss yyyy", Locale.US);
+
+    private final Path mailbox;
+    private final String from;
+    private Writer writer;
+
+    public FileNotificationSender(Path mailbox, String from) {
+        this.mailbox = mailbox;
+        this.from = from;
+    }
+
+    @Override
+    public synchronized void send(Notification notification) {
+        ZonedDateTime now = ZonedDateTime.now();
+        StringBuilder message = new StringBuilder(256)
+                .append("From ").append(from).append(' ').append(MBOX_DATE.format(now)).append('\n')
+                .append("From: ").append(from).append('\n')
+                .append("To: ").append(recipient(notification)).append('\n')
+                .append("Date: ").append(DateTimeFormatter.RFC_1123_DATE_TIME.format(now)).append('\n')
+                .append("Subject: ").append(notification.getSubject()).append('\n')
+                .append("Content-Type: text/plain; charset=UTF-8\n")
+                .append("Content-Transfer-Encoding: 8bit\n")
+                .append('\n');
+        for (String line : notification.getBody().split("\n", -1)) {
+            // mbox 以 "From " 開頭的行分隔郵件，內文中的同樣開頭要跳脫
+            if (line.startsWith("From ")) {
+                message.append('>');
+            }
+            message.append(line).append('\n');
+        }
+        message.append('\n');
+
+        try {
+            writer().write(message.toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException("寫入信箱檔失敗：" + mailbox, e);
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("寫入信箱檔失敗：" + mailbox, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    private Writer writer() throws IOException {
+        if (writer == null) {
+            Path directory = mailbox.toAbsolutePath().getParent();
+            if (directory != null) {
+                Files.createDirectories(directory);
+            }
+            writer = new BufferedWriter(Files.newBufferedWriter(mailbox, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND), 64 * 1024);
+        }
+        return writer;
+    }
+
+    private static String recipient(Notification notification) {
+        if (notification.getEmail() == null || notification.getEmail().isBlank()) {
+            return notification.getUsername();
+        }
+        return notification.getUsername() + " <" + notification.getEmail() + ">";
+    }
+}
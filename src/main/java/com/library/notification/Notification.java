@@ -0,0 +1,18 @@
+package com.library.notification;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 要發送給用戶的一則通知，email 為 null 時只以用戶名稱識別收件人
+ */
+@Getter
+@AllArgsConstructor
+public class Notification {
+
+    private final Long userId;
+    private final String username;
+    private final String email;
+    private final String subject;
+    private final String body;
+}
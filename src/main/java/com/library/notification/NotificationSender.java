@@ -0,0 +1,19 @@
+package com.library.notification;
+
+/**
+ * 通知的發送方式，由 library.notifications.sender 選擇實作
+ * 到期通知由多個工作執行緒同時呼叫 send，實作必須是執行緒安全的
+ */
+public interface NotificationSender {
+
+    /**
+     * 發送一則通知，失敗時拋出執行期例外
+     */
+    void send(Notification notification);
+
+    /**
+     * 把已緩衝的通知寫出；一批通知發送完成後呼叫
+     */
+    default void flush() {
+    }
+}
@@ -0,0 +1,54 @@
+package com.library.repository;
+
+import com.library.dto.BorrowHistoryRow;
+import com.library.entity.ArchivedBorrowRecord;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ArchivedBorrowRecordRepository extends JpaRepository<ArchivedBorrowRecord, Long> {
+
+    /**
+     * 以一次 INSERT ... SELECT 把指定的借閱記錄複製到封存表（ID 與欄位不變），不經過持久化內容
+     */
+    @Modifying
+    @Query(value = "INSERT INTO borrow_records_archive (id, user_id, book_copy_id, library_id, book_item_id, " +
+            "borrow_date, due_date, return_date, status, created_at, updated_at, archived_at) " +
+            "SELECT id, user_id, book_copy_id, library_id, book_item_id, " +
+            "borrow_date, due_date, return_date, status, created_at, updated_at, :now " +
+            "FROM borrow_records WHERE id IN :ids", nativeQuery = true)
+    int copyFromLive(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    /**
+     * 投影查詢：用戶在游標（借閱日期, ID）之後的封存借閱歷史，排序與 BorrowRecordRepository.findHistoryRows 相同
+     * 封存表只有已歸還的記錄，不需要狀態條件
+     */
+    @Query("SELECT new com.library.dto.BorrowHistoryRow(ar.id, b.id, b.title, b.author, b.type, b.isbn, " +
+            "b.publisher, l.name, l.address, ar.borrowDate, ar.dueDate, ar.returnDate, ar.status) " +
+            "FROM ArchivedBorrowRecord ar JOIN ar.bookCopy bc JOIN bc.book b JOIN ar.library l " +
+            "WHERE ar.user.id = :userId " +
+            "AND (ar.borrowDate < :lastBorrowDate OR (ar.borrowDate = :lastBorrowDate AND ar.id < :lastId)) " +
+            "AND (:fromDate IS NULL OR ar.borrowDate >= :fromDate) " +
+            "AND (:toDate IS NULL OR ar.borrowDate <= :toDate) " +
+            "ORDER BY ar.borrowDate DESC, ar.id DESC")
+    List<BorrowHistoryRow> findHistoryRows(@Param("userId") Long userId,
+            @Param("lastBorrowDate") LocalDate lastBorrowDate, @Param("lastId") Long lastId,
+            @Param("fromDate") LocalDate fromDate, @Param("toDate") LocalDate toDate, Pageable pageable);
+
+    /**
+     * 書籍ID區間內各書籍已封存的借閱次數（重建自動完成索引時與 borrow_records 的次數相加）
+     */
+    @Query("SELECT bc.book.id AS bookId, COUNT(ar) AS borrowCount FROM ArchivedBorrowRecord ar JOIN ar.bookCopy bc " +
+            "WHERE bc.book.id BETWEEN :fromBookId AND :toBookId GROUP BY bc.book.id")
+    List<BorrowRecordRepository.BookBorrowCount> countBorrowsByBookIdBetween(@Param("fromBookId") Long fromBookId,
+            @Param("toBookId") Long toBookId);
+}
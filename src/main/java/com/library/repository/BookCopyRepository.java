@@ -3,11 +3,16 @@ package com.library.repository;
 import com.library.entity.Book;
 import com.library.entity.BookCopy;
 import com.library.entity.Library;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,7 +25,11 @@ public interface BookCopyRepository extends JpaRepository<BookCopy, Long> {
     @Query("SELECT bc FROM BookCopy bc WHERE bc.book.id = :bookId AND bc.status = 'ACTIVE'")
     List<BookCopy> findActiveByBookId(@Param("bookId") Long bookId);
 
-    @Query("SELECT bc FROM BookCopy bc WHERE bc.book.id = :bookId AND bc.availableCopies > 0 AND bc.status = 'ACTIVE'")
+    /**
+     * 書籍目前有可借數量的館藏（含圖書館），可借數量依讀取當下，借出時仍需以條件式 UPDATE 或認領實體書確認
+     */
+    @Query("SELECT bc FROM BookCopy bc JOIN FETCH bc.library l WHERE bc.book.id = :bookId " +
+            "AND bc.availableCopies > 0 AND bc.status = 'ACTIVE' AND l.active = true ORDER BY bc.availableCopies DESC, bc.id")
     List<BookCopy> findAvailableByBookId(@Param("bookId") Long bookId);
 
     @Query("SELECT bc FROM BookCopy bc JOIN bc.library l WHERE bc.book.id IN :bookIds AND bc.status = :status AND l.active = :libraryActive")
@@ -31,4 +40,103 @@ public interface BookCopyRepository extends JpaRepository<BookCopy, Long> {
     boolean existsByBookAndLibrary(Book book, Library library);
 
     Optional<BookCopy> findByBookAndLibrary(Book book, Library library);
+
+    /**
+     * 依 ID 順序鎖定多個副本（連同書籍與圖書館），固定的加鎖順序避免批次借閱互相死結
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT bc FROM BookCopy bc JOIN FETCH bc.book JOIN FETCH bc.library WHERE bc.id IN :ids ORDER BY bc.id")
+    List<BookCopy> findAllByIdInForUpdate(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 條件式扣減可借數量：僅在副本為 ACTIVE 且仍有可借數量時扣 1，回傳影響筆數（0 表示無法借出）
+     * 同時遞增版本號，讓以樂觀鎖更新同一副本的操作能偵測到變更
+     */
+    @Modifying
+    @Query("UPDATE BookCopy bc SET bc.availableCopies = bc.availableCopies - 1, bc.version = bc.version + 1, " +
+            "bc.updatedAt = :now WHERE bc.id = :id AND bc.availableCopies > 0 AND bc.status = 'ACTIVE'")
+    int decrementAvailableCopies(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    /**
+     * 一次扣減多本可借數量（合併提交的借書於鎖定副本後依庫存配給），可借數量不足時不更新
+     */
+    @Modifying
+    @Query("UPDATE BookCopy bc SET bc.availableCopies = bc.availableCopies - :count, bc.version = bc.version + 1, " +
+            "bc.updatedAt = :now WHERE bc.id = :id AND bc.availableCopies >= :count")
+    int subtractAvailableCopies(@Param("id") Long id, @Param("count") int count, @Param("now") LocalDateTime now);
+
+    /**
+     * 一次扣減多個副本各一本可借數量（批次借閱於鎖定副本並確認庫存後呼叫）
+     */
+    @Modifying
+    @Query("UPDATE BookCopy bc SET bc.availableCopies = bc.availableCopies - 1, bc.version = bc.version + 1, " +
+            "bc.updatedAt = :now WHERE bc.id IN :ids AND bc.availableCopies > 0")
+    int decrementAllAvailableCopies(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    /**
+     * 條件式增加可借數量：不超過總數量，回傳影響筆數
+     */
+    @Modifying
+    @Query("UPDATE BookCopy bc SET bc.availableCopies = bc.availableCopies + 1, bc.version = bc.version + 1, " +
+            "bc.updatedAt = :now WHERE bc.id = :id AND bc.availableCopies < bc.totalCopies")
+    int incrementAvailableCopies(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    /**
+     * 一次增加多個副本的可借數量（大量還書依歸還數量分組），不超過總數量
+     */
+    @Modifying
+    @Query("UPDATE BookCopy bc SET bc.availableCopies = CASE WHEN bc.availableCopies + :count > bc.totalCopies " +
+            "THEN bc.totalCopies ELSE bc.availableCopies + :count END, bc.version = bc.version + 1, " +
+            "bc.updatedAt = :now WHERE bc.id IN :ids")
+    int addAvailableCopies(@Param("ids") Collection<Long> ids, @Param("count") int count,
+            @Param("now") LocalDateTime now);
+
+    /**
+     * 以各冊狀態重新計算逐冊追蹤館藏的可借數量（計數館藏不受影響）
+     */
+    @Modifying
+    @Query("UPDATE BookCopy bc SET bc.availableCopies = (SELECT COUNT(i) FROM BookItem i " +
+            "WHERE i.bookCopy = bc AND i.status = 'AVAILABLE'), bc.version = bc.version + 1, bc.updatedAt = :now " +
+            "WHERE bc.book.id = :bookId AND bc.library.id = :libraryId AND bc.itemTracked = true")
+    int refreshItemTrackedAvailability(@Param("bookId") Long bookId, @Param("libraryId") Long libraryId,
+            @Param("now") LocalDateTime now);
+
+    /**
+     * 鎖定副本並讀取可借數量（預約排隊與還書配給預約時，以副本資料列鎖排序）
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT bc.availableCopies FROM BookCopy bc WHERE bc.id = :id")
+    Optional<Integer> findAvailableCopiesForUpdate(@Param("id") Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT bc.id FROM BookCopy bc WHERE bc.id IN :ids ORDER BY bc.id")
+    List<Long> lockAllById(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT bc.id AS bookCopyId, b.id AS bookId, bc.library.id AS libraryId, b.type AS bookType " +
+            "FROM BookCopy bc JOIN bc.book b WHERE bc.id IN :ids")
+    List<CopySummary> findCopySummaries(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT DISTINCT bc.book.id AS bookId, bc.library.id AS libraryId FROM BookCopy bc " +
+            "WHERE bc.book.id BETWEEN :fromBookId AND :toBookId")
+    List<BookLibraryLink> findBookLibraryLinks(@Param("fromBookId") Long fromBookId,
+            @Param("toBookId") Long toBookId);
+
+    interface CopySummary {
+        Long getBookCopyId();
+
+        Long getBookId();
+
+        Long getLibraryId();
+
+        Book.BookType getBookType();
+    }
+
+    /**
+     * 書籍與圖書館的館藏關聯
+     */
+    interface BookLibraryLink {
+        Long getBookId();
+
+        Long getLibraryId();
+    }
 }
\ No newline at end of file
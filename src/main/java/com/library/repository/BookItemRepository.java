@@ -0,0 +1,45 @@
+package com.library.repository;
+
+import com.library.entity.BookItem;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface BookItemRepository extends JpaRepository<BookItem, Long> {
+
+    /**
+     * 鎖定館藏中指定狀態的前幾冊，略過其他交易已鎖定的資料列（lock.timeout = -2 即 SKIP LOCKED）
+     * 不支援 SKIP LOCKED 的資料庫（如 H2）退回一般的 FOR UPDATE
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT i FROM BookItem i WHERE i.bookCopy.id = :bookCopyId AND i.status = :status ORDER BY i.id")
+    List<BookItem> findClaimable(@Param("bookCopyId") Long bookCopyId, @Param("status") BookItem.ItemStatus status,
+            Pageable pageable);
+
+    boolean existsByBookCopyIdAndStatus(Long bookCopyId, BookItem.ItemStatus status);
+
+    long countByBookCopyIdAndStatus(Long bookCopyId, BookItem.ItemStatus status);
+
+    long countByBookCopyId(Long bookCopyId);
+
+    Optional<BookItem> findByBarcode(String barcode);
+
+    @Modifying
+    @Query("UPDATE BookItem i SET i.status = :status, i.updatedAt = :now WHERE i.id IN :ids")
+    int updateStatus(@Param("ids") Collection<Long> ids, @Param("status") BookItem.ItemStatus status,
+            @Param("now") LocalDateTime now);
+}
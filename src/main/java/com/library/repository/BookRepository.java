@@ -1,14 +1,22 @@
 package com.library.repository;
 
+import com.library.dto.BookStockRow;
 import com.library.entity.Book;
+import com.library.entity.BookCopy;
+import com.library.search.BookDocument;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface BookRepository extends JpaRepository<Book, Long> {
@@ -49,5 +57,174 @@ public interface BookRepository extends JpaRepository<Book, Long> {
                      @Param("libraryId") Long libraryId,
                      Pageable pageable);
 
+       /**
+        * 游標分頁：依書籍ID排序，取 ID 大於 afterId 的下一批
+        */
+       @Query("SELECT b FROM Book b WHERE " +
+                     "(:title IS NULL OR LOWER(b.title) LIKE LOWER(CONCAT('%', :title, '%'))) AND " +
+                     "(:author IS NULL OR LOWER(b.author) LIKE LOWER(CONCAT('%', :author, '%'))) AND " +
+                     "(:year IS NULL OR b.publishYear = :year) AND " +
+                     "(:libraryId IS NULL OR EXISTS (SELECT bc.id FROM BookCopy bc " +
+                     "WHERE bc.book = b AND bc.library.id = :libraryId)) AND " +
+                     "b.id > :afterId " +
+                     "ORDER BY b.id")
+       List<Book> searchBooksAfterId(@Param("title") String title,
+                     @Param("author") String author,
+                     @Param("year") Integer year,
+                     @Param("libraryId") Long libraryId,
+                     @Param("afterId") Long afterId,
+                     Pageable pageable);
+
+       /**
+        * 游標分頁：依（書名, 書籍ID）排序，取排在 (afterTitle, afterId) 之後的下一批
+        */
+       @Query("SELECT b FROM Book b WHERE " +
+                     "(:title IS NULL OR LOWER(b.title) LIKE LOWER(CONCAT('%', :title, '%'))) AND " +
+                     "(:author IS NULL OR LOWER(b.author) LIKE LOWER(CONCAT('%', :author, '%'))) AND " +
+                     "(:year IS NULL OR b.publishYear = :year) AND " +
+                     "(:libraryId IS NULL OR EXISTS (SELECT bc.id FROM BookCopy bc " +
+                     "WHERE bc.book = b AND bc.library.id = :libraryId)) AND " +
+                     "(b.title > :afterTitle OR (b.title = :afterTitle AND b.id > :afterId)) " +
+                     "ORDER BY b.title, b.id")
+       List<Book> searchBooksAfterTitle(@Param("title") String title,
+                     @Param("author") String author,
+                     @Param("year") Integer year,
+                     @Param("libraryId") Long libraryId,
+                     @Param("afterTitle") String afterTitle,
+                     @Param("afterId") Long afterId,
+                     Pageable pageable);
+
+       /**
+        * 投影查詢：只取符合條件的書籍ID（依ID排序）
+        */
+       @Query("SELECT b.id FROM Book b WHERE " +
+                     "(:title IS NULL OR LOWER(b.title) LIKE LOWER(CONCAT('%', :title, '%'))) AND " +
+                     "(:author IS NULL OR LOWER(b.author) LIKE LOWER(CONCAT('%', :author, '%'))) AND " +
+                     "(:year IS NULL OR b.publishYear = :year) AND " +
+                     "(:libraryId IS NULL OR EXISTS (SELECT bc.id FROM BookCopy bc " +
+                     "WHERE bc.book = b AND bc.library.id = :libraryId)) " +
+                     "ORDER BY b.id")
+       List<Long> searchBookIds(@Param("title") String title,
+                     @Param("author") String author,
+                     @Param("year") Integer year,
+                     @Param("libraryId") Long libraryId,
+                     Pageable pageable);
+
+       /**
+        * 館藏條件查詢：只取在指定圖書館有館藏（allLibraries 為 true 時不限）、
+        * 且 availableOnly 為 true 時目前可借的書籍ID（依ID排序）
+        * libraryIds 不可為空集合，不限圖書館時傳入任意佔位值
+        */
+       @Query("SELECT b.id FROM Book b WHERE " +
+                     "(:title IS NULL OR LOWER(b.title) LIKE LOWER(CONCAT('%', :title, '%'))) AND " +
+                     "(:author IS NULL OR LOWER(b.author) LIKE LOWER(CONCAT('%', :author, '%'))) AND " +
+                     "(:year IS NULL OR b.publishYear = :year) AND " +
+                     "EXISTS (SELECT bc.id FROM BookCopy bc WHERE bc.book = b " +
+                     "AND (:allLibraries = true OR bc.library.id IN :libraryIds) " +
+                     "AND (:availableOnly = false OR (bc.status = :activeStatus AND bc.availableCopies > 0 " +
+                     "AND bc.library.active = true))) " +
+                     "ORDER BY b.id")
+       List<Long> searchBookIdsInStock(@Param("title") String title,
+                     @Param("author") String author,
+                     @Param("year") Integer year,
+                     @Param("libraryIds") Collection<Long> libraryIds,
+                     @Param("allLibraries") boolean allLibraries,
+                     @Param("availableOnly") boolean availableOnly,
+                     @Param("activeStatus") BookCopy.CopyStatus activeStatus,
+                     Pageable pageable);
+
+       /**
+        * 投影查詢：一次取得書籍與其啟用中圖書館的館藏，不載入任何實體
+        * 無館藏或館藏所在圖書館已停用時，館藏欄位為 null
+        */
+       @Query("SELECT new com.library.dto.BookStockRow(b.id, b.title, b.author, b.publishYear, b.type, " +
+                     "b.isbn, b.publisher, l.id, l.name, l.address, bc.totalCopies, bc.availableCopies) " +
+                     "FROM Book b " +
+                     "LEFT JOIN BookCopy bc ON bc.book = b AND bc.status = :status " +
+                     "LEFT JOIN Library l ON l = bc.library AND l.active = true " +
+                     "WHERE b.id IN :bookIds " +
+                     "ORDER BY b.id, bc.id")
+       List<BookStockRow> findStockRowsByBookIds(@Param("bookIds") List<Long> bookIds,
+                     @Param("status") BookCopy.CopyStatus status);
+
+       /**
+        * 以資料庫游標依ID逐筆讀取所有書籍（書目匯出用），須在交易中使用並於讀取後關閉
+        * 唯讀且固定 fetch size，避免一次載入整個結果集
+        */
+       @QueryHints({
+                     @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+                     @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+       })
+       @Query("SELECT b FROM Book b ORDER BY b.id")
+       Stream<Book> streamAllByOrderById();
+
        Optional<Book> findByTitleAndAuthorAndPublishYear(String title, String author, Integer publishYear);
+
+       @Query("SELECT new com.library.search.BookDocument(b.id, b.title, b.author, b.publishYear, b.type) " +
+                     "FROM Book b WHERE b.id > :afterId ORDER BY b.id")
+       List<BookDocument> findSearchDocumentsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+       /**
+        * 分面統計（索引無法回答時使用）：符合條件的書籍依出版年份的數量
+        */
+       @Query("SELECT b.publishYear AS publishYear, COUNT(b) AS bookCount FROM Book b WHERE " +
+                     "(:title IS NULL OR LOWER(b.title) LIKE LOWER(CONCAT('%', :title, '%'))) AND " +
+                     "(:author IS NULL OR LOWER(b.author) LIKE LOWER(CONCAT('%', :author, '%'))) AND " +
+                     "(:year IS NULL OR b.publishYear = :year) AND " +
+                     "(:libraryId IS NULL OR EXISTS (SELECT bc.id FROM BookCopy bc " +
+                     "WHERE bc.book = b AND bc.library.id = :libraryId)) " +
+                     "GROUP BY b.publishYear")
+       List<YearCount> countByPublishYear(@Param("title") String title,
+                     @Param("author") String author,
+                     @Param("year") Integer year,
+                     @Param("libraryId") Long libraryId);
+
+       /**
+        * 分面統計：符合條件的書籍依類型的數量
+        */
+       @Query("SELECT b.type AS type, COUNT(b) AS bookCount FROM Book b WHERE " +
+                     "(:title IS NULL OR LOWER(b.title) LIKE LOWER(CONCAT('%', :title, '%'))) AND " +
+                     "(:author IS NULL OR LOWER(b.author) LIKE LOWER(CONCAT('%', :author, '%'))) AND " +
+                     "(:year IS NULL OR b.publishYear = :year) AND " +
+                     "(:libraryId IS NULL OR EXISTS (SELECT bc.id FROM BookCopy bc " +
+                     "WHERE bc.book = b AND bc.library.id = :libraryId)) " +
+                     "GROUP BY b.type")
+       List<TypeCount> countByType(@Param("title") String title,
+                     @Param("author") String author,
+                     @Param("year") Integer year,
+                     @Param("libraryId") Long libraryId);
+
+       /**
+        * 分面統計：符合條件的書籍在各圖書館有館藏的數量
+        */
+       @Query("SELECT copy.library.id AS libraryId, COUNT(DISTINCT b.id) AS bookCount " +
+                     "FROM BookCopy copy JOIN copy.book b WHERE " +
+                     "(:title IS NULL OR LOWER(b.title) LIKE LOWER(CONCAT('%', :title, '%'))) AND " +
+                     "(:author IS NULL OR LOWER(b.author) LIKE LOWER(CONCAT('%', :author, '%'))) AND " +
+                     "(:year IS NULL OR b.publishYear = :year) AND " +
+                     "(:libraryId IS NULL OR EXISTS (SELECT bc.id FROM BookCopy bc " +
+                     "WHERE bc.book = b AND bc.library.id = :libraryId)) " +
+                     "GROUP BY copy.library.id")
+       List<LibraryCount> countByLibrary(@Param("title") String title,
+                     @Param("author") String author,
+                     @Param("year") Integer year,
+                     @Param("libraryId") Long libraryId);
+
+       interface YearCount {
+              Integer getPublishYear();
+
+              Long getBookCount();
+       }
+
+       interface TypeCount {
+              Book.BookType getType();
+
+              Long getBookCount();
+       }
+
+       interface LibraryCount {
+              Long getLibraryId();
+
+              Long getBookCount();
+       }
 }
\ No newline at end of file
@@ -1,15 +1,28 @@
 package com.library.repository;
 
+import com.library.dto.BorrowHistoryRow;
+import com.library.dto.DueSoonNotificationRow;
+import com.library.dto.OverdueRecordRow;
 import com.library.entity.BorrowRecord;
 import com.library.entity.Book;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface BorrowRecordRepository extends JpaRepository<BorrowRecord, Long> {
@@ -17,25 +30,194 @@ public interface BorrowRecordRepository extends JpaRepository<BorrowRecord, Long
 
     List<BorrowRecord> findByUserIdAndStatus(Long userId, BorrowRecord.BorrowStatus status);
 
-    @Query("SELECT COUNT(br) FROM BorrowRecord br WHERE br.user.id = :userId AND br.status = 'BORROWED' AND br.bookCopy.book.type = :bookType")
+    List<BorrowRecord> findByUserIdAndStatusIn(Long userId, Collection<BorrowRecord.BorrowStatus> statuses);
+
+    // 借閱中包含已標記逾期（OVERDUE）的記錄
+    @Query("SELECT COUNT(br) FROM BorrowRecord br WHERE br.user.id = :userId AND br.status IN ('BORROWED', 'OVERDUE') AND br.bookCopy.book.type = :bookType")
     long countCurrentBorrowsByUserAndBookType(@Param("userId") Long userId, @Param("bookType") Book.BookType bookType);
 
-    @Query("SELECT br FROM BorrowRecord br WHERE br.status = 'BORROWED' AND br.dueDate BETWEEN :startDate AND :endDate")
-    List<BorrowRecord> findDueSoon(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+    /**
+     * 各用戶、各書籍類型的借閱中數量（核對借閱計數器用）
+     */
+    @Query("SELECT br.user.id AS userId, b.type AS bookType, COUNT(br) AS activeCount FROM BorrowRecord br " +
+            "JOIN br.bookCopy bc JOIN bc.book b WHERE br.status IN ('BORROWED', 'OVERDUE') GROUP BY br.user.id, b.type")
+    List<UserActiveBorrowCount> countCurrentBorrowsGroupByUserAndBookType();
+
+    /**
+     * 投影查詢：到期日為 dueDate、ID 大於 afterId 的借閱中記錄，依 ID 排序
+     * 由 idx_borrow_records_status_due_date (status, dueDate, id) 從游標位置直接讀取，每批成本與已讀取的數量無關
+     */
+    @Query("SELECT new com.library.dto.DueSoonNotificationRow(br.id, u.id, u.username, u.fullName, u.email, " +
+            "b.title, b.author, l.name, br.dueDate) " +
+            "FROM BorrowRecord br JOIN br.user u JOIN br.bookCopy bc JOIN bc.book b JOIN br.library l " +
+            "WHERE br.status = 'BORROWED' AND br.dueDate = :dueDate AND br.id > :afterId ORDER BY br.id")
+    List<DueSoonNotificationRow> findDueSoonRows(@Param("dueDate") LocalDate dueDate,
+            @Param("afterId") Long afterId, Pageable pageable);
 
-    @Query("SELECT br FROM BorrowRecord br WHERE br.status = 'BORROWED' AND br.dueDate < :currentDate")
+    /**
+     * 逾期的借閱記錄：已標記 OVERDUE，加上逾期但排程尚未標記的 BORROWED（兩者皆由 idx_borrow_records_status_due_date 查詢）
+     */
+    @Query("SELECT br FROM BorrowRecord br WHERE br.status = 'OVERDUE' " +
+            "OR (br.status = 'BORROWED' AND br.dueDate < :currentDate)")
     List<BorrowRecord> findOverdue(@Param("currentDate") LocalDate currentDate);
 
-    @Query("SELECT br FROM BorrowRecord br WHERE br.user.id = :userId AND br.bookCopy.id = :bookCopyId AND br.status = 'BORROWED'")
+    @Query("SELECT br FROM BorrowRecord br WHERE br.user.id = :userId AND br.bookCopy.id = :bookCopyId AND br.status IN ('BORROWED', 'OVERDUE')")
     Optional<BorrowRecord> findActiveBorrowByUserAndBookCopy(@Param("userId") Long userId,
             @Param("bookCopyId") Long bookCopyId);
 
-    @Query("SELECT br FROM BorrowRecord br WHERE br.user.id = :userId AND br.bookCopy.book.id = :bookId AND br.status = 'BORROWED'")
+    @Query("SELECT br FROM BorrowRecord br WHERE br.user.id = :userId AND br.bookCopy.book.id = :bookId AND br.status IN ('BORROWED', 'OVERDUE')")
     Optional<BorrowRecord> findActiveBorrowByUserAndBook(@Param("userId") Long userId, @Param("bookId") Long bookId);
 
-    @Query("SELECT br FROM BorrowRecord br JOIN FETCH br.bookCopy bc JOIN FETCH bc.book b JOIN FETCH br.library l WHERE br.user.id = :userId ORDER BY br.borrowDate DESC")
-    List<BorrowRecord> findByUserIdWithDetails(@Param("userId") Long userId);
+    /**
+     * 用戶借閱中的書籍中，屬於指定書籍的書籍ID（批次借閱一次檢查重複借閱）
+     */
+    @Query("SELECT bc.book.id FROM BorrowRecord br JOIN br.bookCopy bc " +
+            "WHERE br.user.id = :userId AND br.status IN ('BORROWED', 'OVERDUE') AND bc.book.id IN :bookIds")
+    List<Long> findActiveBorrowedBookIds(@Param("userId") Long userId, @Param("bookIds") Collection<Long> bookIds);
+
+    /**
+     * 指定用戶中，目前借閱中此書的用戶ID（合併提交的借書一次檢查重複借閱）
+     */
+    @Query("SELECT br.user.id FROM BorrowRecord br " +
+            "WHERE br.bookCopy.book.id = :bookId AND br.status IN ('BORROWED', 'OVERDUE') AND br.user.id IN :userIds")
+    List<Long> findUserIdsWithActiveBorrow(@Param("bookId") Long bookId, @Param("userIds") Collection<Long> userIds);
+
+    /**
+     * 鎖定並讀取單筆借閱記錄（單筆還書用），與大量還書鎖定同一列，同一記錄的還書依序執行
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT br FROM BorrowRecord br WHERE br.id = :id")
+    Optional<BorrowRecord> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * 鎖定並讀取要歸還的借閱記錄（大量還書用，只讀外鍵欄位，不鎖定關聯的副本）
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT br.id AS borrowRecordId, br.status AS status, br.user.id AS userId, br.bookCopy.id AS bookCopyId, " +
+            "br.bookItem.id AS bookItemId " +
+            "FROM BorrowRecord br WHERE br.id IN :ids")
+    List<ReturnTarget> findReturnTargetsForUpdate(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 鎖定並讀取副本尚未歸還的借閱記錄，依到期日排序（以副本ID掃描還書時先還最早到期的）
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT br.id AS borrowRecordId, br.status AS status, br.user.id AS userId, br.bookCopy.id AS bookCopyId, " +
+            "br.bookItem.id AS bookItemId " +
+            "FROM BorrowRecord br WHERE br.bookCopy.id IN :bookCopyIds AND br.status <> 'RETURNED' " +
+            "ORDER BY br.dueDate, br.id")
+    List<ReturnTarget> findActiveReturnTargetsByBookCopyIdsForUpdate(@Param("bookCopyIds") Collection<Long> bookCopyIds);
+
+    @Modifying
+    @Query("UPDATE BorrowRecord br SET br.status = 'RETURNED', br.returnDate = :returnDate, br.updatedAt = :now " +
+            "WHERE br.id IN :ids")
+    int markReturned(@Param("ids") Collection<Long> ids, @Param("returnDate") LocalDate returnDate,
+            @Param("now") LocalDateTime now);
+
+    /**
+     * 投影查詢：用戶在游標（借閱日期, ID）之後的借閱歷史，依借閱日期、ID 由新到舊，不載入任何實體
+     * 狀態與借閱日期區間為 null 時不篩選；依 idx_borrow_records_user_borrow_date 由索引依序讀取
+     */
+    @Query("SELECT new com.library.dto.BorrowHistoryRow(br.id, b.id, b.title, b.author, b.type, b.isbn, " +
+            "b.publisher, l.name, l.address, br.borrowDate, br.dueDate, br.returnDate, br.status) " +
+            "FROM BorrowRecord br JOIN br.bookCopy bc JOIN bc.book b JOIN br.library l " +
+            "WHERE br.user.id = :userId " +
+            "AND (br.borrowDate < :lastBorrowDate OR (br.borrowDate = :lastBorrowDate AND br.id < :lastId)) " +
+            "AND (:status IS NULL OR br.status = :status) " +
+            "AND (:fromDate IS NULL OR br.borrowDate >= :fromDate) " +
+            "AND (:toDate IS NULL OR br.borrowDate <= :toDate) " +
+            "ORDER BY br.borrowDate DESC, br.id DESC")
+    List<BorrowHistoryRow> findHistoryRows(@Param("userId") Long userId,
+            @Param("lastBorrowDate") LocalDate lastBorrowDate, @Param("lastId") Long lastId,
+            @Param("status") BorrowRecord.BorrowStatus status,
+            @Param("fromDate") LocalDate fromDate, @Param("toDate") LocalDate toDate, Pageable pageable);
+
+    /**
+     * 已過到期日仍為 BORROWED 的記錄ID，從 afterId 之後依 ID 取一段（逾期標記排程以鍵集分批）
+     */
+    @Query("SELECT br.id FROM BorrowRecord br WHERE br.status = 'BORROWED' AND br.dueDate < :currentDate " +
+            "AND br.id > :afterId ORDER BY br.id")
+    List<Long> findOverdueCandidateIds(@Param("currentDate") LocalDate currentDate, @Param("afterId") Long afterId,
+            Pageable pageable);
+
+    /**
+     * 以集合式 UPDATE 標記逾期；查詢之後已歸還的記錄狀態不再是 BORROWED，不會被覆蓋
+     */
+    @Modifying
+    @Query("UPDATE BorrowRecord br SET br.status = 'OVERDUE', br.updatedAt = :now " +
+            "WHERE br.id IN :ids AND br.status = 'BORROWED'")
+    int markOverdue(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    /**
+     * 歸還日期早於指定日期的已歸還記錄ID（封存作業每批取一段，依 ID 排序）
+     */
+    @Query("SELECT br.id FROM BorrowRecord br WHERE br.status = 'RETURNED' AND br.returnDate < :returnedBefore " +
+            "ORDER BY br.id")
+    List<Long> findArchivableIds(@Param("returnedBefore") LocalDate returnedBefore, Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM BorrowRecord br WHERE br.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 投影查詢：游標（到期日, ID）之後的逾期記錄，依到期日、ID 由舊到新；libraryId 為 null 時包含所有圖書館
+     */
+    @Query("SELECT new com.library.dto.OverdueRecordRow(br.id, u.id, u.username, u.fullName, u.email, " +
+            "b.id, b.title, b.author, b.isbn, l.id, l.name, br.borrowDate, br.dueDate, br.status) " +
+            "FROM BorrowRecord br JOIN br.user u JOIN br.bookCopy bc JOIN bc.book b JOIN br.library l " +
+            "WHERE (br.status = 'OVERDUE' OR (br.status = 'BORROWED' AND br.dueDate < :currentDate)) " +
+            "AND (:libraryId IS NULL OR l.id = :libraryId) " +
+            "AND (br.dueDate > :lastDueDate OR (br.dueDate = :lastDueDate AND br.id > :lastId)) " +
+            "ORDER BY br.dueDate, br.id")
+    List<OverdueRecordRow> findOverdueRows(@Param("currentDate") LocalDate currentDate,
+            @Param("libraryId") Long libraryId, @Param("lastDueDate") LocalDate lastDueDate,
+            @Param("lastId") Long lastId, Pageable pageable);
+
+    /**
+     * 以資料庫游標逐筆讀取逾期記錄的投影（逾期報表匯出用），須在交易中使用並於讀取後關閉
+     * 投影不是實體，不會累積在持久化內容中；固定 fetch size，避免一次載入整個結果集
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.library.dto.OverdueRecordRow(br.id, u.id, u.username, u.fullName, u.email, " +
+            "b.id, b.title, b.author, b.isbn, l.id, l.name, br.borrowDate, br.dueDate, br.status) " +
+            "FROM BorrowRecord br JOIN br.user u JOIN br.bookCopy bc JOIN bc.book b JOIN br.library l " +
+            "WHERE (br.status = 'OVERDUE' OR (br.status = 'BORROWED' AND br.dueDate < :currentDate)) " +
+            "AND (:libraryId IS NULL OR l.id = :libraryId) " +
+            "ORDER BY br.dueDate, br.id")
+    Stream<OverdueRecordRow> streamOverdueRows(@Param("currentDate") LocalDate currentDate,
+            @Param("libraryId") Long libraryId);
+
+    /**
+     * 書籍ID區間內各書籍的借閱次數（重建自動完成索引用）
+     */
+    @Query("SELECT bc.book.id AS bookId, COUNT(br) AS borrowCount FROM BorrowRecord br JOIN br.bookCopy bc " +
+            "WHERE bc.book.id BETWEEN :fromBookId AND :toBookId GROUP BY bc.book.id")
+    List<BookBorrowCount> countBorrowsByBookIdBetween(@Param("fromBookId") Long fromBookId,
+            @Param("toBookId") Long toBookId);
+
+    interface ReturnTarget {
+        Long getBorrowRecordId();
+
+        BorrowRecord.BorrowStatus getStatus();
+
+        Long getUserId();
+
+        Long getBookCopyId();
+
+        Long getBookItemId();
+    }
+
+    interface UserActiveBorrowCount {
+        Long getUserId();
+
+        Book.BookType getBookType();
+
+        Long getActiveCount();
+    }
+
+    interface BookBorrowCount {
+        Long getBookId();
 
-    @Query("SELECT br FROM BorrowRecord br JOIN FETCH br.user u JOIN FETCH br.bookCopy bc JOIN FETCH bc.book b JOIN FETCH br.library l WHERE br.status = 'BORROWED' AND br.dueDate < :currentDate")
-    List<BorrowRecord> findOverdueWithDetails(@Param("currentDate") LocalDate currentDate);
-}
\ No newline at end of file
+        Long getBorrowCount();
+    }
+}
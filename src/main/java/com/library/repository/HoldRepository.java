@@ -0,0 +1,90 @@
+package com.library.repository;
+
+import com.library.entity.Hold;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface HoldRepository extends JpaRepository<Hold, Long> {
+
+    /**
+     * 副本候補佇列的前幾位（依 idx_holds_copy_status 由索引依序讀取）
+     */
+    @Query("SELECT h FROM Hold h JOIN FETCH h.user JOIN FETCH h.bookCopy bc JOIN FETCH bc.book " +
+            "JOIN FETCH bc.library WHERE bc.id = :bookCopyId AND h.status = 'WAITING' ORDER BY h.id")
+    List<Hold> findQueueHead(@Param("bookCopyId") Long bookCopyId, Pageable pageable);
+
+    @Query("SELECT DISTINCT h.bookCopy.id FROM Hold h WHERE h.bookCopy.id IN :bookCopyIds AND h.status = 'WAITING'")
+    List<Long> findBookCopyIdsWithWaitingHolds(@Param("bookCopyIds") Collection<Long> bookCopyIds);
+
+    @Query("SELECT COUNT(h) > 0 FROM Hold h WHERE h.user.id = :userId AND h.bookCopy.id = :bookCopyId " +
+            "AND h.status IN ('WAITING', 'READY')")
+    boolean existsActiveHold(@Param("userId") Long userId, @Param("bookCopyId") Long bookCopyId);
+
+    @Query("SELECT COUNT(h) > 0 FROM Hold h WHERE h.user.id = :userId AND h.bookCopy.id = :bookCopyId " +
+            "AND h.status = 'READY'")
+    boolean existsReadyHold(@Param("userId") Long userId, @Param("bookCopyId") Long bookCopyId);
+
+    /**
+     * 排隊位置：同一副本中 ID 不大於此預約的 WAITING 預約數
+     */
+    @Query("SELECT COUNT(h) FROM Hold h WHERE h.bookCopy.id = :bookCopyId AND h.status = 'WAITING' AND h.id <= :holdId")
+    long countQueuePosition(@Param("bookCopyId") Long bookCopyId, @Param("holdId") Long holdId);
+
+    @Query("SELECT h FROM Hold h JOIN FETCH h.bookCopy bc JOIN FETCH bc.book JOIN FETCH bc.library " +
+            "WHERE h.user.id = :userId AND h.status IN ('WAITING', 'READY') ORDER BY h.id")
+    List<Hold> findActiveByUserIdWithDetails(@Param("userId") Long userId);
+
+    @Query("SELECT h.id AS holdId, h.user.id AS userId, h.bookCopy.id AS bookCopyId FROM Hold h WHERE h.id = :id")
+    List<HoldTarget> findTargetById(@Param("id") Long id);
+
+    @Query("SELECT h.id AS holdId, h.user.id AS userId, h.bookCopy.id AS bookCopyId FROM Hold h " +
+            "WHERE h.status = 'READY' AND h.expiresAt < :now ORDER BY h.id")
+    List<HoldTarget> findExpiredReadyHolds(@Param("now") LocalDateTime now);
+
+    /**
+     * 條件式轉換預約狀態，回傳 0 表示狀態已被其他交易改變
+     */
+    @Modifying
+    @Query("UPDATE Hold h SET h.status = :to, h.updatedAt = :now WHERE h.id = :id AND h.status = :from")
+    int transition(@Param("id") Long id, @Param("from") Hold.HoldStatus from, @Param("to") Hold.HoldStatus to,
+            @Param("now") LocalDateTime now);
+
+    /**
+     * 預約者借閱保留給自己的副本
+     */
+    @Modifying
+    @Query("UPDATE Hold h SET h.status = 'FULFILLED', h.updatedAt = :now " +
+            "WHERE h.user.id = :userId AND h.bookCopy.id = :bookCopyId AND h.status = 'READY'")
+    int fulfillReadyHold(@Param("userId") Long userId, @Param("bookCopyId") Long bookCopyId,
+            @Param("now") LocalDateTime now);
+
+    @Query("SELECT h.user.id FROM Hold h WHERE h.bookCopy.id = :bookCopyId AND h.status = 'READY' " +
+            "AND h.user.id IN :userIds")
+    List<Long> findReadyHoldUserIds(@Param("bookCopyId") Long bookCopyId, @Param("userIds") Collection<Long> userIds);
+
+    /**
+     * 多位預約者一次借閱保留給自己的副本（合併提交用）
+     */
+    @Modifying
+    @Query("UPDATE Hold h SET h.status = 'FULFILLED', h.updatedAt = :now " +
+            "WHERE h.bookCopy.id = :bookCopyId AND h.status = 'READY' AND h.user.id IN :userIds")
+    int fulfillReadyHolds(@Param("bookCopyId") Long bookCopyId, @Param("userIds") Collection<Long> userIds,
+            @Param("now") LocalDateTime now);
+
+    interface HoldTarget {
+        Long getHoldId();
+
+        Long getUserId();
+
+        Long getBookCopyId();
+    }
+}
@@ -0,0 +1,93 @@
+package com.library.repository;
+
+import com.library.entity.Book;
+import com.library.entity.UserBorrowCounter;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UserBorrowCounterRepository extends JpaRepository<UserBorrowCounter, Long> {
+    Optional<UserBorrowCounter> findByUserIdAndBookType(Long userId, Book.BookType bookType);
+
+    boolean existsByUserIdAndBookType(Long userId, Book.BookType bookType);
+
+    List<UserBorrowCounter> findByUserId(Long userId);
+
+    /**
+     * 條件式遞增借閱中數量：未達上限時加 1，回傳影響筆數（0 表示已達上限或計數器不存在）
+     */
+    @Modifying
+    @Query("UPDATE UserBorrowCounter c SET c.activeCount = c.activeCount + 1 " +
+            "WHERE c.user.id = :userId AND c.bookType = :bookType AND c.activeCount < :maxLimit")
+    int incrementIfBelow(@Param("userId") Long userId, @Param("bookType") Book.BookType bookType,
+            @Param("maxLimit") int maxLimit);
+
+    @Modifying
+    @Query("UPDATE UserBorrowCounter c SET c.activeCount = c.activeCount - 1 " +
+            "WHERE c.user.id = :userId AND c.bookType = :bookType AND c.activeCount > 0")
+    int decrement(@Param("userId") Long userId, @Param("bookType") Book.BookType bookType);
+
+    /**
+     * 一次增加多個計數器（批次借閱依借出數量分組，呼叫前已鎖定計數器並檢查上限）
+     */
+    @Modifying
+    @Query("UPDATE UserBorrowCounter c SET c.activeCount = c.activeCount + :count WHERE c.id IN :ids")
+    int add(@Param("ids") Collection<Long> ids, @Param("count") int count);
+
+    /**
+     * 一次減少多個計數器（大量還書依歸還數量分組），不低於 0
+     */
+    @Modifying
+    @Query("UPDATE UserBorrowCounter c SET c.activeCount = " +
+            "CASE WHEN c.activeCount > :count THEN c.activeCount - :count ELSE 0 END WHERE c.id IN :ids")
+    int subtract(@Param("ids") Collection<Long> ids, @Param("count") int count);
+
+    @Query("SELECT c.id AS id, c.user.id AS userId, c.bookType AS bookType, c.activeCount AS activeCount " +
+            "FROM UserBorrowCounter c WHERE c.user.id IN :userIds")
+    List<CounterRow> findRowsByUserIdIn(@Param("userIds") Collection<Long> userIds);
+
+    /**
+     * 鎖定用戶所有的計數器（批次借閱用）
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM UserBorrowCounter c WHERE c.user.id = :userId ORDER BY c.id")
+    List<UserBorrowCounter> findByUserIdForUpdate(@Param("userId") Long userId);
+
+    /**
+     * 依 ID 順序鎖定多位用戶同一類型的計數器（合併提交的借書用）
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM UserBorrowCounter c WHERE c.user.id IN :userIds AND c.bookType = :bookType ORDER BY c.id")
+    List<UserBorrowCounter> findByUserIdInAndBookTypeForUpdate(@Param("userIds") Collection<Long> userIds,
+            @Param("bookType") Book.BookType bookType);
+
+    /**
+     * 鎖定計數器資料列（核對時與同時進行的借還書互斥）
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM UserBorrowCounter c WHERE c.id = :id")
+    Optional<UserBorrowCounter> findByIdForUpdate(@Param("id") Long id);
+
+    @Query("SELECT c.id AS id, c.user.id AS userId, c.bookType AS bookType, c.activeCount AS activeCount " +
+            "FROM UserBorrowCounter c ORDER BY c.id")
+    List<CounterRow> findAllRows();
+
+    interface CounterRow {
+        Long getId();
+
+        Long getUserId();
+
+        Book.BookType getBookType();
+
+        Integer getActiveCount();
+    }
+}
@@ -0,0 +1,22 @@
+package com.library.search;
+
+import com.library.entity.Book;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 索引用的書籍資料
+ * 同時作為 JPQL constructor expression 的投影目標，重建索引時不需要載入 Book 實體
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookDocument {
+
+    private Long bookId;
+    private String title;
+    private String author;
+    private Integer publishYear;
+    private Book.BookType type;
+}
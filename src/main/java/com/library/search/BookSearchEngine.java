@@ -0,0 +1,79 @@
+package com.library.search;
+
+import com.library.dto.SearchFacets;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 書籍搜尋引擎
+ * BookService 透過此介面取得符合條件的書籍ID；引擎無法回答的查詢回傳 Optional.empty()，由 JPQL 查詢接手
+ */
+public interface BookSearchEngine {
+
+    /**
+     * 索引是否已建立完成，可供查詢
+     */
+    boolean isReady();
+
+    /**
+     * 搜尋書籍ID，結果依書籍ID遞增排序
+     *
+     * @param offset 略過的筆數（page * size）
+     * @param limit  回傳的最大筆數
+     * @return 符合條件的書籍ID；無法由索引回答時回傳 Optional.empty()
+     */
+    Optional<List<Long>> search(String title, String author, Integer year, Long libraryId, int offset, int limit);
+
+    /**
+     * 模糊搜尋書籍ID，書名與作者容許少量錯字（規則見 FuzzyMatch），結果依書籍ID遞增排序
+     *
+     * @param offset 略過的筆數（page * size）
+     * @param limit  回傳的最大筆數
+     * @return 符合條件的書籍ID；無法由索引回答時回傳 Optional.empty()
+     */
+    Optional<List<Long>> searchFuzzy(String title, String author, Integer year, Long libraryId,
+            int offset, int limit);
+
+    /**
+     * 搜尋書籍ID大於 afterBookId 的結果（游標分頁），結果依書籍ID遞增排序
+     *
+     * @param afterBookId 上一頁最後一筆的書籍ID
+     * @param limit       回傳的最大筆數
+     * @return 符合條件的書籍ID；無法由索引回答時回傳 Optional.empty()
+     */
+    Optional<List<Long>> searchAfter(String title, String author, Integer year, Long libraryId,
+            long afterBookId, int limit);
+
+    /**
+     * 統計所有符合條件的書籍依出版年份、類型、圖書館的數量
+     *
+     * @return 分面統計；無法由索引回答時回傳 Optional.empty()
+     */
+    Optional<SearchFacets> facets(String title, String author, Integer year, Long libraryId);
+
+    /**
+     * 將書籍加入索引（重複加入同一本書不會有影響）
+     */
+    void index(BookDocument document);
+
+    /**
+     * 記錄書籍在某圖書館有館藏
+     */
+    void addLibrary(Long bookId, Long libraryId);
+
+    /**
+     * 清空索引並標記為重建中，重建期間查詢由 JPQL 接手
+     */
+    void beginRebuild();
+
+    /**
+     * 標記重建完成
+     */
+    void finishRebuild();
+
+    /**
+     * 已索引的書籍數量
+     */
+    int size();
+}
@@ -0,0 +1,121 @@
+package com.library.search;
+
+import com.library.event.BookCopiesAddedEvent;
+import com.library.event.BookCreatedEvent;
+import com.library.repository.BookCopyRepository;
+import com.library.repository.BookRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 維護書籍搜尋索引
+ * 啟動後於背景從資料庫重建索引，之後依交易提交後的事件增量更新。
+ * 重建每一段（讀取書籍與館藏並寫入索引）與增量更新使用同一把鎖：重建期間的事件只會在某段完成之前或之後套用，
+ * 之前套用的事件已提交，該段讀取時會讀到；之後套用時該段的書籍已在索引中，館藏更新不會因書籍尚未索引而被略過。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BookSearchIndexListener {
+
+    private final BookSearchEngine bookSearchEngine;
+    private final BookRepository bookRepository;
+    private final BookCopyRepository bookCopyRepository;
+
+    @Value("${library.search.engine:INDEX}")
+    private SearchMode searchMode;
+
+    @Value("${library.search.rebuild-chunk-size:1000}")
+    private int rebuildChunkSize;
+
+    private final ReentrantLock updateLock = new ReentrantLock();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (searchMode != SearchMode.INDEX) {
+            log.info("搜尋模式為 {}，不建立書籍索引", searchMode);
+            return;
+        }
+        Thread rebuildThread = new Thread(this::rebuild, "search-index-rebuild");
+        rebuildThread.setDaemon(true);
+        rebuildThread.start();
+    }
+
+    /**
+     * 以書籍ID分段從資料庫重建索引，重建期間查詢由 JPQL 接手
+     */
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        bookSearchEngine.beginRebuild();
+        try {
+            long afterId = 0L;
+            while (afterId >= 0) {
+                updateLock.lock();
+                try {
+                    afterId = rebuildChunk(afterId);
+                } finally {
+                    updateLock.unlock();
+                }
+            }
+            bookSearchEngine.finishRebuild();
+            log.info("書籍搜尋索引重建完成：{} 本書籍，耗時 {} ms",
+                    bookSearchEngine.size(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            log.error("書籍搜尋索引重建失敗，搜尋將持續使用 JPQL 查詢", e);
+        }
+    }
+
+    /**
+     * 重建書籍ID大於 afterId 的一段，回傳該段最後一本的書籍ID；沒有剩餘書籍時回傳 -1
+     */
+    private long rebuildChunk(long afterId) {
+        List<BookDocument> documents = bookRepository.findSearchDocumentsAfter(
+                afterId, PageRequest.of(0, rebuildChunkSize));
+        if (documents.isEmpty()) {
+            return -1L;
+        }
+        documents.forEach(bookSearchEngine::index);
+
+        long fromId = documents.get(0).getBookId();
+        long toId = documents.get(documents.size() - 1).getBookId();
+        bookCopyRepository.findBookLibraryLinks(fromId, toId)
+                .forEach(link -> bookSearchEngine.addLibrary(link.getBookId(), link.getLibraryId()));
+        return toId;
+    }
+
+    // 先於搜尋快取淘汰更新索引，避免淘汰後的查詢讀到尚未更新的索引並寫回快取
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onBookCreated(BookCreatedEvent event) {
+        updateLock.lock();
+        try {
+            bookSearchEngine.index(new BookDocument(
+                    event.getBookId(), event.getTitle(), event.getAuthor(), event.getPublishYear(), event.getType()));
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onBookCopiesAdded(BookCopiesAddedEvent event) {
+        updateLock.lock();
+        try {
+            bookSearchEngine.addLibrary(event.getBookId(), event.getLibraryId());
+        } finally {
+            updateLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.library.search;
+
+import java.util.Locale;
+
+/**
+ * 游標分頁的排序鍵，排序鍵相同時一律再以書籍ID排序
+ */
+public enum BookSortKey {
+    /** 依書籍ID排序 */
+    ID,
+    /** 依書名排序 */
+    TITLE;
+
+    /**
+     * 解析排序參數（不分大小寫）
+     *
+     * @throws IllegalArgumentException 不支援的排序鍵
+     */
+    public static BookSortKey from(String value) {
+        for (BookSortKey key : values()) {
+            if (key.name().equals(value.toUpperCase(Locale.ROOT))) {
+                return key;
+            }
+        }
+        throw new IllegalArgumentException("不支援的排序方式：" + value);
+    }
+}
@@ -0,0 +1,154 @@
+package com.library.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 詞典層級的刪除變體索引（symmetric delete），用來找出與查詢詞編輯距離在容許次數內的詞項
+ *
+ * 每個詞項記錄刪除若干字元後的所有變體，查詢詞同樣產生刪除變體，有相同變體的詞項即為候選，再計算實際編輯距離。
+ * 變體只保存雜湊值與詞項編號，雜湊碰撞只會多出候選；大小只與不重複詞項數量有關，不隨書籍數量成長。
+ * 超過 MAX_TERM_LENGTH 的詞項不建立變體，只能以子字串比對找到。
+ */
+final class DeleteIndex {
+
+    private static final int MAX_TERM_LENGTH = 20;
+
+    private final List<String> terms = new ArrayList<>();
+
+    // 開放定址雜湊表：變體雜湊值 → 第一筆項目（項目位置 + 1，0 表示空位）
+    private int[] slotHashes = new int[1024];
+    private int[] slotHeads = new int[1024];
+    private int usedSlots;
+
+    // 項目：詞項編號，以及同一雜湊值的下一筆項目
+    private int[] entryTerms = new int[1024];
+    private int[] entryNext = new int[1024];
+    private int entryCount;
+
+    void add(String term) {
+        int id = terms.size();
+        terms.add(term);
+        if (term.length() > MAX_TERM_LENGTH) {
+            return;
+        }
+        for (String variant : deletes(term, indexedEdits(term.length()))) {
+            addEntry(variant.hashCode(), id);
+        }
+    }
+
+    /**
+     * 找出與查詢詞編輯距離不超過 maxEdits 的所有詞項編號（依加入順序編號，遞增排列）
+     */
+    int[] termsWithin(String query, int maxEdits) {
+        int[] candidates = new int[16];
+        int count = 0;
+        for (String variant : deletes(query, maxEdits)) {
+            int slot = findSlot(variant.hashCode());
+            for (int entry = slotHeads[slot]; entry != 0; entry = entryNext[entry - 1]) {
+                if (count == candidates.length) {
+                    candidates = Arrays.copyOf(candidates, count * 2);
+                }
+                candidates[count++] = entryTerms[entry - 1];
+            }
+        }
+        Arrays.sort(candidates, 0, count);
+
+        int matched = 0;
+        for (int i = 0; i < count; i++) {
+            int id = candidates[i];
+            if ((i == 0 || id != candidates[i - 1])
+                    && FuzzyMatch.distance(query, terms.get(id), maxEdits) <= maxEdits) {
+                candidates[matched++] = id;
+            }
+        }
+        return Arrays.copyOf(candidates, matched);
+    }
+
+    void clear() {
+        terms.clear();
+        slotHashes = new int[1024];
+        slotHeads = new int[1024];
+        usedSlots = 0;
+        entryTerms = new int[1024];
+        entryNext = new int[1024];
+        entryCount = 0;
+    }
+
+    /**
+     * 詞項需記錄的刪除次數：可能比對到此詞項的查詢詞，其容許次數不超過此值
+     * 容許 2 次的查詢詞至少 6 字元，只會比對到 4 字元以上的詞項；容許 1 次的查詢詞至少 2 字元
+     */
+    private static int indexedEdits(int length) {
+        return length >= 4 ? FuzzyMatch.MAX_EDITS : length >= 2 ? 1 : 0;
+    }
+
+    /**
+     * 刪除至多 edits 個字元產生的所有變體（含原字串）
+     */
+    private static Set<String> deletes(String text, int edits) {
+        Set<String> variants = new HashSet<>();
+        variants.add(text);
+        List<String> frontier = List.of(text);
+        for (int round = 0; round < edits; round++) {
+            List<String> next = new ArrayList<>();
+            for (String current : frontier) {
+                for (int i = 0; i < current.length() && current.length() > 1; i++) {
+                    String variant = current.substring(0, i) + current.substring(i + 1);
+                    if (variants.add(variant)) {
+                        next.add(variant);
+                    }
+                }
+            }
+            frontier = next;
+        }
+        return variants;
+    }
+
+    private void addEntry(int hash, int termId) {
+        if ((usedSlots + 1) * 2 > slotHashes.length) {
+            resize();
+        }
+        int slot = findSlot(hash);
+        if (slotHeads[slot] == 0) {
+            slotHashes[slot] = hash;
+            usedSlots++;
+        }
+        if (entryCount == entryTerms.length) {
+            entryTerms = Arrays.copyOf(entryTerms, entryCount * 2);
+            entryNext = Arrays.copyOf(entryNext, entryCount * 2);
+        }
+        entryTerms[entryCount] = termId;
+        entryNext[entryCount] = slotHeads[slot];
+        slotHeads[slot] = ++entryCount;
+    }
+
+    /**
+     * 雜湊值所在的位置，不存在時回傳應放入的空位
+     */
+    private int findSlot(int hash) {
+        int mask = slotHashes.length - 1;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (slotHeads[slot] != 0 && slotHashes[slot] != hash) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize() {
+        int[] oldHashes = slotHashes;
+        int[] oldHeads = slotHeads;
+        slotHashes = new int[oldHashes.length * 2];
+        slotHeads = new int[oldHeads.length * 2];
+        for (int i = 0; i < oldHashes.length; i++) {
+            if (oldHeads[i] != 0) {
+                int slot = findSlot(oldHashes[i]);
+                slotHashes[slot] = oldHashes[i];
+                slotHeads[slot] = oldHeads[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.library.search;
+
+import java.util.Arrays;
+
+/**
+ * 以文件編號為位元位置的分塊點陣圖
+ * 每 4096 個文件為一塊，只配置含有文件的區塊，稀疏的集合（如小型圖書館的館藏）不會佔用整段位元空間；
+ * 交集計數只走訪兩邊都有的區塊
+ */
+final class DocBitmap {
+
+    private static final int BLOCK_SHIFT = 12;
+    private static final int WORDS_PER_BLOCK = (1 << BLOCK_SHIFT) / Long.SIZE;
+
+    private long[][] blocks = new long[4][];
+
+    void set(int doc) {
+        int block = doc >>> BLOCK_SHIFT;
+        if (block >= blocks.length) {
+            blocks = Arrays.copyOf(blocks, Math.max(block + 1, blocks.length * 2));
+        }
+        if (blocks[block] == null) {
+            blocks[block] = new long[WORDS_PER_BLOCK];
+        }
+        int bit = doc & ((1 << BLOCK_SHIFT) - 1);
+        blocks[block][bit >>> 6] |= 1L << bit;
+    }
+
+    boolean get(int doc) {
+        int block = doc >>> BLOCK_SHIFT;
+        if (block >= blocks.length || blocks[block] == null) {
+            return false;
+        }
+        int bit = doc & ((1 << BLOCK_SHIFT) - 1);
+        return (blocks[block][bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    int cardinality() {
+        int count = 0;
+        for (long[] words : blocks) {
+            if (words != null) {
+                for (long word : words) {
+                    count += Long.bitCount(word);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 與另一個點陣圖的交集大小，不建立新的點陣圖
+     */
+    int andCardinality(DocBitmap other) {
+        int count = 0;
+        int shared = Math.min(blocks.length, other.blocks.length);
+        for (int block = 0; block < shared; block++) {
+            long[] words = blocks[block];
+            long[] otherWords = other.blocks[block];
+            if (words == null || otherWords == null) {
+                continue;
+            }
+            for (int i = 0; i < WORDS_PER_BLOCK; i++) {
+                count += Long.bitCount(words[i] & otherWords[i]);
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,78 @@
+package com.library.search;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 單一欄位的詞典：詞項 → 文件編號列表
+ */
+final class FieldIndex {
+
+    private final TreeMap<String, PostingList> terms = new TreeMap<>();
+    // 依加入順序編號的文件編號列表，編號與 VocabularyIndex、DeleteIndex 的詞項編號相同
+    private final List<PostingList> postingsById = new ArrayList<>();
+    private final VocabularyIndex vocabulary = new VocabularyIndex();
+    private final DeleteIndex deletes = new DeleteIndex();
+
+    void add(String term, int doc) {
+        PostingList list = terms.get(term);
+        if (list == null) {
+            list = new PostingList();
+            terms.put(term, list);
+            postingsById.add(list);
+            vocabulary.add(term);
+            deletes.add(term);
+        }
+        list.add(doc);
+    }
+
+    /**
+     * 取得符合查詢詞項的所有文件編號列表，文件集合為這些列表的聯集
+     */
+    List<PostingList> lookup(QueryTerm query) {
+        switch (query.getMatch()) {
+            case EXACT: {
+                PostingList list = terms.get(query.getText());
+                return list == null ? List.of() : List.of(list);
+            }
+            case PREFIX:
+                return new ArrayList<>(terms.subMap(
+                        query.getText(), true, query.getText() + Character.MAX_VALUE, false).values());
+            case SUBSTRING: {
+                List<PostingList> lists = new ArrayList<>();
+                for (int id : vocabulary.termsContaining(query.getText())) {
+                    lists.add(postingsById.get(id));
+                }
+                return lists;
+            }
+            case FUZZY: {
+                Set<PostingList> lists = new LinkedHashSet<>();
+                for (int id : vocabulary.termsContaining(query.getText())) {
+                    lists.add(postingsById.get(id));
+                }
+                if (query.getMaxEdits() > 0) {
+                    for (int id : deletes.termsWithin(query.getText(), query.getMaxEdits())) {
+                        lists.add(postingsById.get(id));
+                    }
+                }
+                return new ArrayList<>(lists);
+            }
+            default:
+                throw new IllegalArgumentException("不支援的比對方式：" + query.getMatch());
+        }
+    }
+
+    int termCount() {
+        return terms.size();
+    }
+
+    void clear() {
+        terms.clear();
+        postingsById.clear();
+        vocabulary.clear();
+        deletes.clear();
+    }
+}
@@ -0,0 +1,153 @@
+package com.library.search;
+
+import java.util.List;
+
+/**
+ * 模糊搜尋的比對規則
+ *
+ * 查詢切成連續的中日韓文字與連續的其他字母數字（同 NGramTokenizer），每一段各自比對，不要求段落相鄰或依序出現：
+ * 拉丁詞需被欄位中某個詞包含，或與某個詞的編輯距離（插入、刪除、替換、相鄰對調）在容許次數內；
+ * 中文段需完全出現在欄位中。
+ * 容許次數依長度：拉丁詞 1–2 字元 0 次、3–5 字元 1 次、6 字元以上 2 次；中文 0 次。
+ *
+ * 中文替換錯字的候選需取多個 bigram 列表的聯集再逐筆驗證，即使每段只取少數 bigram，模糊查詢延遲仍超過一般查詢的兩倍
+ * （SearchEngineBenchmarkTest），因此中文段暫不容許錯字，待候選產生方式符合延遲上限後再開放。
+ */
+final class FuzzyMatch {
+
+    /** 任何查詢詞容許的最大編輯次數，刪除變體索引依此建立 */
+    static final int MAX_EDITS = 2;
+
+    private final String query;
+    private final List<NGramTokenizer.Run> runs;
+    private final int[] runEdits;
+
+    private FuzzyMatch(String query) {
+        this.query = query;
+        this.runs = NGramTokenizer.runs(query);
+        this.runEdits = new int[runs.size()];
+        for (int r = 0; r < runs.size(); r++) {
+            runEdits[r] = maxEdits(runs.get(r).text, runs.get(r).cjk);
+        }
+    }
+
+    /**
+     * 預先切分查詢（已正規化），供逐筆驗證重複使用
+     */
+    static FuzzyMatch of(String query) {
+        return new FuzzyMatch(query);
+    }
+
+    /**
+     * 欄位文字（已正規化）是否模糊符合查詢（已正規化）
+     */
+    static boolean matches(String text, String query) {
+        return of(query).matches(text);
+    }
+
+    static int maxEdits(String run, boolean cjk) {
+        int length = run.length();
+        if (cjk) {
+            return 0;
+        }
+        return length <= 2 ? 0 : length <= 5 ? 1 : 2;
+    }
+
+    /**
+     * 文字的字元摘要：每個字元依字元值對應 64 位元中的一位
+     */
+    static long characterMask(String text) {
+        long mask = 0;
+        for (int i = 0; i < text.length(); i++) {
+            mask |= 1L << text.charAt(i);
+        }
+        return mask;
+    }
+
+    /**
+     * 依欄位的字元摘要判斷是否可能符合：每段經過 k 次編輯後，至少仍有長度 - k 個字元出現在欄位中。
+     * 回傳 false 時必定不符合；回傳 true 時仍需以 matches 驗證
+     */
+    boolean mayMatch(long textMask) {
+        for (int r = 0; r < runs.size(); r++) {
+            String run = runs.get(r).text;
+            int missing = 0;
+            for (int i = 0; i < run.length(); i++) {
+                if ((textMask & 1L << run.charAt(i)) == 0 && ++missing > runEdits[r]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    boolean matches(String text) {
+        if (text.contains(query)) {
+            return true;
+        }
+        List<NGramTokenizer.Run> textRuns = null;
+        for (int r = 0; r < runs.size(); r++) {
+            NGramTokenizer.Run run = runs.get(r);
+            if (text.contains(run.text)) {
+                continue;
+            }
+            int maxEdits = runEdits[r];
+            if (maxEdits == 0) {
+                return false;
+            }
+            if (textRuns == null) {
+                textRuns = NGramTokenizer.runs(text);
+            }
+            if (!matchesAnyRun(textRuns, run, maxEdits)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matchesAnyRun(List<NGramTokenizer.Run> textRuns, NGramTokenizer.Run run,
+            int maxEdits) {
+        for (NGramTokenizer.Run textRun : textRuns) {
+            if (!textRun.cjk && distance(run.text, textRun.text, maxEdits) <= maxEdits) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 兩字串的編輯距離（含相鄰字元對調），超過 max 時提早結束並回傳 max + 1
+     */
+    static int distance(String a, String b, int max) {
+        if (Math.abs(a.length() - b.length()) > max) {
+            return max + 1;
+        }
+        int[] previous2 = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    value = Math.min(value, previous2[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+        }
+        return Math.min(previous[b.length()], max + 1);
+    }
+}
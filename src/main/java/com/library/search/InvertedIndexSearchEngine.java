@@ -0,0 +1,591 @@
+package com.library.search;
+
+import com.library.dto.SearchFacets;
+import com.library.entity.Book;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.PrimitiveIterator;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.IntPredicate;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 記憶體倒排索引搜尋引擎
+ *
+ * 書名、作者各自維護一份詞典（詞項 → 文件編號列表），出版年份與圖書館另有文件編號列表。
+ * 查詢時由小到大取各列表交集作為候選，再逐筆以子字串比對驗證所有條件，
+ * 因此回傳的每一筆都符合 LIKE '%...%' 條件，查詢成本只與候選數量有關，與書籍總數無關。
+ * 能否找到詞中間的子字串取決於 Tokenizer 產生的詞項。
+ * 出版年份、類型與圖書館另各自維護文件點陣圖，分面統計以符合條件的文件點陣圖與之取交集計數。
+ * 模糊查詢由詞典的刪除變體索引展開相近詞項作為候選，再以 FuzzyMatch 驗證，同樣不逐筆掃描所有書籍。
+ */
+@Component
+@Slf4j
+public class InvertedIndexSearchEngine implements BookSearchEngine {
+
+    // 候選數量低於此值時直接逐筆驗證
+    private static final int VERIFY_THRESHOLD = 64;
+    // 下一個條件的文件數超過候選數量此倍數時，合併列表比逐筆驗證更慢
+    private static final int MAX_INTERSECT_RATIO = 16;
+
+    private final Tokenizer tokenizer;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final FieldIndex titleIndex = new FieldIndex();
+    private final FieldIndex authorIndex = new FieldIndex();
+    private final Map<Integer, PostingList> yearPostings = new HashMap<>();
+    private final Map<Long, PostingList> libraryPostings = new HashMap<>();
+    private final Map<Long, Integer> docByBookId = new HashMap<>();
+
+    // 分面點陣圖：隨書籍與館藏新增維護
+    private final Map<Integer, DocBitmap> yearBitmaps = new HashMap<>();
+    private final Map<Book.BookType, DocBitmap> typeBitmaps = new EnumMap<>(Book.BookType.class);
+    private final Map<Long, DocBitmap> libraryBitmaps = new HashMap<>();
+
+    // 以文件編號為索引的書籍欄位
+    private long[] bookIds = new long[1024];
+    private String[] titles = new String[1024];
+    private String[] authors = new String[1024];
+    // 欄位的字元摘要，模糊查詢逐筆驗證前先排除字元不足的文件
+    private long[] titleChars = new long[1024];
+    private long[] authorChars = new long[1024];
+    private int[] years = new int[1024];
+    private int docCount;
+
+    // 文件編號是否與書籍ID同序；交易提交順序不同時可能亂序，此時查詢結果需另外排序
+    private boolean docsInBookIdOrder = true;
+    private volatile boolean ready;
+
+    public InvertedIndexSearchEngine(Tokenizer tokenizer) {
+        this.tokenizer = tokenizer;
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public Optional<List<Long>> search(String title, String author, Integer year, Long libraryId,
+            int offset, int limit) {
+        return collect(title, author, year, libraryId, false, Long.MIN_VALUE, offset, limit);
+    }
+
+    @Override
+    public Optional<List<Long>> searchFuzzy(String title, String author, Integer year, Long libraryId,
+            int offset, int limit) {
+        return collect(title, author, year, libraryId, true, Long.MIN_VALUE, offset, limit);
+    }
+
+    @Override
+    public Optional<List<Long>> searchAfter(String title, String author, Integer year, Long libraryId,
+            long afterBookId, int limit) {
+        return collect(title, author, year, libraryId, false, afterBookId, 0, limit);
+    }
+
+    private Optional<List<Long>> collect(String title, String author, Integer year, Long libraryId,
+            boolean fuzzy, long afterBookId, int offset, int limit) {
+        String titleQuery = normalize(title);
+        String authorQuery = normalize(author);
+
+        lock.readLock().lock();
+        try {
+            List<Source> sources = selectSources(titleQuery, authorQuery, year, libraryId, fuzzy);
+            if (sources == null) {
+                return Optional.empty();
+            }
+            IntPredicate titleMatch = fieldMatch(titleQuery, fuzzy, titles, titleChars);
+            IntPredicate authorMatch = fieldMatch(authorQuery, fuzzy, authors, authorChars);
+            // 模糊查詢的條件都只有一個詞項列表時（例如只有中文段）與一般查詢相同，直接取交集
+            boolean expanded = sources.stream().anyMatch(source -> source.lists.size() > 1);
+            if (fuzzy && expanded && docsInBookIdOrder) {
+                return Optional.of(collectInDocOrder(sources, titleMatch, authorMatch, year, libraryId, offset, limit));
+            }
+            int[] candidates = intersect(sources);
+
+            PostingList libraryDocs = libraryId != null ? libraryPostings.get(libraryId) : null;
+            List<Long> matches = new ArrayList<>();
+            int skipped = 0;
+            int start = docsInBookIdOrder ? firstAfter(candidates, afterBookId) : 0;
+            for (int c = start; c < candidates.length; c++) {
+                int doc = candidates[c];
+                if (bookIds[doc] <= afterBookId) {
+                    continue;
+                }
+                if (!matches(doc, titleMatch, authorMatch, year, libraryId, libraryDocs)) {
+                    continue;
+                }
+                if (docsInBookIdOrder) {
+                    if (skipped < offset) {
+                        skipped++;
+                        continue;
+                    }
+                    matches.add(bookIds[doc]);
+                    if (matches.size() >= limit) {
+                        break;
+                    }
+                } else {
+                    matches.add(bookIds[doc]);
+                }
+            }
+
+            if (!docsInBookIdOrder) {
+                matches.sort(null);
+                int from = Math.min(offset, matches.size());
+                int to = Math.min(from + limit, matches.size());
+                matches = new ArrayList<>(matches.subList(from, to));
+            }
+            return Optional.of(matches);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<SearchFacets> facets(String title, String author, Integer year, Long libraryId) {
+        String titleQuery = normalize(title);
+        String authorQuery = normalize(author);
+
+        lock.readLock().lock();
+        try {
+            List<Source> sources = selectSources(titleQuery, authorQuery, year, libraryId, false);
+            if (sources == null) {
+                return Optional.empty();
+            }
+            int[] candidates = intersect(sources);
+            IntPredicate titleMatch = fieldMatch(titleQuery, false, titles, titleChars);
+            IntPredicate authorMatch = fieldMatch(authorQuery, false, authors, authorChars);
+
+            PostingList libraryDocs = libraryId != null ? libraryPostings.get(libraryId) : null;
+            DocBitmap matches = new DocBitmap();
+            int total = 0;
+            for (int doc : candidates) {
+                if (matches(doc, titleMatch, authorMatch, year, libraryId, libraryDocs)) {
+                    matches.set(doc);
+                    total++;
+                }
+            }
+
+            return Optional.of(new SearchFacets(total,
+                    countFacet(matches, yearBitmaps, new TreeMap<>()),
+                    countFacet(matches, typeBitmaps, new EnumMap<>(Book.BookType.class)),
+                    countFacet(matches, libraryBitmaps, new TreeMap<>())));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void index(BookDocument document) {
+        lock.writeLock().lock();
+        try {
+            if (docByBookId.containsKey(document.getBookId())) {
+                return;
+            }
+            int doc = docCount++;
+            ensureCapacity(docCount);
+            if (doc > 0 && bookIds[doc - 1] > document.getBookId()) {
+                docsInBookIdOrder = false;
+            }
+
+            String title = normalize(document.getTitle());
+            String author = normalize(document.getAuthor());
+            bookIds[doc] = document.getBookId();
+            titles[doc] = title;
+            authors[doc] = author;
+            titleChars[doc] = FuzzyMatch.characterMask(title);
+            authorChars[doc] = FuzzyMatch.characterMask(author);
+            years[doc] = document.getPublishYear();
+            docByBookId.put(document.getBookId(), doc);
+
+            for (String term : tokenizer.indexTerms(title)) {
+                titleIndex.add(term, doc);
+            }
+            for (String term : tokenizer.indexTerms(author)) {
+                authorIndex.add(term, doc);
+            }
+            yearPostings.computeIfAbsent(document.getPublishYear(), y -> new PostingList()).add(doc);
+
+            yearBitmaps.computeIfAbsent(document.getPublishYear(), y -> new DocBitmap()).set(doc);
+            if (document.getType() != null) {
+                typeBitmaps.computeIfAbsent(document.getType(), t -> new DocBitmap()).set(doc);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void addLibrary(Long bookId, Long libraryId) {
+        lock.writeLock().lock();
+        try {
+            Integer doc = docByBookId.get(bookId);
+            if (doc == null) {
+                log.debug("書籍尚未索引，略過館藏更新：bookId={}, libraryId={}", bookId, libraryId);
+                return;
+            }
+            libraryPostings.computeIfAbsent(libraryId, id -> new PostingList()).add(doc);
+            libraryBitmaps.computeIfAbsent(libraryId, id -> new DocBitmap()).set(doc);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void beginRebuild() {
+        lock.writeLock().lock();
+        try {
+            ready = false;
+            titleIndex.clear();
+            authorIndex.clear();
+            yearPostings.clear();
+            libraryPostings.clear();
+            docByBookId.clear();
+            yearBitmaps.clear();
+            typeBitmaps.clear();
+            libraryBitmaps.clear();
+            docCount = 0;
+            docsInBookIdOrder = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void finishRebuild() {
+        ready = true;
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 各查詢條件對應的來源，依估計文件數由小到大排序；年份或圖書館沒有任何書籍時只回傳一個空來源，
+     * 沒有任何可用條件時回傳 null
+     */
+    private List<Source> selectSources(String titleQuery, String authorQuery, Integer year, Long libraryId,
+            boolean fuzzy) {
+        List<Source> sources = new ArrayList<>();
+        addTermSources(sources, titleIndex, titleQuery, fuzzy);
+        addTermSources(sources, authorIndex, authorQuery, fuzzy);
+        if (year != null) {
+            PostingList list = yearPostings.get(year);
+            if (list == null) {
+                return List.of(new Source(List.of()));
+            }
+            sources.add(new Source(List.of(list)));
+        }
+        if (libraryId != null) {
+            PostingList list = libraryPostings.get(libraryId);
+            if (list == null) {
+                return List.of(new Source(List.of()));
+            }
+            sources.add(new Source(List.of(list)));
+        }
+        if (sources.isEmpty()) {
+            return null;
+        }
+        sources.sort(Comparator.comparingLong(source -> source.estimate));
+        return sources;
+    }
+
+    /**
+     * 由小到大取交集產生候選集合
+     * 候選已夠少或下一個條件遠大於候選時停止，其餘條件交給逐筆驗證
+     */
+    private int[] intersect(List<Source> sources) {
+        int[] candidates = sources.get(0).union();
+        for (int i = 1; i < sources.size() && candidates.length > VERIFY_THRESHOLD; i++) {
+            Source next = sources.get(i);
+            if (next.estimate > (long) candidates.length * MAX_INTERSECT_RATIO) {
+                break;
+            }
+            candidates = next.intersect(candidates);
+        }
+        return candidates;
+    }
+
+    /**
+     * 模糊查詢的條件常由數百個詞項列表組成，合併出完整候選陣列的成本遠高於取得一頁結果。
+     * 文件編號與書籍ID同序時，只有一個條件則依文件編號逐一合併其列表，多個條件則以點陣圖取交集，取滿一頁即停止
+     */
+    private List<Long> collectInDocOrder(List<Source> sources, IntPredicate titleMatch,
+            IntPredicate authorMatch, Integer year, Long libraryId, int offset, int limit) {
+        Source driver = sources.get(0);
+        BitSet intersection = null;
+        for (int i = 1; i < sources.size(); i++) {
+            Source next = sources.get(i);
+            if (next.estimate > driver.estimate * MAX_INTERSECT_RATIO) {
+                break;
+            }
+            if (intersection == null) {
+                intersection = driver.toBitSet();
+            }
+            intersection.and(next.toBitSet());
+        }
+        PrimitiveIterator.OfInt docs = intersection == null
+                ? new MergedDocs(driver.lists)
+                : intersection.stream().iterator();
+
+        PostingList libraryDocs = libraryId != null ? libraryPostings.get(libraryId) : null;
+        List<Long> matches = new ArrayList<>();
+        int skipped = 0;
+        while (docs.hasNext() && matches.size() < limit) {
+            int doc = docs.nextInt();
+            if (!matches(doc, titleMatch, authorMatch, year, libraryId, libraryDocs)) {
+                continue;
+            }
+            if (skipped < offset) {
+                skipped++;
+                continue;
+            }
+            matches.add(bookIds[doc]);
+        }
+        return matches;
+    }
+
+    /**
+     * 欄位查詢的每個條件對應一個來源；模糊查詢的條件由多個詞項組成，來源為這些詞項列表的聯集
+     */
+    private void addTermSources(List<Source> sources, FieldIndex index, String query, boolean fuzzy) {
+        if (query == null) {
+            return;
+        }
+        if (!fuzzy) {
+            for (QueryTerm term : tokenizer.queryTerms(query)) {
+                sources.add(new Source(index.lookup(term)));
+            }
+            return;
+        }
+        for (List<QueryTerm> alternatives : tokenizer.fuzzyQueryTerms(query)) {
+            List<PostingList> lists = new ArrayList<>();
+            for (QueryTerm term : alternatives) {
+                lists.addAll(index.lookup(term));
+            }
+            sources.add(new Source(lists));
+        }
+    }
+
+    /**
+     * 候選依文件編號排序且與書籍ID同序時，以二分搜尋找出第一個書籍ID大於 afterBookId 的位置
+     */
+    private int firstAfter(int[] candidates, long afterBookId) {
+        int low = 0;
+        int high = candidates.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (bookIds[candidates[mid]] <= afterBookId) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 符合條件的文件與各分面值點陣圖的交集數量，略過數量為 0 的分面值
+     */
+    private static <K> Map<K, Long> countFacet(DocBitmap matches, Map<K, DocBitmap> bitmaps, Map<K, Long> counts) {
+        for (Map.Entry<K, DocBitmap> entry : bitmaps.entrySet()) {
+            int count = matches.andCardinality(entry.getValue());
+            if (count > 0) {
+                counts.put(entry.getKey(), (long) count);
+            }
+        }
+        return counts;
+    }
+
+    private boolean matches(int doc, IntPredicate titleMatch, IntPredicate authorMatch, Integer year,
+            Long libraryId, PostingList libraryDocs) {
+        if (titleMatch != null && !titleMatch.test(doc)) {
+            return false;
+        }
+        if (authorMatch != null && !authorMatch.test(doc)) {
+            return false;
+        }
+        if (year != null && years[doc] != year) {
+            return false;
+        }
+        return libraryId == null || (libraryDocs != null && libraryDocs.contains(doc));
+    }
+
+    /**
+     * 欄位的驗證條件（以文件編號判斷）：一般查詢為子字串比對，模糊查詢先以字元摘要排除，再依 FuzzyMatch 規則比對；
+     * 沒有查詢時回傳 null
+     */
+    private static IntPredicate fieldMatch(String query, boolean fuzzy, String[] texts, long[] characters) {
+        if (query == null) {
+            return null;
+        }
+        if (fuzzy) {
+            FuzzyMatch match = FuzzyMatch.of(query);
+            return doc -> match.mayMatch(characters[doc]) && match.matches(texts[doc]);
+        }
+        return doc -> texts[doc].contains(query);
+    }
+
+    private static String normalize(String text) {
+        return text == null ? null : text.toLowerCase(Locale.ROOT);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= bookIds.length) {
+            return;
+        }
+        int capacity = Math.max(required, bookIds.length * 2);
+        bookIds = Arrays.copyOf(bookIds, capacity);
+        titles = Arrays.copyOf(titles, capacity);
+        authors = Arrays.copyOf(authors, capacity);
+        titleChars = Arrays.copyOf(titleChars, capacity);
+        authorChars = Arrays.copyOf(authorChars, capacity);
+        years = Arrays.copyOf(years, capacity);
+    }
+
+    /**
+     * 一個查詢條件對應的文件集合（多個列表的聯集）
+     */
+    private static final class Source {
+        private final List<PostingList> lists;
+        private final long estimate;
+
+        private Source(List<PostingList> lists) {
+            this.lists = lists;
+            long total = 0;
+            for (PostingList list : lists) {
+                total += list.size();
+            }
+            this.estimate = total;
+        }
+
+        int[] union() {
+            if (lists.size() == 1) {
+                return lists.get(0).toArray();
+            }
+            return toBitSet().stream().toArray();
+        }
+
+        int[] intersect(int[] candidates) {
+            if (lists.size() == 1) {
+                PostingList list = lists.get(0);
+                return Arrays.stream(candidates).filter(list::contains).toArray();
+            }
+            BitSet docs = toBitSet();
+            return Arrays.stream(candidates).filter(docs::get).toArray();
+        }
+
+        BitSet toBitSet() {
+            BitSet docs = new BitSet();
+            for (PostingList list : lists) {
+                for (int i = 0; i < list.size(); i++) {
+                    docs.set(list.get(i));
+                }
+            }
+            return docs;
+        }
+    }
+
+    /**
+     * 依文件編號遞增合併多個列表（略過重複的文件）
+     */
+    private static final class MergedDocs implements PrimitiveIterator.OfInt {
+        private final List<PostingList> lists;
+        private final int[] positions;
+        // 各列表目前的文件編號，堆積比較時不需再讀取列表
+        private final int[] currents;
+        // 以各列表目前的文件編號排序的最小堆積，元素為列表索引
+        private final int[] heap;
+        private int size;
+        private int last = -1;
+
+        private MergedDocs(List<PostingList> lists) {
+            this.lists = lists;
+            this.positions = new int[lists.size()];
+            this.currents = new int[lists.size()];
+            this.heap = new int[lists.size()];
+            for (int i = 0; i < lists.size(); i++) {
+                if (lists.get(i).size() > 0) {
+                    currents[i] = lists.get(i).get(0);
+                    heap[size++] = i;
+                }
+            }
+            for (int i = size / 2 - 1; i >= 0; i--) {
+                siftDown(i);
+            }
+            skipDuplicates();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return size > 0;
+        }
+
+        @Override
+        public int nextInt() {
+            if (size == 0) {
+                throw new NoSuchElementException();
+            }
+            last = currents[heap[0]];
+            skipDuplicates();
+            return last;
+        }
+
+        /**
+         * 移除堆積頂端所有不大於上一個回傳值的文件
+         */
+        private void skipDuplicates() {
+            while (size > 0 && currents[heap[0]] <= last) {
+                int list = heap[0];
+                PostingList postings = lists.get(list);
+                if (++positions[list] == postings.size()) {
+                    heap[0] = heap[--size];
+                } else {
+                    currents[list] = postings.get(positions[list]);
+                }
+                if (size > 0) {
+                    siftDown(0);
+                }
+            }
+        }
+
+        private void siftDown(int index) {
+            int item = heap[index];
+            int doc = currents[item];
+            while (true) {
+                int child = 2 * index + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && currents[heap[child + 1]] < currents[heap[child]]) {
+                    child++;
+                }
+                if (currents[heap[child]] >= doc) {
+                    break;
+                }
+                heap[index] = heap[child];
+                index = child;
+            }
+            heap[index] = item;
+        }
+    }
+}
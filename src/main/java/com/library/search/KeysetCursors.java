@@ -0,0 +1,47 @@
+package com.library.search;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.function.Function;
+
+/**
+ * 鍵集分頁游標的編碼，書籍搜尋、借閱歷史與逾期報表的游標共用
+ * 游標內容為 "v1|欄位1|欄位2..."，對外以 Base64URL 字串傳遞，客戶端不應解析其內容
+ */
+public final class KeysetCursors {
+
+    private static final String VERSION = "v1";
+    private static final String SEPARATOR = "|";
+
+    private KeysetCursors() {
+    }
+
+    public static String encode(Object... fields) {
+        StringBuilder raw = new StringBuilder(VERSION);
+        for (Object field : fields) {
+            raw.append(SEPARATOR).append(field);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游標字串，檢查版本與欄位數後交給 parser 還原；最後一個欄位可以包含分隔字元
+     *
+     * @throws IllegalArgumentException 游標格式不正確
+     */
+    public static <T> T decode(String cursor, int fieldCount, Function<String[], T> parser) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", fieldCount + 1);
+            if (parts.length != fieldCount + 1 || !VERSION.equals(parts[0])) {
+                throw new IllegalArgumentException("無效的分頁游標");
+            }
+            return parser.apply(Arrays.copyOfRange(parts, 1, parts.length));
+        } catch (IllegalArgumentException | DateTimeException e) {
+            // NumberFormatException 與 Base64 解碼錯誤皆為 IllegalArgumentException
+            throw new IllegalArgumentException("無效的分頁游標", e);
+        }
+    }
+}
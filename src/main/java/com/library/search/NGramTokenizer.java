@@ -0,0 +1,126 @@
+package com.library.search;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 中日韓文字使用 bigram、其他文字以詞切分的斷詞器
+ *
+ * 索引時中文連續字串產生所有 bigram，並另外索引最後一個字，確保每個字都是某個詞項的開頭；
+ * 拉丁文字以連續字母數字為一個詞。查詢時中文取 bigram 精確比對（單字則以前綴比對），
+ * 拉丁詞以「詞典中包含此片段的詞」比對，因此查詢中的任何子字串都能找到候選，與 LIKE '%...%' 結果一致。
+ *
+ * 模糊查詢（規則見 FuzzyMatch）：拉丁詞另外比對詞典中編輯距離在容許次數內的詞；中文段不容許錯字，詞項與一般查詢相同。
+ */
+public class NGramTokenizer implements Tokenizer {
+
+    @Override
+    public List<String> indexTerms(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (Run run : runs(text)) {
+            if (!run.cjk) {
+                terms.add(run.text);
+                continue;
+            }
+            for (int i = 0; i + 2 <= run.text.length(); i++) {
+                terms.add(run.text.substring(i, i + 2));
+            }
+            terms.add(run.text.substring(run.text.length() - 1));
+        }
+        return new ArrayList<>(terms);
+    }
+
+    @Override
+    public List<QueryTerm> queryTerms(String text) {
+        Set<String> seen = new LinkedHashSet<>();
+        List<QueryTerm> terms = new ArrayList<>();
+        for (Run run : runs(text)) {
+            if (!run.cjk) {
+                if (seen.add(run.text)) {
+                    terms.add(QueryTerm.substring(run.text));
+                }
+            } else if (run.text.length() == 1) {
+                if (seen.add(run.text)) {
+                    terms.add(QueryTerm.prefix(run.text));
+                }
+            } else {
+                for (int i = 0; i + 2 <= run.text.length(); i++) {
+                    String bigram = run.text.substring(i, i + 2);
+                    if (seen.add(bigram)) {
+                        terms.add(QueryTerm.exact(bigram));
+                    }
+                }
+            }
+        }
+        return terms;
+    }
+
+    @Override
+    public List<List<QueryTerm>> fuzzyQueryTerms(String text) {
+        List<List<QueryTerm>> terms = new ArrayList<>();
+        for (Run run : runs(text)) {
+            if (!run.cjk) {
+                terms.add(List.of(QueryTerm.fuzzy(run.text, FuzzyMatch.maxEdits(run.text, false))));
+                continue;
+            }
+            for (QueryTerm term : queryTerms(run.text)) {
+                terms.add(List.of(term));
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * 切出連續的中日韓文字或連續的其他字母數字
+     */
+    static List<Run> runs(String text) {
+        List<Run> runs = new ArrayList<>();
+        int start = -1;
+        boolean startCjk = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            boolean token = Character.isLetterOrDigit(c);
+            boolean cjk = token && isCjk(c);
+            if (start >= 0 && (!token || cjk != startCjk)) {
+                runs.add(new Run(text.substring(start, i), startCjk));
+                start = -1;
+            }
+            if (token && start < 0) {
+                start = i;
+                startCjk = cjk;
+            }
+        }
+        if (start >= 0) {
+            runs.add(new Run(text.substring(start), startCjk));
+        }
+        return runs;
+    }
+
+    private static boolean isCjk(char c) {
+        // 常用漢字與拉丁字母直接判斷，其餘再查 Unicode 文字系統
+        if (c >= '\u4E00' && c <= '\u9FFF') {
+            return true;
+        }
+        if (c < '\u1100') {
+            return false;
+        }
+        Character.UnicodeScript script = Character.UnicodeScript.of(c);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL
+                || script == Character.UnicodeScript.BOPOMOFO;
+    }
+
+    static final class Run {
+        final String text;
+        final boolean cjk;
+
+        private Run(String text, boolean cjk) {
+            this.text = text;
+            this.cjk = cjk;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.library.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 查詢詞項及其比對方式
+ */
+@Getter
+@AllArgsConstructor
+public class QueryTerm {
+
+    private final String text;
+    private final Match match;
+    // 模糊比對容許的編輯次數，其他比對方式為 0
+    private final int maxEdits;
+
+    public enum Match {
+        /** 詞典中完全相同的詞項 */
+        EXACT,
+        /** 詞典中以此開頭的詞項 */
+        PREFIX,
+        /** 詞典中包含此片段的詞項 */
+        SUBSTRING,
+        /** 詞典中包含此片段，或與此詞編輯距離不超過 maxEdits 的詞項 */
+        FUZZY
+    }
+
+    public static QueryTerm exact(String text) {
+        return new QueryTerm(text, Match.EXACT, 0);
+    }
+
+    public static QueryTerm prefix(String text) {
+        return new QueryTerm(text, Match.PREFIX, 0);
+    }
+
+    public static QueryTerm substring(String text) {
+        return new QueryTerm(text, Match.SUBSTRING, 0);
+    }
+
+    public static QueryTerm fuzzy(String text, int maxEdits) {
+        return new QueryTerm(text, Match.FUZZY, maxEdits);
+    }
+}
@@ -0,0 +1,35 @@
+package com.library.search;
+
+import com.library.event.BookAvailabilityChangedEvent;
+import com.library.event.BookCopiesAddedEvent;
+import com.library.event.BookCreatedEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * 交易提交後淘汰受影響的搜尋快取項目
+ * 在搜尋索引更新之後執行（見 BookSearchIndexListener 的 @Order）
+ */
+@Component
+@RequiredArgsConstructor
+public class SearchCacheInvalidationListener {
+
+    private final SearchResultCache searchResultCache;
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onBookCreated(BookCreatedEvent event) {
+        searchResultCache.invalidateForNewBook(event.getTitle(), event.getAuthor(), event.getPublishYear());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onBookCopiesAdded(BookCopiesAddedEvent event) {
+        searchResultCache.invalidateForCopiesAdded(event.getBookId(), event.getLibraryId());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onAvailabilityChanged(BookAvailabilityChangedEvent event) {
+        searchResultCache.invalidateForAvailabilityChange(event.getBookId(), event.getLibraryId());
+    }
+}
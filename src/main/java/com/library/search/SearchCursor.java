@@ -0,0 +1,49 @@
+package com.library.search;
+
+import lombok.Getter;
+
+/**
+ * 書籍搜尋的游標，記錄上一頁最後一筆的（排序鍵, 書籍ID）
+ * 對外以 Base64URL 字串傳遞，客戶端不應解析其內容
+ */
+@Getter
+public final class SearchCursor {
+
+    private final BookSortKey sortKey;
+    private final long lastId;
+    private final String lastTitle;
+
+    private SearchCursor(BookSortKey sortKey, long lastId, String lastTitle) {
+        this.sortKey = sortKey;
+        this.lastId = lastId;
+        this.lastTitle = lastTitle;
+    }
+
+    /**
+     * 第一頁的游標（排序在所有書籍之前）
+     */
+    public static SearchCursor first(BookSortKey sortKey) {
+        return new SearchCursor(sortKey, 0L, "");
+    }
+
+    /**
+     * 以某本書為上一頁最後一筆的游標
+     */
+    public static SearchCursor after(BookSortKey sortKey, long lastId, String lastTitle) {
+        return new SearchCursor(sortKey, lastId, sortKey == BookSortKey.TITLE ? lastTitle : "");
+    }
+
+    public String encode() {
+        return KeysetCursors.encode(sortKey.name(), lastId, lastTitle);
+    }
+
+    /**
+     * 解析游標字串
+     *
+     * @throws IllegalArgumentException 游標格式不正確
+     */
+    public static SearchCursor decode(String cursor) {
+        return KeysetCursors.decode(cursor, 3,
+                fields -> after(BookSortKey.valueOf(fields[0]), Long.parseLong(fields[1]), fields[2]));
+    }
+}
@@ -0,0 +1,11 @@
+package com.library.search;
+
+/**
+ * 書籍搜尋模式
+ */
+public enum SearchMode {
+    /** 記憶體倒排索引，索引無法回答時退回 JPQL */
+    INDEX,
+    /** 直接使用 JPQL LIKE 查詢 */
+    JPQL
+}
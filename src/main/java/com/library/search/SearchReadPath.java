@@ -0,0 +1,27 @@
+package com.library.search;
+
+import java.util.Locale;
+
+/**
+ * 搜尋結果的讀取方式
+ */
+public enum SearchReadPath {
+    /** 載入 Book、BookCopy 實體後組裝回應 */
+    ENTITY,
+    /** 以單一建構式查詢直接組裝回應，不載入實體 */
+    PROJECTION;
+
+    /**
+     * 解析讀取方式參數（不分大小寫）
+     *
+     * @throws IllegalArgumentException 不支援的讀取方式
+     */
+    public static SearchReadPath from(String value) {
+        for (SearchReadPath path : values()) {
+            if (path.name().equals(value.toUpperCase(Locale.ROOT))) {
+                return path;
+            }
+        }
+        throw new IllegalArgumentException("不支援的讀取方式：" + value);
+    }
+}
@@ -0,0 +1,251 @@
+package com.library.search;
+
+import com.library.dto.BookSearchResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 書籍搜尋結果快取
+ *
+ * 以正規化後的（書名, 作者, 年份, 圖書館, 館藏條件, 是否模糊搜尋, 頁數, 每頁數量）為鍵，依最近使用順序淘汰超出上限的項目，
+ * 並在存活時間（ttl）到期後失效，因此結果中的可借數量最多落後 ttl。
+ * 書籍新增、館藏新增與借還書於交易提交後只淘汰可能受影響的項目。
+ */
+@Component
+@Slf4j
+public class SearchResultCache {
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Clock clock;
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // 每次淘汰遞增；查詢期間若有淘汰，查詢結果可能已過期，不寫入快取
+    private long generation;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter sizeEvictions;
+    private final Counter expiredEvictions;
+    private final Counter invalidations;
+
+    @Autowired
+    public SearchResultCache(MeterRegistry meterRegistry,
+            @Value("${library.search.cache.enabled:true}") boolean enabled,
+            @Value("${library.search.cache.max-entries:10000}") int maxEntries,
+            @Value("${library.search.cache.ttl:30s}") Duration ttl) {
+        this(meterRegistry, enabled, maxEntries, ttl, Clock.systemUTC());
+    }
+
+    SearchResultCache(MeterRegistry meterRegistry, boolean enabled, int maxEntries, Duration ttl, Clock clock) {
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+
+        this.hits = requestCounter(meterRegistry, "hit");
+        this.misses = requestCounter(meterRegistry, "miss");
+        this.sizeEvictions = evictionCounter(meterRegistry, "size");
+        this.expiredEvictions = evictionCounter(meterRegistry, "expired");
+        this.invalidations = evictionCounter(meterRegistry, "invalidated");
+        Gauge.builder("library.search.cache.size", this, SearchResultCache::size)
+                .description("搜尋結果快取項目數")
+                .register(meterRegistry);
+    }
+
+    public static Key key(String title, String author, Integer year, Long libraryId, int page, int size) {
+        return key(title, author, year, libraryId, StockFilter.none(), page, size);
+    }
+
+    public static Key key(String title, String author, Integer year, Long libraryId, StockFilter stockFilter,
+            int page, int size) {
+        return key(title, author, year, libraryId, stockFilter, false, page, size);
+    }
+
+    public static Key key(String title, String author, Integer year, Long libraryId, StockFilter stockFilter,
+            boolean fuzzy, int page, int size) {
+        return new Key(normalize(title), normalize(author), year, libraryId, stockFilter, fuzzy, page, size);
+    }
+
+    /**
+     * 取得快取結果，未命中或已過期時回傳 Optional.empty()
+     */
+    public synchronized Optional<List<BookSearchResponse>> get(Key key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        if (clock.millis() - entry.createdAt >= ttlMillis) {
+            entries.remove(key);
+            expiredEvictions.increment();
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(entry.results);
+    }
+
+    /**
+     * 查詢開始前取得的版本，寫入時用來判斷查詢期間是否有資料變動
+     */
+    public synchronized long stamp() {
+        return generation;
+    }
+
+    /**
+     * 寫入查詢結果；查詢期間若已有淘汰則略過，避免快取到變動前的結果
+     */
+    public synchronized void put(Key key, List<BookSearchResponse> results, long stamp) {
+        if (!enabled || stamp != generation) {
+            return;
+        }
+        Set<Long> bookIds = results.stream().map(BookSearchResponse::getId).collect(Collectors.toSet());
+        entries.put(key, new Entry(List.copyOf(results), bookIds, clock.millis()));
+        if (entries.size() > maxEntries) {
+            Iterator<Entry> eldest = entries.values().iterator();
+            eldest.next();
+            eldest.remove();
+            sizeEvictions.increment();
+        }
+    }
+
+    /**
+     * 新增書籍：淘汰條件符合此書的查詢（新書尚無館藏，不影響有圖書館或館藏條件的查詢）
+     */
+    public void invalidateForNewBook(String title, String author, Integer year) {
+        String normalizedTitle = normalize(title);
+        String normalizedAuthor = normalize(author);
+        invalidate((key, entry) -> key.libraryId == null && key.stockFilter.isEmpty()
+                && (key.title == null || matches(normalizedTitle, key.title, key.fuzzy))
+                && (key.author == null || matches(normalizedAuthor, key.author, key.fuzzy))
+                && (key.year == null || key.year.equals(year)));
+    }
+
+    /**
+     * 新增館藏：淘汰含有此書的結果，以及可能因此多出此書的查詢（該圖書館或館藏條件涵蓋該圖書館）
+     */
+    public void invalidateForCopiesAdded(Long bookId, Long libraryId) {
+        invalidate((key, entry) -> entry.bookIds.contains(bookId)
+                || libraryId.equals(key.libraryId)
+                || key.stockFilter.mayInclude(libraryId));
+    }
+
+    /**
+     * 可借數量變動：淘汰含有此書的結果，以及涵蓋該圖書館的「僅列出可借」查詢（此書可能因此出現）
+     */
+    public void invalidateForAvailabilityChange(Long bookId, Long libraryId) {
+        invalidate((key, entry) -> entry.bookIds.contains(bookId)
+                || (key.stockFilter.isAvailableOnly() && key.stockFilter.mayInclude(libraryId)));
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private synchronized void invalidate(EntryPredicate predicate) {
+        generation++;
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        int removed = 0;
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Entry> next = iterator.next();
+            if (predicate.test(next.getKey(), next.getValue())) {
+                iterator.remove();
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            invalidations.increment(removed);
+            log.debug("搜尋快取淘汰 {} 筆", removed);
+        }
+    }
+
+    private static boolean matches(String text, String query, boolean fuzzy) {
+        return fuzzy ? FuzzyMatch.matches(text, query) : text.contains(query);
+    }
+
+    private static String normalize(String text) {
+        return text == null ? null : text.toLowerCase(Locale.ROOT);
+    }
+
+    private static Counter requestCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("library.search.cache.requests")
+                .description("搜尋結果快取查詢次數")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static Counter evictionCounter(MeterRegistry meterRegistry, String cause) {
+        return Counter.builder("library.search.cache.evictions")
+                .description("搜尋結果快取淘汰次數")
+                .tag("cause", cause)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 正規化後的查詢條件
+     */
+    @Getter
+    @EqualsAndHashCode
+    public static final class Key {
+        private final String title;
+        private final String author;
+        private final Integer year;
+        private final Long libraryId;
+        private final StockFilter stockFilter;
+        private final boolean fuzzy;
+        private final int page;
+        private final int size;
+
+        private Key(String title, String author, Integer year, Long libraryId, StockFilter stockFilter,
+                boolean fuzzy, int page, int size) {
+            this.title = title;
+            this.author = author;
+            this.year = year;
+            this.libraryId = libraryId;
+            this.stockFilter = stockFilter;
+            this.fuzzy = fuzzy;
+            this.page = page;
+            this.size = size;
+        }
+    }
+
+    private static final class Entry {
+        private final List<BookSearchResponse> results;
+        private final Set<Long> bookIds;
+        private final long createdAt;
+
+        private Entry(List<BookSearchResponse> results, Set<Long> bookIds, long createdAt) {
+            this.results = results;
+            this.bookIds = bookIds;
+            this.createdAt = createdAt;
+        }
+    }
+
+    @FunctionalInterface
+    private interface EntryPredicate {
+        boolean test(Key key, Entry entry);
+    }
+}
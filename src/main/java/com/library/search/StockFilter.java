@@ -0,0 +1,67 @@
+package com.library.search;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/**
+ * 館藏條件：限定館藏所在圖書館、僅列出目前可借的書籍
+ * 條件於 SQL 的 EXISTS 子查詢中判斷，每頁結果都符合條件，不需事後過濾
+ */
+@Getter
+@EqualsAndHashCode
+public final class StockFilter {
+
+    private static final StockFilter NONE = new StockFilter(List.of(), false);
+
+    // 已排序、不重複；空集合表示不限圖書館
+    private final List<Long> libraryIds;
+    private final boolean availableOnly;
+
+    private StockFilter(List<Long> libraryIds, boolean availableOnly) {
+        this.libraryIds = libraryIds;
+        this.availableOnly = availableOnly;
+    }
+
+    public static StockFilter none() {
+        return NONE;
+    }
+
+    public static StockFilter of(Collection<Long> libraryIds, boolean availableOnly) {
+        if (libraryIds == null || libraryIds.isEmpty()) {
+            return availableOnly ? new StockFilter(List.of(), true) : NONE;
+        }
+        TreeSet<Long> sorted = new TreeSet<>();
+        libraryIds.stream().filter(Objects::nonNull).forEach(sorted::add);
+        return new StockFilter(List.copyOf(sorted), availableOnly);
+    }
+
+    /**
+     * 加入單一圖書館條件（搜尋參數 libraryId）
+     * 已以 libraryIds 限定圖書館時不可再指定 libraryId，兩者的交集與聯集都容易誤解，直接拒絕
+     */
+    public StockFilter withLibrary(Long libraryId) {
+        if (libraryId == null) {
+            return this;
+        }
+        if (!libraryIds.isEmpty()) {
+            throw new IllegalArgumentException("libraryId 與 libraryIds 不可同時指定，請只使用 libraryIds");
+        }
+        return of(List.of(libraryId), availableOnly);
+    }
+
+    public boolean isEmpty() {
+        return libraryIds.isEmpty() && !availableOnly;
+    }
+
+    /**
+     * 某圖書館的館藏變動是否可能改變符合此條件的書籍
+     */
+    public boolean mayInclude(Long libraryId) {
+        return !isEmpty() && (libraryIds.isEmpty() || libraryIds.contains(libraryId));
+    }
+}
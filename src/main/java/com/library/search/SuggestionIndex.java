@@ -0,0 +1,455 @@
+package com.library.search;
+
+import com.library.dto.BookSuggestion;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 書名與作者前綴自動完成索引
+ *
+ * 以正規化（小寫）後的書名、作者建立字典樹，每個節點保存其子樹中借閱次數最高的 topK 筆建議，
+ * 查詢只需沿前綴走到對應節點，成本與書籍總數無關。
+ * 子樹不超過 topK 筆的節點不再往下展開（葉節點直接保存全部建議），更長的前綴改以逐筆比對過濾，
+ * 因此節點數最多約與建議數（書名 + 作者）相當，而非所有前綴的數量。
+ * 節點數達上限（maxNodes）後葉節點不再展開，只保留借閱次數最高的 topK 筆，更長前綴的結果可能不完整。
+ */
+@Component
+@Slf4j
+public class SuggestionIndex {
+
+    private static final byte LEAF = 0;
+    private static final byte INTERNAL = 1;
+    // 節點數已達上限、無法展開的葉節點
+    private static final byte OVERFLOW = 2;
+
+    private static final int ROOT = 0;
+    private static final int[] EMPTY = new int[0];
+
+    private final boolean enabled;
+    private final int topK;
+    private final int maxNodes;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 節點：狀態與子樹前 topK 筆建議（依借閱次數排序）
+    private byte[] nodeStates;
+    private int[][] nodeTops;
+    private int nodeCount;
+    private ChildTable children;
+
+    // 建議：正規化後的鍵、顯示文字、書籍ID（作者建議為 0）與借閱次數
+    private String[] entryKeys;
+    private String[] entryTexts;
+    private long[] entryBookIds;
+    private long[] entryPopularity;
+    private int entryCount;
+
+    private final Map<Long, Integer> titleEntryByBookId = new HashMap<>();
+    private final Map<Long, Integer> authorEntryByBookId = new HashMap<>();
+    private final Map<String, Integer> authorEntryByKey = new HashMap<>();
+
+    private boolean budgetExceeded;
+    private volatile boolean ready;
+
+    @Autowired
+    public SuggestionIndex(
+            @Value("${library.search.suggest.enabled:true}") boolean enabled,
+            @Value("${library.search.suggest.top-k:10}") int topK,
+            @Value("${library.search.suggest.max-nodes:2000000}") int maxNodes) {
+        this.enabled = enabled;
+        this.topK = topK;
+        this.maxNodes = maxNodes;
+        reset();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int getTopK() {
+        return topK;
+    }
+
+    /**
+     * 依前綴取得借閱次數最高的建議，索引尚未就緒時回傳空列表
+     */
+    public List<BookSuggestion> suggest(String prefix, int limit) {
+        if (!ready || prefix == null || prefix.isBlank()) {
+            return List.of();
+        }
+        String key = normalize(prefix);
+
+        lock.readLock().lock();
+        try {
+            int node = ROOT;
+            int depth = 0;
+            while (depth < key.length() && nodeStates[node] == INTERNAL) {
+                node = children.get(node, key.charAt(depth));
+                if (node < 0) {
+                    return List.of();
+                }
+                depth++;
+            }
+            if (node == ROOT) {
+                return List.of();
+            }
+
+            // 前綴比節點深時，葉節點保存了子樹全部建議，逐筆過濾即可
+            boolean exact = depth == key.length();
+            List<BookSuggestion> suggestions = new ArrayList<>(Math.min(limit, topK));
+            for (int entry : nodeTops[node]) {
+                if (suggestions.size() >= limit) {
+                    break;
+                }
+                if (exact || entryKeys[entry].startsWith(key)) {
+                    suggestions.add(toSuggestion(entry));
+                }
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 加入一本書的書名建議並累計其作者建議的借閱次數；同一本書重複加入時忽略
+     */
+    public void add(Long bookId, String title, String author, long borrowCount) {
+        lock.writeLock().lock();
+        try {
+            if (titleEntryByBookId.containsKey(bookId)) {
+                return;
+            }
+            int titleEntry = newEntry(title, bookId, borrowCount);
+            titleEntryByBookId.put(bookId, titleEntry);
+            insert(titleEntry);
+
+            String authorKey = normalize(author);
+            Integer authorEntry = authorEntryByKey.get(authorKey);
+            if (authorEntry == null) {
+                authorEntry = newEntry(author, null, borrowCount);
+                authorEntryByKey.put(authorKey, authorEntry);
+                insert(authorEntry);
+            } else if (borrowCount > 0) {
+                entryPopularity[authorEntry] += borrowCount;
+                promote(authorEntry);
+            }
+            authorEntryByBookId.put(bookId, authorEntry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 借出一本書：書名與作者建議的借閱次數各加一
+     */
+    public void recordBorrow(Long bookId) {
+        lock.writeLock().lock();
+        try {
+            Integer titleEntry = titleEntryByBookId.get(bookId);
+            if (titleEntry == null) {
+                log.debug("書籍尚未加入自動完成索引，略過借閱次數更新：bookId={}", bookId);
+                return;
+            }
+            entryPopularity[titleEntry]++;
+            promote(titleEntry);
+
+            int authorEntry = authorEntryByBookId.get(bookId);
+            entryPopularity[authorEntry]++;
+            promote(authorEntry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void beginRebuild() {
+        lock.writeLock().lock();
+        try {
+            ready = false;
+            reset();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void finishRebuild() {
+        ready = true;
+    }
+
+    public int nodeCount() {
+        lock.readLock().lock();
+        try {
+            return nodeCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entryCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void reset() {
+        nodeStates = new byte[1024];
+        nodeTops = new int[1024][];
+        children = new ChildTable(1024);
+        nodeCount = 0;
+        entryKeys = new String[1024];
+        entryTexts = new String[1024];
+        entryBookIds = new long[1024];
+        entryPopularity = new long[1024];
+        entryCount = 0;
+        budgetExceeded = false;
+        titleEntryByBookId.clear();
+        authorEntryByBookId.clear();
+        authorEntryByKey.clear();
+
+        newNode();
+        nodeStates[ROOT] = INTERNAL;
+    }
+
+    private int newEntry(String text, Long bookId, long popularity) {
+        int entry = entryCount++;
+        if (entry == entryKeys.length) {
+            int capacity = entryKeys.length * 2;
+            entryKeys = Arrays.copyOf(entryKeys, capacity);
+            entryTexts = Arrays.copyOf(entryTexts, capacity);
+            entryBookIds = Arrays.copyOf(entryBookIds, capacity);
+            entryPopularity = Arrays.copyOf(entryPopularity, capacity);
+        }
+        String key = normalize(text);
+        entryKeys[entry] = key;
+        // 正規化後不變（如中文書名）時共用同一字串
+        entryTexts[entry] = key.equals(text) ? key : text;
+        entryBookIds[entry] = bookId == null ? 0L : bookId;
+        entryPopularity[entry] = popularity;
+        return entry;
+    }
+
+    private int newNode() {
+        int node = nodeCount++;
+        if (node == nodeStates.length) {
+            int capacity = nodeStates.length * 2;
+            nodeStates = Arrays.copyOf(nodeStates, capacity);
+            nodeTops = Arrays.copyOf(nodeTops, capacity);
+        }
+        nodeStates[node] = LEAF;
+        nodeTops[node] = EMPTY;
+        return node;
+    }
+
+    /**
+     * 沿建議的鍵往下加入各節點，遇到已滿的葉節點時先展開
+     */
+    private void insert(int entry) {
+        String key = entryKeys[entry];
+        int node = ROOT;
+        for (int depth = 0; depth < key.length(); depth++) {
+            int child = children.get(node, key.charAt(depth));
+            if (child < 0) {
+                if (nodeCount >= maxNodes) {
+                    // 無法再新增節點，只更新已有的祖先節點
+                    return;
+                }
+                child = newNode();
+                children.put(node, key.charAt(depth), child);
+            }
+            node = child;
+
+            if (nodeStates[node] == LEAF && nodeTops[node].length >= topK) {
+                split(node, depth + 1);
+            }
+            offer(node, entry);
+            if (nodeStates[node] != INTERNAL) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 將已滿的葉節點展開為內部節點，其建議依下一個字元分到新的葉節點
+     * 剩餘節點數不足時改標記為無法展開
+     */
+    private void split(int node, int depth) {
+        int[] entries = nodeTops[node];
+        if (nodeCount + entries.length > maxNodes) {
+            if (!budgetExceeded) {
+                budgetExceeded = true;
+                log.warn("自動完成索引節點數已達上限 {}，部分較長前綴的建議可能不完整", maxNodes);
+            }
+            nodeStates[node] = OVERFLOW;
+            return;
+        }
+        nodeStates[node] = INTERNAL;
+        for (int entry : entries) {
+            String key = entryKeys[entry];
+            if (key.length() == depth) {
+                // 鍵恰好結束於此節點，只保留在此節點的建議中
+                continue;
+            }
+            char next = key.charAt(depth);
+            int child = children.get(node, next);
+            if (child < 0) {
+                child = newNode();
+                children.put(node, next, child);
+            }
+            // 子節點最多分到 topK 筆，不需再展開
+            offer(child, entry);
+        }
+    }
+
+    /**
+     * 借閱次數增加後沿路徑更新各節點的排序
+     */
+    private void promote(int entry) {
+        String key = entryKeys[entry];
+        int node = ROOT;
+        for (int depth = 0; depth < key.length() && nodeStates[node] == INTERNAL; depth++) {
+            node = children.get(node, key.charAt(depth));
+            if (node < 0) {
+                return;
+            }
+            offer(node, entry);
+        }
+    }
+
+    /**
+     * 將建議放入節點的前 topK 筆（已在其中時重新排序）
+     * 借閱次數只增不減，因此被擠出的建議不會再回到前 topK 筆以外的位置之前
+     */
+    private void offer(int node, int entry) {
+        int[] top = nodeTops[node];
+        int position = indexOf(top, entry);
+        if (position < 0) {
+            if (top.length < topK) {
+                top = Arrays.copyOf(top, top.length + 1);
+                nodeTops[node] = top;
+            } else if (!ranksBefore(entry, top[top.length - 1])) {
+                return;
+            }
+            position = top.length - 1;
+            top[position] = entry;
+        }
+        while (position > 0 && ranksBefore(top[position], top[position - 1])) {
+            int previous = top[position - 1];
+            top[position - 1] = top[position];
+            top[position] = previous;
+            position--;
+        }
+    }
+
+    // 借閱次數高者優先，相同時先加入者優先
+    private boolean ranksBefore(int entry, int other) {
+        if (entryPopularity[entry] != entryPopularity[other]) {
+            return entryPopularity[entry] > entryPopularity[other];
+        }
+        return entry < other;
+    }
+
+    private static int indexOf(int[] top, int entry) {
+        for (int i = 0; i < top.length; i++) {
+            if (top[i] == entry) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private BookSuggestion toSuggestion(int entry) {
+        long bookId = entryBookIds[entry];
+        return bookId != 0L
+                ? new BookSuggestion(entryTexts[entry], BookSuggestion.SuggestionType.TITLE, bookId,
+                        entryPopularity[entry])
+                : new BookSuggestion(entryTexts[entry], BookSuggestion.SuggestionType.AUTHOR, null,
+                        entryPopularity[entry]);
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * （父節點, 字元）→ 子節點的開放定址雜湊表，避免每個節點各自配置子節點容器
+     */
+    private static final class ChildTable {
+        private long[] keys;
+        private int[] values;
+        private int size;
+
+        private ChildTable(int capacity) {
+            keys = new long[capacity];
+            values = new int[capacity];
+            Arrays.fill(values, -1);
+        }
+
+        int get(int parent, char c) {
+            long key = key(parent, c);
+            int mask = keys.length - 1;
+            for (int slot = hash(key) & mask; values[slot] >= 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+            }
+            return -1;
+        }
+
+        void put(int parent, char c, int child) {
+            if ((size + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+            }
+            insert(key(parent, c), child);
+            size++;
+        }
+
+        private void insert(long key, int value) {
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (values[slot] >= 0) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[capacity];
+            values = new int[capacity];
+            Arrays.fill(values, -1);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] >= 0) {
+                    insert(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static long key(int parent, char c) {
+            return ((long) parent << 16) | c;
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.library.search;
+
+import com.library.event.BookBorrowedEvent;
+import com.library.event.BookCreatedEvent;
+import com.library.repository.ArchivedBorrowRecordRepository;
+import com.library.repository.BookRepository;
+import com.library.repository.BorrowRecordRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 維護自動完成索引
+ * 啟動後於背景從資料庫重建（含各書籍借閱次數），之後依新增書籍與借書事件增量更新
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SuggestionIndexListener {
+
+    private final SuggestionIndex suggestionIndex;
+    private final BookRepository bookRepository;
+    private final BorrowRecordRepository borrowRecordRepository;
+    private final ArchivedBorrowRecordRepository archivedBorrowRecordRepository;
+
+    @Value("${library.search.rebuild-chunk-size:1000}")
+    private int rebuildChunkSize;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!suggestionIndex.isEnabled()) {
+            log.info("自動完成索引已停用");
+            return;
+        }
+        Thread rebuildThread = new Thread(this::rebuild, "suggestion-index-rebuild");
+        rebuildThread.setDaemon(true);
+        rebuildThread.start();
+    }
+
+    /**
+     * 以書籍ID分段從資料庫重建，重建期間自動完成回傳空列表
+     */
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        suggestionIndex.beginRebuild();
+        try {
+            long afterId = 0L;
+            while (true) {
+                List<BookDocument> documents = bookRepository.findSearchDocumentsAfter(
+                        afterId, PageRequest.of(0, rebuildChunkSize));
+                if (documents.isEmpty()) {
+                    break;
+                }
+
+                long fromId = documents.get(0).getBookId();
+                long toId = documents.get(documents.size() - 1).getBookId();
+                Map<Long, Long> borrowCounts = new HashMap<>();
+                borrowRecordRepository.countBorrowsByBookIdBetween(fromId, toId)
+                        .forEach(count -> borrowCounts.put(count.getBookId(), count.getBorrowCount()));
+                // 已封存的借閱仍計入借閱次數
+                archivedBorrowRecordRepository.countBorrowsByBookIdBetween(fromId, toId)
+                        .forEach(count -> borrowCounts.merge(count.getBookId(), count.getBorrowCount(), Long::sum));
+
+                for (BookDocument document : documents) {
+                    suggestionIndex.add(document.getBookId(), document.getTitle(), document.getAuthor(),
+                            borrowCounts.getOrDefault(document.getBookId(), 0L));
+                }
+                afterId = toId;
+            }
+            suggestionIndex.finishRebuild();
+            log.info("自動完成索引重建完成：{} 筆建議，{} 個節點，耗時 {} ms",
+                    suggestionIndex.size(), suggestionIndex.nodeCount(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            log.error("自動完成索引重建失敗", e);
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onBookCreated(BookCreatedEvent event) {
+        suggestionIndex.add(event.getBookId(), event.getTitle(), event.getAuthor(), 0L);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onBookBorrowed(BookBorrowedEvent event) {
+        suggestionIndex.recordBorrow(event.getBookId());
+    }
+}
@@ -0,0 +1,25 @@
+package com.library.search;
+
+import java.util.List;
+
+/**
+ * 斷詞器
+ * 輸入皆為已正規化（小寫）的文字
+ */
+public interface Tokenizer {
+
+    /**
+     * 建立索引時產生的詞項（不重複）
+     */
+    List<String> indexTerms(String text);
+
+    /**
+     * 查詢時產生的詞項，比對方式由各詞項自行指定
+     */
+    List<QueryTerm> queryTerms(String text);
+
+    /**
+     * 模糊查詢時產生的條件：每個條件是一組詞項，文件符合其中任一詞項即滿足該條件，所有條件皆需滿足
+     */
+    List<List<QueryTerm>> fuzzyQueryTerms(String text);
+}
@@ -0,0 +1,83 @@
+package com.library.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 詞典層級的 n-gram 索引（1 到 3 字元），用來找出包含某個片段的詞項
+ * 大小只與不重複詞項數量有關，不隨書籍數量成長
+ */
+final class VocabularyIndex {
+
+    private static final int MAX_GRAM = 3;
+
+    private final List<String> terms = new ArrayList<>();
+    private final Map<String, PostingList> grams = new HashMap<>();
+
+    void add(String term) {
+        int id = terms.size();
+        terms.add(term);
+        for (String gram : grams(term)) {
+            grams.computeIfAbsent(gram, g -> new PostingList()).add(id);
+        }
+    }
+
+    /**
+     * 找出包含指定片段的所有詞項編號（依加入順序編號）
+     */
+    int[] termsContaining(String fragment) {
+        if (fragment.length() <= MAX_GRAM) {
+            PostingList ids = grams.get(fragment);
+            return ids == null ? new int[0] : ids.toArray();
+        }
+
+        List<PostingList> lists = new ArrayList<>();
+        for (String gram : grams(fragment)) {
+            if (gram.length() != MAX_GRAM) {
+                continue;
+            }
+            PostingList ids = grams.get(gram);
+            if (ids == null) {
+                return new int[0];
+            }
+            lists.add(ids);
+        }
+        lists.sort(Comparator.comparingInt(PostingList::size));
+
+        PostingList smallest = lists.get(0);
+        int[] result = new int[smallest.size()];
+        int count = 0;
+        for (int i = 0; i < smallest.size(); i++) {
+            int id = smallest.get(i);
+            boolean inAll = true;
+            for (int j = 1; j < lists.size() && inAll; j++) {
+                inAll = lists.get(j).contains(id);
+            }
+            if (inAll && terms.get(id).contains(fragment)) {
+                result[count++] = id;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    void clear() {
+        terms.clear();
+        grams.clear();
+    }
+
+    private static Set<String> grams(String text) {
+        Set<String> result = new LinkedHashSet<>();
+        for (int n = 1; n <= MAX_GRAM; n++) {
+            for (int i = 0; i + n <= text.length(); i++) {
+                result.add(text.substring(i, i + n));
+            }
+        }
+        return result;
+    }
+}
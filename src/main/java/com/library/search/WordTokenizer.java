@@ -0,0 +1,56 @@
+package com.library.search;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 以非字母數字字元切分的斷詞器
+ * 連續的字母或數字視為一個詞，查詢詞以前綴比對，例如 "prog" 可找到 "programming"
+ * 模糊查詢以整個詞比對編輯距離，中文與拉丁文字相連時視為同一個詞
+ */
+public class WordTokenizer implements Tokenizer {
+
+    @Override
+    public List<String> indexTerms(String text) {
+        return new ArrayList<>(split(text));
+    }
+
+    @Override
+    public List<QueryTerm> queryTerms(String text) {
+        List<QueryTerm> terms = new ArrayList<>();
+        for (String word : split(text)) {
+            terms.add(QueryTerm.prefix(word));
+        }
+        return terms;
+    }
+
+    @Override
+    public List<List<QueryTerm>> fuzzyQueryTerms(String text) {
+        List<List<QueryTerm>> terms = new ArrayList<>();
+        for (String word : split(text)) {
+            terms.add(List.of(QueryTerm.fuzzy(word, FuzzyMatch.maxEdits(word, false))));
+        }
+        return terms;
+    }
+
+    private Set<String> split(String text) {
+        Set<String> words = new LinkedHashSet<>();
+        int start = -1;
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.isLetterOrDigit(text.charAt(i))) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                words.add(text.substring(start, i));
+                start = -1;
+            }
+        }
+        if (start >= 0) {
+            words.add(text.substring(start));
+        }
+        return words;
+    }
+}
@@ -0,0 +1,126 @@
+package com.library.service;
+
+import com.library.event.BookAvailabilityChangedEvent;
+import com.library.repository.BookCopyRepository;
+import com.library.search.SearchResultCache;
+import jakarta.annotation.PreDestroy;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 逐冊追蹤館藏的可借數量快取
+ * 借還書交易只更新 book_items，提交後由背景執行緒以新交易重新計算 book_copies.available_copies，再淘汰搜尋快取；
+ * 提交的執行緒此時仍持有連線，不在該執行緒另開交易，避免大量借書時連線池被等待第二條連線的交易佔滿。
+ * 同一館藏尚未執行的重新計算只保留一次，重新計算是冪等的，多次提交合併為一次也不會算錯。
+ * 重新計算失敗時以指數退避（initial-backoff * 2^(n-1)，最多 max-backoff）再排入，最多嘗試 max-attempts 次；
+ * 退避期間同一館藏的新變動併入該次重試。
+ */
+@Component
+@Slf4j
+public class BookCopyAvailabilityRefresher {
+
+    private final BookCopyRepository bookCopyRepository;
+    private final SearchResultCache searchResultCache;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    private final Set<CopyKey> pending = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "availability-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public BookCopyAvailabilityRefresher(BookCopyRepository bookCopyRepository, SearchResultCache searchResultCache,
+            PlatformTransactionManager transactionManager,
+            @Value("${library.borrow.availability-refresh.max-attempts:10}") int maxAttempts,
+            @Value("${library.borrow.availability-refresh.initial-backoff:1s}") Duration initialBackoff,
+            @Value("${library.borrow.availability-refresh.max-backoff:5m}") Duration maxBackoff) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("library.borrow.availability-refresh.max-attempts 至少為 1");
+        }
+        this.bookCopyRepository = bookCopyRepository;
+        this.searchResultCache = searchResultCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoff.toMillis();
+        this.maxBackoffMillis = maxBackoff.toMillis();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onAvailabilityChanged(BookAvailabilityChangedEvent event) {
+        if (!event.isItemTracked()) {
+            return;
+        }
+        CopyKey key = new CopyKey(event.getBookId(), event.getLibraryId());
+        if (pending.add(key)) {
+            executor.execute(() -> refresh(key, 1));
+        }
+    }
+
+    /**
+     * 等待已排入的重新計算完成（不含尚在退避中的重試）
+     */
+    void awaitIdle() throws InterruptedException, ExecutionException {
+        executor.submit(() -> { }).get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void refresh(CopyKey key, int attempt) {
+        // 先移除再計算：計算期間提交的變動會再排入一次
+        pending.remove(key);
+        try {
+            transactionTemplate.executeWithoutResult(status -> bookCopyRepository.refreshItemTrackedAvailability(
+                    key.bookId, key.libraryId, LocalDateTime.now()));
+            // 淘汰重新計算前可能已寫回快取的舊數量
+            searchResultCache.invalidateForAvailabilityChange(key.bookId, key.libraryId);
+        } catch (RuntimeException e) {
+            if (attempt >= maxAttempts) {
+                log.error("重新計算書籍 {} 於圖書館 {} 的可借數量失敗 {} 次，放棄重試", key.bookId, key.libraryId,
+                        attempt, e);
+                return;
+            }
+            long delay = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 20));
+            log.warn("重新計算書籍 {} 於圖書館 {} 的可借數量失敗，{} ms 後第 {} 次重試", key.bookId, key.libraryId,
+                    delay, attempt + 1, e);
+            // 已有新的變動排入時由該次重新計算，不另外排入
+            if (pending.add(key)) {
+                executor.schedule(() -> refresh(key, attempt + 1), delay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    @EqualsAndHashCode
+    private static final class CopyKey {
+        private final Long bookId;
+        private final Long libraryId;
+
+        private CopyKey(Long bookId, Long libraryId) {
+            this.bookId = bookId;
+            this.libraryId = libraryId;
+        }
+    }
+}
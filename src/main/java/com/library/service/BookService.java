@@ -2,27 +2,52 @@ package com.library.service;
 
 import com.library.dto.AddBookCopyRequest;
 import com.library.dto.AddBookCopyResponse;
+import com.library.dto.BookSearchPage;
 import com.library.dto.BookSearchResponse;
+import com.library.dto.BookStockRow;
+import com.library.dto.BookSuggestion;
 import com.library.dto.CreateBookRequest;
 import com.library.dto.CreateBookResponse;
+import com.library.dto.FacetedSearchResponse;
+import com.library.dto.SearchFacets;
 import com.library.entity.Book;
 import com.library.entity.BookCopy;
+import com.library.entity.BookItem;
 import com.library.entity.Library;
 import com.library.entity.User;
+import com.library.event.BookCopiesAddedEvent;
+import com.library.event.BookCreatedEvent;
 import com.library.exception.InsufficientPermissionException;
 import com.library.repository.BookCopyRepository;
+import com.library.repository.BookItemRepository;
 import com.library.repository.BookRepository;
 import com.library.repository.LibraryRepository;
+import com.library.search.BookSearchEngine;
+import com.library.search.BookSortKey;
+import com.library.search.SearchCursor;
+import com.library.search.SearchMode;
+import com.library.search.SearchReadPath;
+import com.library.search.SearchResultCache;
+import com.library.search.StockFilter;
+import com.library.search.SuggestionIndex;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -32,7 +57,18 @@ public class BookService {
     
     private final BookRepository bookRepository;
     private final BookCopyRepository bookCopyRepository;
+    private final BookItemRepository bookItemRepository;
     private final LibraryRepository libraryRepository;
+    private final BookSearchEngine bookSearchEngine;
+    private final SearchResultCache searchResultCache;
+    private final SuggestionIndex suggestionIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    
+    @Value("${library.search.engine:INDEX}")
+    private SearchMode searchMode;
+    
+    @Value("${library.search.read-path:ENTITY}")
+    private SearchReadPath defaultReadPath;
     
     /**
      * 新增書籍至系統（館員專用）
@@ -59,6 +95,10 @@ public class BookService {
         
         log.info("創建新書籍成功：ID={}, 書名={}", book.getId(), book.getTitle());
         
+        // 交易提交後更新搜尋索引
+        eventPublisher.publishEvent(new BookCreatedEvent(
+                book.getId(), book.getTitle(), book.getAuthor(), book.getPublishYear(), book.getType()));
+        
         return new CreateBookResponse(
                 book.getId(),
                 book.getTitle(),
@@ -99,19 +139,26 @@ public class BookService {
         BookCopy bookCopy;
         if (existingCopy != null) {
             // 如果已存在副本，增加數量
-            existingCopy.setTotalCopies(existingCopy.getTotalCopies() + request.getCopies());
+            int previousTotal = existingCopy.getTotalCopies();
+            existingCopy.setTotalCopies(previousTotal + request.getCopies());
             existingCopy.setAvailableCopies(existingCopy.getAvailableCopies() + request.getCopies());
             bookCopy = bookCopyRepository.save(existingCopy);
+            if (bookCopy.isItemTracked()) {
+                createBookItems(bookCopy, previousTotal, request.getCopies());
+            }
             log.info("更新現有書籍副本：總數={}, 可借={}", 
                     bookCopy.getTotalCopies(), bookCopy.getAvailableCopies());
         } else {
-            // 如果沒有副本，創建新的副本記錄
+            // 如果沒有副本，創建新的副本記錄，並為每一冊建立條碼
             bookCopy = createBookCopy(book, library, request.getCopies());
             bookCopy = bookCopyRepository.save(bookCopy);
+            createBookItems(bookCopy, 0, request.getCopies());
             log.info("創建新書籍副本：書籍ID={}, 圖書館ID={}, 副本數={}", 
                     book.getId(), library.getId(), request.getCopies());
         }
         
+        eventPublisher.publishEvent(new BookCopiesAddedEvent(book.getId(), library.getId(), request.getCopies()));
+        
         return new AddBookCopyResponse(
                 book.getId(),
                 book.getTitle(),
@@ -150,17 +197,112 @@ public class BookService {
     }
     
     public List<BookSearchResponse> searchBooks(String title, String author, Integer year, Long libraryId, int page, int size) {
-        log.info("搜尋書籍：title={}, author={}, year={}, libraryId={}, page={}, size={}", title, author, year, libraryId, page, size);
+        return searchBooks(title, author, year, libraryId, page, size, defaultReadPath);
+    }
+    
+    /**
+     * 搜尋書籍，並指定結果的讀取方式（供逐次請求比較兩種讀取方式）
+     */
+    public List<BookSearchResponse> searchBooks(String title, String author, Integer year, Long libraryId,
+            int page, int size, SearchReadPath readPath) {
+        return searchBooks(title, author, year, libraryId, page, size, readPath, StockFilter.none());
+    }
+    
+    /**
+     * 搜尋書籍，可附加館藏條件（限定圖書館、僅列出可借書籍）
+     * 館藏條件於 SQL 中判斷，因此有館藏條件時不使用記憶體索引
+     *
+     * @param readPath 讀取方式，null 表示使用設定值
+     */
+    public List<BookSearchResponse> searchBooks(String title, String author, Integer year, Long libraryId,
+            int page, int size, SearchReadPath readPath, StockFilter stockFilter) {
+        return searchBooks(title, author, year, libraryId, page, size, readPath, stockFilter, false);
+    }
+    
+    /**
+     * 搜尋書籍，fuzzy 為 true 時書名與作者容許少量錯字
+     * 模糊搜尋由記憶體索引的詞典展開相近詞項，不逐筆比對；索引未就緒時退回一般（不容錯）搜尋。
+     * 館藏條件只能於 SQL 中判斷，無法與模糊搜尋併用
+     *
+     * @param readPath 讀取方式，null 表示使用設定值
+     */
+    public List<BookSearchResponse> searchBooks(String title, String author, Integer year, Long libraryId,
+            int page, int size, SearchReadPath readPath, StockFilter stockFilter, boolean fuzzy) {
+        if (fuzzy && !stockFilter.isEmpty()) {
+            throw new IllegalArgumentException("模糊搜尋不支援館藏條件（availableOnly、libraryIds）");
+        }
+        StockFilter effectiveFilter = stockFilter.isEmpty() ? stockFilter : stockFilter.withLibrary(libraryId);
+        SearchReadPath path = readPath != null ? readPath : defaultReadPath;
+        log.info("搜尋書籍：title={}, author={}, year={}, libraryId={}, page={}, size={}, readPath={}, stock={}, fuzzy={}",
+                title, author, year, libraryId, page, size, path, stockFilter, fuzzy);
         
-        Pageable pageable = PageRequest.of(page, size);
-        List<Book> books;
+        SearchResultCache.Key cacheKey = SearchResultCache.key(title, author, year, libraryId, stockFilter, fuzzy,
+                page, size);
+        Optional<List<BookSearchResponse>> cached = searchResultCache.get(cacheKey);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
         
-        if (libraryId != null) {
-            books = bookRepository.searchBooksWithLibrary(title, author, year, libraryId, pageable);
+        long stamp = searchResultCache.stamp();
+        List<BookSearchResponse> results;
+        if (!stockFilter.isEmpty()) {
+            List<Long> bookIds = findBookIdsInStock(title, author, year, effectiveFilter, page, size);
+            results = path == SearchReadPath.PROJECTION
+                    ? projectSearchResponses(bookIds)
+                    : toSearchResponses(loadBooksInOrder(bookIds));
+        } else if (path == SearchReadPath.PROJECTION) {
+            results = projectSearchResponses(findBookIds(title, author, year, libraryId, page, size, fuzzy));
         } else {
-            books = bookRepository.searchBooks(title, author, year, pageable);
+            results = toSearchResponses(findBooks(title, author, year, libraryId, page, size, fuzzy));
+        }
+        searchResultCache.put(cacheKey, results, stamp);
+        return results;
+    }
+    
+    /**
+     * 搜尋書籍並附上分面統計（出版年份、類型、圖書館）
+     * 分面統計涵蓋所有符合條件的書籍；索引可用時以點陣圖交集計算，否則以 GROUP BY 查詢
+     */
+    public FacetedSearchResponse searchBooksWithFacets(String title, String author, Integer year, Long libraryId,
+            int page, int size) {
+        List<BookSearchResponse> books = searchBooks(title, author, year, libraryId, page, size);
+        return new FacetedSearchResponse(books, countFacets(title, author, year, libraryId));
+    }
+    
+    /**
+     * 以游標分頁搜尋書籍
+     * 從上一頁最後一筆的（排序鍵, 書籍ID）之後接續查詢，不需略過前面的資料，翻頁期間新增書籍也不會造成重複或遺漏
+     */
+    public BookSearchPage searchBooksByCursor(String title, String author, Integer year, Long libraryId,
+            SearchCursor cursor, int size) {
+        log.info("游標搜尋書籍：title={}, author={}, year={}, libraryId={}, sort={}, size={}",
+                title, author, year, libraryId, cursor.getSortKey(), size);
+        
+        // 多取一筆以判斷是否還有下一頁
+        List<Book> books = findBooksAfter(title, author, year, libraryId, cursor, size + 1);
+        
+        String nextCursor = null;
+        if (books.size() > size) {
+            books = books.subList(0, size);
+            Book last = books.get(size - 1);
+            nextCursor = SearchCursor.after(cursor.getSortKey(), last.getId(), last.getTitle()).encode();
         }
         
+        return new BookSearchPage(toSearchResponses(books), nextCursor);
+    }
+    
+    /**
+     * 書名與作者的前綴自動完成，依借閱次數排序
+     * 由記憶體索引提供，索引重建期間回傳空列表
+     */
+    public List<BookSuggestion> suggest(String prefix, int limit) {
+        return suggestionIndex.suggest(prefix, Math.min(limit, suggestionIndex.getTopK()));
+    }
+    
+    /**
+     * 組裝書籍清單的搜尋結果（含各圖書館館藏）
+     */
+    private List<BookSearchResponse> toSearchResponses(List<Book> books) {
         if (books.isEmpty()) {
             return new ArrayList<>();
         }
@@ -180,6 +322,152 @@ public class BookService {
                 .collect(Collectors.toList());
     }
     
+    /**
+     * 查詢符合條件的書籍
+     * 索引模式下優先使用搜尋引擎，索引未就緒或無法回答時退回 JPQL 查詢
+     */
+    private List<Book> findBooks(String title, String author, Integer year, Long libraryId, int page, int size,
+            boolean fuzzy) {
+        if (searchMode == SearchMode.INDEX && bookSearchEngine.isReady()) {
+            Optional<List<Long>> bookIds = searchIndex(title, author, year, libraryId, page, size, fuzzy);
+            if (bookIds.isPresent()) {
+                return loadBooksInOrder(bookIds.get());
+            }
+        }
+        
+        Pageable pageable = PageRequest.of(page, size);
+        if (libraryId != null) {
+            return bookRepository.searchBooksWithLibrary(title, author, year, libraryId, pageable);
+        }
+        return bookRepository.searchBooks(title, author, year, pageable);
+    }
+    
+    /**
+     * 查詢符合條件的書籍ID（投影讀取方式使用，不載入實體）
+     */
+    private List<Long> findBookIds(String title, String author, Integer year, Long libraryId, int page, int size,
+            boolean fuzzy) {
+        if (searchMode == SearchMode.INDEX && bookSearchEngine.isReady()) {
+            Optional<List<Long>> bookIds = searchIndex(title, author, year, libraryId, page, size, fuzzy);
+            if (bookIds.isPresent()) {
+                return bookIds.get();
+            }
+        }
+        return bookRepository.searchBookIds(title, author, year, libraryId, PageRequest.of(page, size));
+    }
+    
+    private Optional<List<Long>> searchIndex(String title, String author, Integer year, Long libraryId,
+            int page, int size, boolean fuzzy) {
+        return fuzzy
+                ? bookSearchEngine.searchFuzzy(title, author, year, libraryId, page * size, size)
+                : bookSearchEngine.search(title, author, year, libraryId, page * size, size);
+    }
+    
+    /**
+     * 計算分面統計，索引無法回答時退回資料庫 GROUP BY 查詢
+     */
+    private SearchFacets countFacets(String title, String author, Integer year, Long libraryId) {
+        if (searchMode == SearchMode.INDEX && bookSearchEngine.isReady()) {
+            Optional<SearchFacets> facets = bookSearchEngine.facets(title, author, year, libraryId);
+            if (facets.isPresent()) {
+                return facets.get();
+            }
+        }
+        
+        Map<Integer, Long> years = new TreeMap<>();
+        bookRepository.countByPublishYear(title, author, year, libraryId)
+                .forEach(count -> years.put(count.getPublishYear(), count.getBookCount()));
+        Map<Book.BookType, Long> types = new EnumMap<>(Book.BookType.class);
+        bookRepository.countByType(title, author, year, libraryId)
+                .forEach(count -> types.put(count.getType(), count.getBookCount()));
+        Map<Long, Long> libraries = new TreeMap<>();
+        bookRepository.countByLibrary(title, author, year, libraryId)
+                .forEach(count -> libraries.put(count.getLibraryId(), count.getBookCount()));
+        
+        long totalBooks = years.values().stream().mapToLong(Long::longValue).sum();
+        return new SearchFacets(totalBooks, years, types, libraries);
+    }
+    
+    /**
+     * 查詢符合館藏條件的書籍ID
+     */
+    private List<Long> findBookIdsInStock(String title, String author, Integer year, StockFilter stockFilter,
+            int page, int size) {
+        boolean allLibraries = stockFilter.getLibraryIds().isEmpty();
+        // IN 不接受空集合，不限圖書館時以佔位值代替（allLibraries 為 true 時不會比對）
+        List<Long> libraryIds = allLibraries ? List.of(0L) : stockFilter.getLibraryIds();
+        return bookRepository.searchBookIdsInStock(title, author, year, libraryIds, allLibraries,
+                stockFilter.isAvailableOnly(), BookCopy.CopyStatus.ACTIVE, PageRequest.of(page, size));
+    }
+    
+    /**
+     * 以單一投影查詢組裝搜尋結果，順序與 bookIds 相同
+     */
+    private List<BookSearchResponse> projectSearchResponses(List<Long> bookIds) {
+        if (bookIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        Map<Long, BookSearchResponse> responsesById = new LinkedHashMap<>();
+        for (BookStockRow row : bookRepository.findStockRowsByBookIds(bookIds, BookCopy.CopyStatus.ACTIVE)) {
+            BookSearchResponse response = responsesById.computeIfAbsent(row.getBookId(), id -> new BookSearchResponse(
+                    row.getBookId(), row.getTitle(), row.getAuthor(), row.getPublishYear(), row.getType(),
+                    row.getIsbn(), row.getPublisher(), new ArrayList<>()));
+            // 無館藏或圖書館已停用的列只帶書籍資訊
+            if (row.getLibraryId() != null) {
+                response.getLibraries().add(new BookSearchResponse.LibraryStockInfo(
+                        row.getLibraryId(),
+                        row.getLibraryName(),
+                        row.getLibraryAddress(),
+                        row.getTotalCopies(),
+                        row.getAvailableCopies(),
+                        row.getAvailableCopies() > 0
+                ));
+            }
+        }
+        
+        return bookIds.stream()
+                .map(responsesById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+    
+    /**
+     * 查詢游標之後的書籍
+     * 依書籍ID排序時可由索引回答，依書名排序則使用 JPQL seek 查詢
+     */
+    private List<Book> findBooksAfter(String title, String author, Integer year, Long libraryId,
+            SearchCursor cursor, int limit) {
+        if (cursor.getSortKey() == BookSortKey.ID) {
+            if (searchMode == SearchMode.INDEX && bookSearchEngine.isReady()) {
+                Optional<List<Long>> bookIds = bookSearchEngine.searchAfter(
+                        title, author, year, libraryId, cursor.getLastId(), limit);
+                if (bookIds.isPresent()) {
+                    return loadBooksInOrder(bookIds.get());
+                }
+            }
+            return bookRepository.searchBooksAfterId(
+                    title, author, year, libraryId, cursor.getLastId(), PageRequest.of(0, limit));
+        }
+        return bookRepository.searchBooksAfterTitle(
+                title, author, year, libraryId, cursor.getLastTitle(), cursor.getLastId(), PageRequest.of(0, limit));
+    }
+    
+    /**
+     * 依索引回傳的順序載入書籍
+     */
+    private List<Book> loadBooksInOrder(List<Long> bookIds) {
+        if (bookIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Book> booksById = bookRepository.findAllById(bookIds).stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+        return bookIds.stream()
+                .map(booksById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+    
     /**
      * 創建新書籍
      */
@@ -204,8 +492,20 @@ public class BookService {
         bookCopy.setTotalCopies(copies);
         bookCopy.setAvailableCopies(copies);
         bookCopy.setStatus(BookCopy.CopyStatus.ACTIVE);
+        bookCopy.setItemTracked(true);
         return bookCopy;
     }
+
+    /**
+     * 為逐冊追蹤的館藏建立實體書，冊號接續既有的總數
+     */
+    private void createBookItems(BookCopy bookCopy, int existingItems, int copies) {
+        List<BookItem> items = new ArrayList<>();
+        for (int i = 1; i <= copies; i++) {
+            items.add(new BookItem(bookCopy, BookItem.barcodeFor(bookCopy.getId(), existingItems + i)));
+        }
+        bookItemRepository.saveAll(items);
+    }
     
     /**
      * 組裝搜尋回應
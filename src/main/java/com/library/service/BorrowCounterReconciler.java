@@ -0,0 +1,102 @@
+package com.library.service;
+
+import com.library.entity.Book;
+import com.library.repository.BorrowRecordRepository;
+import com.library.repository.UserBorrowCounterRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 定期核對用戶借閱計數器與 borrow_records 的借閱中數量
+ *
+ * 先以一次彙總查詢找出不一致的計數器；彙總與計數器讀取之間可能有借還書，
+ * 所以每個疑似不一致的計數器再於各自的交易中鎖定後重新計算，確認仍不一致才修正。
+ * 用戶尚未建立的計數器不需核對，第一次借閱時會由借閱記錄建立。
+ */
+@Component
+@Slf4j
+public class BorrowCounterReconciler {
+
+    private final UserBorrowCounterRepository userBorrowCounterRepository;
+    private final BorrowRecordRepository borrowRecordRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter corrections;
+
+    @Autowired
+    public BorrowCounterReconciler(UserBorrowCounterRepository userBorrowCounterRepository,
+            BorrowRecordRepository borrowRecordRepository, PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry) {
+        this.userBorrowCounterRepository = userBorrowCounterRepository;
+        this.borrowRecordRepository = borrowRecordRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.corrections = Counter.builder("library.borrow.counters.corrected")
+                .description("核對後修正的借閱計數器數量")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 核對所有計數器，回傳修正的數量
+     */
+    @Scheduled(cron = "${library.borrow.counters.reconcile-cron:0 30 3 * * ?}")
+    public int reconcile() {
+        Map<CounterKey, Long> actual = new HashMap<>();
+        for (BorrowRecordRepository.UserActiveBorrowCount row
+                : borrowRecordRepository.countCurrentBorrowsGroupByUserAndBookType()) {
+            actual.put(new CounterKey(row.getUserId(), row.getBookType()), row.getActiveCount());
+        }
+
+        int corrected = 0;
+        for (UserBorrowCounterRepository.CounterRow counter : userBorrowCounterRepository.findAllRows()) {
+            long expected = actual.getOrDefault(new CounterKey(counter.getUserId(), counter.getBookType()), 0L);
+            if (counter.getActiveCount() != expected && recount(counter)) {
+                corrected++;
+            }
+        }
+        if (corrected > 0) {
+            log.warn("借閱計數器核對完成，修正 {} 筆", corrected);
+        } else {
+            log.debug("借閱計數器核對完成，無不一致");
+        }
+        return corrected;
+    }
+
+    /**
+     * 鎖定計數器後依借閱記錄重新計算，仍不一致時修正
+     */
+    private boolean recount(UserBorrowCounterRepository.CounterRow row) {
+        Boolean changed = transactionTemplate.execute(status -> userBorrowCounterRepository
+                .findByIdForUpdate(row.getId())
+                .map(counter -> {
+                    int activeCount = (int) borrowRecordRepository.countCurrentBorrowsByUserAndBookType(
+                            row.getUserId(), row.getBookType());
+                    if (counter.getActiveCount() == activeCount) {
+                        return false;
+                    }
+                    log.warn("借閱計數器不一致：用戶 {} {} 計數 {}，借閱記錄 {}",
+                            row.getUserId(), row.getBookType(), counter.getActiveCount(), activeCount);
+                    counter.setActiveCount(activeCount);
+                    corrections.increment();
+                    return true;
+                })
+                .orElse(false));
+        return Boolean.TRUE.equals(changed);
+    }
+
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static final class CounterKey {
+        private final Long userId;
+        private final Book.BookType bookType;
+    }
+}
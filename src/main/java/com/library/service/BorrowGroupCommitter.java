@@ -0,0 +1,284 @@
+package com.library.service;
+
+import com.library.dto.BorrowBookRequest;
+import com.library.dto.BorrowBookResponse;
+import com.library.entity.User;
+import com.library.exception.BorrowOverloadedException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 熱門書籍副本的借書合併提交（group commit）
+ *
+ * 啟用時，同一書籍副本的借書請求先放入記憶體佇列，每個副本同時只有一個工作，每次取出最多 max-batch-size 筆，
+ * 在同一交易中依庫存依序配給（一次更新可借數量），提交後再逐筆回覆各自的結果；
+ * 處理完一批後若還有請求，該副本重新排到工作佇列尾端，持續熱門的副本與其他副本輪流使用工作執行緒；
+ * 大量用戶同時借同一副本時，N 個互相等待資料列鎖的交易變成每批一個交易。
+ * 整批交易失敗時，該批請求改以一般借書流程逐筆處理。未啟用時直接使用 BorrowService.borrowBook。
+ *
+ * 資源都有上限：最多 workers 個工作執行緒、最多 max-copies 個副本同時有請求（含處理中），每個副本最多排 max-queue-size 筆，
+ * 超過時立即以 BorrowOverloadedException 拒絕；請求方最多等待 timeout，逾時仍在排隊的請求會移出佇列不再處理。
+ */
+@Component
+@Slf4j
+public class BorrowGroupCommitter {
+
+    private final BorrowService borrowService;
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final int maxCopies;
+    private final int maxQueueSize;
+    private final Duration timeout;
+
+    private final Map<Long, CopyQueue> queues = new ConcurrentHashMap<>();
+    private final AtomicInteger activeCopies = new AtomicInteger();
+    private final ThreadPoolExecutor workers;
+    private final DistributionSummary batchSizes;
+
+    @Autowired
+    public BorrowGroupCommitter(BorrowService borrowService, MeterRegistry meterRegistry,
+            @Value("${library.borrow.group-commit.enabled:false}") boolean enabled,
+            @Value("${library.borrow.group-commit.max-batch-size:200}") int maxBatchSize,
+            @Value("${library.borrow.group-commit.workers:8}") int workers,
+            @Value("${library.borrow.group-commit.max-copies:256}") int maxCopies,
+            @Value("${library.borrow.group-commit.max-queue-size:1000}") int maxQueueSize,
+            @Value("${library.borrow.group-commit.timeout:10s}") Duration timeout) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("library.borrow.group-commit.max-batch-size 至少為 1");
+        }
+        if (workers < 1) {
+            throw new IllegalArgumentException("library.borrow.group-commit.workers 至少為 1");
+        }
+        if (maxCopies < 1) {
+            throw new IllegalArgumentException("library.borrow.group-commit.max-copies 至少為 1");
+        }
+        if (maxQueueSize < 1) {
+            throw new IllegalArgumentException("library.borrow.group-commit.max-queue-size 至少為 1");
+        }
+        if (timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException("library.borrow.group-commit.timeout 必須大於 0");
+        }
+        this.borrowService = borrowService;
+        this.enabled = enabled;
+        this.maxBatchSize = maxBatchSize;
+        this.maxCopies = maxCopies;
+        this.maxQueueSize = maxQueueSize;
+        this.timeout = timeout;
+
+        // 每個有請求的副本同時只有一個工作，工作佇列最多 max-copies 個工作，由 activeCopies 控制，重新排隊不會被拒絕
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "borrow-group-commit-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.batchSizes = DistributionSummary.builder("library.borrow.group-commit.batch-size")
+                .description("合併提交每批處理的借書請求數")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 借書；啟用合併提交時等待所屬批次提交後回傳結果，例外與 BorrowService.borrowBook 相同，
+     * 另外在排隊已滿或等待逾時時拋出 BorrowOverloadedException
+     */
+    public BorrowBookResponse borrowBook(BorrowBookRequest request, User user) {
+        if (!enabled) {
+            return borrowService.borrowBook(request, user);
+        }
+        PendingBorrow pending = new PendingBorrow(user);
+        CopyQueue queue = enqueue(request.getBookCopyId(), pending);
+        try {
+            return pending.future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("合併借書失敗", e.getCause());
+        } catch (TimeoutException e) {
+            throw timedOut(queue, pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw timedOut(queue, pending);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    private CopyQueue enqueue(Long bookCopyId, PendingBorrow pending) {
+        while (true) {
+            CopyQueue queue = queues.computeIfAbsent(bookCopyId, CopyQueue::new);
+            synchronized (queue) {
+                // 佇列清空後已從 map 移除，改用新的佇列
+                if (queue.closed) {
+                    continue;
+                }
+                if (queue.pending.size() >= maxQueueSize) {
+                    throw new BorrowOverloadedException("目前借閱此書的請求過多，請稍後再試");
+                }
+                if (queue.draining) {
+                    queue.pending.add(pending);
+                    return queue;
+                }
+                // 新的副本佇列：超過同時有請求的副本數上限或工作無法送出時，佇列中沒有其他請求，直接關閉佇列
+                if (activeCopies.incrementAndGet() > maxCopies) {
+                    close(queue);
+                    throw new BorrowOverloadedException("目前借閱請求過多，請稍後再試");
+                }
+                try {
+                    workers.execute(() -> drain(queue));
+                } catch (RejectedExecutionException e) {
+                    close(queue);
+                    throw new BorrowOverloadedException("目前借閱請求過多，請稍後再試");
+                }
+                queue.pending.add(pending);
+                queue.draining = true;
+                return queue;
+            }
+        }
+    }
+
+    /**
+     * 等待逾時：仍在排隊的請求移出佇列不再處理；已在處理中的批次無法取消，結果以借閱記錄為準
+     */
+    private BorrowOverloadedException timedOut(CopyQueue queue, PendingBorrow pending) {
+        boolean removed;
+        synchronized (queue) {
+            removed = queue.pending.remove(pending);
+        }
+        log.warn("書籍副本 {} 合併借書等待逾時（{}），請求{}", queue.bookCopyId, timeout, removed ? "已移出佇列" : "仍在處理中");
+        return new BorrowOverloadedException(removed
+                ? "目前借閱請求過多，請稍後再試"
+                : "借閱請求處理逾時，請稍後查詢借閱記錄確認是否借閱成功");
+    }
+
+    /**
+     * 處理副本的一批請求；還有請求時重新排到工作佇列尾端，不連續佔用工作執行緒
+     */
+    private void drain(CopyQueue queue) {
+        List<PendingBorrow> batch = new ArrayList<>();
+        synchronized (queue) {
+            while (!queue.pending.isEmpty() && batch.size() < maxBatchSize) {
+                batch.add(queue.pending.poll());
+            }
+        }
+        // 排隊的請求可能都已逾時移出
+        if (!batch.isEmpty()) {
+            process(queue.bookCopyId, batch);
+        }
+        synchronized (queue) {
+            if (queue.pending.isEmpty()) {
+                close(queue);
+                return;
+            }
+            try {
+                workers.execute(() -> drain(queue));
+            } catch (RejectedExecutionException e) {
+                // 只有關閉時會拒絕
+                queue.pending.forEach(pending -> pending.future.completeExceptionally(
+                        new BorrowOverloadedException("目前借閱請求過多，請稍後再試")));
+                queue.pending.clear();
+                close(queue);
+            }
+        }
+    }
+
+    // 呼叫端持有 queue 的鎖
+    private void close(CopyQueue queue) {
+        queue.closed = true;
+        queues.remove(queue.bookCopyId, queue);
+        activeCopies.decrementAndGet();
+    }
+
+    private void process(Long bookCopyId, List<PendingBorrow> batch) {
+        batchSizes.record(batch.size());
+        try {
+            borrowService.borrowGroup(bookCopyId, batch);
+        } catch (RuntimeException e) {
+            log.warn("書籍副本 {} 合併借書失敗，{} 筆請求改為逐筆借書", bookCopyId, batch.size(), e);
+            for (PendingBorrow pending : batch) {
+                try {
+                    pending.succeed(borrowService.borrowBook(new BorrowBookRequest(bookCopyId), pending.user));
+                } catch (RuntimeException failure) {
+                    pending.fail(failure);
+                }
+            }
+        }
+        // 交易提交後才回覆，請求方看到成功時借閱記錄已寫入
+        batch.forEach(PendingBorrow::complete);
+    }
+
+    /**
+     * 等待合併提交的借書請求；結果於交易中設定，提交後才回覆給請求方
+     */
+    public static final class PendingBorrow {
+        @Getter
+        private final User user;
+        private final CompletableFuture<BorrowBookResponse> future = new CompletableFuture<>();
+        private BorrowBookResponse response;
+        private RuntimeException failure;
+
+        PendingBorrow(User user) {
+            this.user = user;
+        }
+
+        void succeed(BorrowBookResponse response) {
+            this.response = response;
+            this.failure = null;
+        }
+
+        void fail(RuntimeException failure) {
+            this.response = null;
+            this.failure = failure;
+        }
+
+        void reset() {
+            this.response = null;
+            this.failure = null;
+        }
+
+        private void complete() {
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else {
+                future.complete(response);
+            }
+        }
+    }
+
+    private static final class CopyQueue {
+        private final Long bookCopyId;
+        private final Deque<PendingBorrow> pending = new ArrayDeque<>();
+        private boolean draining;
+        private boolean closed;
+
+        private CopyQueue(Long bookCopyId) {
+            this.bookCopyId = bookCopyId;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.library.service;
+
+import com.library.search.KeysetCursors;
+import lombok.Getter;
+
+import java.time.LocalDate;
+
+/**
+ * 借閱歷史的游標，記錄上一頁最後一筆的（借閱日期, 借閱記錄ID）
+ * 歷史依借閱日期、ID 由新到舊排列；對外以 Base64URL 字串傳遞，客戶端不應解析其內容
+ */
+@Getter
+public final class BorrowHistoryCursor {
+
+    // 第一頁的游標排在所有借閱記錄之前（日期與 ID 都大於任何實際資料）
+    private static final LocalDate FIRST_DATE = LocalDate.of(9999, 12, 31);
+
+    private final LocalDate lastBorrowDate;
+    private final long lastId;
+
+    private BorrowHistoryCursor(LocalDate lastBorrowDate, long lastId) {
+        this.lastBorrowDate = lastBorrowDate;
+        this.lastId = lastId;
+    }
+
+    /**
+     * 第一頁的游標
+     */
+    public static BorrowHistoryCursor first() {
+        return new BorrowHistoryCursor(FIRST_DATE, Long.MAX_VALUE);
+    }
+
+    /**
+     * 以某筆借閱記錄為上一頁最後一筆的游標
+     */
+    public static BorrowHistoryCursor after(LocalDate lastBorrowDate, long lastId) {
+        return new BorrowHistoryCursor(lastBorrowDate, lastId);
+    }
+
+    public String encode() {
+        return KeysetCursors.encode(lastBorrowDate, lastId);
+    }
+
+    /**
+     * 解析游標字串
+     *
+     * @throws IllegalArgumentException 游標格式不正確
+     */
+    public static BorrowHistoryCursor decode(String cursor) {
+        return KeysetCursors.decode(cursor, 2,
+                fields -> after(LocalDate.parse(fields[0]), Long.parseLong(fields[1])));
+    }
+}
@@ -0,0 +1,11 @@
+package com.library.service;
+
+/**
+ * 借還書時更新可借數量的方式
+ */
+public enum BorrowMode {
+    /** 單一條件式 UPDATE 增減可借數量，以影響筆數判斷是否成功，同時借閱不會互相衝突 */
+    ATOMIC,
+    /** 讀取副本後在程式中增減並儲存，以 @Version 樂觀鎖偵測衝突，衝突時請用戶重試 */
+    OPTIMISTIC
+}
@@ -0,0 +1,92 @@
+package com.library.service;
+
+import com.library.repository.ArchivedBorrowRecordRepository;
+import com.library.repository.BorrowRecordRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 定期把歸還超過 after-days 天的借閱記錄從 borrow_records 搬到 borrow_records_archive
+ *
+ * 逾期、即將到期、借閱中等查詢都只需要 borrow_records 中未歸還的記錄，封存後此表只會隨借閱中的數量成長。
+ * 每批在各自的交易中以 INSERT ... SELECT 複製 chunk-size 筆再刪除，單一交易不會鎖住大量資料列；
+ * 已歸還的記錄不會再被修改，搬移期間與借還書不會互相影響。
+ */
+@Component
+@Slf4j
+public class BorrowRecordArchiver {
+
+    private final BorrowRecordRepository borrowRecordRepository;
+    private final ArchivedBorrowRecordRepository archivedBorrowRecordRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter archived;
+    private final int afterDays;
+    private final int chunkSize;
+
+    @Autowired
+    public BorrowRecordArchiver(BorrowRecordRepository borrowRecordRepository,
+            ArchivedBorrowRecordRepository archivedBorrowRecordRepository,
+            PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+            @Value("${library.borrow.archive.after-days:365}") int afterDays,
+            @Value("${library.borrow.archive.chunk-size:1000}") int chunkSize) {
+        if (afterDays < 0) {
+            throw new IllegalArgumentException("library.borrow.archive.after-days 不能小於 0");
+        }
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("library.borrow.archive.chunk-size 至少為 1");
+        }
+        this.borrowRecordRepository = borrowRecordRepository;
+        this.archivedBorrowRecordRepository = archivedBorrowRecordRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.archived = Counter.builder("library.borrow.archived")
+                .description("封存到 borrow_records_archive 的借閱記錄數量")
+                .register(meterRegistry);
+        this.afterDays = afterDays;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * 封存所有符合條件的借閱記錄，回傳封存的數量
+     */
+    @Scheduled(cron = "${library.borrow.archive.cron:0 0 4 * * ?}")
+    public int archive() {
+        LocalDate returnedBefore = LocalDate.now().minusDays(afterDays);
+        int total = 0;
+        while (true) {
+            Integer moved = transactionTemplate.execute(status -> archiveChunk(returnedBefore));
+            total += moved;
+            if (moved < chunkSize) {
+                break;
+            }
+        }
+        if (total > 0) {
+            log.info("借閱記錄封存完成：{} 筆（{} 之前歸還）", total, returnedBefore);
+        } else {
+            log.debug("借閱記錄封存完成：沒有需要封存的記錄");
+        }
+        return total;
+    }
+
+    private int archiveChunk(LocalDate returnedBefore) {
+        List<Long> ids = borrowRecordRepository.findArchivableIds(returnedBefore, PageRequest.of(0, chunkSize));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        archivedBorrowRecordRepository.copyFromLive(ids, LocalDateTime.now());
+        borrowRecordRepository.deleteByIds(ids);
+        archived.increment(ids.size());
+        return ids.size();
+    }
+}
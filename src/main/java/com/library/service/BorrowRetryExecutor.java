@@ -0,0 +1,108 @@
+package com.library.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * 借還書的樂觀鎖衝突重試
+ *
+ * 每次嘗試都在新的交易中執行整個操作（衝突通常在提交時才發現，交易已無法繼續使用），
+ * 衝突後以指數退避加上完整抖動（0 到退避上限間隨機）等待再重試，避免同時衝突的請求再次一起重試。
+ * 衝突次數依操作（borrow、return 等）記錄於 library.borrow.optimistic-conflicts；
+ * 發生衝突的實體與 ID 數量不受限，只寫入 debug 日誌，不作為指標標籤。
+ */
+@Component
+@Slf4j
+public class BorrowRetryExecutor {
+
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    @Autowired
+    public BorrowRetryExecutor(PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+            @Value("${library.borrow.retry.max-attempts:100}") int maxAttempts,
+            @Value("${library.borrow.retry.initial-backoff:5ms}") Duration initialBackoff,
+            @Value("${library.borrow.retry.max-backoff:200ms}") Duration maxBackoff) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("library.borrow.retry.max-attempts 至少為 1");
+        }
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoff.toMillis();
+        this.maxBackoffMillis = maxBackoff.toMillis();
+    }
+
+    /**
+     * 在新交易中執行操作，樂觀鎖衝突時重試，超過次數後拋出最後一次的衝突例外
+     *
+     * @param operation 操作名稱（borrow、return），作為指標標籤
+     */
+    public <T> T execute(String operation, Supplier<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> action.get());
+            } catch (OptimisticLockingFailureException e) {
+                conflictCounter(operation).increment();
+                if (attempt >= maxAttempts) {
+                    meterRegistry.counter("library.borrow.retry.exhausted", "operation", operation).increment();
+                    log.warn("{} 樂觀鎖衝突重試 {} 次後仍失敗", operation, attempt);
+                    throw e;
+                }
+                log.debug("{} 樂觀鎖衝突（{}），第 {} 次重試", operation, conflictTarget(e), attempt);
+                backoff(attempt);
+            }
+        }
+    }
+
+    int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * 第 n 次衝突後等待 0 到 min(max, initial * 2^(n-1)) 毫秒
+     */
+    private void backoff(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 20));
+        if (ceiling <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("重試等待被中斷", e);
+        }
+    }
+
+    private Counter conflictCounter(String operation) {
+        return Counter.builder("library.borrow.optimistic-conflicts")
+                .description("借還書的樂觀鎖衝突次數")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    private static String conflictTarget(OptimisticLockingFailureException e) {
+        if (e instanceof ObjectOptimisticLockingFailureException objectFailure
+                && objectFailure.getPersistentClassName() != null) {
+            String className = objectFailure.getPersistentClassName();
+            return className.substring(className.lastIndexOf('.') + 1) + " " + objectFailure.getIdentifier();
+        }
+        return "unknown";
+    }
+}
@@ -3,19 +3,38 @@ package com.library.service;
 import com.library.dto.*;
 import com.library.entity.*;
 import com.library.exception.*;
+import com.library.repository.ArchivedBorrowRecordRepository;
 import com.library.repository.BookCopyRepository;
+import com.library.repository.BookItemRepository;
 import com.library.repository.BorrowRecordRepository;
+import com.library.repository.UserBorrowCounterRepository;
+import com.library.repository.UserRepository;
 
 import java.util.Optional;
+import com.library.event.BookAvailabilityChangedEvent;
+import com.library.event.BookBorrowedEvent;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 
 @Service
@@ -25,15 +44,44 @@ public class BorrowService {
     @Autowired
     private BorrowRecordRepository borrowRecordRepository;
 
+    @Autowired
+    private ArchivedBorrowRecordRepository archivedBorrowRecordRepository;
+
     @Autowired
     private BookCopyRepository bookCopyRepository;
 
+    @Autowired
+    private BookItemRepository bookItemRepository;
+
+    @Autowired
+    private UserBorrowCounterRepository userBorrowCounterRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private BorrowRetryExecutor borrowRetryExecutor;
+
+    @Autowired
+    private HoldService holdService;
+
+    @Value("${library.borrow.mode:ATOMIC}")
+    private BorrowMode borrowMode;
+
+    @Value("${library.borrow.overdue.chunk-size:500}")
+    private int overdueChunkSize;
+
     /**
      * 借書功能
+     * 每次嘗試各自開啟交易，樂觀鎖衝突時由 BorrowRetryExecutor 退避後重試，重試用盡才回報用戶
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public BorrowBookResponse borrowBook(BorrowBookRequest request, User user) {
         try {
-            return performBorrowing(request, user);
+            return borrowRetryExecutor.execute("borrow", () -> performBorrowing(request, user));
         } catch (OptimisticLockingFailureException e) {
             throw new BookNotAvailableException("書籍借閱失敗，其他用戶同時在借閱此書，請重試");
         }
@@ -44,10 +92,6 @@ public class BorrowService {
         BookCopy bookCopy = bookCopyRepository.findById(request.getBookCopyId())
                 .orElseThrow(() -> new IllegalArgumentException("書籍副本不存在：ID " + request.getBookCopyId()));
 
-        if (bookCopy.getAvailableCopies() <= 0) {
-            throw new BookNotAvailableException("此書籍副本目前沒有可借閱的數量");
-        }
-
         if (bookCopy.getStatus() != BookCopy.CopyStatus.ACTIVE) {
             throw new BookNotAvailableException("此書籍副本目前不可借閱");
         }
@@ -64,41 +108,432 @@ public class BorrowService {
                     "，每本書同時只能借閱一個副本");
         }
 
-        // 3. 檢查用戶借閱數量限制
-        checkBorrowLimits(user.getId(), bookCopy.getBook().getType());
-
-        // 4. 創建借閱記錄（包含圖書館信息）
-        BorrowRecord borrowRecord = new BorrowRecord();
-        borrowRecord.setUser(user);
-        borrowRecord.setBookCopy(bookCopy);
-        borrowRecord.setLibrary(bookCopy.getLibrary()); // 記錄借閱圖書館
-        borrowRecord.setBorrowDate(LocalDate.now());
-        borrowRecord.setDueDate(LocalDate.now().plusMonths(1));
-        borrowRecord.setStatus(BorrowRecord.BorrowStatus.BORROWED);
+        // 3. 檢查用戶借閱數量限制（未達上限時同時遞增借閱計數器）
+        checkBorrowLimits(user, bookCopy.getBook().getType());
+
+        // 4. 預約已保留給此用戶時，不論目前是否還有可借數量都借出保留的一本（不再扣減可借數量），
+        //    避免預約者另外借走一本、保留的一本卻要等到取書期限過後才釋出；
+        //    否則逐冊追蹤的館藏認領一冊可借的書，不鎖定館藏資料列；
+        //    ATOMIC 模式以條件式 UPDATE 扣減可借數量，未扣到表示已無可借數量（讀到的數量可能已過時）
+        boolean reservedForUser = holdService.fulfillReadyHold(user.getId(), bookCopy.getId());
+        BookItem bookItem = null;
+        if (bookCopy.isItemTracked()) {
+            bookItem = claimBookItem(bookCopy, reservedForUser);
+        } else if (!reservedForUser) {
+            boolean inStock = borrowMode == BorrowMode.ATOMIC
+                    ? bookCopyRepository.decrementAvailableCopies(bookCopy.getId(), LocalDateTime.now()) > 0
+                    : bookCopy.getAvailableCopies() > 0;
+            if (!inStock) {
+                throw new BookNotAvailableException("此書籍副本目前沒有可借閱的數量");
+            }
+        }
 
+        // 5. 創建借閱記錄（包含圖書館信息與借出的實體書）
+        BorrowRecord borrowRecord = newBorrowRecord(user, bookCopy);
+        borrowRecord.setBookItem(bookItem);
         borrowRecord = borrowRecordRepository.save(borrowRecord);
 
-        // 5. 更新書籍副本可借數量
-        bookCopy.setAvailableCopies(bookCopy.getAvailableCopies() - 1);
-        bookCopyRepository.save(bookCopy);
+        // 6. OPTIMISTIC 模式更新書籍副本可借數量，版本衝突時由 borrowBook 轉為重試訊息
+        if (borrowMode != BorrowMode.ATOMIC && !bookCopy.isItemTracked() && !reservedForUser) {
+            bookCopy.setAvailableCopies(bookCopy.getAvailableCopies() - 1);
+            bookCopyRepository.save(bookCopy);
+        }
+        publishAvailabilityChanged(bookCopy);
+        eventPublisher.publishEvent(new BookBorrowedEvent(bookCopy.getBook().getId()));
 
         return BorrowBookResponse.from(borrowRecord);
     }
 
     /**
-     * 還書功能
+     * 依書名借書：由伺服器挑選可借的館藏，依偏好圖書館順序嘗試
+     * 每個館藏各自以一次借書交易借出，沒有可借數量（被其他用戶搶先借走）時改借下一個圖書館的館藏；
+     * 已借閱同一本書、超過借閱上限等與館藏無關的錯誤直接回報
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public BorrowBookResponse borrowByTitle(BorrowByTitleRequest request, User user) {
+        for (BookCopy candidate : selectCandidateCopies(request)) {
+            try {
+                return borrowRetryExecutor.execute("borrow",
+                        () -> performBorrowing(new BorrowBookRequest(candidate.getId()), user));
+            } catch (BookNotAvailableException | OptimisticLockingFailureException e) {
+                // 此館藏已借完或持續衝突，改試下一個圖書館
+            }
+        }
+        throw new BookNotAvailableException("指定的圖書館目前都沒有此書可借閱的副本");
+    }
+
+    /**
+     * 依偏好圖書館順序排列可借的館藏；未指定偏好時依可借數量由多到少，降低與其他用戶搶同一館藏的機會
+     */
+    private List<BookCopy> selectCandidateCopies(BorrowByTitleRequest request) {
+        List<BookCopy> available = bookCopyRepository.findAvailableByBookId(request.getBookId());
+        List<Long> preferred = request.getPreferredLibraryIds();
+        if (preferred == null || preferred.isEmpty()) {
+            return available;
+        }
+        Map<Long, BookCopy> byLibrary = new HashMap<>();
+        available.forEach(copy -> byLibrary.putIfAbsent(copy.getLibrary().getId(), copy));
+        return preferred.stream()
+                .distinct()
+                .map(byLibrary::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 認領逐冊追蹤館藏中的一冊（SKIP LOCKED，同時借閱的用戶各自鎖定不同的書）
+     * 預約已保留給此用戶時認領保留中的一冊，否則認領可借的一冊
+     */
+    private BookItem claimBookItem(BookCopy bookCopy, boolean reservedForUser) {
+        BookItem bookItem = claimItem(bookCopy.getId(),
+                reservedForUser ? BookItem.ItemStatus.RESERVED : BookItem.ItemStatus.AVAILABLE);
+        if (bookItem == null) {
+            throw new BookNotAvailableException("此書籍副本目前沒有可借閱的數量");
+        }
+        bookItem.setStatus(BookItem.ItemStatus.BORROWED);
+        return bookItem;
+    }
+
+    private BookItem claimItem(Long bookCopyId, BookItem.ItemStatus status) {
+        return bookItemRepository.findClaimable(bookCopyId, status, PageRequest.of(0, 1)).stream()
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * 合併提交：同一書籍副本的多筆借書請求在同一交易中處理（由 BorrowGroupCommitter 呼叫）
+     * 依請求順序配給庫存，可借數量以一次 UPDATE 扣減；各請求的結果設定於 PendingBorrow，提交後才回覆
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void borrowGroup(Long bookCopyId, List<BorrowGroupCommitter.PendingBorrow> batch) {
+        borrowRetryExecutor.execute("group-borrow", () -> {
+            performGroupBorrowing(bookCopyId, batch);
+            return null;
+        });
+    }
+
+    private void performGroupBorrowing(Long bookCopyId, List<BorrowGroupCommitter.PendingBorrow> batch) {
+        batch.forEach(BorrowGroupCommitter.PendingBorrow::reset);
+
+        // 1. 檢查書籍副本是否存在且可借閱，不符合時整批失敗
+        BookCopy bookCopy = bookCopyRepository.findById(bookCopyId).orElse(null);
+        RuntimeException copyFailure = bookCopy == null
+                ? new IllegalArgumentException("書籍副本不存在：ID " + bookCopyId)
+                : bookCopy.getStatus() != BookCopy.CopyStatus.ACTIVE
+                        ? new BookNotAvailableException("此書籍副本目前不可借閱")
+                        : !bookCopy.getLibrary().getActive()
+                                ? new BookNotAvailableException("此圖書館目前已停用，無法借閱")
+                                : null;
+        if (copyFailure != null) {
+            batch.forEach(pending -> pending.fail(copyFailure));
+            return;
+        }
+        Book book = bookCopy.getBook();
+
+        // 2. 一次查出已借閱此書的用戶；同一用戶在批次中重複出現時只處理第一筆
+        Set<Long> userIds = batch.stream().map(pending -> pending.getUser().getId()).collect(Collectors.toSet());
+        Set<Long> borrowedUserIds = new HashSet<>(
+                borrowRecordRepository.findUserIdsWithActiveBorrow(book.getId(), userIds));
+        List<BorrowGroupCommitter.PendingBorrow> eligible = new ArrayList<>();
+        for (BorrowGroupCommitter.PendingBorrow pending : batch) {
+            if (!borrowedUserIds.add(pending.getUser().getId())) {
+                pending.fail(new BookAlreadyBorrowedException("您已經借閱了這本書：" + book.getTitle() +
+                        "，每本書同時只能借閱一個副本"));
+            } else {
+                eligible.add(pending);
+            }
+        }
+
+        // 3. 一次鎖定批次中所有用戶此類型的計數器（依計數器 ID 順序，與其他批次不會死結），已達上限的請求失敗
+        Map<Long, UserBorrowCounter> counters = lockBorrowCounters(eligible, book.getType());
+        int maxLimit = BorrowLimitInfo.maxLimit(book.getType());
+        eligible.removeIf(pending -> {
+            int currentCount = counters.get(pending.getUser().getId()).getActiveCount();
+            if (currentCount < maxLimit) {
+                return false;
+            }
+            pending.fail(new BorrowLimitExceededException(limitExceededMessage(currentCount, book.getType())));
+            return true;
+        });
+
+        // 4. 計數館藏先鎖定副本（與還書、預約轉移的加鎖順序一致），再完成保留給請求者的預約：
+        //    有預約的用戶借出保留的一本，其餘請求依順序配給庫存；逐冊追蹤的館藏一次認領多冊，計數館藏一次扣減
+        int stock = bookCopy.isItemTracked() || eligible.isEmpty() ? 0
+                : bookCopyRepository.findAvailableCopiesForUpdate(bookCopyId).orElse(0);
+        Set<Long> reservedUserIds = eligible.isEmpty() ? Set.of()
+                : holdService.fulfillReadyHolds(bookCopyId,
+                        eligible.stream().map(pending -> pending.getUser().getId()).toList());
+        List<BookItem> items = List.of();
+        List<BookItem> reservedItems = List.of();
+        if (bookCopy.isItemTracked()) {
+            int wanted = eligible.size() - reservedUserIds.size();
+            items = wanted == 0 ? List.of()
+                    : bookItemRepository.findClaimable(bookCopyId, BookItem.ItemStatus.AVAILABLE,
+                            PageRequest.of(0, wanted));
+            stock = items.size();
+            if (!reservedUserIds.isEmpty()) {
+                reservedItems = bookItemRepository.findClaimable(bookCopyId, BookItem.ItemStatus.RESERVED,
+                        PageRequest.of(0, reservedUserIds.size()));
+                if (reservedItems.size() < reservedUserIds.size()) {
+                    // 保留的一冊已被認領，整批改由 BorrowGroupCommitter 逐筆借書
+                    throw new BookNotAvailableException("此書籍副本目前沒有可借閱的數量");
+                }
+            }
+        }
+        List<BorrowRecord> borrowRecords = new ArrayList<>();
+        List<BorrowGroupCommitter.PendingBorrow> granted = new ArrayList<>();
+        int allocated = 0;
+        int reservedClaimed = 0;
+        for (BorrowGroupCommitter.PendingBorrow pending : eligible) {
+            BookItem bookItem = null;
+            if (reservedUserIds.contains(pending.getUser().getId())) {
+                if (bookCopy.isItemTracked()) {
+                    bookItem = reservedItems.get(reservedClaimed++);
+                    bookItem.setStatus(BookItem.ItemStatus.BORROWED);
+                }
+            } else if (allocated < stock) {
+                if (!items.isEmpty()) {
+                    bookItem = items.get(allocated);
+                    bookItem.setStatus(BookItem.ItemStatus.BORROWED);
+                }
+                allocated++;
+            } else {
+                pending.fail(new BookNotAvailableException("此書籍副本目前沒有可借閱的數量"));
+                continue;
+            }
+            // 計數器於提交時以批次 UPDATE 寫回
+            UserBorrowCounter counter = counters.get(pending.getUser().getId());
+            counter.setActiveCount(counter.getActiveCount() + 1);
+            BorrowRecord borrowRecord = newBorrowRecord(pending.getUser(), bookCopy);
+            borrowRecord.setBookItem(bookItem);
+            borrowRecords.add(borrowRecord);
+            granted.add(pending);
+        }
+        if (!bookCopy.isItemTracked() && allocated > 0) {
+            bookCopyRepository.subtractAvailableCopies(bookCopyId, allocated, LocalDateTime.now());
+        }
+
+        // 5. 借閱記錄一次批次寫入
+        List<BorrowRecord> saved = borrowRecordRepository.saveAll(borrowRecords);
+        for (int i = 0; i < saved.size(); i++) {
+            granted.get(i).succeed(BorrowBookResponse.from(saved.get(i)));
+            eventPublisher.publishEvent(new BookBorrowedEvent(book.getId()));
+        }
+        if (!saved.isEmpty()) {
+            publishAvailabilityChanged(bookCopy);
+        }
+    }
+
+    /**
+     * 批次借書（櫃台一次借出多本）
+     * 所有書籍副本在同一交易中處理，每個階段以一次查詢完成；不符條件的項目個別回報失敗，不影響其他項目
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public BatchBorrowResponse borrowBooks(BatchBorrowRequest request, User user) {
+        try {
+            return borrowRetryExecutor.execute("batch-borrow",
+                    () -> performBatchBorrowing(request.getBookCopyIds(), user));
+        } catch (OptimisticLockingFailureException e) {
+            throw new BookNotAvailableException("批次借閱失敗，其他用戶同時在借閱這些書籍，請重試");
+        }
+    }
+
+    private BatchBorrowResponse performBatchBorrowing(List<Long> bookCopyIds, User user) {
+        // 1. 鎖定用戶的借閱計數器（與單本借書相同，先計數器後副本，避免死結）
+        Map<Book.BookType, UserBorrowCounter> counters = lockBorrowCounters(user);
+
+        // 2. 依 ID 順序鎖定所有副本
+        Map<Long, BookCopy> copies = new HashMap<>();
+        for (BookCopy copy : bookCopyRepository.findAllByIdInForUpdate(new TreeSet<>(bookCopyIds))) {
+            copies.put(copy.getId(), copy);
+        }
+
+        // 3. 一次查出已借閱的書籍
+        Set<Long> bookIds = copies.values().stream().map(copy -> copy.getBook().getId()).collect(Collectors.toSet());
+        Set<Long> borrowedBookIds = bookIds.isEmpty() ? new HashSet<>()
+                : new HashSet<>(borrowRecordRepository.findActiveBorrowedBookIds(user.getId(), bookIds));
+
+        // 4. 依請求順序逐項檢查；逐冊追蹤的館藏依通過的項目數，每個副本一次認領所需的冊數，
+        //    認領不到的副本改為沒有可借數量後重新檢查（之後的項目可能因此不再超過上限）
+        Map<Long, List<BookItem>> claimedItems = new HashMap<>();
+        BatchPlan plan;
+        while (true) {
+            plan = planBatch(bookCopyIds, copies, borrowedBookIds, counters, claimedItems);
+            Map<Long, Integer> unclaimed = new TreeMap<>();
+            for (Long bookCopyId : plan.grantedCopyIds) {
+                if (copies.get(bookCopyId).isItemTracked() && !claimedItems.containsKey(bookCopyId)) {
+                    unclaimed.merge(bookCopyId, 1, Integer::sum);
+                }
+            }
+            if (unclaimed.isEmpty()) {
+                break;
+            }
+            unclaimed.forEach((bookCopyId, count) -> claimedItems.put(bookCopyId, new ArrayList<>(
+                    bookItemRepository.findClaimable(bookCopyId, BookItem.ItemStatus.AVAILABLE,
+                            PageRequest.of(0, count)))));
+        }
+
+        // 5. 建立借閱記錄，依類型彙總後以集合式 UPDATE 遞增計數器、扣減副本可借數量、標記實體書已借出
+        LocalDateTime now = LocalDateTime.now();
+        List<BorrowRecord> borrowRecords = new ArrayList<>();
+        Map<Book.BookType, Integer> borrowsPerType = new EnumMap<>(Book.BookType.class);
+        List<Long> countedCopyIds = new ArrayList<>();
+        List<Long> borrowedItemIds = new ArrayList<>();
+        for (Long bookCopyId : plan.grantedCopyIds) {
+            BookCopy bookCopy = copies.get(bookCopyId);
+            BookItem bookItem = null;
+            if (bookCopy.isItemTracked()) {
+                bookItem = claimedItems.get(bookCopyId).remove(0);
+                borrowedItemIds.add(bookItem.getId());
+            } else {
+                countedCopyIds.add(bookCopyId);
+            }
+            borrowsPerType.merge(bookCopy.getBook().getType(), 1, Integer::sum);
+
+            BorrowRecord borrowRecord = newBorrowRecord(user, bookCopy);
+            borrowRecord.setBookItem(bookItem);
+            borrowRecords.add(borrowRecord);
+        }
+        Map<Integer, List<Long>> countersByCount = new TreeMap<>();
+        borrowsPerType.forEach((bookType, count) ->
+                countersByCount.computeIfAbsent(count, c -> new ArrayList<>()).add(counters.get(bookType).getId()));
+        countersByCount.forEach((count, ids) -> userBorrowCounterRepository.add(ids, count));
+        if (!countedCopyIds.isEmpty()) {
+            bookCopyRepository.decrementAllAvailableCopies(countedCopyIds, now);
+        }
+        if (!borrowedItemIds.isEmpty()) {
+            bookItemRepository.updateStatus(borrowedItemIds, BookItem.ItemStatus.BORROWED, now);
+        }
+
+        // 6. 借閱記錄一次批次寫入
+        List<BorrowRecord> saved = borrowRecordRepository.saveAll(borrowRecords);
+        for (int i = 0; i < saved.size(); i++) {
+            BorrowRecord borrowRecord = saved.get(i);
+            plan.results.set(plan.grantedIndexes.get(i), BatchBorrowItemResult.success(
+                    borrowRecord.getBookCopy().getId(), BorrowBookResponse.from(borrowRecord)));
+            publishAvailabilityChanged(borrowRecord.getBookCopy());
+            eventPublisher.publishEvent(new BookBorrowedEvent(borrowRecord.getBookCopy().getBook().getId()));
+        }
+
+        return BatchBorrowResponse.of(plan.results);
+    }
+
+    /**
+     * 依請求順序決定批次借閱的結果（不寫入資料庫）；已認領過的逐冊追蹤副本以認領到的冊數為可借數量
+     */
+    private BatchPlan planBatch(List<Long> bookCopyIds, Map<Long, BookCopy> copies, Set<Long> borrowedBookIds,
+            Map<Book.BookType, UserBorrowCounter> counters, Map<Long, List<BookItem>> claimedItems) {
+        BatchPlan plan = new BatchPlan();
+        Set<Long> bookIds = new HashSet<>(borrowedBookIds);
+        Map<Book.BookType, Integer> activeCounts = new EnumMap<>(Book.BookType.class);
+        counters.forEach((bookType, counter) -> activeCounts.put(bookType, counter.getActiveCount()));
+        Set<Long> seenCopyIds = new HashSet<>();
+        for (Long bookCopyId : bookCopyIds) {
+            BookCopy bookCopy = copies.get(bookCopyId);
+            String failure = !seenCopyIds.add(bookCopyId) ? "同一書籍副本重複出現在借閱清單中"
+                    : checkBatchItem(bookCopyId, bookCopy, bookIds, activeCounts);
+            if (failure == null && claimedItems.containsKey(bookCopyId) && claimedItems.get(bookCopyId).isEmpty()) {
+                failure = "此書籍副本目前沒有可借閱的數量";
+            }
+            if (failure != null) {
+                plan.results.add(BatchBorrowItemResult.failure(bookCopyId, failure));
+                continue;
+            }
+            activeCounts.merge(bookCopy.getBook().getType(), 1, Integer::sum);
+            bookIds.add(bookCopy.getBook().getId());
+            plan.grantedIndexes.add(plan.results.size());
+            plan.grantedCopyIds.add(bookCopyId);
+            plan.results.add(null);
+        }
+        return plan;
+    }
+
+    /**
+     * 批次借閱單一項目的檢查，回傳失敗原因（可借閱時回傳 null）
+     */
+    private String checkBatchItem(Long bookCopyId, BookCopy bookCopy, Set<Long> borrowedBookIds,
+            Map<Book.BookType, Integer> activeCounts) {
+        if (bookCopy == null) {
+            return "書籍副本不存在：ID " + bookCopyId;
+        }
+        // 逐冊追蹤的館藏於其他檢查通過後才認領實體書
+        if (!bookCopy.isItemTracked() && bookCopy.getAvailableCopies() <= 0) {
+            return "此書籍副本目前沒有可借閱的數量";
+        }
+        if (bookCopy.getStatus() != BookCopy.CopyStatus.ACTIVE) {
+            return "此書籍副本目前不可借閱";
+        }
+        if (!bookCopy.getLibrary().getActive()) {
+            return "此圖書館目前已停用，無法借閱";
+        }
+        if (borrowedBookIds.contains(bookCopy.getBook().getId())) {
+            return "您已經借閱了這本書：" + bookCopy.getBook().getTitle() + "，每本書同時只能借閱一個副本";
+        }
+        Book.BookType bookType = bookCopy.getBook().getType();
+        int maxLimit = BorrowLimitInfo.maxLimit(bookType);
+        int currentCount = activeCounts.get(bookType);
+        if (currentCount >= maxLimit) {
+            return limitExceededMessage(currentCount, bookType);
+        }
+        return null;
+    }
+
+    /**
+     * 鎖定用戶所有類型的借閱計數器，尚未建立的類型先由借閱記錄建立
+     */
+    private Map<Book.BookType, UserBorrowCounter> lockBorrowCounters(User user) {
+        List<UserBorrowCounter> locked = userBorrowCounterRepository.findByUserIdForUpdate(user.getId());
+        if (locked.size() < Book.BookType.values().length) {
+            for (Book.BookType bookType : Book.BookType.values()) {
+                ensureBorrowCounter(user, bookType);
+            }
+            locked = userBorrowCounterRepository.findByUserIdForUpdate(user.getId());
+        }
+        Map<Book.BookType, UserBorrowCounter> counters = new EnumMap<>(Book.BookType.class);
+        for (UserBorrowCounter counter : locked) {
+            counters.put(counter.getBookType(), counter);
+        }
+        return counters;
+    }
+
+    /**
+     * 鎖定多位用戶同一類型的借閱計數器（以用戶 ID 對應），尚未建立的先由借閱記錄建立
+     */
+    private Map<Long, UserBorrowCounter> lockBorrowCounters(List<BorrowGroupCommitter.PendingBorrow> batch,
+            Book.BookType bookType) {
+        Map<Long, User> users = new HashMap<>();
+        batch.forEach(pending -> users.put(pending.getUser().getId(), pending.getUser()));
+        if (users.isEmpty()) {
+            return Map.of();
+        }
+        List<UserBorrowCounter> locked = userBorrowCounterRepository.findByUserIdInAndBookTypeForUpdate(
+                users.keySet(), bookType);
+        if (locked.size() < users.size()) {
+            users.values().forEach(user -> ensureBorrowCounter(user, bookType));
+            locked = userBorrowCounterRepository.findByUserIdInAndBookTypeForUpdate(users.keySet(), bookType);
+        }
+        Map<Long, UserBorrowCounter> counters = new HashMap<>();
+        for (UserBorrowCounter counter : locked) {
+            counters.put(counter.getUser().getId(), counter);
+        }
+        return counters;
+    }
+
+    /**
+     * 還書功能（衝突重試方式同借書）
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public ReturnBookResponse returnBook(Long borrowRecordId, User user) {
         try {
-            return performReturning(borrowRecordId, user);
+            return borrowRetryExecutor.execute("return", () -> performReturning(borrowRecordId, user));
         } catch (OptimisticLockingFailureException e) {
             throw new BookNotAvailableException("還書失敗，其他用戶同時在操作此書籍，請重試");
         }
     }
 
     private ReturnBookResponse performReturning(Long borrowRecordId, User user) {
-        // 1. 檢查借閱記錄是否存在
-        BorrowRecord borrowRecord = borrowRecordRepository.findById(borrowRecordId)
+        // 1. 鎖定借閱記錄：同一記錄同時還書（含大量還書）時依序執行，後到的讀到已歸還
+        BorrowRecord borrowRecord = borrowRecordRepository.findByIdForUpdate(borrowRecordId)
                 .orElseThrow(() -> new BorrowRecordNotFoundException("借閱記錄不存在：ID " + borrowRecordId));
 
         // 2. 檢查是否為該用戶的借閱記錄
@@ -115,24 +550,68 @@ public class BorrowService {
         borrowRecord.setReturnDate(LocalDate.now());
         borrowRecord.setStatus(BorrowRecord.BorrowStatus.RETURNED);
         borrowRecord = borrowRecordRepository.save(borrowRecord);
+        // 已先鎖定借閱記錄，再更新計數器與副本，與大量還書的加鎖順序（記錄、計數器、副本）一致
 
-        // 5. 更新書籍副本可借數量
+        // 5. 更新借閱計數器；有人預約時歸還的一本保留給隊首，否則更新書籍副本可借數量
+        //    （逐冊追蹤的館藏更新實體書狀態，可借數量於提交後重新計算；ATOMIC 模式以條件式 UPDATE，不與同時借閱的用戶衝突）
         BookCopy bookCopy = borrowRecord.getBookCopy();
-        bookCopy.setAvailableCopies(bookCopy.getAvailableCopies() + 1);
-        bookCopyRepository.save(bookCopy);
+        userBorrowCounterRepository.decrement(user.getId(), bookCopy.getBook().getType());
+        boolean allocated = holdService.allocateReturnedCopies(bookCopy.getId(), 1) > 0;
+        BookItem bookItem = borrowRecord.getBookItem();
+        if (bookItem != null) {
+            bookItem.setStatus(allocated ? BookItem.ItemStatus.RESERVED : BookItem.ItemStatus.AVAILABLE);
+        }
+        if (allocated) {
+            return ReturnBookResponse.from(borrowRecord);
+        }
+        if (bookItem == null && borrowMode == BorrowMode.ATOMIC) {
+            bookCopyRepository.incrementAvailableCopies(bookCopy.getId(), LocalDateTime.now());
+        } else if (bookItem == null) {
+            bookCopy.setAvailableCopies(bookCopy.getAvailableCopies() + 1);
+            bookCopyRepository.save(bookCopy);
+        }
+        publishAvailabilityChanged(bookCopy);
 
         return ReturnBookResponse.from(borrowRecord);
     }
 
     /**
-     * 查詢用戶借閱歷史
+     * 以游標分頁查詢用戶借閱歷史，依借閱日期、ID 由新到舊
+     * 投影查詢只取回應需要的欄位，每頁只讀取 size + 1 列，不會把用戶全部的借閱記錄載入持久化內容；
+     * 已封存的記錄同樣各取 size + 1 列後合併排序（兩張表的 ID 來自同一序列，不會重複）
+     *
+     * @param status   只查詢此狀態的記錄，null 表示不限
+     * @param fromDate 借閱日期下限（含），null 表示不限
+     * @param toDate   借閱日期上限（含），null 表示不限
      */
     @Transactional(readOnly = true)
-    public List<BorrowRecordResponse> getUserBorrowHistory(User user) {
-        List<BorrowRecord> borrowRecords = borrowRecordRepository.findByUserIdWithDetails(user.getId());
-        return borrowRecords.stream()
+    public BorrowHistoryPage getUserBorrowHistory(User user, BorrowRecord.BorrowStatus status,
+            LocalDate fromDate, LocalDate toDate, BorrowHistoryCursor cursor, int size) {
+        // 多取一筆以判斷是否還有下一頁
+        List<BorrowHistoryRow> rows = new ArrayList<>(borrowRecordRepository.findHistoryRows(user.getId(),
+                cursor.getLastBorrowDate(), cursor.getLastId(), status, fromDate, toDate,
+                PageRequest.of(0, size + 1)));
+        // 封存表只有已歸還的記錄
+        if (status == null || status == BorrowRecord.BorrowStatus.RETURNED) {
+            rows.addAll(archivedBorrowRecordRepository.findHistoryRows(user.getId(),
+                    cursor.getLastBorrowDate(), cursor.getLastId(), fromDate, toDate,
+                    PageRequest.of(0, size + 1)));
+            rows.sort(Comparator.comparing(BorrowHistoryRow::getBorrowDate)
+                    .thenComparing(BorrowHistoryRow::getBorrowRecordId)
+                    .reversed());
+        }
+
+        String nextCursor = null;
+        if (rows.size() > size) {
+            rows = rows.subList(0, size);
+            BorrowHistoryRow last = rows.get(size - 1);
+            nextCursor = BorrowHistoryCursor.after(last.getBorrowDate(), last.getBorrowRecordId()).encode();
+        }
+
+        List<BorrowRecordResponse> records = rows.stream()
                 .map(BorrowRecordResponse::from)
                 .collect(Collectors.toList());
+        return new BorrowHistoryPage(records, nextCursor);
     }
 
     /**
@@ -140,22 +619,60 @@ public class BorrowService {
      */
     @Transactional(readOnly = true)
     public List<BorrowRecordResponse> getCurrentBorrows(User user) {
-        List<BorrowRecord> borrowRecords = borrowRecordRepository.findByUserIdAndStatus(
-                user.getId(), BorrowRecord.BorrowStatus.BORROWED);
+        List<BorrowRecord> borrowRecords = borrowRecordRepository.findByUserIdAndStatusIn(
+                user.getId(), List.of(BorrowRecord.BorrowStatus.BORROWED, BorrowRecord.BorrowStatus.OVERDUE));
         return borrowRecords.stream()
                 .map(BorrowRecordResponse::from)
                 .collect(Collectors.toList());
     }
 
     /**
-     * 查詢逾期書籍 (館員專用)
+     * 把已過到期日的借閱記錄標記為 OVERDUE，回傳處理的記錄數
+     * 依 ID 以鍵集分批，每批在各自的交易中以一次集合式 UPDATE 更新，不會長時間鎖住大量借閱記錄；
+     * OVERDUE 仍算借閱中，借閱上限、重複借閱與還書的判斷不受影響
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public int markOverdueRecords() {
+        LocalDate today = LocalDate.now();
+        long afterId = 0L;
+        int marked = 0;
+        while (true) {
+            long from = afterId;
+            List<Long> ids = borrowRetryExecutor.execute("mark-overdue", () -> {
+                List<Long> chunk = borrowRecordRepository.findOverdueCandidateIds(
+                        today, from, PageRequest.of(0, overdueChunkSize));
+                if (!chunk.isEmpty()) {
+                    borrowRecordRepository.markOverdue(chunk, LocalDateTime.now());
+                }
+                return chunk;
+            });
+            marked += ids.size();
+            if (ids.size() < overdueChunkSize) {
+                return marked;
+            }
+            afterId = ids.get(ids.size() - 1);
+        }
+    }
+
+    /**
+     * 以游標分頁查詢逾期書籍 (館員專用)，依到期日由舊到新
+     * 投影查詢只取報表需要的欄位，每頁只讀取 size + 1 列
+     *
+     * @param libraryId 只查詢此圖書館的記錄，null 表示所有圖書館
      */
     @Transactional(readOnly = true)
-    public List<BorrowRecordResponse> getOverdueBooks() {
-        List<BorrowRecord> overdueRecords = borrowRecordRepository.findOverdueWithDetails(LocalDate.now());
-        return overdueRecords.stream()
-                .map(BorrowRecordResponse::from)
-                .collect(Collectors.toList());
+    public OverdueReportPage getOverdueBooks(Long libraryId, OverdueReportCursor cursor, int size) {
+        // 多取一筆以判斷是否還有下一頁
+        List<OverdueRecordRow> rows = borrowRecordRepository.findOverdueRows(LocalDate.now(), libraryId,
+                cursor.getLastDueDate(), cursor.getLastId(), PageRequest.of(0, size + 1));
+
+        String nextCursor = null;
+        if (rows.size() > size) {
+            rows = rows.subList(0, size);
+            OverdueRecordRow last = rows.get(size - 1);
+            nextCursor = OverdueReportCursor.after(last.getDueDate(), last.getBorrowRecordId()).encode();
+        }
+        return new OverdueReportPage(rows, nextCursor);
     }
 
     /**
@@ -165,62 +682,76 @@ public class BorrowService {
     public Map<Book.BookType, BorrowLimitInfo> getBorrowLimits(User user) {
         Map<Book.BookType, BorrowLimitInfo> limits = new HashMap<>();
 
+        Map<Book.BookType, Integer> counters = new HashMap<>();
+        for (UserBorrowCounter counter : userBorrowCounterRepository.findByUserId(user.getId())) {
+            counters.put(counter.getBookType(), counter.getActiveCount());
+        }
         for (Book.BookType bookType : Book.BookType.values()) {
-            long currentCount = borrowRecordRepository.countCurrentBorrowsByUserAndBookType(
-                    user.getId(), bookType);
-            limits.put(bookType, BorrowLimitInfo.of(bookType, (int) currentCount));
+            // 尚未借過此類型的用戶沒有計數器，改以借閱記錄計算
+            Integer currentCount = counters.get(bookType);
+            if (currentCount == null) {
+                currentCount = (int) borrowRecordRepository.countCurrentBorrowsByUserAndBookType(user.getId(), bookType);
+            }
+            limits.put(bookType, BorrowLimitInfo.of(bookType, currentCount));
         }
 
         return limits;
     }
 
+    private BorrowRecord newBorrowRecord(User user, BookCopy bookCopy) {
+        BorrowRecord borrowRecord = new BorrowRecord();
+        borrowRecord.setUser(user);
+        borrowRecord.setBookCopy(bookCopy);
+        borrowRecord.setLibrary(bookCopy.getLibrary()); // 記錄借閱圖書館
+        borrowRecord.setBorrowDate(LocalDate.now());
+        borrowRecord.setDueDate(LocalDate.now().plusMonths(1));
+        borrowRecord.setStatus(BorrowRecord.BorrowStatus.BORROWED);
+        return borrowRecord;
+    }
+
     /**
-     * 檢查借閱數量限制
+     * 通知可借數量變動（交易提交後淘汰搜尋快取）
      */
-    private void checkBorrowLimits(Long userId, Book.BookType bookType) {
-        long currentCount = borrowRecordRepository.countCurrentBorrowsByUserAndBookType(userId, bookType);
-        int maxLimit = (bookType == Book.BookType.MAGAZINE) ? 5 : 10;
-
-        if (currentCount >= maxLimit) {
-            String bookTypeName = (bookType == Book.BookType.MAGAZINE) ? "圖書" : "書籍";
-            throw new BorrowLimitExceededException(
-                    String.format("您已借閱 %d 本%s，已達到最大借閱數量限制 (%d 本)",
-                            currentCount, bookTypeName, maxLimit));
-        }
+    private void publishAvailabilityChanged(BookCopy bookCopy) {
+        eventPublisher.publishEvent(new BookAvailabilityChangedEvent(
+                bookCopy.getBook().getId(), bookCopy.getLibrary().getId(), bookCopy.isItemTracked()));
     }
 
     /**
-     * 發送到期通知 (模擬)
+     * 檢查借閱數量限制：以條件式 UPDATE 遞增借閱計數器，已達上限時不更新並拋出例外
+     * 同一用戶同時借書時由資料列鎖排序，不會超過上限
      */
-    public void sendDueNotifications() {
-        LocalDate today = LocalDate.now();
-        LocalDate fiveDaysLater = today.plusDays(5);
-
-        List<BorrowRecord> dueSoonRecords = borrowRecordRepository.findDueSoon(today, fiveDaysLater);
-
-        System.out.println("=== 到期通知發送 ===");
-        System.out.println("檢查日期：" + today);
-        System.out.println("即將到期書籍數量：" + dueSoonRecords.size());
+    private void checkBorrowLimits(User user, Book.BookType bookType) {
+        int maxLimit = BorrowLimitInfo.maxLimit(bookType);
+        ensureBorrowCounter(user, bookType);
+
+        if (userBorrowCounterRepository.incrementIfBelow(user.getId(), bookType, maxLimit) == 0) {
+            int currentCount = userBorrowCounterRepository.findByUserIdAndBookType(user.getId(), bookType)
+                    .map(UserBorrowCounter::getActiveCount)
+                    .orElse(maxLimit);
+            throw new BorrowLimitExceededException(limitExceededMessage(currentCount, bookType));
+        }
+    }
 
-        for (BorrowRecord record : dueSoonRecords) {
-            long daysUntilDue = today.until(record.getDueDate()).getDays();
+    private static String limitExceededMessage(int currentCount, Book.BookType bookType) {
+        String bookTypeName = (bookType == Book.BookType.MAGAZINE) ? "圖書" : "書籍";
+        return String.format("您已借閱 %d 本%s，已達到最大借閱數量限制 (%d 本)",
+                currentCount, bookTypeName, BorrowLimitInfo.maxLimit(bookType));
+    }
 
-            System.out.printf("通知發送給用戶：%s (ID: %d)%n",
-                    record.getUser().getUsername(), record.getUser().getId());
-            System.out.printf("書籍：《%s》 - %s%n",
-                    record.getBookCopy().getBook().getTitle(),
-                    record.getBookCopy().getBook().getAuthor());
-            System.out.printf("圖書館：%s%n", record.getBookCopy().getLibrary().getName());
-            System.out.printf("到期日期：%s (%d 天後)%n", record.getDueDate(), daysUntilDue);
-            System.out.println("訊息：您借閱的書籍即將到期，請準時歸還。");
-            System.out.println("---");
+    /**
+     * 用戶第一次借閱此類型時建立計數器，初始值取自借閱記錄
+     * 先鎖定用戶資料列再確認一次，避免同一用戶同時借書時重複建立
+     */
+    private void ensureBorrowCounter(User user, Book.BookType bookType) {
+        if (userBorrowCounterRepository.existsByUserIdAndBookType(user.getId(), bookType)) {
+            return;
         }
-
-        if (dueSoonRecords.isEmpty()) {
-            System.out.println("目前沒有即將到期的書籍。");
+        userRepository.findByIdForUpdate(user.getId());
+        if (!userBorrowCounterRepository.existsByUserIdAndBookType(user.getId(), bookType)) {
+            long activeCount = borrowRecordRepository.countCurrentBorrowsByUserAndBookType(user.getId(), bookType);
+            userBorrowCounterRepository.save(new UserBorrowCounter(user, bookType, (int) activeCount));
         }
-
-        System.out.println("=== 通知發送完成 ===");
     }
 
     /**
@@ -229,7 +760,7 @@ public class BorrowService {
     @Transactional
     public void performFailingOperation(Long borrowRecordId, Long bookCopyId) {
         // 步驟1: 更新借閱記錄
-        BorrowRecord borrowRecord = borrowRecordRepository.findById(borrowRecordId).orElseThrow();
+        BorrowRecord borrowRecord = borrowRecordRepository.findByIdForUpdate(borrowRecordId).orElseThrow();
         borrowRecord.setStatus(BorrowRecord.BorrowStatus.RETURNED);
         borrowRecord.setReturnDate(LocalDate.now());
         borrowRecordRepository.save(borrowRecord);
@@ -242,4 +773,10 @@ public class BorrowService {
         // 步驟3: 故意拋出異常來觸發回滾
         throw new RuntimeException("故意觸發事務回滾測試");
     }
-}
\ No newline at end of file
+
+    private static final class BatchPlan {
+        private final List<BatchBorrowItemResult> results = new ArrayList<>();
+        private final List<Integer> grantedIndexes = new ArrayList<>();
+        private final List<Long> grantedCopyIds = new ArrayList<>();
+    }
+}
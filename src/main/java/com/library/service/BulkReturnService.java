@@ -0,0 +1,247 @@
+package com.library.service;
+
+import com.library.dto.BulkReturnRequest;
+import com.library.dto.BulkReturnResponse;
+import com.library.entity.Book;
+import com.library.entity.BookItem;
+import com.library.entity.BorrowRecord;
+import com.library.event.BookAvailabilityChangedEvent;
+import com.library.repository.BookCopyRepository;
+import com.library.repository.BookItemRepository;
+import com.library.repository.BorrowRecordRepository;
+import com.library.repository.HoldRepository;
+import com.library.repository.UserBorrowCounterRepository;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 大量還書（如還書箱整批掃描）
+ *
+ * 依 chunk-size 分批，每批一個交易，各階段以集合式 SQL 完成：鎖定借閱記錄、一次標記為已歸還、
+ * 依歸還數量分組遞減借閱計數器與增加副本可借數量；有人預約的副本先保留給隊首。加鎖順序為借閱記錄、計數器、副本，與單筆還書相同。
+ * 無法歸還的項目（不存在、已歸還、副本沒有借閱中的記錄）個別回報，不影響同批其他項目。
+ */
+@Service
+@Slf4j
+public class BulkReturnService {
+
+    @Autowired
+    private BorrowRecordRepository borrowRecordRepository;
+
+    @Autowired
+    private BookCopyRepository bookCopyRepository;
+
+    @Autowired
+    private BookItemRepository bookItemRepository;
+
+    @Autowired
+    private UserBorrowCounterRepository userBorrowCounterRepository;
+
+    @Autowired
+    private HoldRepository holdRepository;
+
+    @Autowired
+    private HoldService holdService;
+
+    @Autowired
+    private BorrowRetryExecutor borrowRetryExecutor;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${library.borrow.bulk-return.chunk-size:500}")
+    private int chunkSize;
+
+    public BulkReturnResponse returnBooks(BulkReturnRequest request) {
+        List<Long> borrowRecordIds = request.getBorrowRecordIds() != null ? request.getBorrowRecordIds() : List.of();
+        List<Long> bookCopyIds = request.getBookCopyIds() != null ? request.getBookCopyIds() : List.of();
+        if (borrowRecordIds.isEmpty() && bookCopyIds.isEmpty()) {
+            throw new IllegalArgumentException("請提供要歸還的借閱記錄ID或書籍副本ID");
+        }
+
+        long start = System.currentTimeMillis();
+        int returned = 0;
+        List<BulkReturnResponse.Failure> failures = new ArrayList<>();
+
+        // 同一借閱記錄只能歸還一次；副本ID可重複（同一副本有多本借出時每掃描一次還一本）
+        Set<Long> seen = new HashSet<>();
+        List<Long> distinctRecordIds = new ArrayList<>();
+        for (Long id : borrowRecordIds) {
+            if (seen.add(id)) {
+                distinctRecordIds.add(id);
+            } else {
+                failures.add(BulkReturnResponse.Failure.ofBorrowRecord(id, "借閱記錄重複出現在歸還清單中"));
+            }
+        }
+
+        for (int from = 0; from < distinctRecordIds.size(); from += chunkSize) {
+            List<Long> chunk = distinctRecordIds.subList(from, Math.min(from + chunkSize, distinctRecordIds.size()));
+            ChunkResult result = borrowRetryExecutor.execute("bulk-return", () -> returnChunk(chunk, List.of()));
+            returned += result.returned;
+            failures.addAll(result.failures);
+        }
+        for (int from = 0; from < bookCopyIds.size(); from += chunkSize) {
+            List<Long> chunk = bookCopyIds.subList(from, Math.min(from + chunkSize, bookCopyIds.size()));
+            ChunkResult result = borrowRetryExecutor.execute("bulk-return", () -> returnChunk(List.of(), chunk));
+            returned += result.returned;
+            failures.addAll(result.failures);
+        }
+
+        log.info("大量還書完成：{} 筆請求，歸還 {} 筆，失敗 {} 筆，耗時 {} ms",
+                borrowRecordIds.size() + bookCopyIds.size(), returned, failures.size(),
+                System.currentTimeMillis() - start);
+        return new BulkReturnResponse(borrowRecordIds.size() + bookCopyIds.size(), returned, failures);
+    }
+
+    /**
+     * 在目前交易中歸還一批項目（借閱記錄ID已去除重複）
+     */
+    private ChunkResult returnChunk(List<Long> borrowRecordIds, List<Long> bookCopyIds) {
+        List<BulkReturnResponse.Failure> failures = new ArrayList<>();
+        List<BorrowRecordRepository.ReturnTarget> targets = new ArrayList<>();
+
+        // 1. 鎖定借閱記錄，找出不存在或已歸還的項目
+        if (!borrowRecordIds.isEmpty()) {
+            Map<Long, BorrowRecordRepository.ReturnTarget> byId = new HashMap<>();
+            for (BorrowRecordRepository.ReturnTarget target
+                    : borrowRecordRepository.findReturnTargetsForUpdate(new TreeSet<>(borrowRecordIds))) {
+                byId.put(target.getBorrowRecordId(), target);
+            }
+            for (Long id : borrowRecordIds) {
+                BorrowRecordRepository.ReturnTarget target = byId.get(id);
+                if (target == null) {
+                    failures.add(BulkReturnResponse.Failure.ofBorrowRecord(id, "借閱記錄不存在：ID " + id));
+                } else if (target.getStatus() == BorrowRecord.BorrowStatus.RETURNED) {
+                    failures.add(BulkReturnResponse.Failure.ofBorrowRecord(id, "此書籍已歸還"));
+                } else {
+                    targets.add(target);
+                }
+            }
+        }
+
+        // 2. 以副本ID掃描時，每掃描一次歸還該副本最早到期的一筆借閱記錄
+        if (!bookCopyIds.isEmpty()) {
+            Map<Long, Deque<BorrowRecordRepository.ReturnTarget>> byCopy = new HashMap<>();
+            for (BorrowRecordRepository.ReturnTarget target : borrowRecordRepository
+                    .findActiveReturnTargetsByBookCopyIdsForUpdate(new TreeSet<>(bookCopyIds))) {
+                byCopy.computeIfAbsent(target.getBookCopyId(), id -> new ArrayDeque<>()).add(target);
+            }
+            for (Long bookCopyId : bookCopyIds) {
+                Deque<BorrowRecordRepository.ReturnTarget> active = byCopy.get(bookCopyId);
+                if (active == null || active.isEmpty()) {
+                    failures.add(BulkReturnResponse.Failure.ofBookCopy(bookCopyId,
+                            "此書籍副本沒有借閱中的記錄：ID " + bookCopyId));
+                } else {
+                    targets.add(active.poll());
+                }
+            }
+        }
+
+        if (targets.isEmpty()) {
+            return new ChunkResult(0, failures);
+        }
+
+        // 3. 一次標記為已歸還
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> returnedIds = targets.stream().map(BorrowRecordRepository.ReturnTarget::getBorrowRecordId).toList();
+        borrowRecordRepository.markReturned(returnedIds, LocalDate.now(), now);
+
+        // 4. 依用戶與書籍類型彙總後遞減借閱計數器
+        Map<Long, BookCopyRepository.CopySummary> copies = new HashMap<>();
+        Set<Long> copyIds = targets.stream().map(BorrowRecordRepository.ReturnTarget::getBookCopyId)
+                .collect(Collectors.toSet());
+        for (BookCopyRepository.CopySummary copy : bookCopyRepository.findCopySummaries(copyIds)) {
+            copies.put(copy.getBookCopyId(), copy);
+        }
+        Map<CounterKey, Integer> returnsPerCounter = new HashMap<>();
+        Map<Long, Integer> returnsPerCopy = new TreeMap<>();
+        Map<Long, List<Long>> itemsPerCopy = new HashMap<>();
+        for (BorrowRecordRepository.ReturnTarget target : targets) {
+            Book.BookType bookType = copies.get(target.getBookCopyId()).getBookType();
+            returnsPerCounter.merge(new CounterKey(target.getUserId(), bookType), 1, Integer::sum);
+            returnsPerCopy.merge(target.getBookCopyId(), 1, Integer::sum);
+            if (target.getBookItemId() != null) {
+                itemsPerCopy.computeIfAbsent(target.getBookCopyId(), id -> new ArrayList<>()).add(target.getBookItemId());
+            }
+        }
+        Map<Integer, List<Long>> countersByCount = new TreeMap<>();
+        Set<Long> userIds = new HashSet<>();
+        returnsPerCounter.keySet().forEach(key -> userIds.add(key.userId));
+        for (UserBorrowCounterRepository.CounterRow counter
+                : userBorrowCounterRepository.findRowsByUserIdIn(userIds)) {
+            Integer count = returnsPerCounter.get(new CounterKey(counter.getUserId(), counter.getBookType()));
+            if (count != null) {
+                countersByCount.computeIfAbsent(count, c -> new ArrayList<>()).add(counter.getId());
+            }
+        }
+        countersByCount.forEach((count, ids) -> userBorrowCounterRepository.subtract(ids, count));
+
+        // 5. 有人預約的副本先保留給隊首（鎖定副本後再查，與預約排隊互斥），剩餘本數才回到可借數量
+        Map<Long, Integer> allocatedPerCopy = new HashMap<>();
+        bookCopyRepository.lockAllById(returnsPerCopy.keySet());
+        for (Long copyId : holdRepository.findBookCopyIdsWithWaitingHolds(returnsPerCopy.keySet())) {
+            allocatedPerCopy.put(copyId, holdService.allocateReturnedCopies(copyId, returnsPerCopy.get(copyId)));
+        }
+
+        // 6. 逐冊追蹤的館藏更新實體書狀態（可借數量於提交後重新計算）；
+        //    其餘依歸還數量分組增加副本可借數量（大多數副本只還一本，通常只需一次 UPDATE）
+        List<Long> reservedItems = new ArrayList<>();
+        List<Long> availableItems = new ArrayList<>();
+        Map<Integer, List<Long>> copiesByCount = new TreeMap<>();
+        Set<Long> restockedCopies = new TreeSet<>();
+        returnsPerCopy.forEach((copyId, count) -> {
+            int allocated = allocatedPerCopy.getOrDefault(copyId, 0);
+            List<Long> items = itemsPerCopy.get(copyId);
+            if (items != null) {
+                reservedItems.addAll(items.subList(0, allocated));
+                availableItems.addAll(items.subList(allocated, items.size()));
+            } else if (count > allocated) {
+                copiesByCount.computeIfAbsent(count - allocated, c -> new ArrayList<>()).add(copyId);
+            }
+            if (count > allocated) {
+                restockedCopies.add(copyId);
+            }
+        });
+        if (!reservedItems.isEmpty()) {
+            bookItemRepository.updateStatus(reservedItems, BookItem.ItemStatus.RESERVED, now);
+        }
+        if (!availableItems.isEmpty()) {
+            bookItemRepository.updateStatus(availableItems, BookItem.ItemStatus.AVAILABLE, now);
+        }
+        copiesByCount.forEach((count, ids) -> bookCopyRepository.addAvailableCopies(ids, count, now));
+
+        for (Long copyId : restockedCopies) {
+            BookCopyRepository.CopySummary copy = copies.get(copyId);
+            eventPublisher.publishEvent(new BookAvailabilityChangedEvent(copy.getBookId(), copy.getLibraryId(),
+                    itemsPerCopy.containsKey(copyId)));
+        }
+        return new ChunkResult(targets.size(), failures);
+    }
+
+    private static final class ChunkResult {
+        private final int returned;
+        private final List<BulkReturnResponse.Failure> failures;
+
+        private ChunkResult(int returned, List<BulkReturnResponse.Failure> failures) {
+            this.returned = returned;
+            this.failures = failures;
+        }
+    }
+
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static final class CounterKey {
+        private final Long userId;
+        private final Book.BookType bookType;
+    }
+}
@@ -0,0 +1,115 @@
+package com.library.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.library.dto.BookSearchResponse;
+import com.library.dto.BookStockRow;
+import com.library.entity.Book;
+import com.library.entity.BookCopy;
+import com.library.repository.BookRepository;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CatalogExportService {
+
+    private final BookRepository bookRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+
+    @Value("${library.export.chunk-size:500}")
+    private int chunkSize;
+
+    /**
+     * 以 NDJSON（每行一本書，含各圖書館館藏）輸出整個書目
+     * 以資料庫游標逐筆讀取書籍，每 chunkSize 本查詢一次館藏、寫出並清空持久化內容，記憶體用量不隨書目大小成長
+     *
+     * @return 輸出的書籍數量
+     */
+    @Transactional(readOnly = true)
+    public long exportCatalog(OutputStream output) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        List<Book> chunk = new ArrayList<>(chunkSize);
+        long count = 0;
+
+        try (Stream<Book> books = bookRepository.streamAllByOrderById()) {
+            Iterator<Book> iterator = books.iterator();
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() >= chunkSize) {
+                    count += writeChunk(chunk, writer);
+                }
+            }
+            count += writeChunk(chunk, writer);
+        }
+
+        log.info("書目匯出完成：{} 本書籍", count);
+        return count;
+    }
+
+    /**
+     * 寫出一批書籍後清空持久化內容，已寫出的書籍不再佔用記憶體
+     */
+    private int writeChunk(List<Book> chunk, Writer writer) throws IOException {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+
+        List<Long> bookIds = chunk.stream().map(Book::getId).collect(Collectors.toList());
+        Map<Long, List<BookSearchResponse.LibraryStockInfo>> stockByBookId = new HashMap<>();
+        for (BookStockRow row : bookRepository.findStockRowsByBookIds(bookIds, BookCopy.CopyStatus.ACTIVE)) {
+            if (row.getLibraryId() == null) {
+                continue;
+            }
+            stockByBookId.computeIfAbsent(row.getBookId(), id -> new ArrayList<>())
+                    .add(new BookSearchResponse.LibraryStockInfo(
+                            row.getLibraryId(),
+                            row.getLibraryName(),
+                            row.getLibraryAddress(),
+                            row.getTotalCopies(),
+                            row.getAvailableCopies(),
+                            row.getAvailableCopies() > 0
+                    ));
+        }
+
+        for (Book book : chunk) {
+            BookSearchResponse response = new BookSearchResponse(
+                    book.getId(),
+                    book.getTitle(),
+                    book.getAuthor(),
+                    book.getPublishYear(),
+                    book.getType(),
+                    book.getIsbn(),
+                    book.getPublisher(),
+                    stockByBookId.getOrDefault(book.getId(), new ArrayList<>())
+            );
+            writer.write(objectMapper.writeValueAsString(response));
+            writer.write('\n');
+        }
+        writer.flush();
+
+        int written = chunk.size();
+        chunk.clear();
+        entityManager.clear();
+        return written;
+    }
+}
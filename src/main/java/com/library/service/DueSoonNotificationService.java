@@ -0,0 +1,203 @@
+package com.library.service;
+
+import com.library.dto.DueSoonNotificationResult;
+import com.library.dto.DueSoonNotificationRow;
+import com.library.notification.Notification;
+import com.library.notification.NotificationSender;
+import com.library.repository.BorrowRecordRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 到期通知：找出 days-ahead 天內到期的借閱，透過 NotificationSender 通知借閱者
+ *
+ * 呼叫端執行緒逐日以 ID 游標分批讀取投影，每批在各自的唯讀交易中查詢後立即結束交易，
+ * 發送期間不持有資料庫連線；每批交給 workers 個工作執行緒組成與發送通知。
+ * 工作佇列只保留 workers 批，佇列滿時由呼叫端執行緒自行處理該批，讀取速度不會超過發送速度，
+ * 記憶體中最多約 (2 * workers + 1) 批。
+ */
+@Service
+@Slf4j
+public class DueSoonNotificationService {
+
+    // 每讀取這麼多批記錄一次進度
+    private static final int PROGRESS_LOG_INTERVAL = 100;
+
+    private final BorrowRecordRepository borrowRecordRepository;
+    private final NotificationSender notificationSender;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Counter sentCounter;
+    private final Counter failedCounter;
+    private final Timer runTimer;
+    private final int daysAhead;
+    private final int chunkSize;
+    private final int workers;
+
+    @Autowired
+    public DueSoonNotificationService(BorrowRecordRepository borrowRecordRepository,
+            NotificationSender notificationSender, PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${library.notifications.due-soon.days-ahead:5}") int daysAhead,
+            @Value("${library.notifications.due-soon.chunk-size:1000}") int chunkSize,
+            @Value("${library.notifications.due-soon.workers:4}") int workers) {
+        if (daysAhead < 0) {
+            throw new IllegalArgumentException("library.notifications.due-soon.days-ahead 不能小於 0");
+        }
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("library.notifications.due-soon.chunk-size 至少為 1");
+        }
+        if (workers < 1) {
+            throw new IllegalArgumentException("library.notifications.due-soon.workers 至少為 1");
+        }
+        this.borrowRecordRepository = borrowRecordRepository;
+        this.notificationSender = notificationSender;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.sentCounter = Counter.builder("library.notifications.due-soon.sent")
+                .description("已發送的到期通知數量")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("library.notifications.due-soon.failed")
+                .description("發送失敗的到期通知數量")
+                .register(meterRegistry);
+        this.runTimer = Timer.builder("library.notifications.due-soon.duration")
+                .description("每次發送到期通知的總耗時")
+                .register(meterRegistry);
+        this.daysAhead = daysAhead;
+        this.chunkSize = chunkSize;
+        this.workers = workers;
+    }
+
+    /**
+     * 發送到期通知，所有通知發送完成後才回傳
+     * 單則通知發送失敗只計入 failed，不影響其他通知
+     */
+    public DueSoonNotificationResult sendDueNotifications() {
+        LocalDate today = LocalDate.now();
+        LocalDate dueBefore = today.plusDays(daysAhead);
+        long begin = System.nanoTime();
+        Progress progress = new Progress();
+
+        ThreadPoolExecutor executor = newWorkerPool();
+        try {
+            int chunks = 0;
+            for (LocalDate dueDate = today; !dueDate.isAfter(dueBefore); dueDate = dueDate.plusDays(1)) {
+                long afterId = 0L;
+                while (true) {
+                    List<DueSoonNotificationRow> rows = readChunk(dueDate, afterId);
+                    if (rows.isEmpty()) {
+                        break;
+                    }
+                    progress.read.addAndGet(rows.size());
+                    executor.execute(() -> dispatch(rows, today, progress));
+
+                    afterId = rows.get(rows.size() - 1).getBorrowRecordId();
+                    if (++chunks % PROGRESS_LOG_INTERVAL == 0) {
+                        logProgress(progress, begin);
+                    }
+                    if (rows.size() < chunkSize) {
+                        break;
+                    }
+                }
+            }
+        } finally {
+            awaitWorkers(executor, progress, begin);
+            notificationSender.flush();
+        }
+
+        long elapsedNanos = System.nanoTime() - begin;
+        runTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        log.info("到期通知發送完成：{} 到期前的借閱共 {} 筆，發送 {} 則，失敗 {} 則，耗時 {} ms（{} 則/秒）",
+                dueBefore, progress.read.get(), progress.sent.get(), progress.failed.get(), elapsedMillis,
+                throughput(progress.sent.get(), elapsedNanos));
+        return new DueSoonNotificationResult(today, dueBefore, progress.sent.get(), progress.failed.get(),
+                elapsedMillis);
+    }
+
+    private List<DueSoonNotificationRow> readChunk(LocalDate dueDate, long afterId) {
+        return readOnlyTransaction.execute(status -> borrowRecordRepository.findDueSoonRows(
+                dueDate, afterId, PageRequest.of(0, chunkSize)));
+    }
+
+    private void dispatch(List<DueSoonNotificationRow> rows, LocalDate today, Progress progress) {
+        for (DueSoonNotificationRow row : rows) {
+            try {
+                notificationSender.send(format(row, today));
+                sentCounter.increment();
+                progress.sent.incrementAndGet();
+            } catch (RuntimeException e) {
+                failedCounter.increment();
+                progress.failed.incrementAndGet();
+                log.warn("到期通知發送失敗：借閱記錄 {}（用戶 {}）：{}",
+                        row.getBorrowRecordId(), row.getUsername(), e.getMessage());
+            }
+        }
+    }
+
+    static Notification format(DueSoonNotificationRow row, LocalDate today) {
+        long daysUntilDue = ChronoUnit.DAYS.between(today, row.getDueDate());
+        String body = String.format("書籍：《%s》 - %s\n圖書館：%s\n到期日期：%s (%d 天後)\n"
+                        + "訊息：您借閱的書籍即將到期，請準時歸還。",
+                row.getBookTitle(), row.getBookAuthor(), row.getLibraryName(), row.getDueDate(), daysUntilDue);
+        return new Notification(row.getUserId(), row.getUsername(), row.getEmail(),
+                "借閱書籍即將到期：《" + row.getBookTitle() + "》", body);
+    }
+
+    private ThreadPoolExecutor newWorkerPool() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "due-soon-notify-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(workers), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    private void awaitWorkers(ThreadPoolExecutor executor, Progress progress, long begin) {
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                logProgress(progress, begin);
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            log.warn("到期通知發送被中斷，已發送 {} 則", progress.sent.get());
+        }
+    }
+
+    private void logProgress(Progress progress, long begin) {
+        long elapsedNanos = System.nanoTime() - begin;
+        log.info("到期通知進度：已讀取 {} 筆，已發送 {} 則，失敗 {} 則（{} 則/秒）", progress.read.get(),
+                progress.sent.get(), progress.failed.get(), throughput(progress.sent.get(), elapsedNanos));
+    }
+
+    private static long throughput(long count, long elapsedNanos) {
+        return elapsedNanos <= 0 ? count : count * 1_000_000_000L / elapsedNanos;
+    }
+
+    private static final class Progress {
+        private final AtomicLong read = new AtomicLong();
+        private final AtomicLong sent = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+    }
+}
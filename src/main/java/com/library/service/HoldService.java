@@ -0,0 +1,243 @@
+package com.library.service;
+
+import com.library.dto.HoldResponse;
+import com.library.dto.PlaceHoldRequest;
+import com.library.entity.BookCopy;
+import com.library.entity.BookItem;
+import com.library.entity.Hold;
+import com.library.entity.User;
+import com.library.event.BookAvailabilityChangedEvent;
+import com.library.event.HoldReadyEvent;
+import com.library.exception.BookAlreadyBorrowedException;
+import com.library.exception.BookNotAvailableException;
+import com.library.repository.BookCopyRepository;
+import com.library.repository.BookItemRepository;
+import com.library.repository.BorrowRecordRepository;
+import com.library.repository.HoldRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 書籍副本的預約候補佇列
+ *
+ * 副本沒有可借數量時用戶可排隊預約；還書時在還書交易中把歸還的一本保留給隊首並通知，
+ * 取代用戶反覆重試借書。排隊、取隊首、取消都只走 idx_holds_copy_status 索引，不隨隊伍長度掃描；
+ * 排隊位置需計算排在前面的預約數，只在用戶查詢單筆預約的位置時計算。
+ * 所有改變佇列的操作先鎖定副本資料列，與還書的加鎖順序（借閱記錄、計數器、副本、預約）一致。
+ */
+@Service
+@Transactional
+@Slf4j
+public class HoldService {
+
+    @Autowired
+    private HoldRepository holdRepository;
+
+    @Autowired
+    private BookCopyRepository bookCopyRepository;
+
+    @Autowired
+    private BookItemRepository bookItemRepository;
+
+    @Autowired
+    private BorrowRecordRepository borrowRecordRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private BorrowRetryExecutor borrowRetryExecutor;
+
+    @Value("${library.holds.pickup-days:3}")
+    private int pickupDays;
+
+    /**
+     * 預約（排隊）：只有副本目前沒有可借數量時才能預約
+     */
+    public HoldResponse placeHold(PlaceHoldRequest request, User user) {
+        BookCopy bookCopy = bookCopyRepository.findById(request.getBookCopyId())
+                .orElseThrow(() -> new IllegalArgumentException("書籍副本不存在：ID " + request.getBookCopyId()));
+
+        if (bookCopy.getStatus() != BookCopy.CopyStatus.ACTIVE) {
+            throw new BookNotAvailableException("此書籍副本目前不可借閱");
+        }
+        if (!bookCopy.getLibrary().getActive()) {
+            throw new BookNotAvailableException("此圖書館目前已停用，無法借閱");
+        }
+        if (borrowRecordRepository.findActiveBorrowByUserAndBook(user.getId(), bookCopy.getBook().getId()).isPresent()) {
+            throw new BookAlreadyBorrowedException("您已經借閱了這本書：" + bookCopy.getBook().getTitle());
+        }
+
+        // 鎖定副本後再確認可借數量，避免與同時進行的還書錯過配給（逐冊追蹤的館藏以實體書狀態為準）
+        int availableCopies = bookCopyRepository.findAvailableCopiesForUpdate(bookCopy.getId()).orElse(0);
+        boolean available = bookCopy.isItemTracked()
+                ? bookItemRepository.existsByBookCopyIdAndStatus(bookCopy.getId(), BookItem.ItemStatus.AVAILABLE)
+                : availableCopies > 0;
+        if (available) {
+            throw new IllegalArgumentException("此書籍副本目前有可借閱的數量，請直接借閱");
+        }
+        if (holdRepository.existsActiveHold(user.getId(), bookCopy.getId())) {
+            throw new IllegalArgumentException("您已預約此書籍副本");
+        }
+
+        Hold hold = new Hold();
+        hold.setUser(user);
+        hold.setBookCopy(bookCopy);
+        hold.setStatus(Hold.HoldStatus.WAITING);
+        hold = holdRepository.save(hold);
+
+        return HoldResponse.from(hold);
+    }
+
+    /**
+     * 查詢用戶排隊中與可取書的預約
+     */
+    @Transactional(readOnly = true)
+    public List<HoldResponse> getActiveHolds(User user) {
+        return holdRepository.findActiveByUserIdWithDetails(user.getId()).stream()
+                .map(HoldResponse::from)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 查詢排隊中預約的排隊位置（第 1 位為隊首）
+     */
+    @Transactional(readOnly = true)
+    public long getQueuePosition(Long holdId, User user) {
+        Hold hold = holdRepository.findById(holdId)
+                .orElseThrow(() -> new IllegalArgumentException("預約不存在：ID " + holdId));
+        if (!hold.getUser().getId().equals(user.getId())) {
+            throw new IllegalArgumentException("您沒有此預約");
+        }
+        if (hold.getStatus() != Hold.HoldStatus.WAITING) {
+            throw new IllegalArgumentException("此預約不在排隊中");
+        }
+        return holdRepository.countQueuePosition(hold.getBookCopy().getId(), holdId);
+    }
+
+    /**
+     * 取消預約；已保留給此用戶的一本轉給下一位，沒有人排隊時回到可借數量
+     */
+    public void cancelHold(Long holdId, User user) {
+        HoldRepository.HoldTarget target = holdRepository.findTargetById(holdId).stream().findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("預約不存在：ID " + holdId));
+        if (!target.getUserId().equals(user.getId())) {
+            throw new IllegalArgumentException("您沒有此預約");
+        }
+
+        bookCopyRepository.findAvailableCopiesForUpdate(target.getBookCopyId());
+        LocalDateTime now = LocalDateTime.now();
+        if (holdRepository.transition(holdId, Hold.HoldStatus.WAITING, Hold.HoldStatus.CANCELLED, now) == 1) {
+            return;
+        }
+        if (holdRepository.transition(holdId, Hold.HoldStatus.READY, Hold.HoldStatus.CANCELLED, now) == 1) {
+            releaseReservedCopy(target.getBookCopyId(), now);
+            return;
+        }
+        throw new IllegalArgumentException("此預約已完成或已取消，無法取消");
+    }
+
+    /**
+     * 還書時呼叫（於還書交易中）：把歸還的 count 本依序保留給隊首的預約者，回傳實際保留的本數
+     * 剩餘的本數由呼叫端加回可借數量
+     */
+    public int allocateReturnedCopies(Long bookCopyId, int count) {
+        bookCopyRepository.findAvailableCopiesForUpdate(bookCopyId);
+        LocalDateTime now = LocalDateTime.now();
+        List<Hold> head = holdRepository.findQueueHead(bookCopyId, PageRequest.of(0, count));
+        for (Hold hold : head) {
+            hold.setStatus(Hold.HoldStatus.READY);
+            hold.setReadyAt(now);
+            hold.setExpiresAt(now.plusDays(pickupDays));
+            eventPublisher.publishEvent(new HoldReadyEvent(hold.getId(), hold.getUser().getId(),
+                    hold.getUser().getUsername(), bookCopyId, hold.getBookCopy().getBook().getTitle(),
+                    hold.getBookCopy().getLibrary().getName(), hold.getExpiresAt()));
+        }
+        return head.size();
+    }
+
+    /**
+     * 借書時呼叫：有保留給此用戶的一本時完成預約，借書改借保留的一本
+     * 先以唯讀查詢確認，沒有預約的借書（絕大多數）不會寫入 holds
+     */
+    public boolean fulfillReadyHold(Long userId, Long bookCopyId) {
+        if (!holdRepository.existsReadyHold(userId, bookCopyId)) {
+            return false;
+        }
+        return holdRepository.fulfillReadyHold(userId, bookCopyId, LocalDateTime.now()) > 0;
+    }
+
+    /**
+     * 合併提交借書時呼叫：完成批次中各用戶保留在此副本的預約，回傳完成預約的用戶ID
+     */
+    public Set<Long> fulfillReadyHolds(Long bookCopyId, Collection<Long> userIds) {
+        Set<Long> readyUserIds = new HashSet<>(holdRepository.findReadyHoldUserIds(bookCopyId, userIds));
+        if (!readyUserIds.isEmpty()) {
+            holdRepository.fulfillReadyHolds(bookCopyId, readyUserIds, LocalDateTime.now());
+        }
+        return readyUserIds;
+    }
+
+    /**
+     * 定期處理超過取書期限的預約，保留的一本轉給下一位
+     */
+    @Scheduled(cron = "${library.holds.expire-cron:0 */10 * * * ?}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public int expireReadyHolds() {
+        List<HoldRepository.HoldTarget> expired = holdRepository.findExpiredReadyHolds(LocalDateTime.now());
+        int count = 0;
+        for (HoldRepository.HoldTarget target : expired) {
+            if (borrowRetryExecutor.execute("hold-expire", () -> expire(target))) {
+                count++;
+            }
+        }
+        if (count > 0) {
+            log.info("取書逾期的預約：{} 筆", count);
+        }
+        return count;
+    }
+
+    private boolean expire(HoldRepository.HoldTarget target) {
+        bookCopyRepository.findAvailableCopiesForUpdate(target.getBookCopyId());
+        LocalDateTime now = LocalDateTime.now();
+        if (holdRepository.transition(target.getHoldId(), Hold.HoldStatus.READY, Hold.HoldStatus.EXPIRED, now) == 0) {
+            return false;
+        }
+        releaseReservedCopy(target.getBookCopyId(), now);
+        return true;
+    }
+
+    /**
+     * 保留的一本不再屬於原預約者：轉給下一位，沒有人排隊時回到可借數量
+     * 逐冊追蹤的館藏保留的實體書維持 RESERVED 給下一位，或改回 AVAILABLE
+     */
+    private void releaseReservedCopy(Long bookCopyId, LocalDateTime now) {
+        if (allocateReturnedCopies(bookCopyId, 1) > 0) {
+            return;
+        }
+        BookCopy bookCopy = bookCopyRepository.findById(bookCopyId).orElseThrow();
+        if (bookCopy.isItemTracked()) {
+            bookItemRepository.findClaimable(bookCopyId, BookItem.ItemStatus.RESERVED, PageRequest.of(0, 1))
+                    .forEach(bookItem -> bookItem.setStatus(BookItem.ItemStatus.AVAILABLE));
+        } else {
+            bookCopyRepository.incrementAvailableCopies(bookCopyId, now);
+        }
+        eventPublisher.publishEvent(
+                new BookAvailabilityChangedEvent(bookCopy.getBook().getId(), bookCopy.getLibrary().getId(),
+                        bookCopy.isItemTracked()));
+    }
+}
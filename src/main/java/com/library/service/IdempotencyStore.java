@@ -0,0 +1,195 @@
+package com.library.service;
+
+import com.library.exception.IdempotencyKeyConflictException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * 借書、還書請求的 Idempotency-Key 記錄
+ *
+ * 以（用戶名稱, 操作, Idempotency-Key）為鍵保存成功的回應，存活時間（ttl）內以相同鍵重送的請求直接回傳原本的回應，
+ * 不再查詢或寫入資料庫；執行失敗的請求不保存，重送時重新執行。
+ * 項目依建立順序排列，每次寫入時從最舊的一端移除過期項目，超出上限時淘汰最舊的項目。
+ * 記錄保存在本機記憶體，多台伺服器時需由負載平衡將同一用戶導向同一台。
+ */
+@Component
+@Slf4j
+public class IdempotencyStore {
+
+    /** Idempotency-Key 長度上限，避免以超長的鍵佔用記憶體 */
+    public static final int MAX_KEY_LENGTH = 64;
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Clock clock;
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>();
+
+    private final Counter replays;
+    private final Counter conflicts;
+
+    @Autowired
+    public IdempotencyStore(MeterRegistry meterRegistry,
+            @Value("${library.idempotency.max-entries:100000}") int maxEntries,
+            @Value("${library.idempotency.ttl:24h}") Duration ttl) {
+        this(meterRegistry, maxEntries, ttl, Clock.systemUTC());
+    }
+
+    IdempotencyStore(MeterRegistry meterRegistry, int maxEntries, Duration ttl, Clock clock) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+
+        this.replays = requestCounter(meterRegistry, "replay");
+        this.conflicts = requestCounter(meterRegistry, "conflict");
+        Gauge.builder("library.idempotency.size", this, IdempotencyStore::size)
+                .description("Idempotency-Key 記錄數")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 執行請求；沒有 Idempotency-Key 時直接執行
+     * 相同的鍵已有成功的回應時回傳該回應，鍵已用於不同的請求或原請求仍在處理中時拋出 IdempotencyKeyConflictException
+     *
+     * @param fingerprint 請求內容（如書籍副本ID），相同的鍵必須對應相同的請求內容
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String username, String operation, String idempotencyKey, Object fingerprint,
+            Supplier<T> action) {
+        if (idempotencyKey == null) {
+            return action.get();
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key 長度需為 1 到 " + MAX_KEY_LENGTH + " 個字元");
+        }
+
+        Key key = new Key(username, operation, idempotencyKey);
+        Entry stored = begin(key, fingerprint);
+        if (stored != null) {
+            return (T) stored.response;
+        }
+
+        boolean completed = false;
+        try {
+            T response = action.get();
+            complete(key, response);
+            completed = true;
+            return response;
+        } finally {
+            if (!completed) {
+                release(key);
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * 已有成功的回應時回傳該項目；鍵尚未使用時記錄為處理中並回傳 null
+     */
+    private synchronized Entry begin(Key key, Object fingerprint) {
+        long now = clock.millis();
+        removeExpired(now);
+        Entry entry = entries.get(key);
+        if (entry == null || now - entry.createdAt >= ttlMillis) {
+            // 先移除過期的舊項目，讓新項目排在最後，維持依建立順序排列
+            entries.remove(key);
+            put(key, new Entry(fingerprint, null, now));
+            return null;
+        }
+        if (!Objects.equals(entry.fingerprint, fingerprint)) {
+            conflicts.increment();
+            throw new IdempotencyKeyConflictException("此 Idempotency-Key 已用於不同的請求");
+        }
+        if (entry.response == null) {
+            conflicts.increment();
+            throw new IdempotencyKeyConflictException("相同 Idempotency-Key 的請求仍在處理中，請稍後再試");
+        }
+        replays.increment();
+        log.debug("重送請求 {}，回傳原本的回應", key.operation);
+        return entry;
+    }
+
+    private synchronized void complete(Key key, Object response) {
+        Entry pending = entries.get(key);
+        // 處理期間已因超出上限被淘汰時不再保存
+        if (pending != null) {
+            entries.put(key, new Entry(pending.fingerprint, response, pending.createdAt));
+        }
+    }
+
+    private synchronized void release(Key key) {
+        entries.remove(key);
+    }
+
+    private void put(Key key, Entry entry) {
+        entries.put(key, entry);
+        if (entries.size() > maxEntries) {
+            Iterator<Entry> eldest = entries.values().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * 依建立順序從最舊的一端移除過期項目，遇到未過期的項目即停止
+     */
+    private void removeExpired(long now) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (now - entry.createdAt < ttlMillis) {
+                return;
+            }
+            iterator.remove();
+        }
+    }
+
+    private static Counter requestCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("library.idempotency.requests")
+                .description("帶有 Idempotency-Key 的重送請求次數")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @EqualsAndHashCode
+    private static final class Key {
+        private final String username;
+        private final String operation;
+        private final String idempotencyKey;
+
+        private Key(String username, String operation, String idempotencyKey) {
+            this.username = username;
+            this.operation = operation;
+            this.idempotencyKey = idempotencyKey;
+        }
+    }
+
+    private static final class Entry {
+        private final Object fingerprint;
+        // 處理中為 null
+        private final Object response;
+        private final long createdAt;
+
+        private Entry(Object fingerprint, Object response, long createdAt) {
+            this.fingerprint = fingerprint;
+            this.response = response;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -1,14 +1,45 @@
 package com.library.service;
 
+import com.library.dto.DueSoonNotificationResult;
+import com.library.event.HoldReadyEvent;
+import com.library.notification.Notification;
+import com.library.notification.NotificationSender;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Service
+@Slf4j
 public class NotificationService {
 
+    private final BorrowService borrowService;
+    private final DueSoonNotificationService dueSoonNotificationService;
+    private final NotificationSender notificationSender;
+    private final Counter holdReadySentCounter;
+    private final Counter holdReadyFailedCounter;
+    // 是否有已送出但尚未 flush 的預約通知
+    private final AtomicBoolean holdReadyPending = new AtomicBoolean();
+
     @Autowired
-    private BorrowService borrowService;
+    public NotificationService(BorrowService borrowService, DueSoonNotificationService dueSoonNotificationService,
+            NotificationSender notificationSender, MeterRegistry meterRegistry) {
+        this.borrowService = borrowService;
+        this.dueSoonNotificationService = dueSoonNotificationService;
+        this.notificationSender = notificationSender;
+        this.holdReadySentCounter = Counter.builder("library.notifications.hold-ready.sent")
+                .description("已發送的預約可取書通知數量")
+                .register(meterRegistry);
+        this.holdReadyFailedCounter = Counter.builder("library.notifications.hold-ready.failed")
+                .description("發送失敗的預約可取書通知數量")
+                .register(meterRegistry);
+    }
 
     /**
      * 每天上午 9:00 自動發送到期通知
@@ -16,18 +47,53 @@ public class NotificationService {
      */
     @Scheduled(cron = "0 0 9 * * ?")
     public void scheduledDueNotifications() {
-        System.out.println("=== 定時任務：開始發送到期通知 ===");
-        borrowService.sendDueNotifications();
-        System.out.println("=== 定時任務：到期通知發送完成 ===");
+        DueSoonNotificationResult result = dueSoonNotificationService.sendDueNotifications();
+        log.info("定時任務：到期通知發送完成，發送 {} 則，失敗 {} 則", result.getSent(), result.getFailed());
     }
 
     /**
-     * 每小時檢查一次逾期書籍 (用於測試，實際可調整頻率)
+     * 每小時把已過到期日的借閱記錄標記為逾期（OVERDUE）
      */
     @Scheduled(fixedDelay = 3600000) // 每小時執行一次
     public void checkOverdueBooks() {
-        // 這裡可以實作逾期書籍的處理邏輯
-        // 例如：自動更新狀態、發送逾期通知等
-        System.out.println("定時檢查逾期書籍狀態...");
+        int marked = borrowService.markOverdueRecords();
+        log.info("定時檢查逾期書籍狀態：新標記逾期 {} 筆", marked);
+    }
+
+    /**
+     * 預約可取書通知，還書交易提交後在同一執行緒發送
+     * 還書已經提交，發送失敗只記錄並計入 failed，不拋出例外影響還書的回應；
+     * 不在每則通知後 flush，由 flushHoldReadyNotifications 定期寫出
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onHoldReady(HoldReadyEvent event) {
+        String body = String.format("書籍：《%s》 圖書館：%s\n訊息：您預約的書籍已可取書，請於 %s 前借閱。",
+                event.getBookTitle(), event.getLibraryName(), event.getExpiresAt());
+        try {
+            notificationSender.send(new Notification(event.getUserId(), event.getUsername(), null,
+                    "預約書籍可取書：《" + event.getBookTitle() + "》", body));
+            holdReadySentCounter.increment();
+            holdReadyPending.set(true);
+        } catch (RuntimeException e) {
+            holdReadyFailedCounter.increment();
+            log.warn("預約可取書通知發送失敗：預約 {}（用戶 {}）：{}",
+                    event.getHoldId(), event.getUsername(), e.getMessage());
+        }
+    }
+
+    /**
+     * 定期寫出已緩衝的預約可取書通知，沒有新通知時不做任何事
+     */
+    @Scheduled(fixedDelayString = "${library.notifications.hold-ready.flush-interval:5000}")
+    public void flushHoldReadyNotifications() {
+        if (!holdReadyPending.getAndSet(false)) {
+            return;
+        }
+        try {
+            notificationSender.flush();
+        } catch (RuntimeException e) {
+            holdReadyPending.set(true);
+            log.warn("預約可取書通知寫出失敗，下次再試：{}", e.getMessage());
+        }
     }
-}
\ No newline at end of file
+}
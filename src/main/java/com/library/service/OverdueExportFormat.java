@@ -0,0 +1,27 @@
+package com.library.service;
+
+import java.util.Locale;
+
+/**
+ * 逾期報表匯出格式
+ */
+public enum OverdueExportFormat {
+    /** 逗號分隔，第一行為欄位名稱 */
+    CSV,
+    /** 每行一筆 JSON */
+    NDJSON;
+
+    /**
+     * 解析格式參數（不分大小寫）
+     *
+     * @throws IllegalArgumentException 不支援的格式
+     */
+    public static OverdueExportFormat from(String value) {
+        for (OverdueExportFormat format : values()) {
+            if (format.name().equals(value.toUpperCase(Locale.ROOT))) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("不支援的匯出格式：" + value);
+    }
+}
@@ -0,0 +1,53 @@
+package com.library.service;
+
+import com.library.search.KeysetCursors;
+import lombok.Getter;
+
+import java.time.LocalDate;
+
+/**
+ * 逾期報表的游標，記錄上一頁最後一筆的（到期日, 借閱記錄ID）
+ * 報表依到期日、ID 由舊到新（逾期最久的在前）；對外以 Base64URL 字串傳遞，客戶端不應解析其內容
+ */
+@Getter
+public final class OverdueReportCursor {
+
+    // 第一頁的游標排在所有借閱記錄之前（日期與 ID 都小於任何實際資料）
+    private static final LocalDate FIRST_DATE = LocalDate.of(1, 1, 1);
+
+    private final LocalDate lastDueDate;
+    private final long lastId;
+
+    private OverdueReportCursor(LocalDate lastDueDate, long lastId) {
+        this.lastDueDate = lastDueDate;
+        this.lastId = lastId;
+    }
+
+    /**
+     * 第一頁的游標
+     */
+    public static OverdueReportCursor first() {
+        return new OverdueReportCursor(FIRST_DATE, 0L);
+    }
+
+    /**
+     * 以某筆借閱記錄為上一頁最後一筆的游標
+     */
+    public static OverdueReportCursor after(LocalDate lastDueDate, long lastId) {
+        return new OverdueReportCursor(lastDueDate, lastId);
+    }
+
+    public String encode() {
+        return KeysetCursors.encode(lastDueDate, lastId);
+    }
+
+    /**
+     * 解析游標字串
+     *
+     * @throws IllegalArgumentException 游標格式不正確
+     */
+    public static OverdueReportCursor decode(String cursor) {
+        return KeysetCursors.decode(cursor, 2,
+                fields -> after(LocalDate.parse(fields[0]), Long.parseLong(fields[1])));
+    }
+}
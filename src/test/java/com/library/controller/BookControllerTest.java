@@ -2,13 +2,22 @@ package com.library.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.library.dto.AddBookCopyResponse;
+import com.library.dto.BookSearchPage;
 import com.library.dto.BookSearchResponse;
+import com.library.dto.BookSuggestion;
 import com.library.dto.CreateBookRequest;
 import com.library.dto.CreateBookResponse;
+import com.library.dto.FacetedSearchResponse;
+import com.library.dto.SearchFacets;
 import com.library.entity.Book;
 import com.library.entity.User;
 import com.library.repository.UserRepository;
+import com.library.search.BookSortKey;
+import com.library.search.SearchCursor;
+import com.library.search.SearchReadPath;
+import com.library.search.StockFilter;
 import com.library.service.BookService;
+import com.library.service.CatalogExportService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -16,15 +25,24 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.zip.GZIPInputStream;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -42,6 +60,9 @@ class BookControllerTest {
         @MockBean
         private BookService bookService;
 
+        @MockBean
+        private CatalogExportService catalogExportService;
+
         @MockBean
         private UserRepository userRepository;
 
@@ -245,6 +266,125 @@ class BookControllerTest {
                 verify(bookService).searchBooks("不存在的書", null, null, null, 0, 20);
         }
 
+        @Test
+        @DisplayName("搜尋書籍成功：指定投影讀取方式")
+        void searchBooks_WithReadPath() throws Exception {
+                // Given
+                when(bookService.searchBooks("Java", null, null, null, 0, 20, SearchReadPath.PROJECTION, StockFilter.none()))
+                                .thenReturn(Arrays.asList(bookSearchResponse));
+
+                // When & Then
+                mockMvc.perform(get("/api/books/search")
+                                .param("title", "Java")
+                                .param("readPath", "projection"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.data[0].title").value("Java程式設計"));
+
+                verify(bookService).searchBooks("Java", null, null, null, 0, 20, SearchReadPath.PROJECTION, StockFilter.none());
+        }
+
+        @Test
+        @DisplayName("搜尋書籍成功：僅列出指定圖書館可借的書籍")
+        void searchBooks_AvailableOnlyInLibraries() throws Exception {
+                // Given
+                StockFilter stockFilter = StockFilter.of(List.of(1L, 2L), true);
+                when(bookService.searchBooks(null, null, null, null, 0, 20, null, stockFilter))
+                                .thenReturn(Arrays.asList(bookSearchResponse));
+
+                // When & Then
+                mockMvc.perform(get("/api/books/search")
+                                .param("availableOnly", "true")
+                                .param("libraryIds", "2", "1"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.data[0].title").value("Java程式設計"));
+
+                verify(bookService).searchBooks(null, null, null, null, 0, 20, null, stockFilter);
+        }
+
+        @Test
+        @DisplayName("搜尋書籍成功：模糊搜尋")
+        void searchBooks_Fuzzy() throws Exception {
+                // Given
+                when(bookService.searchBooks("Jvaa", null, null, null, 0, 20, null, StockFilter.none(), true))
+                                .thenReturn(Arrays.asList(bookSearchResponse));
+
+                // When & Then
+                mockMvc.perform(get("/api/books/search")
+                                .param("title", "Jvaa")
+                                .param("fuzzy", "true"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.data[0].title").value("Java程式設計"));
+
+                verify(bookService).searchBooks("Jvaa", null, null, null, 0, 20, null, StockFilter.none(), true);
+        }
+
+        @Test
+        @DisplayName("搜尋書籍失敗：模糊搜尋併用館藏條件")
+        void searchBooks_FuzzyWithStockFilter() throws Exception {
+                // Given
+                when(bookService.searchBooks(any(), any(), any(), any(), anyInt(), anyInt(), any(), any(), eq(true)))
+                                .thenThrow(new IllegalArgumentException("模糊搜尋不支援館藏條件（availableOnly、libraryIds）"));
+
+                // When & Then
+                mockMvc.perform(get("/api/books/search")
+                                .param("title", "Jvaa")
+                                .param("fuzzy", "true")
+                                .param("availableOnly", "true"))
+                                .andExpect(status().isBadRequest())
+                                .andExpect(jsonPath("$.success").value(false))
+                                .andExpect(jsonPath("$.message").value("模糊搜尋不支援館藏條件（availableOnly、libraryIds）"));
+        }
+
+        @Test
+        @DisplayName("搜尋書籍失敗：不支援的讀取方式")
+        void searchBooks_InvalidReadPath() throws Exception {
+                // When & Then
+                mockMvc.perform(get("/api/books/search")
+                                .param("title", "Java")
+                                .param("readPath", "native"))
+                                .andExpect(status().isBadRequest())
+                                .andExpect(jsonPath("$.success").value(false))
+                                .andExpect(jsonPath("$.message").value("不支援的讀取方式：native"));
+        }
+
+        @Test
+        @DisplayName("游標分頁搜尋書籍成功")
+        void searchBooksByCursor_FirstPage() throws Exception {
+                // Given
+                String nextCursor = SearchCursor.after(BookSortKey.TITLE, 1L, "Java程式設計").encode();
+                when(bookService.searchBooksByCursor(eq("Java"), isNull(), isNull(), isNull(), any(SearchCursor.class), eq(20)))
+                                .thenReturn(new BookSearchPage(Arrays.asList(bookSearchResponse), nextCursor));
+
+                // When & Then
+                mockMvc.perform(get("/api/books/search")
+                                .param("title", "Java")
+                                .param("cursor", "")
+                                .param("sort", "title"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.success").value(true))
+                                .andExpect(jsonPath("$.data.books[0].title").value("Java程式設計"))
+                                .andExpect(jsonPath("$.data.nextCursor").value(nextCursor));
+
+                verify(bookService).searchBooksByCursor(eq("Java"), isNull(), isNull(), isNull(),
+                                argThat(cursor -> cursor.getSortKey() == BookSortKey.TITLE && cursor.getLastId() == 0L),
+                                eq(20));
+                verify(bookService, never()).searchBooks(any(), any(), any(), any(), anyInt(), anyInt());
+        }
+
+        @Test
+        @DisplayName("游標分頁搜尋失敗：無效的游標")
+        void searchBooksByCursor_InvalidCursor() throws Exception {
+                // When & Then
+                mockMvc.perform(get("/api/books/search")
+                                .param("title", "Java")
+                                .param("cursor", "not-a-cursor"))
+                                .andExpect(status().isBadRequest())
+                                .andExpect(jsonPath("$.success").value(false))
+                                .andExpect(jsonPath("$.message").value("無效的分頁游標"));
+
+                verify(bookService, never()).searchBooksByCursor(any(), any(), any(), any(), any(), anyInt());
+        }
+
         @Test
         @DisplayName("搜尋書籍失敗：缺少搜尋條件")
         void searchBooks_MissingSearchCriteria() throws Exception {
@@ -367,4 +507,137 @@ class BookControllerTest {
 
                 verify(bookService, never()).getBookById(anyLong());
         }
+
+        @Test
+        @DisplayName("館員匯出書目：NDJSON 串流輸出")
+        @WithMockUser(username = "librarian", roles = {"LIBRARIAN"})
+        void exportCatalog_Librarian_StreamsNdjson() throws Exception {
+                // Given
+                when(catalogExportService.exportCatalog(any(OutputStream.class))).thenAnswer(invocation -> {
+                        OutputStream output = invocation.getArgument(0);
+                        output.write("{\"id\":1}\n{\"id\":2}\n".getBytes(StandardCharsets.UTF_8));
+                        return 2L;
+                });
+
+                // When
+                MvcResult result = mockMvc.perform(get("/api/books/export"))
+                                .andExpect(request().asyncStarted())
+                                .andReturn();
+
+                // Then
+                // 匯出端點使用 library.export.timeout，不受預設非同步逾時限制
+                assertThat(result.getRequest().getAsyncContext().getTimeout())
+                                .isEqualTo(Duration.ofMinutes(30).toMillis());
+                mockMvc.perform(asyncDispatch(result))
+                                .andExpect(status().isOk())
+                                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                                .andExpect(content().string("{\"id\":1}\n{\"id\":2}\n"));
+        }
+
+        @Test
+        @DisplayName("館員匯出書目：用戶端接受 gzip 時壓縮輸出")
+        @WithMockUser(username = "librarian", roles = {"LIBRARIAN"})
+        void exportCatalog_AcceptsGzip_CompressesBody() throws Exception {
+                // Given
+                when(catalogExportService.exportCatalog(any(OutputStream.class))).thenAnswer(invocation -> {
+                        OutputStream output = invocation.getArgument(0);
+                        output.write("{\"id\":1}\n".getBytes(StandardCharsets.UTF_8));
+                        return 1L;
+                });
+
+                // When
+                MvcResult result = mockMvc.perform(get("/api/books/export")
+                                .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                                .andExpect(request().asyncStarted())
+                                .andReturn();
+                MvcResult dispatched = mockMvc.perform(asyncDispatch(result))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                                .andReturn();
+
+                // Then
+                byte[] body = dispatched.getResponse().getContentAsByteArray();
+                try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                        assertThat(new String(input.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("{\"id\":1}\n");
+                }
+        }
+
+        @Test
+        @DisplayName("匯出書目失敗：非館員")
+        @WithMockUser(username = "member", roles = {"MEMBER"})
+        void exportCatalog_Member_Forbidden() throws Exception {
+                // When & Then
+                mockMvc.perform(get("/api/books/export"))
+                                .andExpect(status().is5xxServerError()); // @PreAuthorize 拋出 AccessDeniedException，未處理時變成 500
+
+                verify(catalogExportService, never()).exportCatalog(any());
+        }
+
+        @Test
+        @DisplayName("自動完成：回傳依借閱次數排序的建議")
+        void suggest_Success() throws Exception {
+                // Given
+                when(bookService.suggest("java", 10)).thenReturn(List.of(
+                                new BookSuggestion("Java程式設計", BookSuggestion.SuggestionType.TITLE, 1L, 12L),
+                                new BookSuggestion("Java Smith", BookSuggestion.SuggestionType.AUTHOR, null, 5L)));
+
+                // When & Then
+                mockMvc.perform(get("/api/books/suggest").param("q", "java"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.success").value(true))
+                                .andExpect(jsonPath("$.message").value("找到 2 筆建議"))
+                                .andExpect(jsonPath("$.data[0].text").value("Java程式設計"))
+                                .andExpect(jsonPath("$.data[0].type").value("TITLE"))
+                                .andExpect(jsonPath("$.data[0].bookId").value(1))
+                                .andExpect(jsonPath("$.data[1].type").value("AUTHOR"));
+
+                verify(bookService).suggest("java", 10);
+        }
+
+        @Test
+        @DisplayName("自動完成失敗：建議數量超出範圍")
+        void suggest_InvalidLimit() throws Exception {
+                // When & Then
+                mockMvc.perform(get("/api/books/suggest").param("q", "java").param("limit", "50"))
+                                .andExpect(status().isBadRequest())
+                                .andExpect(jsonPath("$.success").value(false))
+                                .andExpect(jsonPath("$.message").value("建議數量必須在1-20之間"));
+
+                verify(bookService, never()).suggest(anyString(), anyInt());
+        }
+
+        @Test
+        @DisplayName("分面搜尋：回傳目前頁書籍與分面統計")
+        void searchBooksWithFacets_Success() throws Exception {
+                // Given
+                SearchFacets facets = new SearchFacets(3L, Map.of(2023, 2L, 2021, 1L),
+                                Map.of(Book.BookType.BOOK, 3L), Map.of(1L, 2L));
+                when(bookService.searchBooksWithFacets("Java", null, null, null, 0, 20))
+                                .thenReturn(new FacetedSearchResponse(List.of(bookSearchResponse), facets));
+
+                // When & Then
+                mockMvc.perform(get("/api/books/search").param("title", "Java").param("facets", "true"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.success").value(true))
+                                .andExpect(jsonPath("$.message").value("共 3 本符合條件的書籍"))
+                                .andExpect(jsonPath("$.data.books[0].title").value("Java程式設計"))
+                                .andExpect(jsonPath("$.data.facets.totalBooks").value(3))
+                                .andExpect(jsonPath("$.data.facets.years.2023").value(2))
+                                .andExpect(jsonPath("$.data.facets.types.BOOK").value(3))
+                                .andExpect(jsonPath("$.data.facets.libraries.1").value(2));
+
+                verify(bookService, never()).searchBooks(any(), any(), any(), any(), anyInt(), anyInt());
+        }
+
+        @Test
+        @DisplayName("分面搜尋失敗：未提供搜尋條件")
+        void searchBooksWithFacets_NoCriteria() throws Exception {
+                // When & Then
+                mockMvc.perform(get("/api/books/search").param("facets", "true"))
+                                .andExpect(status().isBadRequest())
+                                .andExpect(jsonPath("$.success").value(false));
+
+                verify(bookService, never()).searchBooksWithFacets(any(), any(), any(), any(), anyInt(), anyInt());
+        }
 }
\ No newline at end of file
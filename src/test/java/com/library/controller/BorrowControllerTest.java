@@ -5,7 +5,16 @@ import com.library.dto.*;
 import com.library.entity.*;
 import com.library.exception.*;
 import com.library.repository.UserRepository;
+import com.library.service.BorrowGroupCommitter;
+import com.library.service.BorrowHistoryCursor;
 import com.library.service.BorrowService;
+import com.library.service.BulkReturnService;
+import com.library.service.DueSoonNotificationService;
+import com.library.service.IdempotencyStore;
+import com.library.service.OverdueExportFormat;
+import com.library.service.OverdueReportCursor;
+import com.library.service.OverdueReportService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -13,11 +22,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -25,13 +39,16 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(BorrowController.class)
-@Import(com.library.config.TestSecurityConfig.class)
+@Import({com.library.config.TestSecurityConfig.class, IdempotencyStore.class, BorrowGroupCommitter.class,
+                SimpleMeterRegistry.class})
 @ActiveProfiles("test")
 @DisplayName("BorrowController 單元測試")
 class BorrowControllerTest {
@@ -42,9 +59,18 @@ class BorrowControllerTest {
         @MockBean
         private BorrowService borrowService;
 
+        @MockBean
+        private BulkReturnService bulkReturnService;
+
         @MockBean
         private UserRepository userRepository;
 
+        @MockBean
+        private OverdueReportService overdueReportService;
+
+        @MockBean
+        private DueSoonNotificationService dueSoonNotificationService;
+
         @Autowired
         private ObjectMapper objectMapper;
 
@@ -116,6 +142,128 @@ class BorrowControllerTest {
                 verify(borrowService).borrowBook(any(BorrowBookRequest.class), eq(memberUser));
         }
 
+        @Test
+        @DisplayName("借書重送：相同 Idempotency-Key 回傳原本的回應，不再借書")
+        @WithMockUser(username = "member")
+        void borrowBook_IdempotencyKeyReplay_ReturnsStoredResponse() throws Exception {
+                // Given
+                when(userRepository.findByUsername("member")).thenReturn(Optional.of(memberUser));
+                when(borrowService.borrowBook(any(BorrowBookRequest.class), eq(memberUser)))
+                                .thenReturn(borrowResponse);
+
+                // When & Then
+                for (int i = 0; i < 2; i++) {
+                        mockMvc.perform(post("/api/borrows")
+                                        .header("Idempotency-Key", "borrow-replay")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(objectMapper.writeValueAsString(borrowRequest)))
+                                        .andExpect(status().isOk())
+                                        .andExpect(jsonPath("$.message").value("借書成功"))
+                                        .andExpect(jsonPath("$.data.borrowRecordId").value(1L));
+                }
+
+                verify(borrowService, times(1)).borrowBook(any(BorrowBookRequest.class), eq(memberUser));
+                verify(userRepository, times(1)).findByUsername("member");
+        }
+
+        @Test
+        @DisplayName("借書失敗：Idempotency-Key 已用於不同的書籍副本")
+        @WithMockUser(username = "member")
+        void borrowBook_IdempotencyKeyReused_Conflict() throws Exception {
+                // Given
+                when(userRepository.findByUsername("member")).thenReturn(Optional.of(memberUser));
+                when(borrowService.borrowBook(any(BorrowBookRequest.class), eq(memberUser)))
+                                .thenReturn(borrowResponse);
+                mockMvc.perform(post("/api/borrows")
+                                .header("Idempotency-Key", "borrow-reused")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(borrowRequest)))
+                                .andExpect(status().isOk());
+
+                // When & Then
+                mockMvc.perform(post("/api/borrows")
+                                .header("Idempotency-Key", "borrow-reused")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(new BorrowBookRequest(2L))))
+                                .andExpect(status().isConflict())
+                                .andExpect(jsonPath("$.message").value("此 Idempotency-Key 已用於不同的請求"));
+
+                verify(borrowService, times(1)).borrowBook(any(BorrowBookRequest.class), eq(memberUser));
+        }
+
+        @Test
+        @DisplayName("依書名借書：依偏好圖書館借出")
+        @WithMockUser(username = "member")
+        void borrowByTitle_Success() throws Exception {
+                // Given
+                when(userRepository.findByUsername("member")).thenReturn(Optional.of(memberUser));
+                when(borrowService.borrowByTitle(any(BorrowByTitleRequest.class), eq(memberUser)))
+                                .thenReturn(borrowResponse);
+
+                // When & Then
+                mockMvc.perform(post("/api/borrows/by-title")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(new BorrowByTitleRequest(1L, List.of(2L, 1L)))))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.message").value("借書成功"))
+                                .andExpect(jsonPath("$.data.bookTitle").value("Java程式設計"));
+
+                verify(borrowService).borrowByTitle(argThat(request -> request.getBookId().equals(1L)
+                                && request.getPreferredLibraryIds().equals(List.of(2L, 1L))), eq(memberUser));
+        }
+
+        @Test
+        @DisplayName("依書名借書失敗：偏好圖書館都沒有可借副本")
+        @WithMockUser(username = "member")
+        void borrowByTitle_NoneAvailable() throws Exception {
+                // Given
+                when(userRepository.findByUsername("member")).thenReturn(Optional.of(memberUser));
+                when(borrowService.borrowByTitle(any(BorrowByTitleRequest.class), eq(memberUser)))
+                                .thenThrow(new BookNotAvailableException("指定的圖書館目前都沒有此書可借閱的副本"));
+
+                // When & Then
+                mockMvc.perform(post("/api/borrows/by-title")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(new BorrowByTitleRequest(1L, List.of()))))
+                                .andExpect(status().isBadRequest())
+                                .andExpect(jsonPath("$.message").value("指定的圖書館目前都沒有此書可借閱的副本"));
+        }
+
+        @Test
+        @DisplayName("批次借書：回傳逐項結果")
+        @WithMockUser(username = "member")
+        void borrowBooks_Success() throws Exception {
+                // Given
+                when(userRepository.findByUsername("member")).thenReturn(Optional.of(memberUser));
+                when(borrowService.borrowBooks(any(BatchBorrowRequest.class), eq(memberUser)))
+                                .thenReturn(BatchBorrowResponse.of(List.of(
+                                                BatchBorrowItemResult.success(1L, borrowResponse),
+                                                BatchBorrowItemResult.failure(2L, "此書籍副本目前沒有可借閱的數量"))));
+
+                // When & Then
+                mockMvc.perform(post("/api/borrows/batch")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(new BatchBorrowRequest(List.of(1L, 2L)))))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.success").value(true))
+                                .andExpect(jsonPath("$.message").value("批次借書完成：成功 1 本，失敗 1 本"))
+                                .andExpect(jsonPath("$.data.items[0].borrow.bookTitle").value("Java程式設計"))
+                                .andExpect(jsonPath("$.data.items[1].success").value(false))
+                                .andExpect(jsonPath("$.data.items[1].message").value("此書籍副本目前沒有可借閱的數量"));
+        }
+
+        @Test
+        @DisplayName("批次借書失敗：清單為空")
+        @WithMockUser(username = "member")
+        void borrowBooks_EmptyList() throws Exception {
+                mockMvc.perform(post("/api/borrows/batch")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(new BatchBorrowRequest(List.of()))))
+                                .andExpect(status().isBadRequest());
+
+                verify(borrowService, never()).borrowBooks(any(), any());
+        }
+
         @Test
         @DisplayName("借書失敗：超過借閱限制")
         @WithMockUser(username = "member")
@@ -156,6 +304,24 @@ class BorrowControllerTest {
                 verify(borrowService).borrowBook(any(BorrowBookRequest.class), eq(memberUser));
         }
 
+        @Test
+        @DisplayName("借書失敗：借書請求過多時回應 503")
+        @WithMockUser(username = "member")
+        void borrowBook_Overloaded() throws Exception {
+                // Given
+                when(userRepository.findByUsername("member")).thenReturn(Optional.of(memberUser));
+                when(borrowService.borrowBook(any(BorrowBookRequest.class), eq(memberUser)))
+                                .thenThrow(new BorrowOverloadedException("目前借閱此書的請求過多，請稍後再試"));
+
+                // When & Then
+                mockMvc.perform(post("/api/borrows")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(borrowRequest)))
+                                .andExpect(status().isServiceUnavailable())
+                                .andExpect(jsonPath("$.success").value(false))
+                                .andExpect(jsonPath("$.message").value("目前借閱此書的請求過多，請稍後再試"));
+        }
+
         @Test
         @DisplayName("借書失敗：請求參數無效")
         @WithMockUser(username = "member")
@@ -194,6 +360,27 @@ class BorrowControllerTest {
                 verify(borrowService).returnBook(1L, memberUser);
         }
 
+        @Test
+        @DisplayName("還書重送：相同 Idempotency-Key 回傳原本的回應，不會回報已歸還")
+        @WithMockUser(username = "member")
+        void returnBook_IdempotencyKeyReplay_ReturnsStoredResponse() throws Exception {
+                // Given
+                when(userRepository.findByUsername("member")).thenReturn(Optional.of(memberUser));
+                when(borrowService.returnBook(1L, memberUser)).thenReturn(returnResponse)
+                                .thenThrow(new BookAlreadyReturnedException("此書籍已歸還"));
+
+                // When & Then
+                for (int i = 0; i < 2; i++) {
+                        mockMvc.perform(put("/api/borrows/1/return")
+                                        .header("Idempotency-Key", "return-replay"))
+                                        .andExpect(status().isOk())
+                                        .andExpect(jsonPath("$.message").value("還書成功"))
+                                        .andExpect(jsonPath("$.data.status").value("RETURNED"));
+                }
+
+                verify(borrowService, times(1)).returnBook(1L, memberUser);
+        }
+
         @Test
         @DisplayName("還書失敗：借閱記錄不存在")
         @WithMockUser(username = "member")
@@ -235,19 +422,23 @@ class BorrowControllerTest {
         @WithMockUser(username = "member")
         void getMyBorrowRecords_Success() throws Exception {
                 // Given
-                List<BorrowRecordResponse> records = Arrays.asList(borrowRecordResponse);
+                BorrowHistoryPage page = new BorrowHistoryPage(Arrays.asList(borrowRecordResponse), "next");
                 when(userRepository.findByUsername("member")).thenReturn(Optional.of(memberUser));
-                when(borrowService.getUserBorrowHistory(memberUser)).thenReturn(records);
+                when(borrowService.getUserBorrowHistory(eq(memberUser), eq(BorrowRecord.BorrowStatus.RETURNED),
+                                eq(LocalDate.of(2024, 1, 1)), isNull(), any(BorrowHistoryCursor.class), eq(10)))
+                                .thenReturn(page);
 
                 // When & Then
-                mockMvc.perform(get("/api/borrows/my-records"))
+                mockMvc.perform(get("/api/borrows/my-records")
+                                .param("status", "RETURNED")
+                                .param("from", "2024-01-01")
+                                .param("size", "10"))
                                 .andExpect(status().isOk())
                                 .andExpect(jsonPath("$.success").value(true))
                                 .andExpect(jsonPath("$.message").value("找到 1 筆借閱記錄"))
-                                .andExpect(jsonPath("$.data").isArray())
-                                .andExpect(jsonPath("$.data[0].borrowRecordId").value(1L));
-
-                verify(borrowService).getUserBorrowHistory(memberUser);
+                                .andExpect(jsonPath("$.data.records").isArray())
+                                .andExpect(jsonPath("$.data.records[0].borrowRecordId").value(1L))
+                                .andExpect(jsonPath("$.data.nextCursor").value("next"));
         }
 
         @Test
@@ -256,17 +447,35 @@ class BorrowControllerTest {
         void getMyBorrowRecords_NoRecords() throws Exception {
                 // Given
                 when(userRepository.findByUsername("member")).thenReturn(Optional.of(memberUser));
-                when(borrowService.getUserBorrowHistory(memberUser)).thenReturn(Arrays.asList());
+                when(borrowService.getUserBorrowHistory(eq(memberUser), isNull(), isNull(), isNull(),
+                                any(BorrowHistoryCursor.class), eq(20)))
+                                .thenReturn(new BorrowHistoryPage(Arrays.asList(), null));
 
                 // When & Then
                 mockMvc.perform(get("/api/borrows/my-records"))
                                 .andExpect(status().isOk())
                                 .andExpect(jsonPath("$.success").value(true))
                                 .andExpect(jsonPath("$.message").value("您目前沒有借閱記錄"))
-                                .andExpect(jsonPath("$.data").isArray())
-                                .andExpect(jsonPath("$.data").isEmpty());
+                                .andExpect(jsonPath("$.data.records").isEmpty());
+        }
+
+        @Test
+        @DisplayName("查詢個人借閱記錄 - 游標或日期區間無效")
+        @WithMockUser(username = "member")
+        void getMyBorrowRecords_InvalidParameters() throws Exception {
+                when(userRepository.findByUsername("member")).thenReturn(Optional.of(memberUser));
+
+                mockMvc.perform(get("/api/borrows/my-records").param("cursor", "not-a-cursor"))
+                                .andExpect(status().isBadRequest())
+                                .andExpect(jsonPath("$.message").value("無效的分頁游標"));
+                mockMvc.perform(get("/api/borrows/my-records")
+                                .param("from", "2024-02-01")
+                                .param("to", "2024-01-01"))
+                                .andExpect(status().isBadRequest());
+                mockMvc.perform(get("/api/borrows/my-records").param("status", "LOST"))
+                                .andExpect(status().isBadRequest());
 
-                verify(borrowService).getUserBorrowHistory(memberUser);
+                verify(borrowService, never()).getUserBorrowHistory(any(), any(), any(), any(), any(), anyInt());
         }
 
         @Test
@@ -318,17 +527,21 @@ class BorrowControllerTest {
         @WithMockUser(username = "librarian")
         void getOverdueBooks_LibrarianSuccess() throws Exception {
                 // Given
-                List<BorrowRecordResponse> overdueBooks = Arrays.asList(borrowRecordResponse);
+                OverdueRecordRow row = new OverdueRecordRow(1L, 1L, "member", "一般會員", "member@test.com", 1L,
+                                "Java程式設計", "張三", null, 10L, "中央圖書館", LocalDate.now().minusDays(40),
+                                LocalDate.now().minusDays(10), BorrowRecord.BorrowStatus.OVERDUE);
                 when(userRepository.findByUsername("librarian")).thenReturn(Optional.of(librarianUser));
-                when(borrowService.getOverdueBooks()).thenReturn(overdueBooks);
+                when(borrowService.getOverdueBooks(eq(10L), any(OverdueReportCursor.class), eq(20)))
+                                .thenReturn(new OverdueReportPage(List.of(row), "next"));
 
                 // When & Then
-                mockMvc.perform(get("/api/borrows/overdue"))
+                mockMvc.perform(get("/api/borrows/overdue").param("libraryId", "10"))
                                 .andExpect(status().isOk())
                                 .andExpect(jsonPath("$.success").value(true))
-                                .andExpect(jsonPath("$.message").value("找到 1 本逾期書籍"));
-
-                verify(borrowService).getOverdueBooks();
+                                .andExpect(jsonPath("$.message").value("找到 1 本逾期書籍"))
+                                .andExpect(jsonPath("$.data.records[0].username").value("member"))
+                                .andExpect(jsonPath("$.data.records[0].daysOverdue").value(10))
+                                .andExpect(jsonPath("$.data.nextCursor").value("next"));
         }
 
         @Test
@@ -344,7 +557,94 @@ class BorrowControllerTest {
                                 .andExpect(jsonPath("$.success").value(false))
                                 .andExpect(jsonPath("$.message").value("只有館員可以查詢逾期書籍"));
 
-                verify(borrowService, never()).getOverdueBooks();
+                verify(borrowService, never()).getOverdueBooks(any(), any(), anyInt());
+        }
+
+        @Test
+        @DisplayName("館員匯出逾期報表：預設串流輸出 CSV")
+        @WithMockUser(username = "librarian")
+        void exportOverdueBooks_Librarian_StreamsCsv() throws Exception {
+                // Given
+                when(userRepository.findByUsername("librarian")).thenReturn(Optional.of(librarianUser));
+                when(overdueReportService.exportOverdue(eq(10L), eq(OverdueExportFormat.CSV), any(OutputStream.class)))
+                                .thenAnswer(invocation -> {
+                                        OutputStream output = invocation.getArgument(2);
+                                        output.write("borrowRecordId\n1\n".getBytes(StandardCharsets.UTF_8));
+                                        return 1L;
+                                });
+
+                // When
+                MvcResult result = mockMvc.perform(get("/api/borrows/overdue/export").param("libraryId", "10"))
+                                .andExpect(request().asyncStarted())
+                                .andReturn();
+
+                // Then
+                // 匯出端點使用 library.export.timeout，不受預設非同步逾時限制
+                assertThat(result.getRequest().getAsyncContext().getTimeout())
+                                .isEqualTo(Duration.ofMinutes(30).toMillis());
+                mockMvc.perform(asyncDispatch(result))
+                                .andExpect(status().isOk())
+                                .andExpect(content().contentType("text/csv;charset=UTF-8"))
+                                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION,
+                                                "attachment; filename=\"overdue.csv\""))
+                                .andExpect(content().string("borrowRecordId\n1\n"));
+        }
+
+        @Test
+        @DisplayName("匯出逾期報表失敗：非館員或格式不支援")
+        @WithMockUser(username = "member")
+        void exportOverdueBooks_Rejected() throws Exception {
+                when(userRepository.findByUsername("member")).thenReturn(Optional.of(memberUser));
+                when(userRepository.findByUsername("librarian")).thenReturn(Optional.of(librarianUser));
+
+                mockMvc.perform(get("/api/borrows/overdue/export"))
+                                .andExpect(status().isForbidden());
+                mockMvc.perform(get("/api/borrows/overdue/export").param("format", "xlsx")
+                                .with(user("librarian")))
+                                .andExpect(status().isBadRequest())
+                                .andExpect(jsonPath("$.message").value("不支援的匯出格式：xlsx"));
+
+                verify(overdueReportService, never()).exportOverdue(any(), any(), any());
+        }
+
+        @Test
+        @DisplayName("館員大量還書：回傳無法歸還的項目")
+        @WithMockUser(username = "librarian")
+        void returnBooks_LibrarianSuccess() throws Exception {
+                // Given
+                when(userRepository.findByUsername("librarian")).thenReturn(Optional.of(librarianUser));
+                when(bulkReturnService.returnBooks(any(BulkReturnRequest.class)))
+                                .thenReturn(new BulkReturnResponse(3, 2, List.of(
+                                                BulkReturnResponse.Failure.ofBorrowRecord(9L, "此書籍已歸還"))));
+
+                // When & Then
+                mockMvc.perform(post("/api/borrows/returns/bulk")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(
+                                                new BulkReturnRequest(List.of(1L, 9L), List.of(5L)))))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.success").value(true))
+                                .andExpect(jsonPath("$.message").value("大量還書完成：歸還 2 本，失敗 1 本"))
+                                .andExpect(jsonPath("$.data.failures[0].borrowRecordId").value(9L))
+                                .andExpect(jsonPath("$.data.failures[0].message").value("此書籍已歸還"));
+        }
+
+        @Test
+        @DisplayName("一般用戶大量還書失敗：權限不足")
+        @WithMockUser(username = "member")
+        void returnBooks_MemberForbidden() throws Exception {
+                // Given
+                when(userRepository.findByUsername("member")).thenReturn(Optional.of(memberUser));
+
+                // When & Then
+                mockMvc.perform(post("/api/borrows/returns/bulk")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(
+                                                new BulkReturnRequest(List.of(1L), List.of()))))
+                                .andExpect(status().isForbidden())
+                                .andExpect(jsonPath("$.message").value("只有館員可以大量還書"));
+
+                verify(bulkReturnService, never()).returnBooks(any());
         }
 
         @Test
@@ -353,14 +653,17 @@ class BorrowControllerTest {
         void sendDueNotifications_LibrarianSuccess() throws Exception {
                 // Given
                 when(userRepository.findByUsername("librarian")).thenReturn(Optional.of(librarianUser));
+                when(dueSoonNotificationService.sendDueNotifications()).thenReturn(new DueSoonNotificationResult(
+                                LocalDate.now(), LocalDate.now().plusDays(5), 3, 1, 12));
 
                 // When & Then
                 mockMvc.perform(post("/api/borrows/notifications/due-soon"))
                                 .andExpect(status().isOk())
                                 .andExpect(jsonPath("$.success").value(true))
-                                .andExpect(jsonPath("$.message").value("到期通知發送完成"));
+                                .andExpect(jsonPath("$.message").value("到期通知發送完成"))
+                                .andExpect(jsonPath("$.data").value("已發送 3 則通知，失敗 1 則"));
 
-                verify(borrowService).sendDueNotifications();
+                verify(dueSoonNotificationService).sendDueNotifications();
         }
 
         @Test
@@ -376,6 +679,6 @@ class BorrowControllerTest {
                                 .andExpect(jsonPath("$.success").value(false))
                                 .andExpect(jsonPath("$.message").value("只有館員可以發送到期通知"));
 
-                verify(borrowService, never()).sendDueNotifications();
+                verify(dueSoonNotificationService, never()).sendDueNotifications();
         }
 }
\ No newline at end of file
@@ -0,0 +1,149 @@
+package com.library.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.library.dto.HoldResponse;
+import com.library.dto.PlaceHoldRequest;
+import com.library.entity.Hold;
+import com.library.entity.User;
+import com.library.repository.UserRepository;
+import com.library.service.HoldService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(HoldController.class)
+@Import(com.library.config.TestSecurityConfig.class)
+@ActiveProfiles("test")
+@DisplayName("HoldController 單元測試")
+class HoldControllerTest {
+
+        @Autowired
+        private MockMvc mockMvc;
+
+        @MockBean
+        private HoldService holdService;
+
+        @MockBean
+        private UserRepository userRepository;
+
+        @Autowired
+        private ObjectMapper objectMapper;
+
+        private User memberUser;
+
+        @BeforeEach
+        void setUp() {
+                memberUser = new User();
+                memberUser.setId(1L);
+                memberUser.setUsername("member");
+                memberUser.setRole(User.UserRole.MEMBER);
+                when(userRepository.findByUsername("member")).thenReturn(Optional.of(memberUser));
+        }
+
+        @Test
+        @DisplayName("預約成功")
+        @WithMockUser(username = "member")
+        void placeHold_Success() throws Exception {
+                // Given
+                when(holdService.placeHold(any(PlaceHoldRequest.class), eq(memberUser)))
+                                .thenReturn(new HoldResponse(10L, 1L, "Java程式設計", "中央圖書館",
+                                                Hold.HoldStatus.WAITING, LocalDateTime.now(), null));
+
+                // When & Then
+                mockMvc.perform(post("/api/holds")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(new PlaceHoldRequest(1L))))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.message").value("預約成功，有人還書時會依序保留並通知"))
+                                .andExpect(jsonPath("$.data.holdId").value(10L))
+                                .andExpect(jsonPath("$.data.status").value("WAITING"));
+        }
+
+        @Test
+        @DisplayName("預約失敗：目前有可借數量")
+        @WithMockUser(username = "member")
+        void placeHold_CopyAvailable() throws Exception {
+                // Given
+                when(holdService.placeHold(any(PlaceHoldRequest.class), eq(memberUser)))
+                                .thenThrow(new IllegalArgumentException("此書籍副本目前有可借閱的數量，請直接借閱"));
+
+                // When & Then
+                mockMvc.perform(post("/api/holds")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(new PlaceHoldRequest(1L))))
+                                .andExpect(status().isBadRequest())
+                                .andExpect(jsonPath("$.message").value("此書籍副本目前有可借閱的數量，請直接借閱"));
+        }
+
+        @Test
+        @DisplayName("查詢個人預約")
+        @WithMockUser(username = "member")
+        void getMyHolds_Success() throws Exception {
+                // Given
+                when(holdService.getActiveHolds(memberUser)).thenReturn(List.of(
+                                new HoldResponse(10L, 1L, "Java程式設計", "中央圖書館", Hold.HoldStatus.READY,
+                                                LocalDateTime.now(), LocalDateTime.now().plusDays(3))));
+
+                // When & Then
+                mockMvc.perform(get("/api/holds/my-holds"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.message").value("找到 1 筆預約"))
+                                .andExpect(jsonPath("$.data[0].status").value("READY"));
+        }
+
+        @Test
+        @DisplayName("查詢排隊位置")
+        @WithMockUser(username = "member")
+        void getQueuePosition_Success() throws Exception {
+                // Given
+                when(holdService.getQueuePosition(10L, memberUser)).thenReturn(3L);
+
+                // When & Then
+                mockMvc.perform(get("/api/holds/10/position"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.message").value("目前排在第 3 位"))
+                                .andExpect(jsonPath("$.data").value(3));
+        }
+
+        @Test
+        @DisplayName("查詢排隊位置失敗：預約不在排隊中")
+        @WithMockUser(username = "member")
+        void getQueuePosition_NotWaiting() throws Exception {
+                // Given
+                when(holdService.getQueuePosition(10L, memberUser))
+                                .thenThrow(new IllegalArgumentException("此預約不在排隊中"));
+
+                // When & Then
+                mockMvc.perform(get("/api/holds/10/position"))
+                                .andExpect(status().isBadRequest())
+                                .andExpect(jsonPath("$.message").value("此預約不在排隊中"));
+        }
+
+        @Test
+        @DisplayName("取消預約")
+        @WithMockUser(username = "member")
+        void cancelHold_Success() throws Exception {
+                mockMvc.perform(delete("/api/holds/10"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.message").value("預約已取消"));
+
+                verify(holdService).cancelHold(10L, memberUser);
+        }
+}
@@ -0,0 +1,62 @@
+package com.library.notification;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("FileNotificationSender 單元測試")
+class FileNotificationSenderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("以 mbox 格式附加通知，內文中 From 開頭的行會跳脫")
+    void send_AppendsMboxMessages() throws Exception {
+        // Given
+        Path mailbox = tempDir.resolve("mail/outbox.mbox");
+        FileNotificationSender sender = new FileNotificationSender(mailbox, "library@localhost");
+
+        // When
+        sender.send(new Notification(1L, "member1", "member1@test.com", "借閱書籍即將到期：《Java程式設計》",
+                "書籍：《Java程式設計》\nFrom the library"));
+        sender.send(new Notification(2L, "member2", null, "預約書籍可取書", "請於三天內取書"));
+        sender.close();
+
+        // Then
+        String content = Files.readString(mailbox, StandardCharsets.UTF_8);
+        assertThat(content.split("\n")).filteredOn(line -> line.startsWith("From ")).hasSize(2);
+        assertThat(content)
+                .contains("To: member1 <member1@test.com>\n")
+                .contains("Subject: 借閱書籍即將到期：《Java程式設計》\n")
+                .contains("\n>From the library\n")
+                .contains("To: member2\n")
+                .contains("\n\n請於三天內取書\n");
+    }
+
+    @Test
+    @DisplayName("重新開啟時附加在原有信箱檔之後")
+    void send_ReopenedSender_Appends() throws Exception {
+        // Given
+        Path mailbox = tempDir.resolve("outbox.mbox");
+        FileNotificationSender first = new FileNotificationSender(mailbox, "library@localhost");
+        first.send(new Notification(1L, "member1", null, "第一則", "內容一"));
+        first.close();
+
+        // When
+        FileNotificationSender second = new FileNotificationSender(mailbox, "library@localhost");
+        second.send(new Notification(1L, "member1", null, "第二則", "內容二"));
+        second.flush();
+
+        // Then
+        assertThat(Files.readString(mailbox, StandardCharsets.UTF_8))
+                .contains("Subject: 第一則", "Subject: 第二則");
+        second.close();
+    }
+}
@@ -11,6 +11,7 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
 
@@ -313,4 +314,38 @@ class BookCopyRepositoryTest {
         assertThat(copies.get(0).getStatus()).isEqualTo(BookCopy.CopyStatus.MAINTENANCE);
         assertThat(copies.get(0).getLibrary().getActive()).isFalse();
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("條件式扣減可借數量：僅 ACTIVE 且有可借數量的副本會被扣減")
+    void decrementAvailableCopies_OnlyWhenAvailableAndActive() {
+        // When
+        int updated = bookCopyRepository.decrementAvailableCopies(javaCentralCopy.getId(), LocalDateTime.now());
+        int soldOut = bookCopyRepository.decrementAvailableCopies(javaEastCopy.getId(), LocalDateTime.now());
+        int maintenance = bookCopyRepository.decrementAvailableCopies(inactiveCopy.getId(), LocalDateTime.now());
+        entityManager.clear();
+
+        // Then
+        assertThat(updated).isEqualTo(1);
+        assertThat(soldOut).isZero();
+        assertThat(maintenance).isZero();
+        BookCopy reloaded = bookCopyRepository.findById(javaCentralCopy.getId()).orElseThrow();
+        assertThat(reloaded.getAvailableCopies()).isEqualTo(7);
+        assertThat(reloaded.getVersion()).isEqualTo(javaCentralCopy.getVersion() + 1);
+        assertThat(bookCopyRepository.findById(javaEastCopy.getId()).orElseThrow().getAvailableCopies()).isZero();
+    }
+
+    @Test
+    @DisplayName("條件式增加可借數量：不超過總數量")
+    void incrementAvailableCopies_CappedAtTotal() {
+        // When
+        int updated = bookCopyRepository.incrementAvailableCopies(pythonCentralCopy.getId(), LocalDateTime.now());
+        int full = bookCopyRepository.incrementAvailableCopies(pythonCentralCopy.getId(), LocalDateTime.now());
+        entityManager.clear();
+
+        // Then
+        assertThat(updated).isEqualTo(1);
+        assertThat(full).isZero();
+        assertThat(bookCopyRepository.findById(pythonCentralCopy.getId()).orElseThrow().getAvailableCopies())
+                .isEqualTo(3);
+    }
+}
@@ -1,6 +1,9 @@
 package com.library.repository;
 
 import com.library.entity.Book;
+import com.library.entity.BookCopy;
+import com.library.entity.Library;
+import com.library.search.BookDocument;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -13,6 +16,7 @@ import org.springframework.test.context.ActiveProfiles;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.*;
 
@@ -302,4 +306,142 @@ class BookRepositoryTest {
         // Then
         assertThat(count).isEqualTo(3);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("依書籍ID分段讀取索引資料")
+    void findSearchDocumentsAfter_ReturnsChunkOrderedById() {
+        // When
+        List<BookDocument> firstChunk = bookRepository.findSearchDocumentsAfter(0L, PageRequest.of(0, 2));
+        List<BookDocument> secondChunk = bookRepository.findSearchDocumentsAfter(
+                firstChunk.get(1).getBookId(), PageRequest.of(0, 2));
+
+        // Then
+        assertThat(firstChunk).extracting(BookDocument::getBookId)
+                .containsExactly(javaBook.getId(), pythonBook.getId());
+        assertThat(firstChunk.get(0).getTitle()).isEqualTo("Java程式設計");
+        assertThat(secondChunk).extracting(BookDocument::getBookId).containsExactly(springBook.getId());
+    }
+
+    @Test
+    @DisplayName("游標分頁：依書籍ID接續查詢")
+    void searchBooksAfterId_SeeksPastLastId() {
+        // When
+        List<Book> firstPage = bookRepository.searchBooksAfterId(
+                null, "張三", null, null, 0L, PageRequest.of(0, 1));
+        List<Book> secondPage = bookRepository.searchBooksAfterId(
+                null, "張三", null, null, firstPage.get(0).getId(), PageRequest.of(0, 1));
+        List<Book> lastPage = bookRepository.searchBooksAfterId(
+                null, "張三", null, null, secondPage.get(0).getId(), PageRequest.of(0, 1));
+
+        // Then
+        assertThat(firstPage).extracting(Book::getId).containsExactly(javaBook.getId());
+        assertThat(secondPage).extracting(Book::getId).containsExactly(springBook.getId());
+        assertThat(lastPage).isEmpty();
+    }
+
+    @Test
+    @DisplayName("游標分頁：依（書名, ID）排序，同名書籍不會遺漏")
+    void searchBooksAfterTitle_OrdersByTitleThenId() {
+        // Given
+        Book anotherJavaBook = new Book();
+        anotherJavaBook.setTitle("Java程式設計");
+        anotherJavaBook.setAuthor("王五");
+        anotherJavaBook.setPublishYear(2020);
+        anotherJavaBook.setType(Book.BookType.BOOK);
+        entityManager.persistAndFlush(anotherJavaBook);
+
+        // When
+        List<Book> firstPage = bookRepository.searchBooksAfterTitle(
+                null, null, null, null, "", 0L, PageRequest.of(0, 2));
+        Book last = firstPage.get(1);
+        List<Book> secondPage = bookRepository.searchBooksAfterTitle(
+                null, null, null, null, last.getTitle(), last.getId(), PageRequest.of(0, 2));
+
+        // Then
+        assertThat(firstPage).extracting(Book::getId).containsExactly(javaBook.getId(), anotherJavaBook.getId());
+        assertThat(secondPage).extracting(Book::getTitle).containsExactly("Python入門指南", "Spring框架實戰");
+    }
+
+    @Test
+    @DisplayName("館藏條件：僅列出在指定圖書館目前可借的書籍")
+    void searchBookIdsInStock_AvailableOnlyInLibraries() {
+        // Given
+        Library central = persistLibrary("中央圖書館", true);
+        Library branch = persistLibrary("分館圖書館", true);
+        Library closed = persistLibrary("停用圖書館", false);
+        persistCopy(javaBook, central, 0);
+        persistCopy(javaBook, branch, 2);
+        persistCopy(pythonBook, central, 1);
+        persistCopy(springBook, closed, 3);
+
+        // When
+        List<Long> availableAnywhere = bookRepository.searchBookIdsInStock(null, null, null,
+                List.of(0L), true, true, BookCopy.CopyStatus.ACTIVE, PageRequest.of(0, 10));
+        List<Long> availableInCentral = bookRepository.searchBookIdsInStock(null, null, null,
+                List.of(central.getId()), false, true, BookCopy.CopyStatus.ACTIVE, PageRequest.of(0, 10));
+        List<Long> heldInCentralOrClosed = bookRepository.searchBookIdsInStock(null, null, null,
+                List.of(central.getId(), closed.getId()), false, false, BookCopy.CopyStatus.ACTIVE,
+                PageRequest.of(0, 10));
+
+        // Then
+        assertThat(availableAnywhere).containsExactly(javaBook.getId(), pythonBook.getId());
+        assertThat(availableInCentral).containsExactly(pythonBook.getId());
+        assertThat(heldInCentralOrClosed).containsExactly(javaBook.getId(), pythonBook.getId(), springBook.getId());
+    }
+
+    @Test
+    @DisplayName("以游標依ID逐筆讀取所有書籍")
+    void streamAllByOrderById_ReturnsAllBooksInIdOrder() {
+        // When
+        List<Long> ids;
+        try (Stream<Book> books = bookRepository.streamAllByOrderById()) {
+            ids = books.map(Book::getId).toList();
+        }
+
+        // Then
+        assertThat(ids).containsExactly(javaBook.getId(), pythonBook.getId(), springBook.getId());
+    }
+
+    @Test
+    @DisplayName("分面統計：依年份、類型、圖書館計數")
+    void countFacets_GroupByYearTypeAndLibrary() {
+        // Given
+        Library central = persistLibrary("中央圖書館", true);
+        Library branch = persistLibrary("分館", true);
+        persistCopy(javaBook, central, 1);
+        persistCopy(javaBook, branch, 1);
+        persistCopy(springBook, central, 0);
+
+        // When
+        List<BookRepository.YearCount> years = bookRepository.countByPublishYear(null, "張三", null, null);
+        List<BookRepository.TypeCount> types = bookRepository.countByType(null, null, 2023, null);
+        List<BookRepository.LibraryCount> libraries = bookRepository.countByLibrary(null, null, null, central.getId());
+
+        // Then
+        assertThat(years).extracting(BookRepository.YearCount::getPublishYear, BookRepository.YearCount::getBookCount)
+                .containsExactly(tuple(2023, 2L));
+        assertThat(types).extracting(BookRepository.TypeCount::getType, BookRepository.TypeCount::getBookCount)
+                .containsExactly(tuple(Book.BookType.BOOK, 2L));
+        assertThat(libraries)
+                .extracting(BookRepository.LibraryCount::getLibraryId, BookRepository.LibraryCount::getBookCount)
+                .containsExactlyInAnyOrder(tuple(central.getId(), 2L), tuple(branch.getId(), 1L));
+    }
+
+    private Library persistLibrary(String name, boolean active) {
+        Library library = new Library();
+        library.setName(name);
+        library.setAddress(name + "地址");
+        library.setActive(active);
+        return entityManager.persistAndFlush(library);
+    }
+
+    private void persistCopy(Book book, Library library, int availableCopies) {
+        BookCopy copy = new BookCopy();
+        copy.setBook(book);
+        copy.setLibrary(library);
+        copy.setTotalCopies(3);
+        copy.setAvailableCopies(availableCopies);
+        copy.setStatus(BookCopy.CopyStatus.ACTIVE);
+        entityManager.persistAndFlush(copy);
+    }
+}
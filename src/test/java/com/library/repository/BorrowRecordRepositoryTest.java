@@ -1,5 +1,8 @@
 package com.library.repository;
 
+import com.library.dto.BorrowHistoryRow;
+import com.library.dto.DueSoonNotificationRow;
+import com.library.dto.OverdueRecordRow;
 import com.library.entity.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -7,11 +10,14 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.*;
 
@@ -196,19 +202,30 @@ class BorrowRecordRepositoryTest {
     }
 
     @Test
-    @DisplayName("查找即將到期的借閱記錄")
-    void findDueSoon_Success() {
+    @DisplayName("以 ID 游標分批查找某日到期的借閱記錄投影")
+    void findDueSoonRows_Success() {
         // Given
         LocalDate today = LocalDate.now();
-        LocalDate fiveDaysLater = today.plusDays(5);
 
         // When
-        List<BorrowRecord> records = borrowRecordRepository.findDueSoon(today, fiveDaysLater);
+        List<DueSoonNotificationRow> rows = borrowRecordRepository.findDueSoonRows(today.plusDays(3), 0L,
+                PageRequest.of(0, 10));
+        List<DueSoonNotificationRow> afterLast = borrowRecordRepository.findDueSoonRows(today.plusDays(3),
+                currentBorrow2.getId(), PageRequest.of(0, 10));
+        List<DueSoonNotificationRow> otherDay = borrowRecordRepository.findDueSoonRows(today.plusDays(2), 0L,
+                PageRequest.of(0, 10));
 
         // Then
-        assertThat(records).hasSize(1); // currentBorrow2 (3天後到期)
-        assertThat(records.get(0).getDueDate()).isEqualTo(today.plusDays(3));
-        assertThat(records.get(0).getStatus()).isEqualTo(BorrowRecord.BorrowStatus.BORROWED);
+        assertThat(rows).singleElement().satisfies(row -> { // currentBorrow2 (3天後到期)
+            assertThat(row.getBorrowRecordId()).isEqualTo(currentBorrow2.getId());
+            assertThat(row.getUsername()).isEqualTo(memberUser1.getUsername());
+            assertThat(row.getEmail()).isEqualTo(memberUser1.getEmail());
+            assertThat(row.getBookTitle()).isEqualTo(pythonMagazine.getTitle());
+            assertThat(row.getLibraryName()).isEqualTo(activeLibrary.getName());
+            assertThat(row.getDueDate()).isEqualTo(today.plusDays(3));
+        });
+        assertThat(afterLast).isEmpty();
+        assertThat(otherDay).isEmpty();
     }
 
     @Test
@@ -226,6 +243,42 @@ class BorrowRecordRepositoryTest {
         assertThat(records.get(0).getStatus()).isEqualTo(BorrowRecord.BorrowStatus.BORROWED);
     }
 
+    @Test
+    @DisplayName("標記逾期：依 ID 取出已過到期日的 BORROWED 記錄後以集合式 UPDATE 更新")
+    void markOverdue_TransitionsCandidates() {
+        // Given
+        LocalDate today = LocalDate.now();
+        List<Long> ids = borrowRecordRepository.findOverdueCandidateIds(today, 0L, PageRequest.of(0, 10));
+
+        // When
+        int updated = borrowRecordRepository.markOverdue(ids, LocalDateTime.now());
+        entityManager.clear();
+
+        // Then
+        assertThat(ids).containsExactly(overdueBorrow.getId());
+        assertThat(updated).isEqualTo(1);
+        assertThat(borrowRecordRepository.findById(overdueBorrow.getId()).orElseThrow().getStatus())
+                .isEqualTo(BorrowRecord.BorrowStatus.OVERDUE);
+        // 已標記的記錄不再是候選，游標之後也沒有其他候選
+        assertThat(borrowRecordRepository.findOverdueCandidateIds(today, 0L, PageRequest.of(0, 10))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("已標記 OVERDUE 的記錄仍算借閱中，也在逾期查詢中")
+    void overdueStatus_CountsAsActiveLoan() {
+        // Given
+        overdueBorrow.setStatus(BorrowRecord.BorrowStatus.OVERDUE);
+        entityManager.persistAndFlush(overdueBorrow);
+
+        // When & Then
+        assertThat(borrowRecordRepository.findOverdue(LocalDate.now()))
+                .extracting(BorrowRecord::getId).containsExactly(overdueBorrow.getId());
+        assertThat(borrowRecordRepository.countCurrentBorrowsByUserAndBookType(
+                memberUser2.getId(), Book.BookType.BOOK)).isEqualTo(1);
+        assertThat(borrowRecordRepository.findActiveBorrowByUserAndBook(memberUser2.getId(), javaBook.getId()))
+                .isPresent();
+    }
+
     @Test
     @DisplayName("查找用戶對特定書籍副本的活躍借閱記錄")
     void findActiveBorrowByUserAndBookCopy_Success() {
@@ -252,43 +305,79 @@ class BorrowRecordRepositoryTest {
     }
 
     @Test
-    @DisplayName("查找用戶借閱記錄並載入詳細信息")
-    void findByUserIdWithDetails_Success() {
+    @DisplayName("投影查詢借閱歷史：依借閱日期由新到舊，從游標之後接續")
+    void findHistoryRows_PagesAfterCursor() {
         // When
-        List<BorrowRecord> records = borrowRecordRepository.findByUserIdWithDetails(memberUser1.getId());
+        List<BorrowHistoryRow> firstPage = borrowRecordRepository.findHistoryRows(memberUser1.getId(),
+                LocalDate.of(9999, 12, 31), Long.MAX_VALUE, null, null, null, PageRequest.of(0, 2));
+        BorrowHistoryRow last = firstPage.get(1);
+        List<BorrowHistoryRow> secondPage = borrowRecordRepository.findHistoryRows(memberUser1.getId(),
+                last.getBorrowDate(), last.getBorrowRecordId(), null, null, null, PageRequest.of(0, 2));
 
         // Then
-        assertThat(records).hasSize(3);
-        
-        // 驗證關聯實體都已載入
-        for (BorrowRecord record : records) {
-            assertThat(record.getBookCopy()).isNotNull();
-            assertThat(record.getBookCopy().getBook()).isNotNull();
-            assertThat(record.getBookCopy().getLibrary()).isNotNull();
-        }
-        
-        // 驗證排序（按借閱日期降序）
-        assertThat(records.get(0).getBorrowDate()).isAfter(records.get(1).getBorrowDate());
+        assertThat(firstPage).extracting(BorrowHistoryRow::getBorrowRecordId)
+                .containsExactly(currentBorrow2.getId(), currentBorrow1.getId());
+        assertThat(secondPage).extracting(BorrowHistoryRow::getBorrowRecordId)
+                .containsExactly(returnedBorrow.getId());
+        assertThat(firstPage.get(0).getBookTitle()).isEqualTo(pythonMagazine.getTitle());
+        assertThat(firstPage.get(0).getLibraryName()).isEqualTo(activeLibrary.getName());
+    }
+
+    @Test
+    @DisplayName("投影查詢借閱歷史：依狀態與借閱日期區間篩選")
+    void findHistoryRows_Filters() {
+        // When
+        List<BorrowHistoryRow> returned = borrowRecordRepository.findHistoryRows(memberUser1.getId(),
+                LocalDate.of(9999, 12, 31), Long.MAX_VALUE, BorrowRecord.BorrowStatus.RETURNED, null, null,
+                PageRequest.of(0, 10));
+        List<BorrowHistoryRow> lastWeek = borrowRecordRepository.findHistoryRows(memberUser1.getId(),
+                LocalDate.of(9999, 12, 31), Long.MAX_VALUE, null, LocalDate.now().minusDays(7),
+                LocalDate.now().minusDays(4), PageRequest.of(0, 10));
+
+        // Then
+        assertThat(returned).extracting(BorrowHistoryRow::getBorrowRecordId)
+                .containsExactly(returnedBorrow.getId());
+        assertThat(lastWeek).extracting(BorrowHistoryRow::getBorrowRecordId)
+                .containsExactly(currentBorrow1.getId());
     }
 
     @Test
-    @DisplayName("查找逾期記錄並載入詳細信息")
-    void findOverdueWithDetails_Success() {
+    @DisplayName("投影查詢逾期記錄：依圖書館篩選，從游標之後接續")
+    void findOverdueRows_FiltersByLibraryAfterCursor() {
         // Given
         LocalDate today = LocalDate.now();
 
         // When
-        List<BorrowRecord> records = borrowRecordRepository.findOverdueWithDetails(today);
+        List<OverdueRecordRow> rows = borrowRecordRepository.findOverdueRows(today, activeLibrary.getId(),
+                LocalDate.of(1, 1, 1), 0L, PageRequest.of(0, 10));
+        List<OverdueRecordRow> afterLast = borrowRecordRepository.findOverdueRows(today, activeLibrary.getId(),
+                overdueBorrow.getDueDate(), overdueBorrow.getId(), PageRequest.of(0, 10));
+        List<OverdueRecordRow> otherLibrary = borrowRecordRepository.findOverdueRows(today, -1L,
+                LocalDate.of(1, 1, 1), 0L, PageRequest.of(0, 10));
+
+        // Then
+        assertThat(rows).singleElement().satisfies(row -> {
+            assertThat(row.getBorrowRecordId()).isEqualTo(overdueBorrow.getId());
+            assertThat(row.getUsername()).isEqualTo(memberUser2.getUsername());
+            assertThat(row.getBookTitle()).isEqualTo(javaBook.getTitle());
+            assertThat(row.getLibraryName()).isEqualTo(activeLibrary.getName());
+            assertThat(row.getDaysOverdue()).isEqualTo(5);
+        });
+        assertThat(afterLast).isEmpty();
+        assertThat(otherLibrary).isEmpty();
+    }
+
+    @Test
+    @DisplayName("以資料庫游標逐筆讀取逾期記錄投影")
+    void streamOverdueRows_Success() {
+        // When
+        List<Long> ids;
+        try (Stream<OverdueRecordRow> rows = borrowRecordRepository.streamOverdueRows(LocalDate.now(), null)) {
+            ids = rows.map(OverdueRecordRow::getBorrowRecordId).toList();
+        }
 
         // Then
-        assertThat(records).hasSize(1);
-        
-        BorrowRecord record = records.get(0);
-        assertThat(record.getUser()).isNotNull();
-        assertThat(record.getBookCopy()).isNotNull();
-        assertThat(record.getBookCopy().getBook()).isNotNull();
-        assertThat(record.getBookCopy().getLibrary()).isNotNull();
-        assertThat(record.getDueDate()).isBefore(today);
+        assertThat(ids).containsExactly(overdueBorrow.getId());
     }
 
     @Test
@@ -345,4 +434,18 @@ class BorrowRecordRepositoryTest {
         // Then
         assertThat(count).isEqualTo(4); // currentBorrow1, currentBorrow2, returnedBorrow, overdueBorrow
     }
+
+    @Test
+    @DisplayName("統計書籍ID區間內各書籍的借閱次數（含已歸還）")
+    void countBorrowsByBookIdBetween_Success() {
+        // When
+        List<BorrowRecordRepository.BookBorrowCount> counts = borrowRecordRepository.countBorrowsByBookIdBetween(
+                javaBook.getId(), pythonMagazine.getId());
+
+        // Then
+        assertThat(counts)
+                .extracting(BorrowRecordRepository.BookBorrowCount::getBookId,
+                        BorrowRecordRepository.BookBorrowCount::getBorrowCount)
+                .containsExactlyInAnyOrder(tuple(javaBook.getId(), 3L), tuple(pythonMagazine.getId(), 1L));
+    }
 }
\ No newline at end of file
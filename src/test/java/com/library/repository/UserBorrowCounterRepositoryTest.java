@@ -0,0 +1,84 @@
+package com.library.repository;
+
+import com.library.entity.Book;
+import com.library.entity.User;
+import com.library.entity.UserBorrowCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@DisplayName("UserBorrowCounterRepository 單元測試")
+class UserBorrowCounterRepositoryTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private UserBorrowCounterRepository userBorrowCounterRepository;
+
+    private User member;
+
+    @BeforeEach
+    void setUp() {
+        member = new User();
+        member.setUsername("member");
+        member.setEmail("member@test.com");
+        member.setPassword("password");
+        member.setFullName("會員");
+        member.setRole(User.UserRole.MEMBER);
+        member.setActive(true);
+        entityManager.persistAndFlush(member);
+
+        entityManager.persistAndFlush(new UserBorrowCounter(member, Book.BookType.BOOK, 9));
+        entityManager.persistAndFlush(new UserBorrowCounter(member, Book.BookType.MAGAZINE, 0));
+    }
+
+    @Test
+    @DisplayName("條件式遞增：達到上限後不再遞增")
+    void incrementIfBelow_StopsAtLimit() {
+        // When
+        int first = userBorrowCounterRepository.incrementIfBelow(member.getId(), Book.BookType.BOOK, 10);
+        int second = userBorrowCounterRepository.incrementIfBelow(member.getId(), Book.BookType.BOOK, 10);
+        entityManager.clear();
+
+        // Then
+        assertThat(first).isEqualTo(1);
+        assertThat(second).isZero();
+        assertThat(userBorrowCounterRepository.findByUserIdAndBookType(member.getId(), Book.BookType.BOOK))
+                .get().extracting(UserBorrowCounter::getActiveCount).isEqualTo(10);
+    }
+
+    @Test
+    @DisplayName("計數器不存在時不更新")
+    void incrementIfBelow_MissingCounter_NoRowUpdated() {
+        assertThat(userBorrowCounterRepository.incrementIfBelow(member.getId() + 1, Book.BookType.BOOK, 10)).isZero();
+    }
+
+    @Test
+    @DisplayName("遞減：不低於 0")
+    void decrement_NotBelowZero() {
+        // When
+        int updated = userBorrowCounterRepository.decrement(member.getId(), Book.BookType.MAGAZINE);
+        entityManager.clear();
+
+        // Then
+        assertThat(updated).isZero();
+        assertThat(userBorrowCounterRepository.findByUserIdAndBookType(member.getId(), Book.BookType.MAGAZINE))
+                .get().extracting(UserBorrowCounter::getActiveCount).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("同一用戶同一類型只能有一個計數器")
+    void save_DuplicateUserAndType_Rejected() {
+        assertThatThrownBy(() -> entityManager.persistAndFlush(new UserBorrowCounter(member, Book.BookType.BOOK, 0)))
+                .isInstanceOf(Exception.class);
+    }
+}
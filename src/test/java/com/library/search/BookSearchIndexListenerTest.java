@@ -0,0 +1,58 @@
+package com.library.search;
+
+import com.library.entity.Book;
+import com.library.event.BookCopiesAddedEvent;
+import com.library.repository.BookCopyRepository;
+import com.library.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@DisplayName("BookSearchIndexListener 單元測試")
+class BookSearchIndexListenerTest {
+
+    private InvertedIndexSearchEngine engine;
+    private BookRepository bookRepository;
+    private BookCopyRepository bookCopyRepository;
+    private BookSearchIndexListener listener;
+
+    @BeforeEach
+    void setUp() {
+        engine = new InvertedIndexSearchEngine(new WordTokenizer());
+        bookRepository = mock(BookRepository.class);
+        bookCopyRepository = mock(BookCopyRepository.class);
+        listener = new BookSearchIndexListener(engine, bookRepository, bookCopyRepository);
+        ReflectionTestUtils.setField(listener, "rebuildChunkSize", 100);
+    }
+
+    @Test
+    @DisplayName("重建讀取某段期間提交的館藏事件，等該段寫入索引後才套用，不會因書籍尚未索引而遺失")
+    void rebuild_ConcurrentCopiesAdded_NotLost() throws Exception {
+        // Given - 讀取第一段時另一個交易提交了書籍 1 在圖書館 9 的館藏，該段讀到的館藏還不包含它
+        Thread[] eventThread = new Thread[1];
+        when(bookRepository.findSearchDocumentsAfter(eq(0L), any())).thenAnswer(invocation -> {
+            eventThread[0] = new Thread(() -> listener.onBookCopiesAdded(new BookCopiesAddedEvent(1L, 9L, 1)));
+            eventThread[0].start();
+            eventThread[0].join(200);
+            return List.of(new BookDocument(1L, "Java Programming", "John Smith", 2023, Book.BookType.BOOK));
+        });
+        when(bookRepository.findSearchDocumentsAfter(eq(1L), any())).thenReturn(List.of());
+        when(bookCopyRepository.findBookLibraryLinks(1L, 1L)).thenReturn(List.of());
+
+        // When
+        listener.rebuild();
+        eventThread[0].join(5000);
+
+        // Then
+        assertThat(engine.isReady()).isTrue();
+        assertThat(engine.search("java", null, null, 9L, 0, 20)).contains(List.of(1L));
+    }
+}
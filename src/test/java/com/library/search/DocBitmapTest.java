@@ -0,0 +1,46 @@
+package com.library.search;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("DocBitmap 單元測試")
+class DocBitmapTest {
+
+    @Test
+    @DisplayName("跨區塊設定與讀取")
+    void setAndGet_AcrossBlocks() {
+        DocBitmap bitmap = new DocBitmap();
+        bitmap.set(0);
+        bitmap.set(63);
+        bitmap.set(4096);
+        bitmap.set(1_000_000);
+
+        assertThat(bitmap.get(0)).isTrue();
+        assertThat(bitmap.get(63)).isTrue();
+        assertThat(bitmap.get(64)).isFalse();
+        assertThat(bitmap.get(4096)).isTrue();
+        assertThat(bitmap.get(1_000_000)).isTrue();
+        assertThat(bitmap.get(2_000_000)).isFalse();
+        assertThat(bitmap.cardinality()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("交集計數只計算兩邊都有的位元")
+    void andCardinality_CountsSharedBits() {
+        DocBitmap even = new DocBitmap();
+        DocBitmap sparse = new DocBitmap();
+        for (int doc = 0; doc < 20_000; doc += 2) {
+            even.set(doc);
+        }
+        sparse.set(4);
+        sparse.set(5);
+        sparse.set(12_000);
+        sparse.set(50_000);
+
+        assertThat(even.andCardinality(sparse)).isEqualTo(2);
+        assertThat(sparse.andCardinality(even)).isEqualTo(2);
+        assertThat(even.andCardinality(new DocBitmap())).isZero();
+    }
+}
@@ -0,0 +1,68 @@
+package com.library.search;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("FuzzyMatch 單元測試")
+class FuzzyMatchTest {
+
+    @Test
+    @DisplayName("編輯距離：插入、刪除、替換與相鄰對調各算一次")
+    void distance_CountsEdits() {
+        assertThat(FuzzyMatch.distance("java", "java", 2)).isZero();
+        assertThat(FuzzyMatch.distance("jav", "java", 2)).isEqualTo(1);
+        assertThat(FuzzyMatch.distance("jaba", "java", 2)).isEqualTo(1);
+        assertThat(FuzzyMatch.distance("jvaa", "java", 2)).isEqualTo(1);
+        assertThat(FuzzyMatch.distance("jhon", "john", 2)).isEqualTo(1);
+        assertThat(FuzzyMatch.distance("progarming", "programming", 2)).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("編輯距離超過上限時回傳上限加一")
+    void distance_ExceedsMax_ReturnsMaxPlusOne() {
+        assertThat(FuzzyMatch.distance("java", "python", 1)).isEqualTo(2);
+        assertThat(FuzzyMatch.distance("a", "abcd", 2)).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("容許次數依長度與文字種類")
+    void maxEdits_ByLength() {
+        assertThat(FuzzyMatch.maxEdits("go", false)).isZero();
+        assertThat(FuzzyMatch.maxEdits("java", false)).isEqualTo(1);
+        assertThat(FuzzyMatch.maxEdits("spring", false)).isEqualTo(2);
+        assertThat(FuzzyMatch.maxEdits("張", true)).isZero();
+        assertThat(FuzzyMatch.maxEdits("張三", true)).isZero();
+        assertThat(FuzzyMatch.maxEdits("中華民國台灣", true)).isZero();
+    }
+
+    @Test
+    @DisplayName("中文段需完全出現在欄位中")
+    void matches_ChineseRequiresExactRun() {
+        assertThat(FuzzyMatch.matches("java程式設計", "jaba 程式")).isTrue();
+        assertThat(FuzzyMatch.matches("java程式設計", "城式設計")).isFalse();
+    }
+
+    @Test
+    @DisplayName("字元摘要排除缺少太多查詢字元的欄位，可能符合的欄位不會被排除")
+    void mayMatch_ByCharacterMask() {
+        FuzzyMatch match = FuzzyMatch.of("jvaa 程式");
+
+        assertThat(match.mayMatch(FuzzyMatch.characterMask("java程式設計"))).isTrue();
+        assertThat(match.mayMatch(FuzzyMatch.characterMask("jav程式"))).isTrue();
+        assertThat(match.mayMatch(FuzzyMatch.characterMask("java設計"))).isFalse();
+        assertThat(match.mayMatch(FuzzyMatch.characterMask("python程式"))).isFalse();
+    }
+
+    @Test
+    @DisplayName("查詢各段分別比對，拉丁詞比對整個詞或子字串")
+    void matches_EachRunSeparately() {
+        assertThat(FuzzyMatch.matches("java programming", "jvaa progarmming")).isTrue();
+        assertThat(FuzzyMatch.matches("java programming", "programming java")).isTrue();
+        assertThat(FuzzyMatch.matches("java programming", "gram")).isTrue();
+        assertThat(FuzzyMatch.matches("java程式設計", "jaba 程式")).isTrue();
+        assertThat(FuzzyMatch.matches("java programming", "python")).isFalse();
+        assertThat(FuzzyMatch.matches("java", "jv")).isFalse();
+    }
+}
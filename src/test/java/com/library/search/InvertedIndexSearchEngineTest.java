@@ -0,0 +1,208 @@
+package com.library.search;
+
+import com.library.dto.SearchFacets;
+import com.library.entity.Book;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("InvertedIndexSearchEngine 單元測試")
+class InvertedIndexSearchEngineTest {
+
+    private InvertedIndexSearchEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new InvertedIndexSearchEngine(new WordTokenizer());
+        engine.beginRebuild();
+        engine.index(new BookDocument(1L, "Java Programming", "John Smith", 2023, Book.BookType.BOOK));
+        engine.index(new BookDocument(2L, "Python Programming", "Jane Doe", 2022, Book.BookType.MAGAZINE));
+        engine.index(new BookDocument(3L, "Spring in Action", "John Smith", 2023, Book.BookType.BOOK));
+        engine.index(new BookDocument(4L, "Java程式設計", "張三", 2021, Book.BookType.BOOK));
+        engine.addLibrary(1L, 10L);
+        engine.addLibrary(3L, 10L);
+        engine.addLibrary(2L, 20L);
+        engine.finishRebuild();
+    }
+
+    @Test
+    @DisplayName("重建完成後索引可供查詢")
+    void finishRebuild_MarksReady() {
+        assertThat(engine.isReady()).isTrue();
+        assertThat(engine.size()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("依書名前綴搜尋，不分大小寫")
+    void search_ByTitlePrefix_CaseInsensitive() {
+        Optional<List<Long>> result = engine.search("PROG", null, null, null, 0, 20);
+
+        assertThat(result).contains(List.of(1L, 2L));
+    }
+
+    @Test
+    @DisplayName("多個詞的查詢需符合完整子字串")
+    void search_MultiWordQuery_MatchesWholeSubstring() {
+        assertThat(engine.search("java prog", null, null, null, 0, 20)).contains(List.of(1L));
+        assertThat(engine.search("programming java", null, null, null, 0, 20)).contains(List.of());
+    }
+
+    @Test
+    @DisplayName("依作者與年份搜尋")
+    void search_ByAuthorAndYear() {
+        assertThat(engine.search(null, "john", 2023, null, 0, 20)).contains(List.of(1L, 3L));
+        assertThat(engine.search(null, "john", 2022, null, 0, 20)).contains(List.of());
+    }
+
+    @Test
+    @DisplayName("僅依年份搜尋")
+    void search_ByYearOnly() {
+        assertThat(engine.search(null, null, 2023, null, 0, 20)).contains(List.of(1L, 3L));
+        assertThat(engine.search(null, null, 1999, null, 0, 20)).contains(List.of());
+    }
+
+    @Test
+    @DisplayName("依圖書館篩選")
+    void search_ByLibrary() {
+        assertThat(engine.search("java", null, null, 10L, 0, 20)).contains(List.of(1L));
+        assertThat(engine.search(null, null, null, 20L, 0, 20)).contains(List.of(2L));
+        assertThat(engine.search(null, null, null, 99L, 0, 20)).contains(List.of());
+    }
+
+    @Test
+    @DisplayName("分頁依書籍ID排序")
+    void search_Pagination() {
+        assertThat(engine.search("java", null, null, null, 0, 1)).contains(List.of(1L));
+        assertThat(engine.search("java", null, null, null, 1, 1)).contains(List.of(4L));
+        assertThat(engine.search("java", null, null, null, 2, 1)).contains(List.of());
+    }
+
+    @Test
+    @DisplayName("游標分頁：取書籍ID大於游標的結果")
+    void searchAfter_SeeksPastBookId() {
+        assertThat(engine.searchAfter("java", null, null, null, 1L, 20)).contains(List.of(4L));
+        assertThat(engine.searchAfter(null, "john", null, null, 0L, 1)).contains(List.of(1L));
+        assertThat(engine.searchAfter(null, "john", null, null, 3L, 20)).contains(List.of());
+    }
+
+    @Test
+    @DisplayName("索引亂序加入時結果仍依書籍ID排序")
+    void search_OutOfOrderIndexing_SortsByBookId() {
+        engine.index(new BookDocument(6L, "Java Concurrency", "Brian", 2006, Book.BookType.BOOK));
+        engine.index(new BookDocument(5L, "Java Puzzlers", "Joshua", 2005, Book.BookType.BOOK));
+
+        assertThat(engine.search("java", null, null, null, 0, 20)).contains(List.of(1L, 4L, 5L, 6L));
+        assertThat(engine.search("java", null, null, null, 2, 1)).contains(List.of(5L));
+    }
+
+    @Test
+    @DisplayName("模糊搜尋容許拼字錯誤，容許次數依詞長")
+    void searchFuzzy_ToleratesTypos() {
+        // WordTokenizer 將 "java程式設計" 視為一個詞，與 "jvaa" 的距離超過容許次數
+        assertThat(engine.searchFuzzy("jvaa", null, null, null, 0, 20)).contains(List.of(1L));
+        assertThat(engine.searchFuzzy("progarmming", null, null, null, 0, 20)).contains(List.of(1L, 2L));
+        assertThat(engine.searchFuzzy(null, "jhon smiht", 2023, null, 0, 20)).contains(List.of(1L, 3L));
+        // 兩個字元的詞不容許錯字
+        assertThat(engine.searchFuzzy("iv", null, null, null, 0, 20)).contains(List.of());
+        assertThat(engine.search("jvaa", null, null, null, 0, 20)).contains(List.of());
+    }
+
+    @Test
+    @DisplayName("模糊搜尋仍套用年份與圖書館條件並分頁")
+    void searchFuzzy_AppliesFiltersAndPaging() {
+        assertThat(engine.searchFuzzy("progarmming", null, null, 20L, 0, 20)).contains(List.of(2L));
+        assertThat(engine.searchFuzzy("progarmming", null, 2023, null, 0, 20)).contains(List.of(1L));
+        assertThat(engine.searchFuzzy("progarmming", null, null, null, 1, 1)).contains(List.of(2L));
+    }
+
+    @Test
+    @DisplayName("模糊搜尋沒有可用詞項時交由 JPQL 處理")
+    void searchFuzzy_NoUsableTerms_ReturnsEmptyOptional() {
+        assertThat(engine.searchFuzzy("%", null, null, null, 0, 20)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("NGram 斷詞：拉丁詞容許錯字，中文段需完全相符")
+    void searchFuzzy_NGram_ChineseRequiresExactRun() {
+        InvertedIndexSearchEngine ngram = new InvertedIndexSearchEngine(new NGramTokenizer());
+        ngram.beginRebuild();
+        ngram.index(new BookDocument(1L, "Java程式設計入門", "張三", 2021, Book.BookType.BOOK));
+        ngram.index(new BookDocument(2L, "資料結構", "王小明", 2022, Book.BookType.BOOK));
+        ngram.index(new BookDocument(3L, "演算法", "李四", 2022, Book.BookType.BOOK));
+        ngram.finishRebuild();
+
+        assertThat(ngram.searchFuzzy("jvaa 程式", null, null, null, 0, 20)).contains(List.of(1L));
+        assertThat(ngram.searchFuzzy("資料結構", null, null, null, 0, 20)).contains(List.of(2L));
+        assertThat(ngram.searchFuzzy(null, "小明", null, null, 0, 20)).contains(List.of(2L));
+        assertThat(ngram.searchFuzzy("資料節構", null, null, null, 0, 20)).contains(List.of());
+        assertThat(ngram.searchFuzzy(null, "王曉明", null, null, 0, 20)).contains(List.of());
+    }
+
+    @Test
+    @DisplayName("分面統計涵蓋所有符合條件的書籍")
+    void facets_CountsAllMatches() {
+        SearchFacets facets = engine.facets("programming", null, null, null).orElseThrow();
+
+        assertThat(facets.getTotalBooks()).isEqualTo(2);
+        assertThat(facets.getYears()).containsExactly(Map.entry(2022, 1L), Map.entry(2023, 1L));
+        assertThat(facets.getTypes()).containsExactly(
+                Map.entry(Book.BookType.BOOK, 1L), Map.entry(Book.BookType.MAGAZINE, 1L));
+        assertThat(facets.getLibraries()).containsExactly(Map.entry(10L, 1L), Map.entry(20L, 1L));
+    }
+
+    @Test
+    @DisplayName("分面統計套用圖書館條件，並隨新增館藏更新")
+    void facets_WithLibraryFilter_UpdatedOnCopiesAdded() {
+        assertThat(engine.facets(null, "john", null, 10L).orElseThrow().getLibraries())
+                .containsExactly(Map.entry(10L, 2L));
+
+        engine.addLibrary(3L, 20L);
+
+        SearchFacets facets = engine.facets(null, "john", null, 10L).orElseThrow();
+        assertThat(facets.getTotalBooks()).isEqualTo(2);
+        assertThat(facets.getYears()).containsExactly(Map.entry(2023, 2L));
+        assertThat(facets.getLibraries()).containsExactly(Map.entry(10L, 2L), Map.entry(20L, 1L));
+    }
+
+    @Test
+    @DisplayName("查無結果時分面統計為空")
+    void facets_NoMatches_Empty() {
+        SearchFacets facets = engine.facets("kotlin", null, null, null).orElseThrow();
+
+        assertThat(facets.getTotalBooks()).isZero();
+        assertThat(facets.getYears()).isEmpty();
+        assertThat(facets.getTypes()).isEmpty();
+        assertThat(facets.getLibraries()).isEmpty();
+        assertThat(engine.facets("%", null, null, null)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("重複索引同一本書不會產生重複結果")
+    void index_SameBookTwice_Ignored() {
+        engine.index(new BookDocument(1L, "Java Programming", "John Smith", 2023, Book.BookType.BOOK));
+
+        assertThat(engine.size()).isEqualTo(4);
+        assertThat(engine.search("java", null, null, null, 0, 20)).contains(List.of(1L, 4L));
+    }
+
+    @Test
+    @DisplayName("查詢條件沒有可用詞項時交由 JPQL 處理")
+    void search_NoUsableTerms_ReturnsEmptyOptional() {
+        assertThat(engine.search("%", null, null, null, 0, 20)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("重建開始後索引標記為未就緒")
+    void beginRebuild_ClearsIndex() {
+        engine.beginRebuild();
+
+        assertThat(engine.isReady()).isFalse();
+        assertThat(engine.size()).isZero();
+    }
+}
@@ -0,0 +1,209 @@
+package com.library.search;
+
+import com.library.dto.SearchFacets;
+import com.library.entity.Book;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 以隨機中英文書目比對索引查詢與逐筆子字串比對（LIKE '%...%'）的結果
+ */
+@DisplayName("NGram 索引與子字串查詢結果一致性測試")
+class NGramSearchEquivalenceTest {
+
+    private static final String[] WORDS = {
+            "程式設計", "資料結構", "演算法", "人工智慧", "機器學習", "深度學習", "網路安全",
+            "台灣歷史", "中國文學", "現代詩選", "java", "spring", "python", "database", "入門", "實戰"
+    };
+    private static final String[] AUTHORS = {"張三", "李四", "王小明", "陳大文", "John Smith", "Jane Doe"};
+
+    private final Random random = new Random(42);
+    private final List<BookDocument> documents = new ArrayList<>();
+    private final Map<Long, Set<Long>> librariesByBook = new HashMap<>();
+    private InvertedIndexSearchEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new InvertedIndexSearchEngine(new NGramTokenizer());
+        engine.beginRebuild();
+        for (long id = 1; id <= 2000; id++) {
+            BookDocument document = new BookDocument(id, randomTitle(), AUTHORS[random.nextInt(AUTHORS.length)],
+                    2000 + random.nextInt(5), random.nextInt(4) == 0 ? Book.BookType.MAGAZINE : Book.BookType.BOOK);
+            documents.add(document);
+            engine.index(document);
+
+            Set<Long> libraries = new TreeSet<>();
+            for (int copies = random.nextInt(3); copies > 0; copies--) {
+                libraries.add(1L + random.nextInt(4));
+            }
+            libraries.forEach(libraryId -> engine.addLibrary(document.getBookId(), libraryId));
+            librariesByBook.put(id, libraries);
+        }
+        engine.finishRebuild();
+    }
+
+    @Test
+    @DisplayName("書名任意子字串的查詢結果與逐筆比對相同")
+    void search_TitleSubstrings_MatchBruteForce() {
+        for (int i = 0; i < 500; i++) {
+            String title = documents.get(random.nextInt(documents.size())).getTitle();
+            int from = random.nextInt(title.length());
+            int to = from + 1 + random.nextInt(Math.min(6, title.length() - from));
+            String query = title.substring(from, to);
+            if (query.isBlank()) {
+                // 沒有可用詞項的查詢由 BookService 退回 JPQL
+                continue;
+            }
+
+            assertThat(engine.search(query, null, null, null, 0, Integer.MAX_VALUE).orElseThrow())
+                    .as("title=%s", query)
+                    .isEqualTo(bruteForce(query, null, null));
+        }
+    }
+
+    @Test
+    @DisplayName("書名、作者與年份組合查詢結果與逐筆比對相同")
+    void search_Combined_MatchBruteForce() {
+        String[] titleQueries = {"設計", "學習", "學", "va", "spring 實", "資料結構 入門", "史中", "歷"};
+        String[] authorQueries = {"張", "小明", "smith", "n d"};
+        for (String title : titleQueries) {
+            for (String author : authorQueries) {
+                Integer year = random.nextBoolean() ? 2000 + random.nextInt(5) : null;
+                assertThat(engine.search(title, author, year, null, 0, Integer.MAX_VALUE).orElseThrow())
+                        .as("title=%s, author=%s, year=%s", title, author, year)
+                        .isEqualTo(bruteForce(title, author, year));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("不存在的片段查無結果")
+    void search_UnknownFragment_Empty() {
+        assertThat(engine.search("電腦", null, null, null, 0, 20)).contains(List.of());
+        assertThat(engine.search("xyz", null, null, null, 0, 20)).contains(List.of());
+    }
+
+    @Test
+    @DisplayName("分面統計與逐筆計數相同")
+    void facets_MatchBruteForceCounts() {
+        String[] titleQueries = {"設計", "學習", "va", "spring 實", "歷"};
+        String[] authorQueries = {null, "張", "smith"};
+        for (String title : titleQueries) {
+            for (String author : authorQueries) {
+                Integer year = random.nextBoolean() ? 2000 + random.nextInt(5) : null;
+                Long libraryId = random.nextBoolean() ? 1L + random.nextInt(4) : null;
+                List<Long> matches = bruteForce(title, author, year).stream()
+                        .filter(id -> libraryId == null || librariesByBook.get(id).contains(libraryId))
+                        .toList();
+
+                Map<Integer, Long> years = new TreeMap<>();
+                Map<Book.BookType, Long> types = new EnumMap<>(Book.BookType.class);
+                Map<Long, Long> libraries = new TreeMap<>();
+                for (Long id : matches) {
+                    BookDocument document = documents.get((int) (id - 1));
+                    years.merge(document.getPublishYear(), 1L, Long::sum);
+                    types.merge(document.getType(), 1L, Long::sum);
+                    librariesByBook.get(id).forEach(library -> libraries.merge(library, 1L, Long::sum));
+                }
+
+                assertThat(engine.facets(title, author, year, libraryId).orElseThrow())
+                        .as("title=%s, author=%s, year=%s, libraryId=%s", title, author, year, libraryId)
+                        .isEqualTo(new SearchFacets(matches.size(), years, types, libraries));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("模糊查詢結果與逐筆模糊比對相同")
+    void searchFuzzy_TypoQueries_MatchBruteForce() {
+        String alphabet = "abcdefghijklmnopqrstuvwxyz的學習設計資料程式入門史";
+        for (int i = 0; i < 300; i++) {
+            BookDocument document = documents.get(random.nextInt(documents.size()));
+            boolean byAuthor = random.nextInt(4) == 0;
+            String text = byAuthor ? document.getAuthor() : document.getTitle();
+            int from = random.nextInt(text.length());
+            String query = text.substring(from, from + 1 + random.nextInt(Math.min(8, text.length() - from)));
+            // 隨機替換、刪除或對調一個字元
+            char[] chars = query.toCharArray();
+            int at = random.nextInt(chars.length);
+            switch (random.nextInt(3)) {
+                case 0 -> chars[at] = alphabet.charAt(random.nextInt(alphabet.length()));
+                case 1 -> chars[at] = ' ';
+                default -> {
+                    if (at + 1 < chars.length) {
+                        char swapped = chars[at];
+                        chars[at] = chars[at + 1];
+                        chars[at + 1] = swapped;
+                    }
+                }
+            }
+            String typo = new String(chars).toLowerCase(Locale.ROOT);
+            if (typo.isBlank()) {
+                continue;
+            }
+
+            List<Long> expected = documents.stream()
+                    .filter(candidate -> FuzzyMatch.matches(
+                            (byAuthor ? candidate.getAuthor() : candidate.getTitle()).toLowerCase(Locale.ROOT), typo))
+                    .map(BookDocument::getBookId)
+                    .toList();
+            List<Long> actual = byAuthor
+                    ? engine.searchFuzzy(null, typo, null, null, 0, Integer.MAX_VALUE).orElseThrow()
+                    : engine.searchFuzzy(typo, null, null, null, 0, Integer.MAX_VALUE).orElseThrow();
+            assertThat(actual).as("%s=%s", byAuthor ? "author" : "title", typo).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    @DisplayName("模糊查詢涵蓋一般查詢的結果")
+    void searchFuzzy_IncludesExactMatches() {
+        for (String query : new String[]{"設計", "學", "va", "spring 實", "資料結構 入門"}) {
+            assertThat(engine.searchFuzzy(query, null, null, null, 0, Integer.MAX_VALUE).orElseThrow())
+                    .as("title=%s", query)
+                    .containsAll(bruteForce(query, null, null));
+        }
+    }
+
+    private String randomTitle() {
+        StringBuilder title = new StringBuilder();
+        int words = 1 + random.nextInt(3);
+        for (int i = 0; i < words; i++) {
+            if (i > 0 && random.nextBoolean()) {
+                title.append(' ');
+            }
+            title.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return title.toString();
+    }
+
+    private List<Long> bruteForce(String title, String author, Integer year) {
+        List<Long> ids = new ArrayList<>();
+        for (BookDocument document : documents) {
+            if (title != null && !document.getTitle().toLowerCase(Locale.ROOT).contains(title.toLowerCase(Locale.ROOT))) {
+                continue;
+            }
+            if (author != null && !document.getAuthor().toLowerCase(Locale.ROOT).contains(author.toLowerCase(Locale.ROOT))) {
+                continue;
+            }
+            if (year != null && !year.equals(document.getPublishYear())) {
+                continue;
+            }
+            ids.add(document.getBookId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,59 @@
+package com.library.search;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("NGramTokenizer 單元測試")
+class NGramTokenizerTest {
+
+    private final NGramTokenizer tokenizer = new NGramTokenizer();
+
+    @Test
+    @DisplayName("中文產生 bigram 並索引最後一個字")
+    void indexTerms_Chinese_BigramsAndLastChar() {
+        assertThat(tokenizer.indexTerms("程式設計")).containsExactly("程式", "式設", "設計", "計");
+    }
+
+    @Test
+    @DisplayName("中英混合文字分別處理")
+    void indexTerms_Mixed_SplitsByScript() {
+        assertThat(tokenizer.indexTerms("java程式 101")).containsExactly("java", "程式", "式", "101");
+    }
+
+    @Test
+    @DisplayName("查詢詞：中文 bigram 精確比對、單字前綴比對、拉丁詞子字串比對")
+    void queryTerms_MatchModes() {
+        List<QueryTerm> terms = tokenizer.queryTerms("ava 設計 程");
+
+        assertThat(terms).extracting(QueryTerm::getText).containsExactly("ava", "設計", "程");
+        assertThat(terms).extracting(QueryTerm::getMatch).containsExactly(
+                QueryTerm.Match.SUBSTRING, QueryTerm.Match.EXACT, QueryTerm.Match.PREFIX);
+    }
+
+    @Test
+    @DisplayName("模糊查詢詞：拉丁詞模糊比對，中文與一般查詢相同且每個詞項各為一個條件")
+    void fuzzyQueryTerms_ByRun() {
+        List<List<QueryTerm>> terms = tokenizer.fuzzyQueryTerms("javva 程式設 學");
+
+        assertThat(terms).hasSize(4);
+        assertThat(terms.get(0)).singleElement().satisfies(term -> {
+            assertThat(term.getMatch()).isEqualTo(QueryTerm.Match.FUZZY);
+            assertThat(term.getMaxEdits()).isEqualTo(1);
+        });
+        assertThat(terms.subList(1, 4)).allSatisfy(condition -> assertThat(condition).hasSize(1));
+        assertThat(terms.subList(1, 4)).extracting(condition -> condition.get(0).getText())
+                .containsExactly("程式", "式設", "學");
+        assertThat(terms.subList(1, 4)).extracting(condition -> condition.get(0).getMatch())
+                .containsExactly(QueryTerm.Match.EXACT, QueryTerm.Match.EXACT, QueryTerm.Match.PREFIX);
+    }
+
+    @Test
+    @DisplayName("只有符號的查詢不產生詞項")
+    void queryTerms_OnlySymbols_Empty() {
+        assertThat(tokenizer.queryTerms("%-_ ")).isEmpty();
+    }
+}
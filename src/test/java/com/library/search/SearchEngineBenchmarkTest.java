@@ -0,0 +1,154 @@
+package com.library.search;
+
+import com.library.entity.Book;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 一百萬本書的搜尋延遲基準測試
+ * 執行方式：mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+@DisplayName("搜尋索引效能基準測試")
+class SearchEngineBenchmarkTest {
+
+    private static final int BOOKS = 1_000_000;
+    private static final int QUERIES = 200;
+    private static final int FUZZY_QUERIES = 1000;
+    private static final int FUZZY_ROUNDS = 3;
+    private static final String CHARS =
+            "的一是在不了有和人這中大為上個國我以要他時來用們生到作地於出就分對成會可主發年動同工也能下過子說產種面而方後多定行學法所民得經十三之進著等部度家電力裡如水化高自二理起小物現實加量都兩體制機當使點從業本去把性好應開它合還因由其些然前外天政四日那社義事平形相全表間樣與關各重新線內數正心反你明看原又麼利比或但質氣第向道命此變條只沒結解問意建月公無系軍很情者最立代想已通並提直題黨程展五果料象員革位入常文總次品式活設及管特件長求老頭基資邊流路級少圖山統接知較將組見計別她手角期根論運農指幾九區強放決西被幹做必戰先回則任取據處理";
+
+    @Test
+    @DisplayName("1M 書籍：索引查詢與逐筆子字串掃描的延遲")
+    void benchmark_OneMillionBooks() {
+        Random random = new Random(7);
+        String[] titles = new String[BOOKS];
+        String[] authors = new String[BOOKS];
+        InvertedIndexSearchEngine engine = new InvertedIndexSearchEngine(new NGramTokenizer());
+
+        long buildStart = System.nanoTime();
+        engine.beginRebuild();
+        for (int i = 0; i < BOOKS; i++) {
+            titles[i] = randomText(random, 4 + random.nextInt(8));
+            authors[i] = randomText(random, 2 + random.nextInt(2));
+            engine.index(new BookDocument((long) i + 1, titles[i], authors[i], 1950 + random.nextInt(75),
+                    Book.BookType.BOOK));
+        }
+        engine.finishRebuild();
+        long buildMillis = (System.nanoTime() - buildStart) / 1_000_000;
+
+        List<String> queries = new ArrayList<>();
+        for (int i = 0; i < QUERIES; i++) {
+            String title = titles[random.nextInt(BOOKS)];
+            int from = random.nextInt(title.length() - 1);
+            queries.add(title.substring(from, from + 2 + random.nextInt(Math.min(3, title.length() - from - 1))));
+        }
+
+        long[] indexNanos = new long[QUERIES];
+        long[] scanNanos = new long[QUERIES];
+        for (int q = 0; q < QUERIES; q++) {
+            String query = queries.get(q);
+
+            long start = System.nanoTime();
+            List<Long> indexed = engine.search(query, null, null, null, 0, 20).orElseThrow();
+            indexNanos[q] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            List<Long> scanned = new ArrayList<>();
+            for (int i = 0; i < BOOKS && scanned.size() < 20; i++) {
+                if (titles[i].contains(query)) {
+                    scanned.add((long) i + 1);
+                }
+            }
+            scanNanos[q] = System.nanoTime() - start;
+
+            assertThat(indexed).as("query=%s", query).isEqualTo(scanned);
+        }
+
+        long[] facetNanos = new long[QUERIES];
+        for (int q = 0; q < QUERIES; q++) {
+            long start = System.nanoTime();
+            engine.facets(queries.get(q), null, null, null).orElseThrow();
+            facetNanos[q] = System.nanoTime() - start;
+        }
+
+        // 模糊查詢：每個查詢替換一個字，與原查詢的一般搜尋交錯量測；
+        // 所有查詢輪流執行數輪，各查詢取中位數，排除單次的 GC 停頓
+        List<String> exactQueries = new ArrayList<>();
+        List<String> typoQueries = new ArrayList<>();
+        for (int q = 0; q < FUZZY_QUERIES; q++) {
+            String title = titles[random.nextInt(BOOKS)];
+            int from = random.nextInt(title.length() - 1);
+            String exact = title.substring(from, from + 2 + random.nextInt(Math.min(3, title.length() - from - 1)));
+            char[] typo = exact.toCharArray();
+            typo[random.nextInt(typo.length)] = CHARS.charAt(random.nextInt(CHARS.length()));
+            exactQueries.add(exact);
+            typoQueries.add(new String(typo));
+        }
+        long[][] exactRounds = new long[FUZZY_QUERIES][FUZZY_ROUNDS];
+        long[][] fuzzyRounds = new long[FUZZY_QUERIES][FUZZY_ROUNDS];
+        for (int round = 0; round < FUZZY_ROUNDS; round++) {
+            for (int q = 0; q < FUZZY_QUERIES; q++) {
+                long start = System.nanoTime();
+                engine.search(exactQueries.get(q), null, null, null, 0, 20).orElseThrow();
+                exactRounds[q][round] = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                List<Long> fuzzy = engine.searchFuzzy(typoQueries.get(q), null, null, null, 0, 20).orElseThrow();
+                fuzzyRounds[q][round] = System.nanoTime() - start;
+
+                assertThat(fuzzy).as("query=%s", typoQueries.get(q)).hasSizeLessThanOrEqualTo(20);
+            }
+        }
+        long[] exactNanos = new long[FUZZY_QUERIES];
+        long[] fuzzyNanos = new long[FUZZY_QUERIES];
+        for (int q = 0; q < FUZZY_QUERIES; q++) {
+            exactNanos[q] = median(exactRounds[q]);
+            fuzzyNanos[q] = median(fuzzyRounds[q]);
+        }
+
+        System.out.printf("books=%d build=%dms index p50=%.3fms p99=%.3fms | scan p50=%.3fms p99=%.3fms"
+                        + " | facets p50=%.3fms p99=%.3fms | fuzzy p50=%.3fms p99=%.3fms%n",
+                BOOKS, buildMillis, percentile(indexNanos, 50), percentile(indexNanos, 99),
+                percentile(scanNanos, 50), percentile(scanNanos, 99),
+                percentile(facetNanos, 50), percentile(facetNanos, 99),
+                percentile(fuzzyNanos, 50), percentile(fuzzyNanos, 99));
+        System.out.printf("fuzzy vs exact (%d queries, median of %d): exact p50=%.3fms p99=%.3fms | fuzzy p50=%.3fms p99=%.3fms%n",
+                FUZZY_QUERIES, FUZZY_ROUNDS, percentile(exactNanos, 50), percentile(exactNanos, 99),
+                percentile(fuzzyNanos, 50), percentile(fuzzyNanos, 99));
+
+        // 模糊查詢延遲需在一般查詢的兩倍內
+        assertThat(percentile(fuzzyNanos, 50)).isLessThanOrEqualTo(2 * percentile(exactNanos, 50));
+        assertThat(percentile(fuzzyNanos, 99)).isLessThanOrEqualTo(2 * percentile(exactNanos, 99));
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(CHARS.charAt(random.nextInt(CHARS.length())));
+        }
+        return text.toString();
+    }
+
+    private static long median(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static double percentile(long[] nanos, int percentile) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        int index = Math.min(sorted.length - 1, (int) Math.ceil(percentile / 100.0 * sorted.length) - 1);
+        return sorted[index] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,207 @@
+package com.library.search;
+
+import com.library.dto.BookSearchResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("SearchResultCache 單元測試")
+class SearchResultCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private MutableClock clock;
+    private SearchResultCache cache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        clock = new MutableClock();
+        cache = new SearchResultCache(meterRegistry, true, 2, Duration.ofSeconds(30), clock);
+    }
+
+    @Test
+    @DisplayName("查詢條件不分大小寫視為同一鍵")
+    void get_NormalizedKey_Hit() {
+        cache.put(SearchResultCache.key("Java", null, null, null, 0, 20), results(1L), cache.stamp());
+
+        assertThat(cache.get(SearchResultCache.key("JAVA", null, null, null, 0, 20)))
+                .hasValueSatisfying(results -> assertThat(results)
+                        .extracting(BookSearchResponse::getId).containsExactly(1L));
+        assertThat(cache.get(SearchResultCache.key("Java", null, null, null, 1, 20))).isEmpty();
+        assertThat(count("library.search.cache.requests", "result", "hit")).isEqualTo(1);
+        assertThat(count("library.search.cache.requests", "result", "miss")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("超過存活時間後失效")
+    void get_Expired_Miss() {
+        SearchResultCache.Key key = SearchResultCache.key("java", null, null, null, 0, 20);
+        cache.put(key, results(1L), cache.stamp());
+
+        clock.advance(Duration.ofSeconds(30));
+
+        assertThat(cache.get(key)).isEmpty();
+        assertThat(count("library.search.cache.evictions", "cause", "expired")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("超過容量時淘汰最久未使用的項目")
+    void put_OverCapacity_EvictsLeastRecentlyUsed() {
+        SearchResultCache.Key first = SearchResultCache.key("a", null, null, null, 0, 20);
+        SearchResultCache.Key second = SearchResultCache.key("b", null, null, null, 0, 20);
+        SearchResultCache.Key third = SearchResultCache.key("c", null, null, null, 0, 20);
+        cache.put(first, results(1L), cache.stamp());
+        cache.put(second, results(2L), cache.stamp());
+        cache.get(first);
+
+        cache.put(third, results(3L), cache.stamp());
+
+        assertThat(cache.get(second)).isEmpty();
+        assertThat(cache.get(first)).isPresent();
+        assertThat(count("library.search.cache.evictions", "cause", "size")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("新增書籍只淘汰條件符合的查詢")
+    void invalidateForNewBook_OnlyMatchingQueries() {
+        SearchResultCache.Key java = SearchResultCache.key("java", null, null, null, 0, 20);
+        SearchResultCache.Key python = SearchResultCache.key("python", null, null, null, 0, 20);
+        SearchResultCache.Key javaInLibrary = SearchResultCache.key("java", null, null, 1L, 0, 20);
+        cache = withCapacity(10, java, python, javaInLibrary);
+
+        cache.invalidateForNewBook("Java程式設計", "張三", 2023);
+
+        assertThat(cache.get(java)).isEmpty();
+        assertThat(cache.get(python)).isPresent();
+        assertThat(cache.get(javaInLibrary)).isPresent();
+    }
+
+    @Test
+    @DisplayName("新增書籍淘汰模糊比對符合的模糊查詢，模糊與一般查詢分開快取")
+    void invalidateForNewBook_FuzzyQueries() {
+        SearchResultCache.Key fuzzyJava = SearchResultCache.key("jaba", null, null, null, StockFilter.none(), true, 0, 20);
+        SearchResultCache.Key exactJava = SearchResultCache.key("jaba", null, null, null, 0, 20);
+        SearchResultCache.Key fuzzyPython = SearchResultCache.key("pyhton", null, null, null, StockFilter.none(), true, 0, 20);
+        cache = withCapacity(10, fuzzyJava, exactJava, fuzzyPython);
+
+        cache.invalidateForNewBook("Java程式設計", "張三", 2023);
+
+        assertThat(cache.get(fuzzyJava)).isEmpty();
+        assertThat(cache.get(exactJava)).isPresent();
+        assertThat(cache.get(fuzzyPython)).isPresent();
+    }
+
+    @Test
+    @DisplayName("可借數量變動只淘汰含有此書的結果")
+    void invalidateForBook_OnlyEntriesContainingBook() {
+        SearchResultCache.Key java = SearchResultCache.key("java", null, null, null, 0, 20);
+        SearchResultCache.Key python = SearchResultCache.key("python", null, null, null, 0, 20);
+        cache.put(java, results(1L), cache.stamp());
+        cache.put(python, results(2L), cache.stamp());
+
+        cache.invalidateForAvailabilityChange(1L, 1L);
+
+        assertThat(cache.get(java)).isEmpty();
+        assertThat(cache.get(python)).isPresent();
+        assertThat(count("library.search.cache.evictions", "cause", "invalidated")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("還書後淘汰涵蓋該圖書館的「僅列出可借」查詢")
+    void invalidateForAvailabilityChange_AvailableOnlyQueries() {
+        SearchResultCache.Key availableInCentral = SearchResultCache.key(
+                "java", null, null, null, StockFilter.of(List.of(1L), true), 0, 20);
+        SearchResultCache.Key availableInBranch = SearchResultCache.key(
+                "java", null, null, null, StockFilter.of(List.of(2L), true), 0, 20);
+        cache.put(availableInCentral, results(), cache.stamp());
+        cache.put(availableInBranch, results(), cache.stamp());
+
+        cache.invalidateForAvailabilityChange(9L, 1L);
+
+        assertThat(cache.get(availableInCentral)).isEmpty();
+        assertThat(cache.get(availableInBranch)).isPresent();
+    }
+
+    @Test
+    @DisplayName("新增館藏淘汰含有此書的結果與該圖書館的查詢")
+    void invalidateForCopiesAdded_BookAndLibraryQueries() {
+        SearchResultCache.Key library = SearchResultCache.key(null, null, null, 1L, 0, 20);
+        SearchResultCache.Key java = SearchResultCache.key("java", null, null, null, 0, 20);
+        cache.put(library, results(), cache.stamp());
+        cache.put(java, results(5L), cache.stamp());
+
+        cache.invalidateForCopiesAdded(5L, 1L);
+
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("查詢期間發生淘汰時不寫入可能過期的結果")
+    void put_InvalidatedDuringQuery_Skipped() {
+        SearchResultCache.Key key = SearchResultCache.key("java", null, null, null, 0, 20);
+        long stamp = cache.stamp();
+
+        cache.invalidateForAvailabilityChange(1L, 1L);
+        cache.put(key, results(1L), stamp);
+
+        assertThat(cache.get(key)).isEmpty();
+    }
+
+    private SearchResultCache withCapacity(int capacity, SearchResultCache.Key... keys) {
+        SearchResultCache larger = new SearchResultCache(new SimpleMeterRegistry(), true, capacity,
+                Duration.ofSeconds(30), clock);
+        long id = 1;
+        for (SearchResultCache.Key key : keys) {
+            larger.put(key, results(id++), larger.stamp());
+        }
+        return larger;
+    }
+
+    private List<BookSearchResponse> results(Long... ids) {
+        List<BookSearchResponse> results = new ArrayList<>();
+        for (Long id : ids) {
+            BookSearchResponse response = new BookSearchResponse();
+            response.setId(id);
+            results.add(response);
+        }
+        return results;
+    }
+
+    private double count(String name, String tagKey, String tagValue) {
+        return meterRegistry.get(name).tag(tagKey, tagValue).counter().count();
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2024-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
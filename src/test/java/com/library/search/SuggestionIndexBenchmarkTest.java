@@ -0,0 +1,121 @@
+package com.library.search;
+
+import com.library.dto.BookSuggestion;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 一百萬本書的自動完成延遲基準測試
+ * 執行方式：mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+@DisplayName("自動完成索引效能基準測試")
+class SuggestionIndexBenchmarkTest {
+
+    private static final int BOOKS = 1_000_000;
+    private static final int AUTHORS = 50_000;
+    private static final int QUERIES = 1_000;
+    private static final int VERIFIED_QUERIES = 100;
+    private static final String CHARS =
+            "的一是在不了有和人這中大為上個國我以要他時來用們生到作地於出就分對成會可主發年動同工也能下過子說產種面而方後多定行學法所民得經十三之進著等部度家電力裡如水化高自二理起小物現實加量都兩體制機當使點從業本去把性好應開它合還因由其些然前外天政四日那社義事平形相全表間樣與關各重新線內數正心反你明看原又麼利比或但質氣第向道命此變條只沒結解問意建月公無系軍很情者最立代想已通並提直題黨程展五果料象員革位入常文總次品式活設及管特件長求老頭基資邊流路級少圖山統接知較將組見計別她手角期根論運農指幾九區強放決西被幹做必戰先回則任取據處理";
+
+    @Test
+    @DisplayName("1M 書籍：前綴自動完成延遲與正確性")
+    void benchmark_OneMillionBooks() {
+        Random random = new Random(11);
+        String[] authorPool = new String[AUTHORS];
+        for (int i = 0; i < AUTHORS; i++) {
+            authorPool[i] = randomText(random, 2 + random.nextInt(2));
+        }
+
+        SuggestionIndex index = new SuggestionIndex(true, 10, 2_000_000);
+        // 依加入順序記錄每筆建議（與索引相同的同分排序），供逐筆掃描比對
+        List<String> keys = new ArrayList<>();
+        List<long[]> popularity = new ArrayList<>();
+        Map<String, Integer> authorEntries = new HashMap<>();
+        String[] titles = new String[BOOKS];
+
+        long buildStart = System.nanoTime();
+        index.beginRebuild();
+        for (int i = 0; i < BOOKS; i++) {
+            titles[i] = randomText(random, 4 + random.nextInt(8));
+            String author = authorPool[random.nextInt(AUTHORS)];
+            // 借閱次數近似長尾分佈
+            long borrows = (long) Math.floor(Math.pow(random.nextDouble(), 4) * 1000);
+            index.add((long) i + 1, titles[i], author, borrows);
+
+            keys.add(titles[i]);
+            popularity.add(new long[]{borrows});
+            Integer authorEntry = authorEntries.get(author);
+            if (authorEntry == null) {
+                authorEntries.put(author, keys.size());
+                keys.add(author);
+                popularity.add(new long[]{borrows});
+            } else {
+                popularity.get(authorEntry)[0] += borrows;
+            }
+        }
+        index.finishRebuild();
+        long buildMillis = (System.nanoTime() - buildStart) / 1_000_000;
+        assertThat(index.nodeCount()).as("節點數未達上限").isLessThan(2_000_000);
+
+        List<String> queries = new ArrayList<>();
+        for (int i = 0; i < QUERIES; i++) {
+            String title = titles[random.nextInt(BOOKS)];
+            queries.add(title.substring(0, 1 + random.nextInt(4)));
+        }
+
+        long[] nanos = new long[QUERIES];
+        for (int q = 0; q < QUERIES; q++) {
+            long start = System.nanoTime();
+            List<BookSuggestion> suggestions = index.suggest(queries.get(q), 10);
+            nanos[q] = System.nanoTime() - start;
+            assertThat(suggestions).isNotEmpty();
+        }
+
+        for (int q = 0; q < VERIFIED_QUERIES; q++) {
+            String query = queries.get(q);
+            List<Integer> expected = new ArrayList<>();
+            for (int e = 0; e < keys.size(); e++) {
+                if (keys.get(e).startsWith(query)) {
+                    expected.add(e);
+                }
+            }
+            expected.sort(Comparator.<Integer>comparingLong(e -> -popularity.get(e)[0])
+                    .thenComparingInt(e -> e));
+            List<String> expectedTexts = expected.stream().limit(10).map(keys::get).toList();
+
+            assertThat(index.suggest(query, 10)).extracting(BookSuggestion::getText)
+                    .as("query=%s", query).isEqualTo(expectedTexts);
+        }
+
+        System.out.printf("books=%d suggestions=%d nodes=%d build=%dms p50=%.3fms p99=%.3fms%n",
+                BOOKS, index.size(), index.nodeCount(), buildMillis, percentile(nanos, 50), percentile(nanos, 99));
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(CHARS.charAt(random.nextInt(CHARS.length())));
+        }
+        return text.toString();
+    }
+
+    private static double percentile(long[] nanos, int percentile) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        int index = Math.min(sorted.length - 1, (int) Math.ceil(percentile / 100.0 * sorted.length) - 1);
+        return sorted[index] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,136 @@
+package com.library.search;
+
+import com.library.dto.BookSuggestion;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("SuggestionIndex 單元測試")
+class SuggestionIndexTest {
+
+    private SuggestionIndex index;
+
+    @BeforeEach
+    void setUp() {
+        // topK 設小，讓少量資料即可觸發葉節點展開
+        index = new SuggestionIndex(true, 2, 1000);
+        index.beginRebuild();
+        index.add(1L, "Java Programming", "John Smith", 5);
+        index.add(2L, "Java Concurrency", "Brian Goetz", 9);
+        index.add(3L, "JavaScript Patterns", "Jane Doe", 1);
+        index.add(4L, "Java程式設計", "張三", 7);
+        index.add(5L, "Spring in Action", "John Smith", 3);
+        index.finishRebuild();
+    }
+
+    @Test
+    @DisplayName("依借閱次數排序回傳前綴相符的建議，不分大小寫")
+    void suggest_RanksByBorrowCount() {
+        assertThat(texts(index.suggest("JAVA", 10))).containsExactly("Java Concurrency", "Java程式設計");
+        assertThat(texts(index.suggest("java ", 10))).containsExactly("Java Concurrency", "Java Programming");
+    }
+
+    @Test
+    @DisplayName("前綴深於葉節點時逐筆過濾，結果仍完整")
+    void suggest_PrefixBeyondLeaf_FiltersLeafEntries() {
+        assertThat(texts(index.suggest("javas", 10))).containsExactly("JavaScript Patterns");
+        assertThat(texts(index.suggest("java p", 10))).containsExactly("Java Programming");
+        assertThat(index.suggest("javax", 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("作者建議累計其所有書籍的借閱次數")
+    void suggest_AuthorAggregatesBorrowCounts() {
+        List<BookSuggestion> suggestions = index.suggest("jo", 10);
+
+        assertThat(suggestions).hasSize(1);
+        assertThat(suggestions.get(0).getText()).isEqualTo("John Smith");
+        assertThat(suggestions.get(0).getType()).isEqualTo(BookSuggestion.SuggestionType.AUTHOR);
+        assertThat(suggestions.get(0).getBookId()).isNull();
+        assertThat(suggestions.get(0).getBorrowCount()).isEqualTo(8);
+    }
+
+    @Test
+    @DisplayName("書名建議帶有書籍ID")
+    void suggest_TitleCarriesBookId() {
+        List<BookSuggestion> suggestions = index.suggest("spring", 10);
+
+        assertThat(suggestions).extracting(BookSuggestion::getBookId).containsExactly(5L);
+        assertThat(suggestions.get(0).getType()).isEqualTo(BookSuggestion.SuggestionType.TITLE);
+    }
+
+    @Test
+    @DisplayName("借閱後重新排序")
+    void recordBorrow_PromotesEntry() {
+        for (int i = 0; i < 10; i++) {
+            index.recordBorrow(3L);
+        }
+
+        assertThat(texts(index.suggest("java", 10))).containsExactly("JavaScript Patterns", "Java Concurrency");
+        assertThat(index.suggest("jane", 10).get(0).getBorrowCount()).isEqualTo(11);
+    }
+
+    @Test
+    @DisplayName("新增書籍後立即可查詢，重複加入忽略")
+    void add_Incremental() {
+        index.add(6L, "Java Puzzlers", "Joshua Bloch", 0);
+        index.add(6L, "Java Puzzlers", "Joshua Bloch", 0);
+
+        assertThat(texts(index.suggest("java pu", 10))).containsExactly("Java Puzzlers");
+        assertThat(texts(index.suggest("jo", 10))).containsExactly("John Smith", "Joshua Bloch");
+        assertThat(index.size()).isEqualTo(11);
+    }
+
+    @Test
+    @DisplayName("同名書籍各自成為建議")
+    void add_DuplicateTitles() {
+        SuggestionIndex large = new SuggestionIndex(true, 10, 1000);
+        large.beginRebuild();
+        large.add(1L, "Java", "A", 0);
+        large.add(2L, "Java", "B", 4);
+        large.add(3L, "Java", "C", 2);
+        large.add(4L, "Javelin", "D", 1);
+        large.finishRebuild();
+
+        assertThat(large.suggest("java", 10)).extracting(BookSuggestion::getBookId).containsExactly(2L, 3L, 1L);
+    }
+
+    @Test
+    @DisplayName("數量上限不超過 limit")
+    void suggest_RespectsLimit() {
+        assertThat(texts(index.suggest("j", 1))).containsExactly("Java Concurrency");
+    }
+
+    @Test
+    @DisplayName("節點數達上限後仍回傳各前綴借閱次數最高的建議")
+    void add_NodeBudgetExceeded_KeepsTopEntries() {
+        SuggestionIndex small = new SuggestionIndex(true, 2, 3);
+        small.beginRebuild();
+        small.add(1L, "aa", "x", 1);
+        small.add(2L, "ab", "x", 5);
+        small.add(3L, "ac", "x", 3);
+        small.finishRebuild();
+
+        assertThat(small.nodeCount()).isLessThanOrEqualTo(3);
+        assertThat(texts(small.suggest("a", 10))).containsExactly("ab", "ac");
+    }
+
+    @Test
+    @DisplayName("空白查詢與未就緒的索引回傳空列表")
+    void suggest_BlankOrNotReady_ReturnsEmpty() {
+        assertThat(index.suggest("  ", 10)).isEmpty();
+        assertThat(index.suggest(null, 10)).isEmpty();
+
+        index.beginRebuild();
+        assertThat(index.isReady()).isFalse();
+        assertThat(index.suggest("java", 10)).isEmpty();
+    }
+
+    private static List<String> texts(List<BookSuggestion> suggestions) {
+        return suggestions.stream().map(BookSuggestion::getText).toList();
+    }
+}
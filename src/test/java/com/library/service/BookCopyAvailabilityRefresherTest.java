@@ -0,0 +1,80 @@
+package com.library.service;
+
+import com.library.event.BookAvailabilityChangedEvent;
+import com.library.repository.BookCopyRepository;
+import com.library.search.SearchResultCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@DisplayName("BookCopyAvailabilityRefresher 單元測試")
+class BookCopyAvailabilityRefresherTest {
+
+    private BookCopyRepository bookCopyRepository;
+    private SearchResultCache searchResultCache;
+    private BookCopyAvailabilityRefresher refresher;
+
+    @BeforeEach
+    void setUp() {
+        bookCopyRepository = mock(BookCopyRepository.class);
+        searchResultCache = mock(SearchResultCache.class);
+        refresher = new BookCopyAvailabilityRefresher(bookCopyRepository, searchResultCache,
+                mock(PlatformTransactionManager.class), 3, Duration.ofMillis(10), Duration.ofMillis(20));
+    }
+
+    @AfterEach
+    void tearDown() {
+        refresher.shutdown();
+    }
+
+    @Test
+    @DisplayName("重新計算失敗時退避後重試，成功後淘汰搜尋快取")
+    void onAvailabilityChanged_RefreshFails_RetriesWithBackoff() {
+        // Given
+        when(bookCopyRepository.refreshItemTrackedAvailability(eq(1L), eq(2L), any()))
+                .thenThrow(new QueryTimeoutException("lock timeout"))
+                .thenReturn(1);
+
+        // When
+        refresher.onAvailabilityChanged(new BookAvailabilityChangedEvent(1L, 2L, true));
+
+        // Then
+        verify(bookCopyRepository, timeout(2000).times(2)).refreshItemTrackedAvailability(eq(1L), eq(2L), any());
+        verify(searchResultCache, timeout(2000)).invalidateForAvailabilityChange(1L, 2L);
+    }
+
+    @Test
+    @DisplayName("持續失敗時最多嘗試 max-attempts 次")
+    void onAvailabilityChanged_AlwaysFails_StopsAfterMaxAttempts() throws Exception {
+        // Given
+        when(bookCopyRepository.refreshItemTrackedAvailability(eq(1L), eq(2L), any()))
+                .thenThrow(new QueryTimeoutException("lock timeout"));
+
+        // When
+        refresher.onAvailabilityChanged(new BookAvailabilityChangedEvent(1L, 2L, true));
+
+        // Then
+        verify(bookCopyRepository, timeout(2000).times(3)).refreshItemTrackedAvailability(eq(1L), eq(2L), any());
+        Thread.sleep(100);
+        verify(bookCopyRepository, times(3)).refreshItemTrackedAvailability(eq(1L), eq(2L), any());
+        verify(searchResultCache, never()).invalidateForAvailabilityChange(any(), any());
+    }
+
+    @Test
+    @DisplayName("非逐冊追蹤的館藏不重新計算")
+    void onAvailabilityChanged_CountedCopy_Ignored() throws Exception {
+        refresher.onAvailabilityChanged(new BookAvailabilityChangedEvent(1L, 2L, false));
+
+        refresher.awaitIdle();
+        verifyNoInteractions(bookCopyRepository);
+    }
+}
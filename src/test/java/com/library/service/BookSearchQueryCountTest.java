@@ -0,0 +1,148 @@
+package com.library.service;
+
+import com.library.dto.BookSearchResponse;
+import com.library.entity.Book;
+import com.library.entity.BookCopy;
+import com.library.entity.Library;
+import com.library.repository.BookCopyRepository;
+import com.library.repository.BookRepository;
+import com.library.repository.BorrowRecordRepository;
+import com.library.repository.LibraryRepository;
+import com.library.search.SearchReadPath;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 以 Hibernate Statistics 計算搜尋時發出的 SQL 次數
+ * 使用 JPQL 模式並停用快取，確保每次搜尋都實際查詢資料庫
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "library.search.engine=JPQL",
+        "library.search.cache.enabled=false"
+})
+@ActiveProfiles("test")
+@DisplayName("書籍搜尋 SQL 次數測試")
+class BookSearchQueryCountTest {
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookCopyRepository bookCopyRepository;
+
+    @Autowired
+    private LibraryRepository libraryRepository;
+
+    @Autowired
+    private BorrowRecordRepository borrowRecordRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        borrowRecordRepository.deleteAll();
+        bookCopyRepository.deleteAll();
+        bookRepository.deleteAll();
+        libraryRepository.deleteAll();
+
+        Library central = saveLibrary("中央圖書館", true);
+        Library branch = saveLibrary("分館圖書館", true);
+        Library closed = saveLibrary("停用圖書館", false);
+
+        Book first = saveBook("查詢計數：資料結構");
+        Book second = saveBook("查詢計數：演算法");
+        saveBook("查詢計數：無館藏");
+        saveCopy(first, central, 3, 1);
+        saveCopy(first, branch, 2, 0);
+        saveCopy(first, closed, 1, 1);
+        saveCopy(second, branch, 4, 4);
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    @DisplayName("投影讀取：書籍ID與館藏各一次查詢，不載入實體")
+    void searchBooks_Projection_TwoStatementsNoEntities() {
+        List<BookSearchResponse> results = bookService.searchBooks(
+                "查詢計數", null, null, null, 0, 20, SearchReadPath.PROJECTION);
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        assertThat(results).extracting(BookSearchResponse::getTitle)
+                .containsExactly("查詢計數：資料結構", "查詢計數：演算法", "查詢計數：無館藏");
+        assertThat(results.get(0).getLibraries())
+                .extracting(BookSearchResponse.LibraryStockInfo::getLibraryName)
+                .containsExactly("中央圖書館", "分館圖書館");
+        assertThat(results.get(0).getLibraries())
+                .extracting(BookSearchResponse.LibraryStockInfo::getIsAvailable)
+                .containsExactly(true, false);
+        assertThat(results.get(2).getLibraries()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("實體讀取：另需逐一載入圖書館，且結果與投影讀取相同")
+    void searchBooks_Entity_MoreStatementsSameResults() {
+        // 模擬 open-in-view：在同一個 session 中組裝回應
+        List<BookSearchResponse> entityResults = transactionTemplate.execute(status -> bookService.searchBooks(
+                "查詢計數", null, null, null, 0, 20, SearchReadPath.ENTITY));
+        long entityStatements = statistics.getPrepareStatementCount();
+
+        statistics.clear();
+        List<BookSearchResponse> projectionResults = bookService.searchBooks(
+                "查詢計數", null, null, null, 0, 20, SearchReadPath.PROJECTION);
+
+        assertThat(entityStatements).isGreaterThan(statistics.getPrepareStatementCount());
+        assertThat(projectionResults).usingRecursiveComparison().ignoringCollectionOrder()
+                .isEqualTo(entityResults);
+    }
+
+    private Library saveLibrary(String name, boolean active) {
+        Library library = new Library();
+        library.setName(name);
+        library.setAddress(name + "地址");
+        library.setActive(active);
+        return libraryRepository.save(library);
+    }
+
+    private Book saveBook(String title) {
+        Book book = new Book();
+        book.setTitle(title);
+        book.setAuthor("測試作者");
+        book.setPublishYear(2023);
+        book.setType(Book.BookType.BOOK);
+        return bookRepository.save(book);
+    }
+
+    private void saveCopy(Book book, Library library, int total, int available) {
+        BookCopy copy = new BookCopy();
+        copy.setBook(book);
+        copy.setLibrary(library);
+        copy.setTotalCopies(total);
+        copy.setAvailableCopies(available);
+        copy.setStatus(BookCopy.CopyStatus.ACTIVE);
+        bookCopyRepository.save(copy);
+    }
+}
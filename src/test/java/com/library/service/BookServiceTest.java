@@ -1,16 +1,33 @@
 package com.library.service;
 
+import com.library.dto.AddBookCopyRequest;
 import com.library.dto.AddBookCopyResponse;
+import com.library.dto.BookSearchPage;
 import com.library.dto.BookSearchResponse;
+import com.library.dto.BookStockRow;
+import com.library.dto.BookSuggestion;
 import com.library.dto.CreateBookRequest;
 import com.library.dto.CreateBookResponse;
+import com.library.dto.FacetedSearchResponse;
+import com.library.dto.SearchFacets;
 import com.library.entity.Book;
 import com.library.entity.BookCopy;
+import com.library.entity.BookItem;
 import com.library.entity.Library;
 import com.library.entity.User;
+import com.library.event.BookCreatedEvent;
 import com.library.repository.BookCopyRepository;
+import com.library.repository.BookItemRepository;
 import com.library.repository.BookRepository;
 import com.library.repository.LibraryRepository;
+import com.library.search.BookSearchEngine;
+import com.library.search.BookSortKey;
+import com.library.search.SearchCursor;
+import com.library.search.SearchMode;
+import com.library.search.SearchReadPath;
+import com.library.search.SearchResultCache;
+import com.library.search.StockFilter;
+import com.library.search.SuggestionIndex;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -20,11 +37,15 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.*;
@@ -42,9 +63,24 @@ class BookServiceTest {
         @Mock
         private BookCopyRepository bookCopyRepository;
 
+        @Mock
+        private BookItemRepository bookItemRepository;
+
         @Mock
         private LibraryRepository libraryRepository;
 
+        @Mock
+        private BookSearchEngine bookSearchEngine;
+
+        @Mock
+        private SearchResultCache searchResultCache;
+
+        @Mock
+        private SuggestionIndex suggestionIndex;
+
+        @Mock
+        private ApplicationEventPublisher eventPublisher;
+
         @InjectMocks
         private BookService bookService;
 
@@ -135,6 +171,39 @@ class BookServiceTest {
                 verify(bookRepository).save(any(Book.class));
                 verify(libraryRepository, never()).findById(anyLong());
                 verify(bookCopyRepository, never()).save(any(BookCopy.class));
+                verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof BookCreatedEvent
+                                && ((BookCreatedEvent) event).getBookId().equals(1L)));
+        }
+
+        @Test
+        @DisplayName("新增館藏 - 新館藏逐冊追蹤並為每一冊建立條碼")
+        void addBookCopies_NewCopy_CreatesBarcodedItems() {
+                // Given
+                when(bookRepository.findById(1L)).thenReturn(Optional.of(existingBook));
+                when(libraryRepository.findById(1L)).thenReturn(Optional.of(activeLibrary));
+                when(bookCopyRepository.findByBookAndLibrary(existingBook, activeLibrary)).thenReturn(Optional.empty());
+                when(bookCopyRepository.save(any(BookCopy.class))).thenAnswer(invocation -> {
+                        BookCopy saved = invocation.getArgument(0);
+                        saved.setId(7L);
+                        return saved;
+                });
+
+                AddBookCopyRequest request = new AddBookCopyRequest();
+                request.setBookId(1L);
+                request.setLibraryId(1L);
+                request.setCopies(3);
+
+                // When
+                AddBookCopyResponse response = bookService.addBookCopies(request, librarianUser);
+
+                // Then
+                assertThat(response.getTotalCopies()).isEqualTo(3);
+                verify(bookCopyRepository).save(argThat(BookCopy::isItemTracked));
+                verify(bookItemRepository).saveAll(argThat((Iterable<BookItem> items) -> {
+                        List<String> barcodes = new ArrayList<>();
+                        items.forEach(item -> barcodes.add(item.getBarcode()));
+                        return barcodes.equals(List.of("C00000007-0001", "C00000007-0002", "C00000007-0003"));
+                }));
         }
 
         @Test
@@ -287,4 +356,355 @@ class BookServiceTest {
                 verify(bookCopyRepository).findByBookIdInAndStatusAndLibraryActive(
                                 Arrays.asList(1L), BookCopy.CopyStatus.ACTIVE, true);
         }
-}
\ No newline at end of file
+
+        @Test
+        @DisplayName("索引模式下使用搜尋引擎結果並依索引順序回傳")
+        void searchBooks_IndexMode_UsesSearchEngine() {
+                // Given
+                Book springBook = new Book();
+                springBook.setId(3L);
+                springBook.setTitle("Java Spring");
+                springBook.setAuthor("李四");
+                ReflectionTestUtils.setField(bookService, "searchMode", SearchMode.INDEX);
+                when(bookSearchEngine.isReady()).thenReturn(true);
+                when(bookSearchEngine.search("Java", null, null, null, 20, 20))
+                                .thenReturn(Optional.of(Arrays.asList(3L, 1L)));
+                when(bookRepository.findAllById(Arrays.asList(3L, 1L)))
+                                .thenReturn(Arrays.asList(existingBook, springBook));
+                when(bookCopyRepository.findByBookIdInAndStatusAndLibraryActive(
+                                Arrays.asList(3L, 1L), BookCopy.CopyStatus.ACTIVE, true))
+                                .thenReturn(Arrays.asList(bookCopy));
+
+                // When
+                List<BookSearchResponse> responses = bookService.searchBooks("Java", null, null, 1, 20);
+
+                // Then
+                assertThat(responses).extracting(BookSearchResponse::getId).containsExactly(3L, 1L);
+                assertThat(responses.get(1).getLibraries()).hasSize(1);
+                verify(bookRepository, never()).searchBooks(any(), any(), any(), any(Pageable.class));
+        }
+
+        @Test
+        @DisplayName("索引未就緒時退回 JPQL 查詢")
+        void searchBooks_IndexNotReady_FallsBackToJpql() {
+                // Given
+                Pageable pageable = PageRequest.of(0, 20);
+                ReflectionTestUtils.setField(bookService, "searchMode", SearchMode.INDEX);
+                when(bookSearchEngine.isReady()).thenReturn(false);
+                when(bookRepository.searchBooks("Java", null, null, pageable)).thenReturn(Arrays.asList(existingBook));
+
+                // When
+                List<BookSearchResponse> responses = bookService.searchBooks("Java", null, null, 0, 20);
+
+                // Then
+                assertThat(responses).hasSize(1);
+                verify(bookSearchEngine, never()).search(any(), any(), any(), any(), anyInt(), anyInt());
+                verify(bookRepository).searchBooks("Java", null, null, pageable);
+        }
+
+        @Test
+        @DisplayName("搜尋引擎無法回答時退回 JPQL 查詢")
+        void searchBooks_EngineCannotAnswer_FallsBackToJpql() {
+                // Given
+                Pageable pageable = PageRequest.of(0, 20);
+                ReflectionTestUtils.setField(bookService, "searchMode", SearchMode.INDEX);
+                when(bookSearchEngine.isReady()).thenReturn(true);
+                when(bookSearchEngine.search("%", null, null, null, 0, 20)).thenReturn(Optional.empty());
+                when(bookRepository.searchBooks("%", null, null, pageable)).thenReturn(Arrays.asList());
+
+                // When
+                List<BookSearchResponse> responses = bookService.searchBooks("%", null, null, 0, 20);
+
+                // Then
+                assertThat(responses).isEmpty();
+                verify(bookRepository).searchBooks("%", null, null, pageable);
+        }
+
+        @Test
+        @DisplayName("模糊搜尋由搜尋引擎的模糊查詢回答")
+        void searchBooks_Fuzzy_UsesSearchFuzzy() {
+                // Given
+                ReflectionTestUtils.setField(bookService, "searchMode", SearchMode.INDEX);
+                when(bookSearchEngine.isReady()).thenReturn(true);
+                when(bookSearchEngine.searchFuzzy("Jvaa", null, null, null, 0, 20))
+                                .thenReturn(Optional.of(Arrays.asList(1L)));
+                when(bookRepository.findAllById(Arrays.asList(1L))).thenReturn(Arrays.asList(existingBook));
+
+                // When
+                List<BookSearchResponse> responses = bookService.searchBooks(
+                                "Jvaa", null, null, null, 0, 20, null, StockFilter.none(), true);
+
+                // Then
+                assertThat(responses).extracting(BookSearchResponse::getId).containsExactly(1L);
+                verify(bookSearchEngine, never()).search(any(), any(), any(), any(), anyInt(), anyInt());
+                verify(searchResultCache).get(SearchResultCache.key(
+                                "Jvaa", null, null, null, StockFilter.none(), true, 0, 20));
+        }
+
+        @Test
+        @DisplayName("模糊搜尋在索引未就緒時退回一般 JPQL 查詢")
+        void searchBooks_FuzzyIndexNotReady_FallsBackToJpql() {
+                // Given
+                Pageable pageable = PageRequest.of(0, 20);
+                ReflectionTestUtils.setField(bookService, "searchMode", SearchMode.INDEX);
+                when(bookSearchEngine.isReady()).thenReturn(false);
+                when(bookRepository.searchBooks("Java", null, null, pageable)).thenReturn(Arrays.asList(existingBook));
+
+                // When
+                List<BookSearchResponse> responses = bookService.searchBooks(
+                                "Java", null, null, null, 0, 20, null, StockFilter.none(), true);
+
+                // Then
+                assertThat(responses).hasSize(1);
+                verify(bookSearchEngine, never()).searchFuzzy(any(), any(), any(), any(), anyInt(), anyInt());
+        }
+
+        @Test
+        @DisplayName("模糊搜尋不可與館藏條件併用")
+        void searchBooks_FuzzyWithStockFilter_ThrowsException() {
+                assertThatThrownBy(() -> bookService.searchBooks(
+                                "Java", null, null, null, 0, 20, null, StockFilter.of(List.of(1L), true), true))
+                                .isInstanceOf(IllegalArgumentException.class)
+                                .hasMessageContaining("模糊搜尋不支援館藏條件");
+        }
+
+        @Test
+        @DisplayName("游標分頁：還有下一頁時回傳下一頁游標")
+        void searchBooksByCursor_HasMore_ReturnsNextCursor() {
+                // Given
+                Book springBook = new Book();
+                springBook.setId(3L);
+                springBook.setTitle("Java Spring");
+                springBook.setAuthor("李四");
+                when(bookRepository.searchBooksAfterTitle("Java", null, null, null, "", 0L, PageRequest.of(0, 2)))
+                                .thenReturn(Arrays.asList(existingBook, springBook));
+
+                // When
+                BookSearchPage page = bookService.searchBooksByCursor(
+                                "Java", null, null, null, SearchCursor.first(BookSortKey.TITLE), 1);
+
+                // Then
+                assertThat(page.getBooks()).extracting(BookSearchResponse::getId).containsExactly(1L);
+                SearchCursor next = SearchCursor.decode(page.getNextCursor());
+                assertThat(next.getSortKey()).isEqualTo(BookSortKey.TITLE);
+                assertThat(next.getLastId()).isEqualTo(1L);
+                assertThat(next.getLastTitle()).isEqualTo(existingBook.getTitle());
+        }
+
+        @Test
+        @DisplayName("游標分頁：最後一頁不回傳游標")
+        void searchBooksByCursor_LastPage_NoNextCursor() {
+                // Given
+                when(bookRepository.searchBooksAfterId("Java", null, null, null, 0L, PageRequest.of(0, 21)))
+                                .thenReturn(Arrays.asList(existingBook));
+
+                // When
+                BookSearchPage page = bookService.searchBooksByCursor(
+                                "Java", null, null, null, SearchCursor.first(BookSortKey.ID), 20);
+
+                // Then
+                assertThat(page.getBooks()).hasSize(1);
+                assertThat(page.getNextCursor()).isNull();
+        }
+
+        @Test
+        @DisplayName("游標分頁：索引模式依書籍ID排序時由搜尋引擎回答")
+        void searchBooksByCursor_IndexMode_UsesSearchAfter() {
+                // Given
+                ReflectionTestUtils.setField(bookService, "searchMode", SearchMode.INDEX);
+                when(bookSearchEngine.isReady()).thenReturn(true);
+                when(bookSearchEngine.searchAfter("Java", null, null, null, 0L, 21))
+                                .thenReturn(Optional.of(Arrays.asList(1L)));
+                when(bookRepository.findAllById(Arrays.asList(1L))).thenReturn(Arrays.asList(existingBook));
+
+                // When
+                BookSearchPage page = bookService.searchBooksByCursor(
+                                "Java", null, null, null, SearchCursor.first(BookSortKey.ID), 20);
+
+                // Then
+                assertThat(page.getBooks()).extracting(BookSearchResponse::getId).containsExactly(1L);
+                verify(bookRepository, never()).searchBooksAfterId(any(), any(), any(), any(), any(), any());
+        }
+
+        @Test
+        @DisplayName("快取命中時不查詢資料庫")
+        void searchBooks_CacheHit_SkipsQuery() {
+                // Given
+                BookSearchResponse cachedResponse = new BookSearchResponse();
+                cachedResponse.setId(1L);
+                when(searchResultCache.get(SearchResultCache.key("java", null, null, null, 0, 20)))
+                                .thenReturn(Optional.of(List.of(cachedResponse)));
+
+                // When
+                List<BookSearchResponse> responses = bookService.searchBooks("Java", null, null, 0, 20);
+
+                // Then
+                assertThat(responses).containsExactly(cachedResponse);
+                verify(bookRepository, never()).searchBooks(any(), any(), any(), any(Pageable.class));
+                verify(searchResultCache, never()).put(any(), any(), anyLong());
+        }
+
+        @Test
+        @DisplayName("快取未命中時查詢並以查詢前的版本寫入快取")
+        void searchBooks_CacheMiss_StoresWithStamp() {
+                // Given
+                Pageable pageable = PageRequest.of(0, 20);
+                when(searchResultCache.stamp()).thenReturn(7L);
+                when(bookRepository.searchBooks("Java", null, null, pageable)).thenReturn(Arrays.asList(existingBook));
+
+                // When
+                List<BookSearchResponse> responses = bookService.searchBooks("Java", null, null, 0, 20);
+
+                // Then
+                verify(searchResultCache).put(SearchResultCache.key("Java", null, null, null, 0, 20), responses, 7L);
+        }
+
+        @Test
+        @DisplayName("投影讀取：由查詢列組裝結果，不載入實體")
+        void searchBooks_Projection_BuildsFromRows() {
+                // Given
+                when(bookRepository.searchBookIds("Java", null, null, null, PageRequest.of(0, 20)))
+                                .thenReturn(Arrays.asList(1L, 2L));
+                when(bookRepository.findStockRowsByBookIds(Arrays.asList(1L, 2L), BookCopy.CopyStatus.ACTIVE))
+                                .thenReturn(Arrays.asList(
+                                                new BookStockRow(1L, "Java程式設計", "張三", 2023, Book.BookType.BOOK,
+                                                                null, null, 1L, "中央圖書館", "台北市中正區", 3, 0),
+                                                new BookStockRow(2L, "Java進階", "李四", 2022, Book.BookType.BOOK,
+                                                                null, null, null, null, null, null, null)));
+
+                // When
+                List<BookSearchResponse> responses = bookService.searchBooks(
+                                "Java", null, null, null, 0, 20, SearchReadPath.PROJECTION);
+
+                // Then
+                assertThat(responses).extracting(BookSearchResponse::getId).containsExactly(1L, 2L);
+                assertThat(responses.get(0).getLibraries()).singleElement()
+                                .satisfies(info -> assertThat(info.getIsAvailable()).isFalse());
+                assertThat(responses.get(1).getLibraries()).isEmpty();
+                verify(bookRepository, never()).findAllById(any());
+                verify(bookCopyRepository, never()).findByBookIdInAndStatusAndLibraryActive(any(), any(), any());
+        }
+
+        @Test
+        @DisplayName("館藏條件於 SQL 中判斷，不使用記憶體索引")
+        void searchBooks_StockFilter_QueriesDatabase() {
+                // Given
+                ReflectionTestUtils.setField(bookService, "searchMode", SearchMode.INDEX);
+                when(bookSearchEngine.isReady()).thenReturn(true);
+                when(bookRepository.searchBookIdsInStock("Java", null, null, List.of(1L, 2L), false, true,
+                                BookCopy.CopyStatus.ACTIVE, PageRequest.of(0, 20)))
+                                .thenReturn(Arrays.asList(1L));
+                when(bookRepository.findAllById(Arrays.asList(1L))).thenReturn(Arrays.asList(existingBook));
+
+                // When
+                List<BookSearchResponse> responses = bookService.searchBooks("Java", null, null, null, 0, 20, null,
+                                StockFilter.of(List.of(2L, 1L), true));
+
+                // Then
+                assertThat(responses).extracting(BookSearchResponse::getId).containsExactly(1L);
+                verify(bookSearchEngine, never()).search(any(), any(), any(), any(), anyInt(), anyInt());
+        }
+
+        @Test
+        @DisplayName("僅列出可借書籍時 libraryId 作為館藏所在圖書館條件")
+        void searchBooks_AvailableOnlyWithLibraryId_LimitsToLibrary() {
+                // Given
+                when(bookRepository.searchBookIdsInStock("Java", null, null, List.of(2L), false, true,
+                                BookCopy.CopyStatus.ACTIVE, PageRequest.of(0, 20)))
+                                .thenReturn(Arrays.asList(1L));
+                when(bookRepository.findAllById(Arrays.asList(1L))).thenReturn(Arrays.asList(existingBook));
+
+                // When
+                List<BookSearchResponse> responses = bookService.searchBooks("Java", null, null, 2L, 0, 20, null,
+                                StockFilter.of(List.of(), true));
+
+                // Then
+                assertThat(responses).extracting(BookSearchResponse::getId).containsExactly(1L);
+        }
+
+        @Test
+        @DisplayName("libraryId 與 libraryIds 不可同時指定")
+        void searchBooks_LibraryIdWithLibraryIds_ThrowsException() {
+                assertThatThrownBy(() -> bookService.searchBooks("Java", null, null, 2L, 0, 20, null,
+                                StockFilter.of(List.of(1L), true)))
+                                .isInstanceOf(IllegalArgumentException.class)
+                                .hasMessage("libraryId 與 libraryIds 不可同時指定，請只使用 libraryIds");
+                verify(bookRepository, never()).searchBookIdsInStock(any(), any(), any(), any(), anyBoolean(),
+                                anyBoolean(), any(), any());
+        }
+
+        @Test
+        @DisplayName("自動完成：建議數量不超過索引保留的數量")
+        void suggest_CapsLimitAtTopK() {
+                // Given
+                List<BookSuggestion> suggestions = List.of(
+                                new BookSuggestion("Java程式設計", BookSuggestion.SuggestionType.TITLE, 1L, 12L));
+                when(suggestionIndex.getTopK()).thenReturn(10);
+                when(suggestionIndex.suggest("java", 10)).thenReturn(suggestions);
+
+                // When
+                List<BookSuggestion> result = bookService.suggest("java", 20);
+
+                // Then
+                assertThat(result).isEqualTo(suggestions);
+                verify(suggestionIndex).suggest("java", 10);
+        }
+
+        @Test
+        @DisplayName("分面搜尋：索引可用時由點陣圖統計，不查詢資料庫")
+        void searchBooksWithFacets_IndexMode_UsesEngineFacets() {
+                // Given
+                SearchFacets facets = new SearchFacets(1L, Map.of(2023, 1L), Map.of(Book.BookType.BOOK, 1L),
+                                Map.of(1L, 1L));
+                ReflectionTestUtils.setField(bookService, "searchMode", SearchMode.INDEX);
+                when(bookSearchEngine.isReady()).thenReturn(true);
+                when(bookSearchEngine.search("Java", null, null, null, 0, 20)).thenReturn(Optional.of(List.of(1L)));
+                when(bookRepository.findAllById(List.of(1L))).thenReturn(List.of(existingBook));
+                when(bookSearchEngine.facets("Java", null, null, null)).thenReturn(Optional.of(facets));
+
+                // When
+                FacetedSearchResponse response = bookService.searchBooksWithFacets("Java", null, null, null, 0, 20);
+
+                // Then
+                assertThat(response.getBooks()).extracting(BookSearchResponse::getId).containsExactly(1L);
+                assertThat(response.getFacets()).isEqualTo(facets);
+                verify(bookRepository, never()).countByPublishYear(any(), any(), any(), any());
+                verify(bookRepository, never()).countByLibrary(any(), any(), any(), any());
+        }
+
+        @Test
+        @DisplayName("分面搜尋：索引未就緒時以 GROUP BY 查詢統計")
+        void searchBooksWithFacets_IndexNotReady_FallsBackToGroupBy() {
+                // Given
+                ReflectionTestUtils.setField(bookService, "searchMode", SearchMode.INDEX);
+                when(bookSearchEngine.isReady()).thenReturn(false);
+                when(bookRepository.searchBooks("Java", null, null, PageRequest.of(0, 20)))
+                                .thenReturn(List.of(existingBook));
+                BookRepository.YearCount year2023 = mock(BookRepository.YearCount.class);
+                when(year2023.getPublishYear()).thenReturn(2023);
+                when(year2023.getBookCount()).thenReturn(2L);
+                BookRepository.YearCount year2021 = mock(BookRepository.YearCount.class);
+                when(year2021.getPublishYear()).thenReturn(2021);
+                when(year2021.getBookCount()).thenReturn(1L);
+                BookRepository.TypeCount books = mock(BookRepository.TypeCount.class);
+                when(books.getType()).thenReturn(Book.BookType.BOOK);
+                when(books.getBookCount()).thenReturn(3L);
+                BookRepository.LibraryCount central = mock(BookRepository.LibraryCount.class);
+                when(central.getLibraryId()).thenReturn(1L);
+                when(central.getBookCount()).thenReturn(2L);
+                when(bookRepository.countByPublishYear("Java", null, null, null)).thenReturn(List.of(year2023, year2021));
+                when(bookRepository.countByType("Java", null, null, null)).thenReturn(List.of(books));
+                when(bookRepository.countByLibrary("Java", null, null, null)).thenReturn(List.of(central));
+
+                // When
+                FacetedSearchResponse response = bookService.searchBooksWithFacets("Java", null, null, null, 0, 20);
+
+                // Then
+                assertThat(response.getBooks()).hasSize(1);
+                assertThat(response.getFacets().getTotalBooks()).isEqualTo(3L);
+                assertThat(response.getFacets().getYears()).containsExactly(Map.entry(2021, 1L), Map.entry(2023, 2L));
+                assertThat(response.getFacets().getTypes()).containsExactly(Map.entry(Book.BookType.BOOK, 3L));
+                assertThat(response.getFacets().getLibraries()).containsExactly(Map.entry(1L, 2L));
+                verify(bookSearchEngine, never()).facets(any(), any(), any(), any());
+        }
+}
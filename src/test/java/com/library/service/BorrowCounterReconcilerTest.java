@@ -0,0 +1,124 @@
+package com.library.service;
+
+import com.library.entity.*;
+import com.library.repository.BorrowRecordRepository;
+import com.library.repository.UserBorrowCounterRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@DisplayName("BorrowCounterReconciler 測試")
+class BorrowCounterReconcilerTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private UserBorrowCounterRepository userBorrowCounterRepository;
+
+    @Autowired
+    private BorrowRecordRepository borrowRecordRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private BorrowCounterReconciler reconciler;
+    private SimpleMeterRegistry meterRegistry;
+    private User member;
+    private UserBorrowCounter bookCounter;
+    private UserBorrowCounter magazineCounter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        reconciler = new BorrowCounterReconciler(userBorrowCounterRepository, borrowRecordRepository,
+                transactionManager, meterRegistry);
+
+        member = new User();
+        member.setUsername("member");
+        member.setEmail("member@test.com");
+        member.setPassword("password");
+        member.setFullName("會員");
+        member.setRole(User.UserRole.MEMBER);
+        member.setActive(true);
+        entityManager.persist(member);
+
+        Library library = new Library();
+        library.setName("中央圖書館");
+        library.setAddress("台北市中正區");
+        library.setActive(true);
+        entityManager.persist(library);
+
+        // 借閱中 2 本書籍、已歸還 1 本
+        for (int i = 0; i < 3; i++) {
+            Book book = new Book();
+            book.setTitle("書籍" + i);
+            book.setAuthor("作者");
+            book.setPublishYear(2023);
+            book.setType(Book.BookType.BOOK);
+            entityManager.persist(book);
+
+            BookCopy copy = new BookCopy();
+            copy.setBook(book);
+            copy.setLibrary(library);
+            copy.setTotalCopies(1);
+            copy.setAvailableCopies(0);
+            copy.setStatus(BookCopy.CopyStatus.ACTIVE);
+            entityManager.persist(copy);
+
+            BorrowRecord record = new BorrowRecord();
+            record.setUser(member);
+            record.setBookCopy(copy);
+            record.setLibrary(library);
+            record.setBorrowDate(LocalDate.now());
+            record.setDueDate(LocalDate.now().plusMonths(1));
+            record.setStatus(i < 2 ? BorrowRecord.BorrowStatus.BORROWED : BorrowRecord.BorrowStatus.RETURNED);
+            entityManager.persist(record);
+        }
+
+        bookCounter = entityManager.persist(new UserBorrowCounter(member, Book.BookType.BOOK, 2));
+        magazineCounter = entityManager.persist(new UserBorrowCounter(member, Book.BookType.MAGAZINE, 0));
+        entityManager.flush();
+    }
+
+    @Test
+    @DisplayName("計數器與借閱記錄一致時不修正")
+    void reconcile_Consistent_NoCorrection() {
+        assertThat(reconciler.reconcile()).isZero();
+        assertThat(meterRegistry.get("library.borrow.counters.corrected").counter().count()).isZero();
+    }
+
+    @Test
+    @DisplayName("不一致的計數器依借閱記錄修正")
+    void reconcile_Drifted_CorrectsFromRecords() {
+        // Given
+        bookCounter.setActiveCount(5);
+        magazineCounter.setActiveCount(1);
+        entityManager.flush();
+
+        // When
+        int corrected = reconciler.reconcile();
+        entityManager.flush();
+        entityManager.clear();
+
+        // Then
+        assertThat(corrected).isEqualTo(2);
+        assertThat(userBorrowCounterRepository.findByUserIdAndBookType(member.getId(), Book.BookType.BOOK))
+                .get().extracting(UserBorrowCounter::getActiveCount).isEqualTo(2);
+        assertThat(userBorrowCounterRepository.findByUserIdAndBookType(member.getId(), Book.BookType.MAGAZINE))
+                .get().extracting(UserBorrowCounter::getActiveCount).isEqualTo(0);
+        assertThat(meterRegistry.get("library.borrow.counters.corrected").counter().count()).isEqualTo(2.0);
+    }
+}
@@ -0,0 +1,193 @@
+package com.library.service;
+
+import com.library.dto.BorrowBookRequest;
+import com.library.dto.BorrowBookResponse;
+import com.library.entity.*;
+import com.library.repository.*;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 500 個同時借閱同一書籍副本的請求：逐筆交易（BorrowService.borrowBook）與合併提交的延遲比較
+ * 執行方式：mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "library.borrow.group-commit.enabled=true",
+        "spring.jpa.show-sql=false",
+        "logging.level.com.library=INFO",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN",
+        "logging.level.org.springframework.transaction=WARN",
+        "logging.level.org.springframework.security=WARN"
+})
+@ActiveProfiles("test")
+@DisplayName("合併提交借書效能基準測試")
+class BorrowGroupCommitBenchmarkTest {
+
+    private static final int REQUESTS = 500;
+
+    @Autowired
+    private BorrowService borrowService;
+
+    @Autowired
+    private BorrowGroupCommitter borrowGroupCommitter;
+
+    @Autowired
+    private BorrowRecordRepository borrowRecordRepository;
+
+    @Autowired
+    private BookCopyRepository bookCopyRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private LibraryRepository libraryRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserBorrowCounterRepository userBorrowCounterRepository;
+
+    @Test
+    @DisplayName("500 個同時借書請求：逐筆交易與合併提交")
+    void benchmark_FiveHundredConcurrentBorrows() throws Exception {
+        borrowRecordRepository.deleteAll();
+        bookCopyRepository.deleteAll();
+        bookRepository.deleteAll();
+        libraryRepository.deleteAll();
+        userBorrowCounterRepository.deleteAll();
+        userRepository.deleteAll();
+
+        Library library = new Library();
+        library.setName("中央圖書館");
+        library.setAddress("台北市中正區");
+        library.setActive(true);
+        library = libraryRepository.save(library);
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            User user = new User();
+            user.setUsername("bench" + i);
+            user.setPassword("password");
+            user.setEmail("bench" + i + "@test.com");
+            user.setFullName("基準測試用戶" + i);
+            user.setRole(User.UserRole.MEMBER);
+            user.setActive(true);
+            users.add(userRepository.save(user));
+        }
+
+        // 暖身：兩種方式各借一次不同的副本，建立計數器並完成 JIT 編譯前的首次載入
+        run(saveCopy(library, "暖身一", REQUESTS), users, borrowService::borrowBook);
+        run(saveCopy(library, "暖身二", REQUESTS), users, borrowGroupCommitter::borrowBook);
+
+        BookCopy direct = saveCopy(library, "逐筆交易", REQUESTS);
+        Run perRequest = run(direct, users, borrowService::borrowBook);
+        BookCopy grouped = saveCopy(library, "合併提交", REQUESTS);
+        Run groupCommit = run(grouped, users, borrowGroupCommitter::borrowBook);
+
+        // 逐筆交易在等待副本資料列鎖時可能逾時失敗，只驗證借出數量與可借數量一致
+        assertThat(bookCopyRepository.findById(direct.getId()).orElseThrow().getAvailableCopies())
+                .isEqualTo(REQUESTS - perRequest.successes);
+        assertThat(groupCommit.successes).isEqualTo(REQUESTS);
+        assertThat(bookCopyRepository.findById(grouped.getId()).orElseThrow().getAvailableCopies()).isZero();
+
+        System.out.printf("requests=%d | borrowBook ok=%d total=%dms p50=%.1fms p99=%.1fms failures=%s"
+                        + " | group-commit ok=%d total=%dms p50=%.1fms p99=%.1fms%n",
+                REQUESTS, perRequest.successes, perRequest.totalMillis, percentile(perRequest.nanos, 50),
+                percentile(perRequest.nanos, 99), perRequest.failures, groupCommit.successes,
+                groupCommit.totalMillis, percentile(groupCommit.nanos, 50), percentile(groupCommit.nanos, 99));
+    }
+
+    private Run run(BookCopy copy, List<User> users,
+            BiFunction<BorrowBookRequest, User, BorrowBookResponse> borrow) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(REQUESTS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger successes = new AtomicInteger();
+        Map<String, Integer> failures = new ConcurrentHashMap<>();
+        long[] nanos = new long[users.size()];
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < users.size(); i++) {
+            int index = i;
+            futures.add(CompletableFuture.runAsync(() -> {
+                try {
+                    start.await();
+                    long begin = System.nanoTime();
+                    try {
+                        borrow.apply(new BorrowBookRequest(copy.getId()), users.get(index));
+                        successes.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        failures.merge(e.getClass().getSimpleName(), 1, Integer::sum);
+                    } finally {
+                        nanos[index] = System.nanoTime() - begin;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, executor));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+        long totalMillis = (System.nanoTime() - begin) / 1_000_000;
+        executor.shutdown();
+        return new Run(successes.get(), failures, totalMillis, nanos);
+    }
+
+    private BookCopy saveCopy(Library library, String title, int copies) {
+        Book book = new Book();
+        book.setTitle(title);
+        book.setAuthor("測試作者");
+        book.setPublishYear(2024);
+        book.setType(Book.BookType.BOOK);
+        book = bookRepository.save(book);
+
+        BookCopy copy = new BookCopy();
+        copy.setBook(book);
+        copy.setLibrary(library);
+        copy.setTotalCopies(copies);
+        copy.setAvailableCopies(copies);
+        copy.setStatus(BookCopy.CopyStatus.ACTIVE);
+        return bookCopyRepository.save(copy);
+    }
+
+    private static double percentile(long[] nanos, int percentile) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        int index = Math.min(sorted.length - 1, (int) Math.ceil(percentile / 100.0 * sorted.length) - 1);
+        return sorted[index] / 1_000_000.0;
+    }
+
+    private static final class Run {
+        private final int successes;
+        private final Map<String, Integer> failures;
+        private final long totalMillis;
+        private final long[] nanos;
+
+        private Run(int successes, Map<String, Integer> failures, long totalMillis, long[] nanos) {
+            this.successes = successes;
+            this.failures = failures;
+            this.totalMillis = totalMillis;
+            this.nanos = nanos;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.library.service;
+
+import com.library.dto.BorrowBookRequest;
+import com.library.dto.BorrowBookResponse;
+import com.library.entity.User;
+import com.library.exception.BorrowOverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * 合併提交的資源上限：每個副本的排隊數、同時排隊的副本數與等待時間
+ */
+@DisplayName("BorrowGroupCommitter 上限測試")
+class BorrowGroupCommitterLimitsTest {
+
+    private final CountDownLatch processing = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    private BorrowService borrowService;
+    private BorrowGroupCommitter committer;
+
+    @BeforeEach
+    void setUp() {
+        // 副本 1 的第一批停在交易中，佔住唯一的工作執行緒
+        borrowService = mock(BorrowService.class);
+        doAnswer(invocation -> {
+            processing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(borrowService).borrowGroup(eq(1L), anyList());
+        committer = newCommitter(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        committer.shutdown();
+        callers.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("副本的排隊已滿時立即拒絕")
+    void borrowBook_QueueFull_RejectsImmediately() throws Exception {
+        // Given - 第一筆處理中，第二筆排隊
+        CompletableFuture<BorrowBookResponse> first = borrowAsync(1L);
+        assertThat(processing.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<BorrowBookResponse> second = borrowAsync(1L);
+        awaitQueued(second);
+
+        // When & Then
+        assertThatThrownBy(() -> committer.borrowBook(new BorrowBookRequest(1L), member()))
+                .isInstanceOf(BorrowOverloadedException.class)
+                .hasMessage("目前借閱此書的請求過多，請稍後再試");
+
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        verify(borrowService, times(2)).borrowGroup(eq(1L), anyList());
+    }
+
+    @Test
+    @DisplayName("同時排隊的副本數已滿時拒絕其他副本的請求")
+    void borrowBook_TooManyCopies_Rejects() throws Exception {
+        // Given - 工作執行緒處理副本 1，副本 2 排隊，已達同時有請求的副本數上限
+        borrowAsync(1L);
+        assertThat(processing.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<BorrowBookResponse> second = borrowAsync(2L);
+        awaitQueued(second);
+
+        // When & Then
+        assertThatThrownBy(() -> committer.borrowBook(new BorrowBookRequest(3L), member()))
+                .isInstanceOf(BorrowOverloadedException.class)
+                .hasMessage("目前借閱請求過多，請稍後再試");
+    }
+
+    @Test
+    @DisplayName("等待逾時：排隊中的請求移出佇列不再借書，處理中的請求提示查詢借閱記錄")
+    void borrowBook_Timeout_RemovesQueuedRequest() throws Exception {
+        // Given - 第一筆處理中，第二筆排在其後
+        CompletableFuture<BorrowBookResponse> first = borrowAsync(1L);
+        assertThat(processing.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // When & Then
+        assertThatThrownBy(() -> committer.borrowBook(new BorrowBookRequest(1L), member()))
+                .isInstanceOf(BorrowOverloadedException.class)
+                .hasMessage("目前借閱請求過多，請稍後再試");
+        assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(BorrowOverloadedException.class)
+                .cause().hasMessage("借閱請求處理逾時，請稍後查詢借閱記錄確認是否借閱成功");
+
+        release.countDown();
+        verify(borrowService, timeout(5000).times(1)).borrowGroup(eq(1L), anyList());
+        Thread.sleep(100);
+        verify(borrowService, times(1)).borrowGroup(eq(1L), anyList());
+        verify(borrowService, never()).borrowBook(any(), any());
+    }
+
+    @Test
+    @DisplayName("熱門副本多於工作執行緒時，每個副本處理一批就讓出執行緒，各副本輪流處理")
+    void borrowBook_MoreHotCopiesThanWorkers_TakeTurns() throws Exception {
+        // Given - 唯一的工作執行緒處理副本 1 時，副本 1、2、3 都有請求排隊
+        committer.shutdown();
+        committer = newCommitter(3);
+        CompletableFuture<BorrowBookResponse> first = borrowAsync(1L);
+        assertThat(processing.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<BorrowBookResponse> copy1 = borrowAsync(1L);
+        awaitQueued(copy1);
+        CompletableFuture<BorrowBookResponse> copy2 = borrowAsync(2L);
+        awaitQueued(copy2);
+        CompletableFuture<BorrowBookResponse> copy3 = borrowAsync(3L);
+        awaitQueued(copy3);
+
+        // When
+        release.countDown();
+        CompletableFuture.allOf(first, copy1, copy2, copy3).get(5, TimeUnit.SECONDS);
+
+        // Then - 副本 1 的第二批排在副本 2、3 之後
+        InOrder inOrder = inOrder(borrowService);
+        inOrder.verify(borrowService).borrowGroup(eq(1L), anyList());
+        inOrder.verify(borrowService).borrowGroup(eq(2L), anyList());
+        inOrder.verify(borrowService).borrowGroup(eq(3L), anyList());
+        inOrder.verify(borrowService).borrowGroup(eq(1L), anyList());
+    }
+
+    private BorrowGroupCommitter newCommitter(int maxCopies) {
+        return new BorrowGroupCommitter(borrowService, new SimpleMeterRegistry(), true, 10, 1, maxCopies, 1,
+                Duration.ofSeconds(1));
+    }
+
+    private CompletableFuture<BorrowBookResponse> borrowAsync(Long bookCopyId) {
+        return CompletableFuture.supplyAsync(
+                () -> committer.borrowBook(new BorrowBookRequest(bookCopyId), member()), callers);
+    }
+
+    // 排隊中的請求會一直等待，確認它沒有立即失敗
+    private void awaitQueued(CompletableFuture<BorrowBookResponse> future) throws Exception {
+        try {
+            future.get(100, TimeUnit.MILLISECONDS);
+            fail("請求應在排隊中");
+        } catch (TimeoutException expected) {
+            // 仍在排隊
+        } catch (ExecutionException e) {
+            fail("請求不應失敗", e.getCause());
+        }
+    }
+
+    private static User member() {
+        User member = new User();
+        member.setId(1L);
+        member.setUsername("member");
+        return member;
+    }
+}
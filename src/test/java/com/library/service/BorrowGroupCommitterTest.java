@@ -0,0 +1,238 @@
+package com.library.service;
+
+import com.library.dto.BorrowBookRequest;
+import com.library.entity.*;
+import com.library.exception.BookAlreadyBorrowedException;
+import com.library.exception.BookNotAvailableException;
+import com.library.repository.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "library.borrow.group-commit.enabled=true",
+        "library.borrow.group-commit.max-batch-size=8"
+})
+@ActiveProfiles("test")
+@DisplayName("BorrowGroupCommitter 合併提交測試")
+class BorrowGroupCommitterTest {
+
+    @Autowired
+    private BorrowGroupCommitter borrowGroupCommitter;
+
+    @Autowired
+    private BookItemRepository bookItemRepository;
+
+    @Autowired
+    private HoldRepository holdRepository;
+
+    @Autowired
+    private BorrowRecordRepository borrowRecordRepository;
+
+    @Autowired
+    private BookCopyRepository bookCopyRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private LibraryRepository libraryRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserBorrowCounterRepository userBorrowCounterRepository;
+
+    private Library library;
+
+    @BeforeEach
+    void setUp() {
+        cleanUp();
+
+        library = new Library();
+        library.setName("中央圖書館");
+        library.setAddress("台北市中正區");
+        library.setActive(true);
+        library = libraryRepository.save(library);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        holdRepository.deleteAll();
+        borrowRecordRepository.deleteAll();
+        bookCopyRepository.deleteAll();
+        bookRepository.deleteAll();
+        libraryRepository.deleteAll();
+        userBorrowCounterRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("同時借同一副本：依庫存借出，其餘請求各自收到沒有可借數量")
+    void borrowBook_ConcurrentRequests_AllocatesStock() throws Exception {
+        // Given - 10 本可借、30 位用戶
+        BookCopy copy = saveCopy(10, false);
+        List<User> users = saveMembers(30);
+
+        // When
+        Results results = borrowConcurrently(copy, users);
+
+        // Then
+        assertThat(results.successes).hasSize(10);
+        assertThat(results.failures).hasSize(20)
+                .allSatisfy(failure -> assertThat(failure).isInstanceOf(BookNotAvailableException.class));
+        assertThat(bookCopyRepository.findById(copy.getId()).orElseThrow().getAvailableCopies()).isZero();
+        assertThat(borrowRecordRepository.count()).isEqualTo(10);
+        // 只有借到的用戶計數器增加
+        assertThat(userBorrowCounterRepository.findAll())
+                .extracting(UserBorrowCounter::getActiveCount)
+                .containsOnly(0, 1)
+                .filteredOn(count -> count == 1).hasSize(10);
+    }
+
+    @Test
+    @DisplayName("逐冊追蹤的館藏一次認領多冊")
+    void borrowBook_ItemTrackedCopy_ClaimsDistinctItems() throws Exception {
+        // Given
+        BookCopy copy = saveCopy(5, true);
+        List<User> users = saveMembers(12);
+
+        // When
+        Results results = borrowConcurrently(copy, users);
+
+        // Then
+        assertThat(results.successes).hasSize(5);
+        assertThat(bookItemRepository.countByBookCopyIdAndStatus(copy.getId(), BookItem.ItemStatus.BORROWED))
+                .isEqualTo(5);
+        assertThat(bookCopyRepository.findById(copy.getId()).orElseThrow().getAvailableCopies()).isZero();
+    }
+
+    @Test
+    @DisplayName("同一用戶重複送出時只借出一本")
+    void borrowBook_SameUserTwice_SecondFails() throws Exception {
+        // Given
+        BookCopy copy = saveCopy(5, false);
+        User member = saveMembers(1).get(0);
+
+        // When
+        Results results = borrowConcurrently(copy, List.of(member, member));
+
+        // Then
+        assertThat(results.successes).hasSize(1);
+        assertThat(results.failures).singleElement().isInstanceOf(BookAlreadyBorrowedException.class);
+        assertThat(bookCopyRepository.findById(copy.getId()).orElseThrow().getAvailableCopies()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("預約者借出保留給自己的一本，不佔用其餘請求的庫存")
+    void borrowBook_ReadyHold_BorrowsReservedCopy() throws Exception {
+        // Given - 共 3 本，1 本已保留給第一位用戶，另 2 本可借
+        BookCopy copy = saveCopy(3, false);
+        copy.setAvailableCopies(2);
+        copy = bookCopyRepository.save(copy);
+        List<User> users = saveMembers(5);
+        Hold hold = new Hold();
+        hold.setUser(users.get(0));
+        hold.setBookCopy(copy);
+        hold.setStatus(Hold.HoldStatus.READY);
+        hold.setExpiresAt(LocalDateTime.now().plusDays(3));
+        hold = holdRepository.save(hold);
+
+        // When
+        Results results = borrowConcurrently(copy, users);
+
+        // Then
+        assertThat(results.successes).hasSize(3);
+        assertThat(results.failures).hasSize(2)
+                .allSatisfy(failure -> assertThat(failure).isInstanceOf(BookNotAvailableException.class));
+        assertThat(holdRepository.findById(hold.getId()).orElseThrow().getStatus())
+                .isEqualTo(Hold.HoldStatus.FULFILLED);
+        assertThat(borrowRecordRepository.findAll())
+                .extracting(record -> record.getUser().getId()).contains(users.get(0).getId());
+        assertThat(bookCopyRepository.findById(copy.getId()).orElseThrow().getAvailableCopies()).isZero();
+    }
+
+    private Results borrowConcurrently(BookCopy copy, List<User> users) throws Exception {
+        Results results = new Results();
+        ExecutorService executor = Executors.newFixedThreadPool(users.size());
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (User user : users) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                try {
+                    start.await();
+                    results.successes.add(borrowGroupCommitter.borrowBook(
+                            new BorrowBookRequest(copy.getId()), user).getBorrowRecordId());
+                } catch (RuntimeException e) {
+                    results.failures.add(e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, executor));
+        }
+        start.countDown();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+        executor.shutdown();
+        return results;
+    }
+
+    private BookCopy saveCopy(int copies, boolean itemTracked) {
+        Book book = new Book();
+        book.setTitle("熱門新書");
+        book.setAuthor("測試作者");
+        book.setPublishYear(2024);
+        book.setType(Book.BookType.BOOK);
+        book = bookRepository.save(book);
+
+        BookCopy copy = new BookCopy();
+        copy.setBook(book);
+        copy.setLibrary(library);
+        copy.setTotalCopies(copies);
+        copy.setAvailableCopies(copies);
+        copy.setStatus(BookCopy.CopyStatus.ACTIVE);
+        copy.setItemTracked(itemTracked);
+        copy = bookCopyRepository.save(copy);
+        if (itemTracked) {
+            for (int i = 1; i <= copies; i++) {
+                bookItemRepository.save(new BookItem(copy, BookItem.barcodeFor(copy.getId(), i)));
+            }
+        }
+        return copy;
+    }
+
+    private List<User> saveMembers(int count) {
+        List<User> members = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            User member = new User();
+            member.setUsername("group" + i);
+            member.setPassword("password");
+            member.setEmail("group" + i + "@test.com");
+            member.setFullName("合併提交用戶" + i);
+            member.setRole(User.UserRole.MEMBER);
+            member.setActive(true);
+            members.add(userRepository.save(member));
+        }
+        return members;
+    }
+
+    private static final class Results {
+        private final List<Long> successes = new CopyOnWriteArrayList<>();
+        private final List<RuntimeException> failures = new CopyOnWriteArrayList<>();
+    }
+}
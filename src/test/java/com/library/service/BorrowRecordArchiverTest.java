@@ -0,0 +1,158 @@
+package com.library.service;
+
+import com.library.dto.BorrowHistoryRow;
+import com.library.entity.*;
+import com.library.repository.ArchivedBorrowRecordRepository;
+import com.library.repository.BorrowRecordRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@DisplayName("BorrowRecordArchiver 測試")
+class BorrowRecordArchiverTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private BorrowRecordRepository borrowRecordRepository;
+
+    @Autowired
+    private ArchivedBorrowRecordRepository archivedBorrowRecordRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private BorrowRecordArchiver archiver;
+    private SimpleMeterRegistry meterRegistry;
+    private User member;
+    private BookCopy copy;
+    private Library library;
+    private final List<BorrowRecord> oldReturned = new ArrayList<>();
+    private BorrowRecord recentReturned;
+    private BorrowRecord borrowed;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        // 歸還超過 30 天的記錄封存，每批 2 筆
+        archiver = new BorrowRecordArchiver(borrowRecordRepository, archivedBorrowRecordRepository,
+                transactionManager, meterRegistry, 30, 2);
+
+        member = new User();
+        member.setUsername("member");
+        member.setEmail("member@test.com");
+        member.setPassword("password");
+        member.setFullName("會員");
+        member.setRole(User.UserRole.MEMBER);
+        member.setActive(true);
+        entityManager.persist(member);
+
+        library = new Library();
+        library.setName("中央圖書館");
+        library.setAddress("台北市中正區");
+        library.setActive(true);
+        entityManager.persist(library);
+
+        Book book = new Book();
+        book.setTitle("Java程式設計");
+        book.setAuthor("張三");
+        book.setPublishYear(2023);
+        book.setType(Book.BookType.BOOK);
+        entityManager.persist(book);
+
+        copy = new BookCopy();
+        copy.setBook(book);
+        copy.setLibrary(library);
+        copy.setTotalCopies(1);
+        copy.setAvailableCopies(0);
+        copy.setStatus(BookCopy.CopyStatus.ACTIVE);
+        entityManager.persist(copy);
+
+        // 5 筆 60 天前歸還、1 筆 10 天前歸還、1 筆借閱中
+        for (int i = 0; i < 5; i++) {
+            oldReturned.add(persistRecord(LocalDate.now().minusDays(100 + i), LocalDate.now().minusDays(60)));
+        }
+        recentReturned = persistRecord(LocalDate.now().minusDays(20), LocalDate.now().minusDays(10));
+        borrowed = persistRecord(LocalDate.now().minusDays(3), null);
+        entityManager.flush();
+    }
+
+    @Test
+    @DisplayName("分批搬移超過保存期限的已歸還記錄，ID 與欄位不變")
+    void archive_MovesOldReturnedRecordsInChunks() {
+        // When
+        int archived = archiver.archive();
+        entityManager.clear();
+
+        // Then
+        assertThat(archived).isEqualTo(5);
+        assertThat(borrowRecordRepository.findAll()).extracting(BorrowRecord::getId)
+                .containsExactlyInAnyOrder(recentReturned.getId(), borrowed.getId());
+        assertThat(archivedBorrowRecordRepository.findAll()).extracting(ArchivedBorrowRecord::getId)
+                .containsExactlyInAnyOrderElementsOf(oldReturned.stream().map(BorrowRecord::getId).toList());
+        ArchivedBorrowRecord first = archivedBorrowRecordRepository.findById(oldReturned.get(0).getId()).orElseThrow();
+        assertThat(first.getBorrowDate()).isEqualTo(oldReturned.get(0).getBorrowDate());
+        assertThat(first.getReturnDate()).isEqualTo(LocalDate.now().minusDays(60));
+        assertThat(first.getStatus()).isEqualTo(BorrowRecord.BorrowStatus.RETURNED);
+        assertThat(first.getArchivedAt()).isNotNull();
+        assertThat(meterRegistry.get("library.borrow.archived").counter().count()).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("沒有需要封存的記錄時不搬移")
+    void archive_NothingEligible() {
+        // Given
+        archiver.archive();
+        entityManager.clear();
+
+        // When & Then
+        assertThat(archiver.archive()).isZero();
+        assertThat(borrowRecordRepository.count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("封存後的記錄仍可由借閱歷史投影查詢取得")
+    void archive_ArchivedRecordsReadableAsHistory() {
+        // Given
+        archiver.archive();
+        entityManager.clear();
+
+        // When
+        List<BorrowHistoryRow> rows = archivedBorrowRecordRepository.findHistoryRows(member.getId(),
+                LocalDate.of(9999, 12, 31), Long.MAX_VALUE, null, null, PageRequest.of(0, 3));
+
+        // Then - 依借閱日期由新到舊
+        assertThat(rows).extracting(BorrowHistoryRow::getBorrowRecordId)
+                .containsExactly(oldReturned.get(0).getId(), oldReturned.get(1).getId(), oldReturned.get(2).getId());
+        assertThat(rows.get(0).getBookTitle()).isEqualTo("Java程式設計");
+        assertThat(rows.get(0).getLibraryName()).isEqualTo("中央圖書館");
+    }
+
+    private BorrowRecord persistRecord(LocalDate borrowDate, LocalDate returnDate) {
+        BorrowRecord record = new BorrowRecord();
+        record.setUser(member);
+        record.setBookCopy(copy);
+        record.setLibrary(library);
+        record.setBorrowDate(borrowDate);
+        record.setDueDate(borrowDate.plusMonths(1));
+        record.setReturnDate(returnDate);
+        record.setStatus(returnDate == null ? BorrowRecord.BorrowStatus.BORROWED : BorrowRecord.BorrowStatus.RETURNED);
+        return entityManager.persist(record);
+    }
+}
@@ -0,0 +1,82 @@
+package com.library.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@DisplayName("BorrowRetryExecutor 單元測試")
+class BorrowRetryExecutorTest {
+
+    private PlatformTransactionManager transactionManager;
+    private SimpleMeterRegistry meterRegistry;
+    private BorrowRetryExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        transactionManager = mock(PlatformTransactionManager.class);
+        meterRegistry = new SimpleMeterRegistry();
+        executor = new BorrowRetryExecutor(transactionManager, meterRegistry, 3, Duration.ofMillis(1), Duration.ofMillis(2));
+    }
+
+    @Test
+    @DisplayName("衝突後以新交易重試直到成功")
+    void execute_ConflictThenSuccess_RetriesInNewTransaction() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = executor.execute("borrow", () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new ObjectOptimisticLockingFailureException("com.library.entity.BookCopy", 7L);
+            }
+            return "ok";
+        });
+
+        assertThat(result).isEqualTo("ok");
+        assertThat(attempts.get()).isEqualTo(3);
+        verify(transactionManager, times(3)).getTransaction(any(TransactionDefinition.class));
+        assertThat(meterRegistry.get("library.borrow.optimistic-conflicts")
+                .tags("operation", "borrow").counter().count()).isEqualTo(2.0);
+        // 實體 ID 不作為標籤，指標數量不隨衝突的資料列增加
+        assertThat(meterRegistry.get("library.borrow.optimistic-conflicts").counter().getId().getTags())
+                .extracting(tag -> tag.getKey()).containsExactly("operation");
+    }
+
+    @Test
+    @DisplayName("超過重試次數後拋出衝突例外")
+    void execute_AlwaysConflicting_ThrowsAfterMaxAttempts() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> executor.execute("return", () -> {
+            attempts.incrementAndGet();
+            throw new OptimisticLockingFailureException("Version conflict");
+        })).isInstanceOf(OptimisticLockingFailureException.class);
+
+        assertThat(attempts.get()).isEqualTo(3);
+        assertThat(meterRegistry.get("library.borrow.retry.exhausted").tag("operation", "return")
+                .counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("非衝突例外不重試")
+    void execute_OtherException_NotRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> executor.execute("borrow", () -> {
+            attempts.incrementAndGet();
+            throw new IllegalArgumentException("書籍副本不存在");
+        })).isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(attempts.get()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,187 @@
+package com.library.service;
+
+import com.library.dto.BatchBorrowItemResult;
+import com.library.dto.BatchBorrowRequest;
+import com.library.dto.BatchBorrowResponse;
+import com.library.dto.BorrowBookRequest;
+import com.library.entity.*;
+import com.library.repository.*;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 批次借書：逐項結果，以及 SQL 次數不隨借閱本數增加
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+@DisplayName("BorrowService 批次借書測試")
+class BorrowServiceBatchTest {
+
+    @Autowired
+    private BorrowService borrowService;
+
+    @Autowired
+    private BorrowRecordRepository borrowRecordRepository;
+
+    @Autowired
+    private BookCopyRepository bookCopyRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private LibraryRepository libraryRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserBorrowCounterRepository userBorrowCounterRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Library library;
+    private User member;
+
+    @BeforeEach
+    void setUp() {
+        borrowRecordRepository.deleteAll();
+        bookCopyRepository.deleteAll();
+        bookRepository.deleteAll();
+        libraryRepository.deleteAll();
+        userBorrowCounterRepository.deleteAll();
+        userRepository.deleteAll();
+
+        library = new Library();
+        library.setName("中央圖書館");
+        library.setAddress("台北市中正區");
+        library.setActive(true);
+        library = libraryRepository.save(library);
+
+        member = new User();
+        member.setUsername("batch_member");
+        member.setPassword("password");
+        member.setEmail("batch_member@test.com");
+        member.setFullName("批次借閱會員");
+        member.setRole(User.UserRole.MEMBER);
+        member.setActive(true);
+        member = userRepository.save(member);
+    }
+
+    @Test
+    @DisplayName("逐項回報結果，失敗項目不影響其他項目")
+    void borrowBooks_MixedItems_PerItemResults() {
+        // Given
+        BookCopy available = saveCopy("可借書籍", Book.BookType.BOOK, 2, BookCopy.CopyStatus.ACTIVE);
+        BookCopy soldOut = saveCopy("已借完書籍", Book.BookType.BOOK, 0, BookCopy.CopyStatus.ACTIVE);
+        BookCopy maintenance = saveCopy("維護中書籍", Book.BookType.BOOK, 1, BookCopy.CopyStatus.MAINTENANCE);
+        BookCopy alreadyBorrowed = saveCopy("已借閱書籍", Book.BookType.BOOK, 2, BookCopy.CopyStatus.ACTIVE);
+        BorrowBookRequest single = new BorrowBookRequest();
+        single.setBookCopyId(alreadyBorrowed.getId());
+        borrowService.borrowBook(single, member);
+
+        // When
+        BatchBorrowResponse response = borrowService.borrowBooks(new BatchBorrowRequest(List.of(
+                available.getId(), soldOut.getId(), 999999L, maintenance.getId(),
+                alreadyBorrowed.getId(), available.getId())), member);
+
+        // Then
+        assertThat(response.getSuccessCount()).isEqualTo(1);
+        assertThat(response.getFailureCount()).isEqualTo(5);
+        assertThat(response.getItems()).extracting(BatchBorrowItemResult::getMessage).containsExactly(
+                "借書成功",
+                "此書籍副本目前沒有可借閱的數量",
+                "書籍副本不存在：ID 999999",
+                "此書籍副本目前不可借閱",
+                "您已經借閱了這本書：已借閱書籍，每本書同時只能借閱一個副本",
+                "同一書籍副本重複出現在借閱清單中");
+        assertThat(response.getItems().get(0).getBorrow().getBookTitle()).isEqualTo("可借書籍");
+
+        assertThat(bookCopyRepository.findById(available.getId()).orElseThrow().getAvailableCopies()).isEqualTo(1);
+        assertThat(borrowRecordRepository.count()).isEqualTo(2);
+        assertThat(userBorrowCounterRepository.findByUserIdAndBookType(member.getId(), Book.BookType.BOOK))
+                .get().extracting(UserBorrowCounter::getActiveCount).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("依類型剩餘額度借出，超過上限的項目失敗")
+    void borrowBooks_ExceedsMagazineLimit_RemainingItemsFail() {
+        // Given - 期刊上限 5 本
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            ids.add(saveCopy("期刊" + i, Book.BookType.MAGAZINE, 1, BookCopy.CopyStatus.ACTIVE).getId());
+        }
+
+        // When
+        BatchBorrowResponse response = borrowService.borrowBooks(new BatchBorrowRequest(ids), member);
+
+        // Then
+        assertThat(response.getSuccessCount()).isEqualTo(5);
+        assertThat(response.getItems().get(5).getMessage())
+                .isEqualTo("您已借閱 5 本圖書，已達到最大借閱數量限制 (5 本)");
+        assertThat(userBorrowCounterRepository.findByUserIdAndBookType(member.getId(), Book.BookType.MAGAZINE))
+                .get().extracting(UserBorrowCounter::getActiveCount).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("SQL 次數不隨借閱本數增加")
+    void borrowBooks_StatementCountIndependentOfItemCount() {
+        // Given
+        List<Long> small = new ArrayList<>();
+        List<Long> large = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            small.add(saveCopy("小批次" + i, Book.BookType.BOOK, 1, BookCopy.CopyStatus.ACTIVE).getId());
+        }
+        for (int i = 0; i < 8; i++) {
+            large.add(saveCopy("大批次" + i, Book.BookType.BOOK, 1, BookCopy.CopyStatus.ACTIVE).getId());
+        }
+        // 先借一次讓計數器建立完成，之後兩次批次走相同路徑
+        borrowService.borrowBooks(new BatchBorrowRequest(List.of(saveCopy("暖身", Book.BookType.BOOK, 1,
+                BookCopy.CopyStatus.ACTIVE).getId())), member);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        // When
+        statistics.clear();
+        assertThat(borrowService.borrowBooks(new BatchBorrowRequest(small), member).getSuccessCount()).isEqualTo(2);
+        long smallStatements = statistics.getPrepareStatementCount();
+
+        statistics.clear();
+        assertThat(borrowService.borrowBooks(new BatchBorrowRequest(large), member).getSuccessCount()).isEqualTo(7);
+        long largeStatements = statistics.getPrepareStatementCount();
+
+        // Then - 鎖計數器、鎖副本、重複借閱檢查、批次 INSERT、批次 UPDATE 副本與計數器；
+        // 序列每 50 個 ID 取號一次，兩次批次之間可能多一次取號
+        assertThat(largeStatements).isLessThanOrEqualTo(smallStatements + 1);
+        assertThat(smallStatements).isLessThanOrEqualTo(7);
+    }
+
+    private BookCopy saveCopy(String title, Book.BookType type, int available, BookCopy.CopyStatus status) {
+        Book book = new Book();
+        book.setTitle(title);
+        book.setAuthor("測試作者");
+        book.setPublishYear(2023);
+        book.setType(type);
+        book = bookRepository.save(book);
+
+        BookCopy copy = new BookCopy();
+        copy.setBook(book);
+        copy.setLibrary(library);
+        copy.setTotalCopies(Math.max(available, 1));
+        copy.setAvailableCopies(available);
+        copy.setStatus(status);
+        return bookCopyRepository.save(copy);
+    }
+}
@@ -2,12 +2,14 @@ package com.library.service;
 
 import com.library.dto.BorrowBookRequest;
 import com.library.entity.*;
+import com.library.exception.BookAlreadyReturnedException;
 import com.library.exception.BookNotAvailableException;
 import org.springframework.dao.OptimisticLockingFailureException;
 import com.library.repository.BookCopyRepository;
 import com.library.repository.BookRepository;
 import com.library.repository.BorrowRecordRepository;
 import com.library.repository.LibraryRepository;
+import com.library.repository.UserBorrowCounterRepository;
 import com.library.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -15,16 +17,30 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
-@SpringBootTest
+// 使用正式的重試設定（application.yml）；關閉測試環境的 SQL 與交易日誌，避免日誌輸出拉長每次交易
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=INFO",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=INFO",
+        "logging.level.org.springframework.transaction=INFO",
+        "logging.level.com.library=INFO"
+})
 @ActiveProfiles("test")
 @DisplayName("BorrowService 併發測試")
 class BorrowServiceConcurrencyTest {
@@ -44,6 +60,9 @@ class BorrowServiceConcurrencyTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserBorrowCounterRepository userBorrowCounterRepository;
+
     @Autowired
     private BorrowRecordRepository borrowRecordRepository;
 
@@ -61,6 +80,7 @@ class BorrowServiceConcurrencyTest {
         bookCopyRepository.deleteAll();
         bookRepository.deleteAll();
         libraryRepository.deleteAll();
+        userBorrowCounterRepository.deleteAll();
         userRepository.deleteAll();
 
         // 創建測試資料
@@ -160,6 +180,154 @@ class BorrowServiceConcurrencyTest {
         assertThat(borrowRecordCount).isEqualTo(1);  // 只有一筆借閱記錄
     }
 
+    @Test
+    @DisplayName("ATOMIC 模式併發借書 - 可借數量足夠時每位用戶都成功")
+    void concurrentBorrowingAtomicModeSucceedsWhileStockLasts() throws InterruptedException, ExecutionException {
+        // Given - 5 本可借，10 位用戶同時借閱
+        testBookCopy.setTotalCopies(5);
+        testBookCopy.setAvailableCopies(5);
+        testBookCopy = bookCopyRepository.save(testBookCopy);
+
+        List<User> users = new ArrayList<>();
+        long timestamp = System.currentTimeMillis();
+        for (int i = 0; i < 10; i++) {
+            User user = new User();
+            user.setUsername("atomic" + i + "_" + timestamp);
+            user.setPassword("password");
+            user.setEmail("atomic" + i + "_" + timestamp + "@test.com");
+            user.setFullName("併發用戶" + i);
+            user.setRole(User.UserRole.MEMBER);
+            user.setActive(true);
+            users.add(userRepository.save(user));
+        }
+
+        BorrowBookRequest request = new BorrowBookRequest();
+        request.setBookCopyId(testBookCopy.getId());
+        AtomicInteger successCount = new AtomicInteger(0);
+        AtomicInteger conflictCount = new AtomicInteger(0);
+        CountDownLatch start = new CountDownLatch(1);
+
+        // When - 所有請求同時開始
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (User user : users) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                try {
+                    start.await();
+                    borrowService.borrowBook(request, user);
+                    successCount.incrementAndGet();
+                } catch (BookNotAvailableException e) {
+                    if (e.getMessage().contains("請重試")) {
+                        conflictCount.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        start.countDown();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+
+        // Then - 借出數量等於可借數量，且沒有因版本衝突而失敗的請求
+        assertThat(successCount.get()).isEqualTo(5);
+        assertThat(conflictCount.get()).isZero();
+        assertThat(bookCopyRepository.findById(testBookCopy.getId()).orElseThrow().getAvailableCopies()).isZero();
+        assertThat(borrowRecordRepository.count()).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("OPTIMISTIC 模式併發借書 - 衝突自動重試，100 位用戶借 100 本全部成功")
+    void concurrentBorrowingOptimisticModeRetriesConflicts() throws InterruptedException, ExecutionException {
+        // Given - 100 本可借，100 位用戶同時借閱
+        BorrowService target = AopTestUtils.getTargetObject(borrowService);
+        ReflectionTestUtils.setField(target, "borrowMode", BorrowMode.OPTIMISTIC);
+        testBookCopy.setTotalCopies(100);
+        testBookCopy.setAvailableCopies(100);
+        testBookCopy = bookCopyRepository.save(testBookCopy);
+
+        List<User> users = new ArrayList<>();
+        long timestamp = System.currentTimeMillis();
+        for (int i = 0; i < 100; i++) {
+            User user = new User();
+            user.setUsername("retry" + i + "_" + timestamp);
+            user.setPassword("password");
+            user.setEmail("retry" + i + "_" + timestamp + "@test.com");
+            user.setFullName("重試用戶" + i);
+            user.setRole(User.UserRole.MEMBER);
+            user.setActive(true);
+            users.add(userRepository.save(user));
+        }
+
+        BorrowBookRequest request = new BorrowBookRequest();
+        request.setBookCopyId(testBookCopy.getId());
+        AtomicInteger successCount = new AtomicInteger(0);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(20);
+
+        try {
+            // When - 所有請求同時開始
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (User user : users) {
+                futures.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        start.await();
+                        borrowService.borrowBook(request, user);
+                        successCount.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }, pool));
+            }
+            start.countDown();
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+        } finally {
+            pool.shutdown();
+            ReflectionTestUtils.setField(target, "borrowMode", BorrowMode.ATOMIC);
+        }
+
+        // Then - 每位用戶都借到，可借數量正確扣減
+        assertThat(successCount.get()).isEqualTo(100);
+        assertThat(bookCopyRepository.findById(testBookCopy.getId()).orElseThrow().getAvailableCopies()).isZero();
+        assertThat(borrowRecordRepository.count()).isEqualTo(100);
+    }
+
+    @Test
+    @DisplayName("同一借閱記錄同時還書兩次 - 只有一次成功，計數器與可借數量只更新一次")
+    void concurrentReturnOfSameRecordOnlySucceedsOnce() throws InterruptedException, ExecutionException {
+        // Given - user1 借走唯一的一本
+        BorrowBookRequest request = new BorrowBookRequest();
+        request.setBookCopyId(testBookCopy.getId());
+        Long borrowRecordId = borrowService.borrowBook(request, user1).getBorrowRecordId();
+
+        AtomicInteger successCount = new AtomicInteger(0);
+        AtomicInteger alreadyReturnedCount = new AtomicInteger(0);
+        CountDownLatch start = new CountDownLatch(1);
+
+        // When - 兩個還書請求同時開始
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                try {
+                    start.await();
+                    borrowService.returnBook(borrowRecordId, user1);
+                    successCount.incrementAndGet();
+                } catch (BookAlreadyReturnedException e) {
+                    alreadyReturnedCount.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        start.countDown();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+
+        // Then - 可借數量不超過總數，計數器不會被多扣
+        assertThat(successCount.get()).isEqualTo(1);
+        assertThat(alreadyReturnedCount.get()).isEqualTo(1);
+        assertThat(bookCopyRepository.findById(testBookCopy.getId()).orElseThrow().getAvailableCopies()).isEqualTo(1);
+        assertThat(userBorrowCounterRepository.findByUserIdAndBookType(user1.getId(), Book.BookType.BOOK))
+                .get().extracting(UserBorrowCounter::getActiveCount).isEqualTo(0);
+    }
+
     @Test
     @DisplayName("樂觀鎖版本號測試")
     void optimisticLockVersionTest() {
@@ -0,0 +1,288 @@
+package com.library.service;
+
+import com.library.dto.BatchBorrowItemResult;
+import com.library.dto.BatchBorrowRequest;
+import com.library.dto.BatchBorrowResponse;
+import com.library.dto.BorrowBookRequest;
+import com.library.dto.BulkReturnRequest;
+import com.library.dto.PlaceHoldRequest;
+import com.library.entity.*;
+import com.library.exception.BookNotAvailableException;
+import com.library.repository.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 逐冊追蹤的館藏：借書認領不同的實體書，可借數量於交易提交後由各冊狀態重新計算
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@DisplayName("BorrowService 逐冊追蹤測試")
+class BorrowServiceItemTest {
+
+    @Autowired
+    private BorrowService borrowService;
+
+    @Autowired
+    private BulkReturnService bulkReturnService;
+
+    @Autowired
+    private HoldService holdService;
+
+    @Autowired
+    private BookItemRepository bookItemRepository;
+
+    @Autowired
+    private HoldRepository holdRepository;
+
+    @Autowired
+    private BorrowRecordRepository borrowRecordRepository;
+
+    @Autowired
+    private BookCopyRepository bookCopyRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private LibraryRepository libraryRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserBorrowCounterRepository userBorrowCounterRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private BookCopyAvailabilityRefresher availabilityRefresher;
+
+    private Library library;
+
+    @BeforeEach
+    void setUp() {
+        cleanUp();
+
+        library = new Library();
+        library.setName("中央圖書館");
+        library.setAddress("台北市中正區");
+        library.setActive(true);
+        library = libraryRepository.save(library);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        holdRepository.deleteAll();
+        borrowRecordRepository.deleteAll();
+        bookCopyRepository.deleteAll();
+        bookRepository.deleteAll();
+        libraryRepository.deleteAll();
+        userBorrowCounterRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("借書認領一冊並記錄於借閱記錄，還書後該冊回到可借，可借數量隨之更新")
+    void borrowAndReturn_UpdatesItemAndCachedCount() throws Exception {
+        // Given
+        BookCopy copy = saveTrackedCopy("逐冊書籍", 2);
+        User member = saveMember("item_member");
+
+        // When
+        Long recordId = borrow(member, copy);
+
+        // Then
+        BookItem borrowedItem = itemOf(recordId);
+        assertThat(borrowedItem.getStatus()).isEqualTo(BookItem.ItemStatus.BORROWED);
+        assertThat(borrowedItem.getBarcode()).isEqualTo(BookItem.barcodeFor(copy.getId(), 1));
+        assertThat(availableCopies(copy)).isEqualTo(1);
+
+        borrowService.returnBook(recordId, member);
+        assertThat(bookItemRepository.findById(borrowedItem.getId()).orElseThrow().getStatus())
+                .isEqualTo(BookItem.ItemStatus.AVAILABLE);
+        assertThat(availableCopies(copy)).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("同時借閱的用戶各自認領不同的一冊，借完後其餘用戶借閱失敗")
+    void concurrentBorrow_ClaimsDistinctItems() throws Exception {
+        // Given - 5 冊、10 位用戶
+        BookCopy copy = saveTrackedCopy("熱門書籍", 5);
+        List<User> members = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            members.add(saveMember("item_concurrent" + i));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(10);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger successes = new AtomicInteger();
+        AtomicInteger unavailable = new AtomicInteger();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+        // When
+        for (User member : members) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                try {
+                    start.await();
+                    borrow(member, copy);
+                    successes.incrementAndGet();
+                } catch (BookNotAvailableException e) {
+                    unavailable.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, executor));
+        }
+        start.countDown();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+        executor.shutdown();
+
+        // Then
+        assertThat(successes.get()).isEqualTo(5);
+        assertThat(unavailable.get()).isEqualTo(5);
+        Set<Long> itemIds = borrowRecordRepository.findAll().stream()
+                .map(record -> itemOf(record.getId()).getId())
+                .collect(Collectors.toSet());
+        assertThat(itemIds).hasSize(5);
+        assertThat(availableCopies(copy)).isZero();
+    }
+
+    @Test
+    @DisplayName("還書時保留給預約者的一冊只有預約者能借出")
+    void returnWithHold_ReservesItemForHolder() throws Exception {
+        // Given
+        BookCopy copy = saveTrackedCopy("預約書籍", 1);
+        User alice = saveMember("item_alice");
+        User bob = saveMember("item_bob");
+        User carol = saveMember("item_carol");
+        Long aliceRecord = borrow(alice, copy);
+        holdService.placeHold(new PlaceHoldRequest(copy.getId()), bob);
+
+        // When
+        borrowService.returnBook(aliceRecord, alice);
+
+        // Then
+        assertThat(itemOf(aliceRecord).getStatus()).isEqualTo(BookItem.ItemStatus.RESERVED);
+        assertThat(availableCopies(copy)).isZero();
+        assertThatThrownBy(() -> borrow(carol, copy)).isInstanceOf(BookNotAvailableException.class);
+
+        Long bobRecord = borrow(bob, copy);
+        assertThat(itemOf(bobRecord).getId()).isEqualTo(itemOf(aliceRecord).getId());
+        assertThat(itemOf(bobRecord).getStatus()).isEqualTo(BookItem.ItemStatus.BORROWED);
+    }
+
+    @Test
+    @DisplayName("批次借書與大量還書更新實體書狀態")
+    void batchBorrowAndBulkReturn_UpdateItems() throws Exception {
+        // Given
+        BookCopy first = saveTrackedCopy("第一本", 1);
+        BookCopy second = saveTrackedCopy("第二本", 1);
+        User member = saveMember("item_batch");
+
+        // When
+        assertThat(borrowService.borrowBooks(new BatchBorrowRequest(List.of(first.getId(), second.getId())), member)
+                .getSuccessCount()).isEqualTo(2);
+
+        // Then
+        assertThat(bookItemRepository.countByBookCopyIdAndStatus(first.getId(), BookItem.ItemStatus.BORROWED)).isEqualTo(1);
+        assertThat(availableCopies(first)).isZero();
+
+        bulkReturnService.returnBooks(new BulkReturnRequest(List.of(), List.of(first.getId(), second.getId())));
+        assertThat(bookItemRepository.countByBookCopyIdAndStatus(first.getId(), BookItem.ItemStatus.AVAILABLE)).isEqualTo(1);
+        assertThat(bookItemRepository.countByBookCopyIdAndStatus(second.getId(), BookItem.ItemStatus.AVAILABLE)).isEqualTo(1);
+        assertThat(availableCopies(first)).isEqualTo(1);
+        assertThat(availableCopies(second)).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("批次借書：逐冊追蹤的副本已無可認領的一冊時該項失敗，其他項目照常借出")
+    void batchBorrow_NoClaimableItem_FailsOnlyThatItem() throws Exception {
+        // Given - 第一本唯一的一冊已被借走
+        BookCopy first = saveTrackedCopy("已借完", 1);
+        BookCopy second = saveTrackedCopy("可借", 1);
+        borrow(saveMember("item_other"), first);
+        User member = saveMember("item_batch_partial");
+
+        // When
+        BatchBorrowResponse response = borrowService.borrowBooks(
+                new BatchBorrowRequest(List.of(first.getId(), second.getId())), member);
+
+        // Then
+        assertThat(response.getItems()).extracting(BatchBorrowItemResult::getMessage)
+                .containsExactly("此書籍副本目前沒有可借閱的數量", "借書成功");
+        assertThat(bookItemRepository.countByBookCopyIdAndStatus(second.getId(), BookItem.ItemStatus.BORROWED))
+                .isEqualTo(1);
+        assertThat(userBorrowCounterRepository.findByUserIdAndBookType(member.getId(), Book.BookType.BOOK))
+                .get().extracting(UserBorrowCounter::getActiveCount).isEqualTo(1);
+        assertThat(availableCopies(second)).isZero();
+    }
+
+    private Long borrow(User user, BookCopy copy) {
+        BorrowBookRequest request = new BorrowBookRequest();
+        request.setBookCopyId(copy.getId());
+        return borrowService.borrowBook(request, user).getBorrowRecordId();
+    }
+
+    private BookItem itemOf(Long borrowRecordId) {
+        Long itemId = transactionTemplate.execute(status ->
+                borrowRecordRepository.findById(borrowRecordId).orElseThrow().getBookItem().getId());
+        return bookItemRepository.findById(itemId).orElseThrow();
+    }
+
+    private int availableCopies(BookCopy copy) throws Exception {
+        availabilityRefresher.awaitIdle();
+        return bookCopyRepository.findById(copy.getId()).orElseThrow().getAvailableCopies();
+    }
+
+    private BookCopy saveTrackedCopy(String title, int items) {
+        Book book = new Book();
+        book.setTitle(title);
+        book.setAuthor("測試作者");
+        book.setPublishYear(2023);
+        book.setType(Book.BookType.BOOK);
+        book = bookRepository.save(book);
+
+        BookCopy copy = new BookCopy();
+        copy.setBook(book);
+        copy.setLibrary(library);
+        copy.setTotalCopies(items);
+        copy.setAvailableCopies(items);
+        copy.setStatus(BookCopy.CopyStatus.ACTIVE);
+        copy.setItemTracked(true);
+        copy = bookCopyRepository.save(copy);
+        for (int i = 1; i <= items; i++) {
+            bookItemRepository.save(new BookItem(copy, BookItem.barcodeFor(copy.getId(), i)));
+        }
+        return copy;
+    }
+
+    private User saveMember(String username) {
+        User member = new User();
+        member.setUsername(username);
+        member.setPassword("password");
+        member.setEmail(username + "@test.com");
+        member.setFullName(username);
+        member.setRole(User.UserRole.MEMBER);
+        member.setActive(true);
+        return userRepository.save(member);
+    }
+}
@@ -0,0 +1,152 @@
+package com.library.service;
+
+import com.library.dto.BorrowBookRequest;
+import com.library.entity.*;
+import com.library.exception.BookAlreadyBorrowedException;
+import com.library.repository.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest(properties = "library.borrow.overdue.chunk-size=2")
+@ActiveProfiles("test")
+@DisplayName("BorrowService 逾期標記測試")
+class BorrowServiceOverdueTest {
+
+    @Autowired
+    private BorrowService borrowService;
+
+    @Autowired
+    private BorrowRecordRepository borrowRecordRepository;
+
+    @Autowired
+    private BookCopyRepository bookCopyRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private LibraryRepository libraryRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserBorrowCounterRepository userBorrowCounterRepository;
+
+    private BookCopy copy;
+    private final List<User> members = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        cleanUp();
+
+        Library library = new Library();
+        library.setName("中央圖書館");
+        library.setAddress("台北市中正區");
+        library.setActive(true);
+        library = libraryRepository.save(library);
+
+        Book book = new Book();
+        book.setTitle("Java程式設計");
+        book.setAuthor("張三");
+        book.setPublishYear(2023);
+        book.setType(Book.BookType.BOOK);
+        book = bookRepository.save(book);
+
+        copy = new BookCopy();
+        copy.setBook(book);
+        copy.setLibrary(library);
+        copy.setTotalCopies(10);
+        copy.setAvailableCopies(10);
+        copy.setStatus(BookCopy.CopyStatus.ACTIVE);
+        copy = bookCopyRepository.save(copy);
+
+        for (int i = 0; i < 6; i++) {
+            User member = new User();
+            member.setUsername("overdue" + i);
+            member.setPassword("password");
+            member.setEmail("overdue" + i + "@test.com");
+            member.setFullName("逾期測試用戶" + i);
+            member.setRole(User.UserRole.MEMBER);
+            member.setActive(true);
+            members.add(userRepository.save(member));
+        }
+    }
+
+    @AfterEach
+    void cleanUp() {
+        members.clear();
+        borrowRecordRepository.deleteAll();
+        bookCopyRepository.deleteAll();
+        bookRepository.deleteAll();
+        libraryRepository.deleteAll();
+        userBorrowCounterRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("分批把已過到期日的借閱記錄標記為 OVERDUE，未到期的不變")
+    void markOverdueRecords_MarksPastDueInChunks() {
+        // Given - 5 筆已過到期日（批次大小 2，需要 3 批）、1 筆未到期
+        List<Long> pastDue = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            Long id = borrowService.borrowBook(new BorrowBookRequest(copy.getId()), members.get(i)).getBorrowRecordId();
+            if (i < 5) {
+                setDueDate(id, LocalDate.now().minusDays(1 + i));
+                pastDue.add(id);
+            }
+        }
+
+        // When
+        int marked = borrowService.markOverdueRecords();
+
+        // Then
+        assertThat(marked).isEqualTo(5);
+        assertThat(borrowRecordRepository.findAll())
+                .filteredOn(record -> record.getStatus() == BorrowRecord.BorrowStatus.OVERDUE)
+                .extracting(BorrowRecord::getId)
+                .containsExactlyInAnyOrderElementsOf(pastDue);
+        assertThat(borrowService.getOverdueBooks(null, OverdueReportCursor.first(), 10).getRecords()).hasSize(5);
+        assertThat(borrowService.markOverdueRecords()).isZero();
+    }
+
+    @Test
+    @DisplayName("OVERDUE 仍算借閱中：不能重複借閱，可以還書並釋放借閱額度")
+    void overdueRecord_BehavesAsActiveLoan() {
+        // Given
+        User member = members.get(0);
+        Long id = borrowService.borrowBook(new BorrowBookRequest(copy.getId()), member).getBorrowRecordId();
+        setDueDate(id, LocalDate.now().minusDays(3));
+        borrowService.markOverdueRecords();
+
+        // When & Then
+        assertThat(borrowService.getCurrentBorrows(member)).singleElement()
+                .satisfies(response -> assertThat(response.isOverdue()).isTrue());
+        assertThatThrownBy(() -> borrowService.borrowBook(new BorrowBookRequest(copy.getId()), member))
+                .isInstanceOf(BookAlreadyBorrowedException.class);
+
+        borrowService.returnBook(id, member);
+
+        assertThat(borrowRecordRepository.findById(id).orElseThrow().getStatus())
+                .isEqualTo(BorrowRecord.BorrowStatus.RETURNED);
+        assertThat(userBorrowCounterRepository.findByUserIdAndBookType(member.getId(), Book.BookType.BOOK))
+                .get().extracting(UserBorrowCounter::getActiveCount).isEqualTo(0);
+    }
+
+    private void setDueDate(Long borrowRecordId, LocalDate dueDate) {
+        BorrowRecord record = borrowRecordRepository.findById(borrowRecordId).orElseThrow();
+        record.setDueDate(dueDate);
+        borrowRecordRepository.save(record);
+    }
+}
@@ -2,20 +2,31 @@ package com.library.service;
 
 import com.library.dto.*;
 import com.library.entity.*;
+import com.library.event.BookAvailabilityChangedEvent;
+import com.library.event.BookBorrowedEvent;
 import com.library.exception.*;
+import com.library.repository.ArchivedBorrowRecordRepository;
 import com.library.repository.BookCopyRepository;
 import com.library.repository.BorrowRecordRepository;
+import com.library.repository.UserBorrowCounterRepository;
+import com.library.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.List;
@@ -34,9 +45,28 @@ class BorrowServiceTest {
         @Mock
         private BorrowRecordRepository borrowRecordRepository;
 
+        @Mock
+        private ArchivedBorrowRecordRepository archivedBorrowRecordRepository;
+
         @Mock
         private BookCopyRepository bookCopyRepository;
 
+        @Mock
+        private UserBorrowCounterRepository userBorrowCounterRepository;
+
+        @Mock
+        private UserRepository userRepository;
+
+        @Mock
+        private ApplicationEventPublisher eventPublisher;
+
+        @Mock
+        private HoldService holdService;
+
+        @Spy
+        private BorrowRetryExecutor borrowRetryExecutor = new BorrowRetryExecutor(
+                        mock(PlatformTransactionManager.class), new SimpleMeterRegistry(), 3, Duration.ZERO, Duration.ZERO);
+
         @InjectMocks
         private BorrowService borrowService;
 
@@ -113,6 +143,10 @@ class BorrowServiceTest {
                 // 準備借書請求
                 borrowRequest = new BorrowBookRequest();
                 borrowRequest.setBookCopyId(1L);
+
+                // 借閱計數器已存在且未達上限
+                when(userBorrowCounterRepository.existsByUserIdAndBookType(anyLong(), any())).thenReturn(true);
+                when(userBorrowCounterRepository.incrementIfBelow(anyLong(), any(), anyInt())).thenReturn(1);
         }
 
         @Test
@@ -140,6 +174,10 @@ class BorrowServiceTest {
                                 record.getLibrary().getId().equals(1L) &&
                                 record.getLibrary().getName().equals("中央圖書館")));
                 verify(bookCopyRepository).save(argThat(bookCopy -> bookCopy.getAvailableCopies() == 2)); // 原本3本，借出1本剩2本
+                verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof BookAvailabilityChangedEvent
+                                && ((BookAvailabilityChangedEvent) event).getBookId().equals(1L)));
+                verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof BookBorrowedEvent
+                                && ((BookBorrowedEvent) event).getBookId().equals(1L)));
         }
 
         @Test
@@ -253,8 +291,9 @@ class BorrowServiceTest {
         void borrowBook_ExceedBookLimit() {
                 // Given
                 when(bookCopyRepository.findById(1L)).thenReturn(Optional.of(javaBookCopy));
-                when(borrowRecordRepository.countCurrentBorrowsByUserAndBookType(1L, Book.BookType.BOOK))
-                                .thenReturn(10L); // 已借10本書籍，達到上限
+                when(userBorrowCounterRepository.incrementIfBelow(1L, Book.BookType.BOOK, 10)).thenReturn(0);
+                when(userBorrowCounterRepository.findByUserIdAndBookType(1L, Book.BookType.BOOK))
+                                .thenReturn(Optional.of(new UserBorrowCounter(memberUser, Book.BookType.BOOK, 10))); // 已借10本書籍，達到上限
 
                 // When & Then
                 assertThatThrownBy(() -> borrowService.borrowBook(borrowRequest, memberUser))
@@ -294,8 +333,9 @@ class BorrowServiceTest {
                 // Given
                 borrowRequest.setBookCopyId(2L);
                 when(bookCopyRepository.findById(2L)).thenReturn(Optional.of(pythonMagazineCopy));
-                when(borrowRecordRepository.countCurrentBorrowsByUserAndBookType(1L, Book.BookType.MAGAZINE))
-                                .thenReturn(5L); // 已借5本期刊，達到上限
+                when(userBorrowCounterRepository.incrementIfBelow(1L, Book.BookType.MAGAZINE, 5)).thenReturn(0);
+                when(userBorrowCounterRepository.findByUserIdAndBookType(1L, Book.BookType.MAGAZINE))
+                                .thenReturn(Optional.of(new UserBorrowCounter(memberUser, Book.BookType.MAGAZINE, 5))); // 已借5本期刊，達到上限
 
                 // When & Then
                 assertThatThrownBy(() -> borrowService.borrowBook(borrowRequest, memberUser))
@@ -309,7 +349,7 @@ class BorrowServiceTest {
         @DisplayName("成功還書")
         void returnBook_Success() {
                 // Given
-                when(borrowRecordRepository.findById(1L)).thenReturn(Optional.of(borrowRecord));
+                when(borrowRecordRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(borrowRecord));
                 when(borrowRecordRepository.save(any(BorrowRecord.class))).thenReturn(borrowRecord);
                 when(bookCopyRepository.save(any(BookCopy.class))).thenReturn(javaBookCopy);
 
@@ -326,13 +366,14 @@ class BorrowServiceTest {
                                 .save(argThat(record -> record.getStatus() == BorrowRecord.BorrowStatus.RETURNED &&
                                                 record.getReturnDate() != null));
                 verify(bookCopyRepository).save(argThat(bookCopy -> bookCopy.getAvailableCopies() == 4)); // 原本3本，還回1本變4本
+                verify(eventPublisher).publishEvent(any(BookAvailabilityChangedEvent.class));
         }
 
         @Test
         @DisplayName("還書失敗：借閱記錄不存在")
         void returnBook_RecordNotFound() {
                 // Given
-                when(borrowRecordRepository.findById(999L)).thenReturn(Optional.empty());
+                when(borrowRecordRepository.findByIdForUpdate(999L)).thenReturn(Optional.empty());
 
                 // When & Then
                 assertThatThrownBy(() -> borrowService.returnBook(999L, memberUser))
@@ -346,7 +387,7 @@ class BorrowServiceTest {
         @DisplayName("還書失敗：非該用戶的借閱記錄")
         void returnBook_NotUserRecord() {
                 // Given
-                when(borrowRecordRepository.findById(1L)).thenReturn(Optional.of(borrowRecord));
+                when(borrowRecordRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(borrowRecord));
 
                 // When & Then
                 assertThatThrownBy(() -> borrowService.returnBook(1L, librarianUser))
@@ -362,7 +403,7 @@ class BorrowServiceTest {
                 // Given
                 borrowRecord.setStatus(BorrowRecord.BorrowStatus.RETURNED);
                 borrowRecord.setReturnDate(LocalDate.now().minusDays(1));
-                when(borrowRecordRepository.findById(1L)).thenReturn(Optional.of(borrowRecord));
+                when(borrowRecordRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(borrowRecord));
 
                 // When & Then
                 assertThatThrownBy(() -> borrowService.returnBook(1L, memberUser))
@@ -373,21 +414,80 @@ class BorrowServiceTest {
         }
 
         @Test
-        @DisplayName("查詢用戶借閱歷史")
-        void getUserBorrowHistory_Success() {
+        @DisplayName("查詢用戶借閱歷史 - 還有下一頁時回傳最後一筆的游標")
+        void getUserBorrowHistory_HasNextPage() {
+                // Given - 每頁 2 筆，查詢多取 1 筆
+                LocalDate today = LocalDate.now();
+                List<BorrowHistoryRow> rows = Arrays.asList(
+                                historyRow(30L, today.minusDays(1)),
+                                historyRow(20L, today.minusDays(3)),
+                                historyRow(10L, today.minusDays(3)));
+                BorrowHistoryCursor cursor = BorrowHistoryCursor.first();
+                when(borrowRecordRepository.findHistoryRows(eq(1L), eq(cursor.getLastBorrowDate()),
+                                eq(cursor.getLastId()), isNull(), isNull(), isNull(), any()))
+                                .thenReturn(rows);
+
+                // When
+                BorrowHistoryPage page = borrowService.getUserBorrowHistory(memberUser, null, null, null, cursor, 2);
+
+                // Then
+                assertThat(page.getRecords()).extracting(BorrowRecordResponse::getBorrowRecordId)
+                                .containsExactly(30L, 20L);
+                assertThat(page.getRecords().get(0).getBookTitle()).isEqualTo("Java程式設計");
+                BorrowHistoryCursor next = BorrowHistoryCursor.decode(page.getNextCursor());
+                assertThat(next.getLastBorrowDate()).isEqualTo(today.minusDays(3));
+                assertThat(next.getLastId()).isEqualTo(20L);
+        }
+
+        @Test
+        @DisplayName("查詢用戶借閱歷史 - 最後一頁沒有下一頁游標")
+        void getUserBorrowHistory_LastPage() {
                 // Given
-                List<BorrowRecord> borrowRecords = Arrays.asList(borrowRecord);
-                when(borrowRecordRepository.findByUserIdWithDetails(1L)).thenReturn(borrowRecords);
+                BorrowHistoryCursor cursor = BorrowHistoryCursor.after(LocalDate.now().minusDays(3), 20L);
+                when(borrowRecordRepository.findHistoryRows(eq(1L), eq(cursor.getLastBorrowDate()), eq(20L),
+                                eq(BorrowRecord.BorrowStatus.RETURNED), isNull(), isNull(), any()))
+                                .thenReturn(List.of(historyRow(10L, LocalDate.now().minusDays(40))));
 
                 // When
-                List<BorrowRecordResponse> responses = borrowService.getUserBorrowHistory(memberUser);
+                BorrowHistoryPage page = borrowService.getUserBorrowHistory(memberUser,
+                                BorrowRecord.BorrowStatus.RETURNED, null, null, cursor, 2);
 
                 // Then
-                assertThat(responses).hasSize(1);
-                assertThat(responses.get(0).getBorrowRecordId()).isEqualTo(1L);
-                assertThat(responses.get(0).getBookTitle()).isEqualTo("Java程式設計");
+                assertThat(page.getRecords()).hasSize(1);
+                assertThat(page.getNextCursor()).isNull();
+        }
+
+        @Test
+        @DisplayName("查詢用戶借閱歷史 - 與封存的記錄合併排序")
+        void getUserBorrowHistory_MergesArchivedRecords() {
+                // Given
+                LocalDate today = LocalDate.now();
+                BorrowHistoryCursor cursor = BorrowHistoryCursor.first();
+                when(borrowRecordRepository.findHistoryRows(eq(1L), any(), any(), isNull(), isNull(), isNull(), any()))
+                                .thenReturn(List.of(historyRow(50L, today.minusDays(2)),
+                                                historyRow(40L, today.minusDays(400))));
+                when(archivedBorrowRecordRepository.findHistoryRows(eq(1L), any(), any(), isNull(), isNull(), any()))
+                                .thenReturn(List.of(historyRow(30L, today.minusDays(380)),
+                                                historyRow(20L, today.minusDays(500))));
+
+                // When
+                BorrowHistoryPage page = borrowService.getUserBorrowHistory(memberUser, null, null, null, cursor, 3);
+
+                // Then
+                assertThat(page.getRecords()).extracting(BorrowRecordResponse::getBorrowRecordId)
+                                .containsExactly(50L, 30L, 40L);
+                assertThat(BorrowHistoryCursor.decode(page.getNextCursor()).getLastId()).isEqualTo(40L);
+        }
+
+        @Test
+        @DisplayName("查詢用戶借閱歷史 - 只查借閱中的記錄時不讀取封存表")
+        void getUserBorrowHistory_BorrowedOnly_SkipsArchive() {
+                // When
+                borrowService.getUserBorrowHistory(memberUser, BorrowRecord.BorrowStatus.BORROWED, null, null,
+                                BorrowHistoryCursor.first(), 20);
 
-                verify(borrowRecordRepository).findByUserIdWithDetails(1L);
+                // Then
+                verifyNoInteractions(archivedBorrowRecordRepository);
         }
 
         @Test
@@ -395,7 +495,8 @@ class BorrowServiceTest {
         void getCurrentBorrows_Success() {
                 // Given
                 List<BorrowRecord> borrowRecords = Arrays.asList(borrowRecord);
-                when(borrowRecordRepository.findByUserIdAndStatus(1L, BorrowRecord.BorrowStatus.BORROWED))
+                when(borrowRecordRepository.findByUserIdAndStatusIn(1L,
+                                List.of(BorrowRecord.BorrowStatus.BORROWED, BorrowRecord.BorrowStatus.OVERDUE)))
                                 .thenReturn(borrowRecords);
 
                 // When
@@ -405,7 +506,8 @@ class BorrowServiceTest {
                 assertThat(responses).hasSize(1);
                 assertThat(responses.get(0).getStatus()).isEqualTo(BorrowRecord.BorrowStatus.BORROWED);
 
-                verify(borrowRecordRepository).findByUserIdAndStatus(1L, BorrowRecord.BorrowStatus.BORROWED);
+                verify(borrowRecordRepository).findByUserIdAndStatusIn(1L,
+                                List.of(BorrowRecord.BorrowStatus.BORROWED, BorrowRecord.BorrowStatus.OVERDUE));
         }
 
         @Test
@@ -437,40 +539,28 @@ class BorrowServiceTest {
         }
 
         @Test
-        @DisplayName("查詢逾期書籍")
+        @DisplayName("查詢逾期書籍 - 依圖書館篩選並回傳下一頁游標")
         void getOverdueBooks_Success() {
-                // Given
-                List<BorrowRecord> overdueRecords = Arrays.asList(borrowRecord);
-                when(borrowRecordRepository.findOverdueWithDetails(any(LocalDate.class)))
-                                .thenReturn(overdueRecords);
+                // Given - 每頁 1 筆，查詢多取 1 筆
+                LocalDate today = LocalDate.now();
+                OverdueReportCursor cursor = OverdueReportCursor.first();
+                when(borrowRecordRepository.findOverdueRows(eq(today), eq(10L), eq(cursor.getLastDueDate()),
+                                eq(0L), any()))
+                                .thenReturn(List.of(overdueRow(7L, today.minusDays(9)), overdueRow(8L, today.minusDays(2))));
 
                 // When
-                List<BorrowRecordResponse> responses = borrowService.getOverdueBooks();
+                OverdueReportPage page = borrowService.getOverdueBooks(10L, cursor, 1);
 
                 // Then
-                assertThat(responses).hasSize(1);
-                assertThat(responses.get(0).getBorrowRecordId()).isEqualTo(1L);
-
-                verify(borrowRecordRepository).findOverdueWithDetails(any(LocalDate.class));
-        }
-
-        @Test
-        @DisplayName("發送到期通知")
-        void sendDueNotifications_Success() {
-                // Given
-                List<BorrowRecord> dueSoonRecords = Arrays.asList(borrowRecord);
-                when(borrowRecordRepository.findDueSoon(any(LocalDate.class), any(LocalDate.class)))
-                                .thenReturn(dueSoonRecords);
-
-                // When & Then (測試不會拋出異常)
-                assertThatCode(() -> borrowService.sendDueNotifications())
-                                .doesNotThrowAnyException();
-
-                verify(borrowRecordRepository).findDueSoon(any(LocalDate.class), any(LocalDate.class));
+                assertThat(page.getRecords()).extracting(OverdueRecordRow::getBorrowRecordId).containsExactly(7L);
+                assertThat(page.getRecords().get(0).getDaysOverdue()).isEqualTo(9);
+                OverdueReportCursor next = OverdueReportCursor.decode(page.getNextCursor());
+                assertThat(next.getLastDueDate()).isEqualTo(today.minusDays(9));
+                assertThat(next.getLastId()).isEqualTo(7L);
         }
 
         @Test
-        @DisplayName("借書時樂觀鎖衝突 - 拋出適當異常")
+        @DisplayName("借書時樂觀鎖衝突 - 重試用盡後拋出適當異常")
         void borrowBook_OptimisticLockingFailure_ThrowsBookNotAvailableException() {
                 // Given
                 when(bookCopyRepository.findById(1L)).thenReturn(Optional.of(javaBookCopy));
@@ -488,15 +578,38 @@ class BorrowServiceTest {
                                 .isInstanceOf(BookNotAvailableException.class)
                                 .hasMessage("書籍借閱失敗，其他用戶同時在借閱此書，請重試");
 
-                verify(bookCopyRepository).findById(1L);
-                verify(bookCopyRepository).save(any(BookCopy.class));
+                // 每次重試都重新讀取副本
+                verify(bookCopyRepository, times(3)).findById(1L);
+                verify(bookCopyRepository, times(3)).save(any(BookCopy.class));
         }
 
         @Test
-        @DisplayName("還書時樂觀鎖衝突 - 拋出適當異常")
-        void returnBook_OptimisticLockingFailure_ThrowsBookNotAvailableException() {
+        @DisplayName("借書時樂觀鎖衝突 - 重試後成功")
+        void borrowBook_OptimisticLockingFailure_RetriesThenSucceeds() {
                 // Given
-                when(borrowRecordRepository.findById(1L)).thenReturn(Optional.of(borrowRecord));
+                when(bookCopyRepository.findById(1L)).thenReturn(Optional.of(javaBookCopy));
+                when(borrowRecordRepository.save(any(BorrowRecord.class))).thenReturn(borrowRecord);
+                when(bookCopyRepository.save(any(BookCopy.class)))
+                                .thenThrow(new OptimisticLockingFailureException("Version conflict"))
+                                .thenReturn(javaBookCopy);
+
+                // When
+                BorrowBookResponse response = borrowService.borrowBook(borrowRequest, memberUser);
+
+                // Then
+                assertThat(response.getBorrowRecordId()).isEqualTo(1L);
+                verify(bookCopyRepository, times(2)).findById(1L);
+        }
+
+        @Test
+        @DisplayName("還書時樂觀鎖衝突 - 重試用盡後拋出適當異常")
+        void returnBook_OptimisticLockingFailure_ThrowsBookNotAvailableException() {
+                // Given：每次重試在新交易中重新讀取，借閱記錄仍為借出狀態
+                when(borrowRecordRepository.findByIdForUpdate(1L)).thenAnswer(invocation -> {
+                        borrowRecord.setStatus(BorrowRecord.BorrowStatus.BORROWED);
+                        borrowRecord.setReturnDate(null);
+                        return Optional.of(borrowRecord);
+                });
                 when(borrowRecordRepository.save(any(BorrowRecord.class))).thenReturn(borrowRecord);
                 
                 // 模擬樂觀鎖衝突：當嘗試儲存 BookCopy 時拋出異常
@@ -508,7 +621,241 @@ class BorrowServiceTest {
                                 .isInstanceOf(BookNotAvailableException.class)
                                 .hasMessage("還書失敗，其他用戶同時在操作此書籍，請重試");
 
-                verify(borrowRecordRepository).findById(1L);
-                verify(bookCopyRepository).save(any(BookCopy.class));
+                verify(borrowRecordRepository, times(3)).findByIdForUpdate(1L);
+                verify(bookCopyRepository, times(3)).save(any(BookCopy.class));
+        }
+
+        @Test
+        @DisplayName("ATOMIC 模式借書 - 以條件式 UPDATE 扣減可借數量")
+        void borrowBook_AtomicMode_DecrementsWithConditionalUpdate() {
+                // Given
+                ReflectionTestUtils.setField(borrowService, "borrowMode", BorrowMode.ATOMIC);
+                when(bookCopyRepository.findById(1L)).thenReturn(Optional.of(javaBookCopy));
+                when(bookCopyRepository.decrementAvailableCopies(eq(1L), any())).thenReturn(1);
+                when(borrowRecordRepository.save(any(BorrowRecord.class))).thenReturn(borrowRecord);
+
+                // When
+                BorrowBookResponse response = borrowService.borrowBook(borrowRequest, memberUser);
+
+                // Then
+                assertThat(response.getBorrowRecordId()).isEqualTo(1L);
+                verify(bookCopyRepository).decrementAvailableCopies(eq(1L), any());
+                verify(bookCopyRepository, never()).save(any(BookCopy.class));
+                verify(eventPublisher).publishEvent(any(BookAvailabilityChangedEvent.class));
+        }
+
+        @Test
+        @DisplayName("ATOMIC 模式借書 - 條件式 UPDATE 未扣到時不建立借閱記錄")
+        void borrowBook_AtomicMode_NoRowUpdated_ThrowsBookNotAvailableException() {
+                // Given：讀到的可借數量已過時，實際已被借完
+                ReflectionTestUtils.setField(borrowService, "borrowMode", BorrowMode.ATOMIC);
+                when(bookCopyRepository.findById(1L)).thenReturn(Optional.of(javaBookCopy));
+                when(bookCopyRepository.decrementAvailableCopies(eq(1L), any())).thenReturn(0);
+
+                // When & Then
+                assertThatThrownBy(() -> borrowService.borrowBook(borrowRequest, memberUser))
+                                .isInstanceOf(BookNotAvailableException.class)
+                                .hasMessage("此書籍副本目前沒有可借閱的數量");
+                verify(borrowRecordRepository, never()).save(any(BorrowRecord.class));
+                verify(eventPublisher, never()).publishEvent(any());
+        }
+
+        @Test
+        @DisplayName("ATOMIC 模式還書 - 以條件式 UPDATE 增加可借數量")
+        void returnBook_AtomicMode_IncrementsWithConditionalUpdate() {
+                // Given
+                ReflectionTestUtils.setField(borrowService, "borrowMode", BorrowMode.ATOMIC);
+                when(borrowRecordRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(borrowRecord));
+                when(borrowRecordRepository.save(any(BorrowRecord.class))).thenReturn(borrowRecord);
+
+                // When
+                borrowService.returnBook(1L, memberUser);
+
+                // Then
+                verify(bookCopyRepository).incrementAvailableCopies(eq(1L), any());
+                verify(bookCopyRepository, never()).save(any(BookCopy.class));
+        }
+
+        @Test
+        @DisplayName("第一次借閱此類型 - 鎖定用戶後由借閱記錄建立計數器")
+        void borrowBook_FirstBorrowOfType_SeedsCounterFromRecords() {
+                // Given
+                when(userBorrowCounterRepository.existsByUserIdAndBookType(1L, Book.BookType.BOOK)).thenReturn(false);
+                when(borrowRecordRepository.countCurrentBorrowsByUserAndBookType(1L, Book.BookType.BOOK)).thenReturn(2L);
+                when(bookCopyRepository.findById(1L)).thenReturn(Optional.of(javaBookCopy));
+                when(borrowRecordRepository.save(any(BorrowRecord.class))).thenReturn(borrowRecord);
+
+                // When
+                borrowService.borrowBook(borrowRequest, memberUser);
+
+                // Then
+                verify(userRepository).findByIdForUpdate(1L);
+                verify(userBorrowCounterRepository).save(argThat(counter -> counter.getBookType() == Book.BookType.BOOK
+                                && counter.getActiveCount() == 2 && counter.getUser() == memberUser));
+                verify(userBorrowCounterRepository).incrementIfBelow(1L, Book.BookType.BOOK, 10);
+        }
+
+        @Test
+        @DisplayName("借書時遞增計數器，不再計算借閱記錄")
+        void borrowBook_IncrementsCounterInsteadOfCounting() {
+                // Given
+                when(bookCopyRepository.findById(1L)).thenReturn(Optional.of(javaBookCopy));
+                when(borrowRecordRepository.save(any(BorrowRecord.class))).thenReturn(borrowRecord);
+
+                // When
+                borrowService.borrowBook(borrowRequest, memberUser);
+
+                // Then
+                verify(userBorrowCounterRepository).incrementIfBelow(1L, Book.BookType.BOOK, 10);
+                verify(borrowRecordRepository, never()).countCurrentBorrowsByUserAndBookType(anyLong(), any());
+                verify(userBorrowCounterRepository, never()).save(any());
+        }
+
+        @Test
+        @DisplayName("還書時遞減計數器")
+        void returnBook_DecrementsCounter() {
+                // Given
+                when(borrowRecordRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(borrowRecord));
+                when(borrowRecordRepository.save(any(BorrowRecord.class))).thenReturn(borrowRecord);
+
+                // When
+                borrowService.returnBook(1L, memberUser);
+
+                // Then
+                verify(userBorrowCounterRepository).decrement(1L, Book.BookType.BOOK);
+        }
+
+        @Test
+        @DisplayName("查詢借閱限制 - 優先使用計數器")
+        void getBorrowLimits_UsesCounters() {
+                // Given
+                when(userBorrowCounterRepository.findByUserId(1L))
+                                .thenReturn(List.of(new UserBorrowCounter(memberUser, Book.BookType.BOOK, 4)));
+                when(borrowRecordRepository.countCurrentBorrowsByUserAndBookType(1L, Book.BookType.MAGAZINE))
+                                .thenReturn(1L);
+
+                // When
+                Map<Book.BookType, BorrowLimitInfo> limits = borrowService.getBorrowLimits(memberUser);
+
+                // Then
+                assertThat(limits.get(Book.BookType.BOOK).getCurrentCount()).isEqualTo(4);
+                assertThat(limits.get(Book.BookType.MAGAZINE).getCurrentCount()).isEqualTo(1);
+                verify(borrowRecordRepository, never()).countCurrentBorrowsByUserAndBookType(1L, Book.BookType.BOOK);
+        }
+
+        @Test
+        @DisplayName("還書 - 有人預約時保留給隊首，不增加可借數量")
+        void returnBook_WithWaitingHold_AllocatesToQueueHead() {
+                // Given
+                ReflectionTestUtils.setField(borrowService, "borrowMode", BorrowMode.ATOMIC);
+                when(borrowRecordRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(borrowRecord));
+                when(borrowRecordRepository.save(any(BorrowRecord.class))).thenReturn(borrowRecord);
+                when(holdService.allocateReturnedCopies(1L, 1)).thenReturn(1);
+
+                // When
+                borrowService.returnBook(1L, memberUser);
+
+                // Then
+                verify(userBorrowCounterRepository).decrement(1L, Book.BookType.BOOK);
+                verify(bookCopyRepository, never()).incrementAvailableCopies(any(), any());
+                verify(eventPublisher, never()).publishEvent(any(BookAvailabilityChangedEvent.class));
+        }
+
+        @Test
+        @DisplayName("ATOMIC 模式借書 - 有保留給用戶的預約時完成預約，借出保留的一本不扣減可借數量")
+        void borrowBook_AtomicMode_ReadyHold_FulfillsHold() {
+                // Given
+                ReflectionTestUtils.setField(borrowService, "borrowMode", BorrowMode.ATOMIC);
+                when(bookCopyRepository.findById(1L)).thenReturn(Optional.of(javaBookCopy));
+                when(holdService.fulfillReadyHold(1L, 1L)).thenReturn(true);
+                when(borrowRecordRepository.save(any(BorrowRecord.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+                // When
+                BorrowBookResponse response = borrowService.borrowBook(borrowRequest, memberUser);
+
+                // Then
+                assertThat(response.getStatus()).isEqualTo(BorrowRecord.BorrowStatus.BORROWED);
+                verify(holdService).fulfillReadyHold(1L, 1L);
+                verify(bookCopyRepository, never()).decrementAvailableCopies(any(), any());
+        }
+
+        @Test
+        @DisplayName("依書名借書 - 偏好圖書館的副本被搶先借完時改借下一個圖書館")
+        void borrowByTitle_FirstPreferenceConflict_FallsOverToNextLibrary() {
+                // Given：偏好順序為分館、中央圖書館，分館的副本在扣減時已被借完
+                ReflectionTestUtils.setField(borrowService, "borrowMode", BorrowMode.ATOMIC);
+                BookCopy branchCopy = branchCopyOfJavaBook();
+                when(bookCopyRepository.findAvailableByBookId(1L)).thenReturn(List.of(javaBookCopy, branchCopy));
+                when(bookCopyRepository.findById(1L)).thenReturn(Optional.of(javaBookCopy));
+                when(bookCopyRepository.findById(3L)).thenReturn(Optional.of(branchCopy));
+                when(bookCopyRepository.decrementAvailableCopies(eq(3L), any())).thenReturn(0);
+                when(bookCopyRepository.decrementAvailableCopies(eq(1L), any())).thenReturn(1);
+                when(borrowRecordRepository.save(any(BorrowRecord.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+                // When
+                BorrowBookResponse response = borrowService.borrowByTitle(
+                                new BorrowByTitleRequest(1L, List.of(2L, 1L)), memberUser);
+
+                // Then
+                assertThat(response.getLibraryName()).isEqualTo("中央圖書館");
+                verify(bookCopyRepository).decrementAvailableCopies(eq(3L), any());
+                verify(borrowRecordRepository).save(argThat(record -> record.getBookCopy() == javaBookCopy));
+        }
+
+        @Test
+        @DisplayName("依書名借書 - 只嘗試偏好圖書館的副本")
+        void borrowByTitle_NoAvailableCopyInPreferredLibraries_ThrowsBookNotAvailableException() {
+                // Given
+                when(bookCopyRepository.findAvailableByBookId(1L)).thenReturn(List.of(javaBookCopy));
+
+                // When & Then
+                assertThatThrownBy(() -> borrowService.borrowByTitle(
+                                new BorrowByTitleRequest(1L, List.of(2L)), memberUser))
+                                .isInstanceOf(BookNotAvailableException.class)
+                                .hasMessage("指定的圖書館目前都沒有此書可借閱的副本");
+                verify(bookCopyRepository, never()).findById(anyLong());
+        }
+
+        @Test
+        @DisplayName("依書名借書 - 已借閱同一本書時直接回報，不改試其他圖書館")
+        void borrowByTitle_AlreadyBorrowed_DoesNotTryNextLibrary() {
+                // Given
+                BookCopy branchCopy = branchCopyOfJavaBook();
+                when(bookCopyRepository.findAvailableByBookId(1L)).thenReturn(List.of(javaBookCopy, branchCopy));
+                when(bookCopyRepository.findById(1L)).thenReturn(Optional.of(javaBookCopy));
+                when(borrowRecordRepository.findActiveBorrowByUserAndBook(1L, 1L)).thenReturn(Optional.of(borrowRecord));
+
+                // When & Then
+                assertThatThrownBy(() -> borrowService.borrowByTitle(new BorrowByTitleRequest(1L, null), memberUser))
+                                .isInstanceOf(BookAlreadyBorrowedException.class);
+                verify(bookCopyRepository, never()).findById(3L);
+        }
+
+        private BookCopy branchCopyOfJavaBook() {
+                Library branch = new Library();
+                branch.setId(2L);
+                branch.setName("分館");
+                branch.setActive(true);
+
+                BookCopy branchCopy = new BookCopy();
+                branchCopy.setId(3L);
+                branchCopy.setBook(javaBook);
+                branchCopy.setLibrary(branch);
+                branchCopy.setTotalCopies(1);
+                branchCopy.setAvailableCopies(1);
+                branchCopy.setStatus(BookCopy.CopyStatus.ACTIVE);
+                return branchCopy;
+        }
+
+        private BorrowHistoryRow historyRow(Long id, LocalDate borrowDate) {
+                return new BorrowHistoryRow(id, 1L, "Java程式設計", "張三", Book.BookType.BOOK, null, null,
+                                "中央圖書館", "台北市中正區", borrowDate, borrowDate.plusDays(30), null,
+                                BorrowRecord.BorrowStatus.BORROWED);
+        }
+
+        private OverdueRecordRow overdueRow(Long id, LocalDate dueDate) {
+                return new OverdueRecordRow(id, 1L, "member", "一般會員", "member@test.com", 1L, "Java程式設計",
+                                "張三", null, 10L, "中央圖書館", dueDate.minusMonths(1), dueDate,
+                                BorrowRecord.BorrowStatus.OVERDUE);
         }
-}
\ No newline at end of file
+}
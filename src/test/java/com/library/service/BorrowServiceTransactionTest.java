@@ -39,6 +39,9 @@ class BorrowServiceTransactionTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserBorrowCounterRepository userBorrowCounterRepository;
+
     private BorrowRecord testBorrowRecord;
     private BookCopy testBookCopy;
     private User testUser;
@@ -51,6 +54,7 @@ class BorrowServiceTransactionTest {
         bookCopyRepository.deleteAll();
         bookRepository.deleteAll();
         libraryRepository.deleteAll();
+        userBorrowCounterRepository.deleteAll();
         userRepository.deleteAll();
 
         // 創建測試資料
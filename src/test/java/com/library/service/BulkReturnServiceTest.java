@@ -0,0 +1,230 @@
+package com.library.service;
+
+import com.library.dto.BatchBorrowRequest;
+import com.library.dto.BulkReturnRequest;
+import com.library.dto.BulkReturnResponse;
+import com.library.entity.*;
+import com.library.exception.BookAlreadyReturnedException;
+import com.library.repository.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 大量還書：逐項失敗原因，分批後借閱記錄、計數器與副本數量正確，以及與單筆還書同時歸還同一記錄
+ */
+@SpringBootTest(properties = "library.borrow.bulk-return.chunk-size=3")
+@ActiveProfiles("test")
+@DisplayName("BulkReturnService 大量還書測試")
+class BulkReturnServiceTest {
+
+    @Autowired
+    private BulkReturnService bulkReturnService;
+
+    @Autowired
+    private BorrowService borrowService;
+
+    @Autowired
+    private BorrowRecordRepository borrowRecordRepository;
+
+    @Autowired
+    private BookCopyRepository bookCopyRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private LibraryRepository libraryRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserBorrowCounterRepository userBorrowCounterRepository;
+
+    private Library library;
+
+    @BeforeEach
+    void setUp() {
+        borrowRecordRepository.deleteAll();
+        bookCopyRepository.deleteAll();
+        bookRepository.deleteAll();
+        libraryRepository.deleteAll();
+        userBorrowCounterRepository.deleteAll();
+        userRepository.deleteAll();
+
+        library = new Library();
+        library.setName("中央圖書館");
+        library.setAddress("台北市中正區");
+        library.setActive(true);
+        library = libraryRepository.save(library);
+    }
+
+    @Test
+    @DisplayName("依借閱記錄ID與副本ID歸還，逐項回報失敗原因")
+    void returnBooks_MixedIds_PerItemFailures() {
+        // Given - 兩位會員共借同一副本，另各借一本書與一本期刊
+        User alice = saveMember("bulk_alice");
+        User bob = saveMember("bulk_bob");
+        BookCopy shared = saveCopy("共用書籍", Book.BookType.BOOK, 2);
+        BookCopy aliceBook = saveCopy("Alice 的書", Book.BookType.BOOK, 1);
+        BookCopy aliceMagazine = saveCopy("Alice 的期刊", Book.BookType.MAGAZINE, 1);
+        BookCopy bobBook = saveCopy("Bob 的書", Book.BookType.BOOK, 1);
+        BookCopy idle = saveCopy("沒人借的書", Book.BookType.BOOK, 1);
+        borrowService.borrowBooks(new BatchBorrowRequest(List.of(
+                shared.getId(), aliceBook.getId(), aliceMagazine.getId())), alice);
+        borrowService.borrowBooks(new BatchBorrowRequest(List.of(shared.getId(), bobBook.getId())), bob);
+        Long aliceBookRecord = recordId(alice, aliceBook);
+        Long aliceMagazineRecord = recordId(alice, aliceMagazine);
+        Long bobBookRecord = recordId(bob, bobBook);
+        borrowService.returnBook(bobBookRecord, bob);
+
+        // When - 共用副本掃描三次，只有兩筆借閱中
+        BulkReturnResponse response = bulkReturnService.returnBooks(new BulkReturnRequest(
+                List.of(aliceBookRecord, aliceMagazineRecord, bobBookRecord, 999999L, aliceBookRecord),
+                List.of(shared.getId(), idle.getId(), shared.getId(), shared.getId())));
+
+        // Then
+        assertThat(response.getRequested()).isEqualTo(9);
+        assertThat(response.getReturned()).isEqualTo(4);
+        assertThat(response.getFailures()).extracting(BulkReturnResponse.Failure::getMessage).containsExactly(
+                "借閱記錄重複出現在歸還清單中",
+                "此書籍已歸還",
+                "借閱記錄不存在：ID 999999",
+                "此書籍副本沒有借閱中的記錄：ID " + idle.getId(),
+                "此書籍副本沒有借閱中的記錄：ID " + shared.getId());
+
+        assertThat(borrowRecordRepository.findAll())
+                .allMatch(record -> record.getStatus() == BorrowRecord.BorrowStatus.RETURNED)
+                .allMatch(record -> record.getReturnDate() != null);
+        assertThat(bookCopyRepository.findById(shared.getId()).orElseThrow().getAvailableCopies()).isEqualTo(2);
+        assertThat(bookCopyRepository.findById(aliceBook.getId()).orElseThrow().getAvailableCopies()).isEqualTo(1);
+        assertThat(bookCopyRepository.findById(aliceMagazine.getId()).orElseThrow().getAvailableCopies()).isEqualTo(1);
+        assertThat(userBorrowCounterRepository.findByUserId(alice.getId()))
+                .extracting(UserBorrowCounter::getActiveCount).containsOnly(0);
+        assertThat(userBorrowCounterRepository.findByUserId(bob.getId()))
+                .extracting(UserBorrowCounter::getActiveCount).containsOnly(0);
+    }
+
+    @Test
+    @DisplayName("同一副本多本同時歸還時可借數量一次加上歸還數量")
+    void returnBooks_ManyCopiesOfSameBook_AggregatesIncrements() {
+        // Given - 12 位會員借同一副本，分 4 批歸還
+        BookCopy popular = saveCopy("熱門書籍", Book.BookType.BOOK, 12);
+        List<Long> recordIds = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            User member = saveMember("bulk_member" + i);
+            borrowService.borrowBooks(new BatchBorrowRequest(List.of(popular.getId())), member);
+            recordIds.add(recordId(member, popular));
+        }
+        assertThat(bookCopyRepository.findById(popular.getId()).orElseThrow().getAvailableCopies()).isZero();
+
+        // When
+        BulkReturnResponse response = bulkReturnService.returnBooks(new BulkReturnRequest(recordIds, List.of()));
+
+        // Then
+        assertThat(response.getReturned()).isEqualTo(12);
+        assertThat(response.getFailures()).isEmpty();
+        assertThat(bookCopyRepository.findById(popular.getId()).orElseThrow().getAvailableCopies()).isEqualTo(12);
+        assertThat(userBorrowCounterRepository.findAll()).extracting(UserBorrowCounter::getActiveCount).containsOnly(0);
+    }
+
+    @Test
+    @DisplayName("沒有提供任何ID時拋出例外")
+    void returnBooks_EmptyRequest_ThrowsException() {
+        assertThatThrownBy(() -> bulkReturnService.returnBooks(new BulkReturnRequest(List.of(), List.of())))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("請提供要歸還的借閱記錄ID或書籍副本ID");
+    }
+
+    @Test
+    @DisplayName("大量還書與單筆還書同時歸還同一記錄：只歸還一次，計數器與可借數量只更新一次")
+    void returnBooks_ConcurrentSingleReturn_ReturnsOnce() throws Exception {
+        BookCopy copy = saveCopy("同時歸還的書", Book.BookType.BOOK, 1);
+        User member = saveMember("bulk_racer");
+        for (int round = 0; round < 5; round++) {
+            // Given
+            borrowService.borrowBooks(new BatchBorrowRequest(List.of(copy.getId())), member);
+            Long id = borrowRecordRepository.findAll().stream()
+                    .filter(record -> record.getStatus() != BorrowRecord.BorrowStatus.RETURNED)
+                    .findFirst().orElseThrow().getId();
+            CountDownLatch start = new CountDownLatch(1);
+
+            // When
+            CompletableFuture<Integer> bulk = CompletableFuture.supplyAsync(() -> {
+                await(start);
+                return bulkReturnService.returnBooks(new BulkReturnRequest(List.of(id), List.of())).getReturned();
+            });
+            CompletableFuture<Integer> single = CompletableFuture.supplyAsync(() -> {
+                await(start);
+                try {
+                    borrowService.returnBook(id, member);
+                    return 1;
+                } catch (BookAlreadyReturnedException e) {
+                    return 0;
+                }
+            });
+            start.countDown();
+
+            // Then
+            assertThat(bulk.get() + single.get()).isEqualTo(1);
+            assertThat(bookCopyRepository.findById(copy.getId()).orElseThrow().getAvailableCopies()).isEqualTo(1);
+            assertThat(userBorrowCounterRepository.findByUserId(member.getId()))
+                    .extracting(UserBorrowCounter::getActiveCount).containsOnly(0);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Long recordId(User user, BookCopy copy) {
+        return borrowRecordRepository.findAll().stream()
+                .filter(record -> record.getUser().getId().equals(user.getId())
+                        && record.getBookCopy().getId().equals(copy.getId()))
+                .findFirst().orElseThrow().getId();
+    }
+
+    private User saveMember(String username) {
+        User member = new User();
+        member.setUsername(username);
+        member.setPassword("password");
+        member.setEmail(username + "@test.com");
+        member.setFullName(username);
+        member.setRole(User.UserRole.MEMBER);
+        member.setActive(true);
+        return userRepository.save(member);
+    }
+
+    private BookCopy saveCopy(String title, Book.BookType type, int copies) {
+        Book book = new Book();
+        book.setTitle(title);
+        book.setAuthor("測試作者");
+        book.setPublishYear(2023);
+        book.setType(type);
+        book = bookRepository.save(book);
+
+        BookCopy copy = new BookCopy();
+        copy.setBook(book);
+        copy.setLibrary(library);
+        copy.setTotalCopies(copies);
+        copy.setAvailableCopies(copies);
+        copy.setStatus(BookCopy.CopyStatus.ACTIVE);
+        return bookCopyRepository.save(copy);
+    }
+}
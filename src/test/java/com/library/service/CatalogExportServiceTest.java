@@ -0,0 +1,133 @@
+package com.library.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.library.dto.BookStockRow;
+import com.library.entity.Book;
+import com.library.entity.BookCopy;
+import com.library.repository.BookRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("CatalogExportService 單元測試")
+class CatalogExportServiceTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private EntityManager entityManager;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private CatalogExportService catalogExportService;
+
+    @BeforeEach
+    void setUp() {
+        catalogExportService = new CatalogExportService(bookRepository, entityManager, objectMapper);
+        ReflectionTestUtils.setField(catalogExportService, "chunkSize", 2);
+    }
+
+    @Test
+    @DisplayName("每本書輸出一行 JSON，含各圖書館館藏")
+    void exportCatalog_WritesOneLinePerBook() throws Exception {
+        // Given
+        when(bookRepository.streamAllByOrderById())
+                .thenReturn(Stream.of(book(1L, "Java程式設計"), book(2L, "Python入門"), book(3L, "Spring實戰")));
+        when(bookRepository.findStockRowsByBookIds(List.of(1L, 2L), BookCopy.CopyStatus.ACTIVE))
+                .thenReturn(List.of(
+                        stockRow(1L, "Java程式設計", 10L, 3, 1),
+                        stockRow(1L, "Java程式設計", 20L, 2, 0),
+                        stockRow(2L, "Python入門", null, null, null)));
+        when(bookRepository.findStockRowsByBookIds(List.of(3L), BookCopy.CopyStatus.ACTIVE))
+                .thenReturn(List.of(stockRow(3L, "Spring實戰", 10L, 1, 1)));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        // When
+        long count = catalogExportService.exportCatalog(output);
+
+        // Then
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(count).isEqualTo(3);
+        assertThat(lines).hasSize(3);
+
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertThat(first.get("id").asLong()).isEqualTo(1L);
+        assertThat(first.get("title").asText()).isEqualTo("Java程式設計");
+        assertThat(first.get("libraries")).hasSize(2);
+        assertThat(first.get("libraries").get(1).get("isAvailable").asBoolean()).isFalse();
+        assertThat(objectMapper.readTree(lines[1]).get("libraries")).isEmpty();
+        assertThat(objectMapper.readTree(lines[2]).get("libraries").get(0).get("libraryId").asLong())
+                .isEqualTo(10L);
+    }
+
+    @Test
+    @DisplayName("每批寫出後清空持久化內容")
+    void exportCatalog_ClearsPersistenceContextPerChunk() throws Exception {
+        // Given
+        when(bookRepository.streamAllByOrderById())
+                .thenReturn(Stream.of(book(1L, "A"), book(2L, "B"), book(3L, "C"), book(4L, "D")));
+        when(bookRepository.findStockRowsByBookIds(anyList(), any())).thenReturn(List.of());
+
+        // When
+        long count = catalogExportService.exportCatalog(new ByteArrayOutputStream());
+
+        // Then
+        assertThat(count).isEqualTo(4);
+        InOrder inOrder = inOrder(bookRepository, entityManager);
+        inOrder.verify(bookRepository).findStockRowsByBookIds(List.of(1L, 2L), BookCopy.CopyStatus.ACTIVE);
+        inOrder.verify(entityManager).clear();
+        inOrder.verify(bookRepository).findStockRowsByBookIds(List.of(3L, 4L), BookCopy.CopyStatus.ACTIVE);
+        inOrder.verify(entityManager).clear();
+        inOrder.verifyNoMoreInteractions();
+    }
+
+    @Test
+    @DisplayName("沒有書籍時不輸出任何內容")
+    void exportCatalog_NoBooks_WritesNothing() throws Exception {
+        // Given
+        when(bookRepository.streamAllByOrderById()).thenReturn(Stream.empty());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        // When
+        long count = catalogExportService.exportCatalog(output);
+
+        // Then
+        assertThat(count).isZero();
+        assertThat(output.size()).isZero();
+        verify(bookRepository, never()).findStockRowsByBookIds(anyList(), any());
+        verify(entityManager, never()).clear();
+    }
+
+    private Book book(Long id, String title) {
+        Book book = new Book();
+        book.setId(id);
+        book.setTitle(title);
+        book.setAuthor("張三");
+        book.setPublishYear(2023);
+        book.setType(Book.BookType.BOOK);
+        return book;
+    }
+
+    private BookStockRow stockRow(Long bookId, String title, Long libraryId, Integer total, Integer available) {
+        return new BookStockRow(bookId, title, "張三", 2023, Book.BookType.BOOK, null, null,
+                libraryId, libraryId == null ? null : "圖書館" + libraryId, null, total, available);
+    }
+}
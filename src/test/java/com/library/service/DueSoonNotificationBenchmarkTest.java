@@ -0,0 +1,157 @@
+package com.library.service;
+
+import com.library.dto.DueSoonNotificationResult;
+import com.library.entity.*;
+import com.library.repository.*;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 500,000 筆 5 天內到期的借閱：分批唯讀查詢 + 工作執行緒發送到本機信箱檔的總耗時
+ * 執行方式：mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "library.notifications.sender=FILE",
+        "library.notifications.file.path=target/benchmark/due-soon.mbox",
+        "spring.jpa.show-sql=false",
+        "logging.level.com.library=INFO",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN",
+        "logging.level.org.springframework.transaction=WARN",
+        "logging.level.org.springframework.security=WARN"
+})
+@ActiveProfiles("test")
+@DisplayName("到期通知效能基準測試")
+class DueSoonNotificationBenchmarkTest {
+
+    private static final int LOANS = 500_000;
+    private static final int USERS = 5_000;
+    private static final int BOOKS = 100;
+
+    @Autowired
+    private DueSoonNotificationService dueSoonNotificationService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private BookCopyRepository bookCopyRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private LibraryRepository libraryRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserBorrowCounterRepository userBorrowCounterRepository;
+
+    @Test
+    @DisplayName("500,000 筆即將到期的借閱發送通知")
+    void benchmark_FiveHundredThousandDueSoonLoans() throws Exception {
+        Path mailbox = Path.of("target/benchmark/due-soon.mbox");
+        Files.deleteIfExists(mailbox);
+        cleanUp();
+
+        Library library = new Library();
+        library.setName("中央圖書館");
+        library.setAddress("台北市中正區");
+        library.setActive(true);
+        library = libraryRepository.save(library);
+
+        List<Long> copyIds = new ArrayList<>();
+        for (int i = 0; i < BOOKS; i++) {
+            Book book = new Book();
+            book.setTitle("基準測試書籍" + i);
+            book.setAuthor("測試作者");
+            book.setPublishYear(2024);
+            book.setType(Book.BookType.BOOK);
+            book = bookRepository.save(book);
+
+            BookCopy copy = new BookCopy();
+            copy.setBook(book);
+            copy.setLibrary(library);
+            copy.setTotalCopies(LOANS);
+            copy.setAvailableCopies(0);
+            copy.setStatus(BookCopy.CopyStatus.ACTIVE);
+            copyIds.add(bookCopyRepository.save(copy).getId());
+        }
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            User user = new User();
+            user.setUsername("notify" + i);
+            user.setPassword("password");
+            user.setEmail("notify" + i + "@test.com");
+            user.setFullName("通知基準測試用戶" + i);
+            user.setRole(User.UserRole.MEMBER);
+            user.setActive(true);
+            userIds.add(userRepository.save(user).getId());
+        }
+
+        // 直接以 JDBC 批次寫入借閱記錄，到期日平均分布在 1 到 5 天後
+        LocalDate today = LocalDate.now();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Long libraryId = library.getId();
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = 0; i < LOANS; i++) {
+            batch.add(new Object[]{1_000_000L + i, userIds.get(i % USERS), copyIds.get(i / USERS % BOOKS), libraryId,
+                    Date.valueOf(today.minusDays(25)), Date.valueOf(today.plusDays(1 + i % 5)), now, now});
+            if (batch.size() == 10_000) {
+                insertLoans(batch);
+                batch.clear();
+            }
+        }
+        insertLoans(batch);
+
+        try {
+            long begin = System.nanoTime();
+            DueSoonNotificationResult result = dueSoonNotificationService.sendDueNotifications();
+            long totalMillis = (System.nanoTime() - begin) / 1_000_000;
+
+            assertThat(result.getSent()).isEqualTo(LOANS);
+            assertThat(result.getFailed()).isZero();
+            assertThat(Files.size(mailbox)).isPositive();
+
+            System.out.printf("loans=%d | due-soon notifications sent=%d total=%dms throughput=%d/s mailbox=%dMB%n",
+                    LOANS, result.getSent(), totalMillis, result.getSent() * 1000 / Math.max(1, totalMillis),
+                    Files.size(mailbox) / (1024 * 1024));
+        } finally {
+            cleanUp();
+            Files.deleteIfExists(mailbox);
+        }
+    }
+
+    private void insertLoans(List<Object[]> batch) {
+        jdbcTemplate.batchUpdate("INSERT INTO borrow_records (id, user_id, book_copy_id, library_id, borrow_date, "
+                + "due_date, status, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, 'BORROWED', ?, ?)", batch);
+    }
+
+    private void cleanUp() {
+        jdbcTemplate.update("DELETE FROM borrow_records");
+        bookCopyRepository.deleteAll();
+        bookRepository.deleteAll();
+        libraryRepository.deleteAll();
+        userBorrowCounterRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+}
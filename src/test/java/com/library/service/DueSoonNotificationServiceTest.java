@@ -0,0 +1,181 @@
+package com.library.service;
+
+import com.library.dto.BorrowBookRequest;
+import com.library.dto.DueSoonNotificationResult;
+import com.library.entity.*;
+import com.library.notification.Notification;
+import com.library.notification.NotificationSender;
+import com.library.repository.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(properties = {
+        "library.notifications.due-soon.chunk-size=2",
+        "library.notifications.due-soon.workers=2"
+})
+@ActiveProfiles("test")
+@DisplayName("DueSoonNotificationService 到期通知測試")
+class DueSoonNotificationServiceTest {
+
+    @Autowired
+    private DueSoonNotificationService dueSoonNotificationService;
+
+    @Autowired
+    private BorrowService borrowService;
+
+    @MockBean
+    private NotificationSender notificationSender;
+
+    @Autowired
+    private BorrowRecordRepository borrowRecordRepository;
+
+    @Autowired
+    private BookCopyRepository bookCopyRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private LibraryRepository libraryRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserBorrowCounterRepository userBorrowCounterRepository;
+
+    private BookCopy copy;
+    private final List<User> members = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        cleanUp();
+
+        Library library = new Library();
+        library.setName("中央圖書館");
+        library.setAddress("台北市中正區");
+        library.setActive(true);
+        library = libraryRepository.save(library);
+
+        Book book = new Book();
+        book.setTitle("Java程式設計");
+        book.setAuthor("張三");
+        book.setPublishYear(2023);
+        book.setType(Book.BookType.BOOK);
+        book = bookRepository.save(book);
+
+        copy = new BookCopy();
+        copy.setBook(book);
+        copy.setLibrary(library);
+        copy.setTotalCopies(10);
+        copy.setAvailableCopies(10);
+        copy.setStatus(BookCopy.CopyStatus.ACTIVE);
+        copy = bookCopyRepository.save(copy);
+
+        for (int i = 0; i < 8; i++) {
+            User member = new User();
+            member.setUsername("duesoon" + i);
+            member.setPassword("password");
+            member.setEmail("duesoon" + i + "@test.com");
+            member.setFullName("到期測試用戶" + i);
+            member.setRole(User.UserRole.MEMBER);
+            member.setActive(true);
+            members.add(userRepository.save(member));
+        }
+    }
+
+    @AfterEach
+    void cleanUp() {
+        members.clear();
+        borrowRecordRepository.deleteAll();
+        bookCopyRepository.deleteAll();
+        bookRepository.deleteAll();
+        libraryRepository.deleteAll();
+        userBorrowCounterRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("分批通知 5 天內到期的借閱，已歸還、較晚到期與逾期的不通知，發送時不在交易中")
+    void sendDueNotifications_SendsDueSoonInChunks() {
+        // Given - 5 筆 5 天內到期（批次大小 2，需要 3 批）、較晚到期、已歸還、逾期各 1 筆
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < 5; i++) {
+            borrowWithDueDate(members.get(i), today.plusDays(i + 1));
+        }
+        borrowWithDueDate(members.get(5), today.plusDays(10));
+        Long returnedId = borrowWithDueDate(members.get(6), today.plusDays(2));
+        borrowService.returnBook(returnedId, members.get(6));
+        borrowWithDueDate(members.get(7), today.minusDays(1));
+
+        List<Notification> notifications = new CopyOnWriteArrayList<>();
+        List<Boolean> inTransaction = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            notifications.add(invocation.getArgument(0));
+            inTransaction.add(TransactionSynchronizationManager.isActualTransactionActive());
+            return null;
+        }).when(notificationSender).send(any(Notification.class));
+
+        // When
+        DueSoonNotificationResult result = dueSoonNotificationService.sendDueNotifications();
+
+        // Then
+        assertThat(result.getSent()).isEqualTo(5);
+        assertThat(result.getFailed()).isZero();
+        assertThat(result.getDueBefore()).isEqualTo(today.plusDays(5));
+        assertThat(notifications).extracting(Notification::getUsername)
+                .containsExactlyInAnyOrder("duesoon0", "duesoon1", "duesoon2", "duesoon3", "duesoon4");
+        assertThat(notifications).filteredOn(notification -> notification.getUsername().equals("duesoon4"))
+                .singleElement().satisfies(notification -> {
+                    assertThat(notification.getEmail()).isEqualTo("duesoon4@test.com");
+                    assertThat(notification.getSubject()).isEqualTo("借閱書籍即將到期：《Java程式設計》");
+                    assertThat(notification.getBody()).contains("圖書館：中央圖書館", "(5 天後)");
+                });
+        assertThat(inTransaction).containsOnly(false);
+        verify(notificationSender).flush();
+    }
+
+    @Test
+    @DisplayName("單則通知發送失敗只計入失敗數，其他通知照常發送")
+    void sendDueNotifications_SenderFailure_CountsAndContinues() {
+        // Given
+        for (int i = 0; i < 3; i++) {
+            borrowWithDueDate(members.get(i), LocalDate.now().plusDays(1));
+        }
+        doThrow(new IllegalStateException("信箱無法寫入"))
+                .when(notificationSender).send(argThat(notification -> notification.getUsername().equals("duesoon1")));
+
+        // When
+        DueSoonNotificationResult result = dueSoonNotificationService.sendDueNotifications();
+
+        // Then
+        assertThat(result.getSent()).isEqualTo(2);
+        assertThat(result.getFailed()).isEqualTo(1);
+        verify(notificationSender, times(3)).send(any(Notification.class));
+    }
+
+    private Long borrowWithDueDate(User member, LocalDate dueDate) {
+        Long id = borrowService.borrowBook(new BorrowBookRequest(copy.getId()), member).getBorrowRecordId();
+        BorrowRecord record = borrowRecordRepository.findById(id).orElseThrow();
+        record.setDueDate(dueDate);
+        borrowRecordRepository.save(record);
+        return id;
+    }
+}
@@ -0,0 +1,296 @@
+package com.library.service;
+
+import com.library.dto.BorrowBookRequest;
+import com.library.dto.BulkReturnRequest;
+import com.library.dto.HoldResponse;
+import com.library.dto.PlaceHoldRequest;
+import com.library.entity.*;
+import com.library.event.HoldReadyEvent;
+import com.library.exception.BookNotAvailableException;
+import com.library.notification.NotificationSender;
+import com.library.repository.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 預約候補佇列：還書時保留給隊首、取書、取消與逾期轉給下一位
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@RecordApplicationEvents
+@DisplayName("HoldService 預約測試")
+class HoldServiceTest {
+
+    @Autowired
+    private HoldService holdService;
+
+    @Autowired
+    private BorrowService borrowService;
+
+    @Autowired
+    private BulkReturnService bulkReturnService;
+
+    @Autowired
+    private HoldRepository holdRepository;
+
+    @Autowired
+    private BorrowRecordRepository borrowRecordRepository;
+
+    @Autowired
+    private BookCopyRepository bookCopyRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private LibraryRepository libraryRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserBorrowCounterRepository userBorrowCounterRepository;
+
+    @Autowired
+    private ApplicationEvents applicationEvents;
+
+    @MockBean
+    private NotificationSender notificationSender;
+
+    private User alice;
+    private User bob;
+    private User carol;
+    private BookCopy copy;
+
+    @BeforeEach
+    void setUp() {
+        cleanUp();
+
+        Library library = new Library();
+        library.setName("中央圖書館");
+        library.setAddress("台北市中正區");
+        library.setActive(true);
+        library = libraryRepository.save(library);
+
+        Book book = new Book();
+        book.setTitle("熱門書籍");
+        book.setAuthor("測試作者");
+        book.setPublishYear(2023);
+        book.setType(Book.BookType.BOOK);
+        book = bookRepository.save(book);
+
+        copy = new BookCopy();
+        copy.setBook(book);
+        copy.setLibrary(library);
+        copy.setTotalCopies(1);
+        copy.setAvailableCopies(1);
+        copy.setStatus(BookCopy.CopyStatus.ACTIVE);
+        copy = bookCopyRepository.save(copy);
+
+        alice = saveMember("hold_alice");
+        bob = saveMember("hold_bob");
+        carol = saveMember("hold_carol");
+    }
+
+    @AfterEach
+    void cleanUp() {
+        holdRepository.deleteAll();
+        borrowRecordRepository.deleteAll();
+        bookCopyRepository.deleteAll();
+        bookRepository.deleteAll();
+        libraryRepository.deleteAll();
+        userBorrowCounterRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("有可借數量時不能預約；借完後依序排隊，不能重複預約")
+    void placeHold_QueuesInOrder() {
+        assertThatThrownBy(() -> holdService.placeHold(new PlaceHoldRequest(copy.getId()), bob))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("此書籍副本目前有可借閱的數量，請直接借閱");
+
+        borrow(alice);
+        assertThatThrownBy(() -> holdService.placeHold(new PlaceHoldRequest(copy.getId()), alice))
+                .hasMessageStartingWith("您已經借閱了這本書");
+
+        Long bobHold = holdService.placeHold(new PlaceHoldRequest(copy.getId()), bob).getHoldId();
+        Long carolHold = holdService.placeHold(new PlaceHoldRequest(copy.getId()), carol).getHoldId();
+        assertThat(holdService.getQueuePosition(bobHold, bob)).isEqualTo(1);
+        assertThat(holdService.getQueuePosition(carolHold, carol)).isEqualTo(2);
+        assertThatThrownBy(() -> holdService.getQueuePosition(carolHold, bob)).hasMessage("您沒有此預約");
+        assertThatThrownBy(() -> holdService.placeHold(new PlaceHoldRequest(copy.getId()), bob))
+                .hasMessage("您已預約此書籍副本");
+    }
+
+    @Test
+    @DisplayName("還書時保留給隊首並通知，其他用戶借不到，預約者可借閱")
+    void returnBook_AllocatesToQueueHead() {
+        // Given
+        Long aliceRecord = borrow(alice);
+        Long bobHold = holdService.placeHold(new PlaceHoldRequest(copy.getId()), bob).getHoldId();
+        Long carolHold = holdService.placeHold(new PlaceHoldRequest(copy.getId()), carol).getHoldId();
+
+        // When
+        borrowService.returnBook(aliceRecord, alice);
+
+        // Then - 保留給 bob，可借數量仍為 0
+        List<HoldResponse> bobHolds = holdService.getActiveHolds(bob);
+        assertThat(bobHolds).singleElement().satisfies(hold -> {
+            assertThat(hold.getStatus()).isEqualTo(Hold.HoldStatus.READY);
+            assertThat(hold.getExpiresAt()).isAfter(LocalDateTime.now().plusDays(2));
+        });
+        assertThatThrownBy(() -> holdService.getQueuePosition(bobHold, bob)).hasMessage("此預約不在排隊中");
+        assertThat(holdService.getQueuePosition(carolHold, carol)).isEqualTo(1);
+        assertThat(bookCopyRepository.findById(copy.getId()).orElseThrow().getAvailableCopies()).isZero();
+        assertThat(applicationEvents.stream(HoldReadyEvent.class))
+                .singleElement().extracting(HoldReadyEvent::getUsername).isEqualTo("hold_bob");
+
+        assertThatThrownBy(() -> borrow(carol))
+                .isInstanceOf(BookNotAvailableException.class);
+
+        borrow(bob);
+        assertThat(holdService.getActiveHolds(bob)).isEmpty();
+        assertThat(bookCopyRepository.findById(copy.getId()).orElseThrow().getAvailableCopies()).isZero();
+    }
+
+    @Test
+    @DisplayName("可取書通知發送失敗時還書仍成功，預約照樣保留")
+    void returnBook_NotificationFails_ReturnSucceeds() {
+        // Given
+        Long aliceRecord = borrow(alice);
+        holdService.placeHold(new PlaceHoldRequest(copy.getId()), bob);
+        doThrow(new UncheckedIOException("寫入信箱檔失敗", new IOException("disk full")))
+                .when(notificationSender).send(any());
+
+        // When
+        borrowService.returnBook(aliceRecord, alice);
+
+        // Then
+        verify(notificationSender).send(any());
+        assertThat(borrowRecordRepository.findById(aliceRecord).orElseThrow().getStatus())
+                .isEqualTo(BorrowRecord.BorrowStatus.RETURNED);
+        assertThat(holdService.getActiveHolds(bob)).singleElement()
+                .extracting(HoldResponse::getStatus).isEqualTo(Hold.HoldStatus.READY);
+    }
+
+    @Test
+    @DisplayName("已保留給預約者時，即使副本又有可借數量，借書仍借出保留的一本")
+    void borrowBook_ReadyHoldWithStock_BorrowsReservedCopy() {
+        // Given - 保留給 bob 之後館藏新增一本
+        Long aliceRecord = borrow(alice);
+        Long bobHold = holdService.placeHold(new PlaceHoldRequest(copy.getId()), bob).getHoldId();
+        borrowService.returnBook(aliceRecord, alice);
+        BookCopy restocked = bookCopyRepository.findById(copy.getId()).orElseThrow();
+        restocked.setTotalCopies(2);
+        restocked.setAvailableCopies(1);
+        bookCopyRepository.save(restocked);
+
+        // When
+        borrow(bob);
+
+        // Then - 預約完成，新增的一本仍可借
+        assertThat(holdRepository.findById(bobHold).orElseThrow().getStatus()).isEqualTo(Hold.HoldStatus.FULFILLED);
+        assertThat(bookCopyRepository.findById(copy.getId()).orElseThrow().getAvailableCopies()).isEqualTo(1);
+        borrow(carol);
+        assertThat(bookCopyRepository.findById(copy.getId()).orElseThrow().getAvailableCopies()).isZero();
+    }
+
+    @Test
+    @DisplayName("取消已保留的預約時轉給下一位，沒有人排隊時回到可借數量")
+    void cancelHold_ReadyHold_PassesToNext() {
+        // Given
+        Long aliceRecord = borrow(alice);
+        Long bobHold = holdService.placeHold(new PlaceHoldRequest(copy.getId()), bob).getHoldId();
+        Long carolHold = holdService.placeHold(new PlaceHoldRequest(copy.getId()), carol).getHoldId();
+        borrowService.returnBook(aliceRecord, alice);
+
+        assertThatThrownBy(() -> holdService.cancelHold(bobHold, carol)).hasMessage("您沒有此預約");
+
+        // When
+        holdService.cancelHold(bobHold, bob);
+
+        // Then
+        assertThat(holdService.getActiveHolds(carol).get(0).getStatus()).isEqualTo(Hold.HoldStatus.READY);
+
+        holdService.cancelHold(carolHold, carol);
+        assertThat(bookCopyRepository.findById(copy.getId()).orElseThrow().getAvailableCopies()).isEqualTo(1);
+        assertThatThrownBy(() -> holdService.cancelHold(carolHold, carol))
+                .hasMessage("此預約已完成或已取消，無法取消");
+    }
+
+    @Test
+    @DisplayName("超過取書期限的預約轉給下一位")
+    void expireReadyHolds_PassesToNext() {
+        // Given
+        Long aliceRecord = borrow(alice);
+        Long bobHold = holdService.placeHold(new PlaceHoldRequest(copy.getId()), bob).getHoldId();
+        holdService.placeHold(new PlaceHoldRequest(copy.getId()), carol);
+        borrowService.returnBook(aliceRecord, alice);
+        Hold ready = holdRepository.findById(bobHold).orElseThrow();
+        ready.setExpiresAt(LocalDateTime.now().minusMinutes(1));
+        holdRepository.save(ready);
+
+        // When
+        int expired = holdService.expireReadyHolds();
+
+        // Then
+        assertThat(expired).isEqualTo(1);
+        assertThat(holdRepository.findById(bobHold).orElseThrow().getStatus()).isEqualTo(Hold.HoldStatus.EXPIRED);
+        assertThat(holdService.getActiveHolds(carol).get(0).getStatus()).isEqualTo(Hold.HoldStatus.READY);
+        assertThat(bookCopyRepository.findById(copy.getId()).orElseThrow().getAvailableCopies()).isZero();
+    }
+
+    @Test
+    @DisplayName("大量還書時先保留給排隊的預約者，剩餘本數回到可借數量")
+    void bulkReturn_AllocatesBeforeRestocking() {
+        // Given - 副本共 2 本都借出，carol 排隊
+        copy.setTotalCopies(2);
+        copy.setAvailableCopies(2);
+        copy = bookCopyRepository.save(copy);
+        borrow(alice);
+        borrow(bob);
+        holdService.placeHold(new PlaceHoldRequest(copy.getId()), carol);
+
+        // When
+        bulkReturnService.returnBooks(new BulkReturnRequest(List.of(), List.of(copy.getId(), copy.getId())));
+
+        // Then
+        assertThat(holdService.getActiveHolds(carol).get(0).getStatus()).isEqualTo(Hold.HoldStatus.READY);
+        assertThat(bookCopyRepository.findById(copy.getId()).orElseThrow().getAvailableCopies()).isEqualTo(1);
+    }
+
+    private Long borrow(User user) {
+        BorrowBookRequest request = new BorrowBookRequest();
+        request.setBookCopyId(copy.getId());
+        return borrowService.borrowBook(request, user).getBorrowRecordId();
+    }
+
+    private User saveMember(String username) {
+        User member = new User();
+        member.setUsername(username);
+        member.setPassword("password");
+        member.setEmail(username + "@test.com");
+        member.setFullName(username);
+        member.setRole(User.UserRole.MEMBER);
+        member.setActive(true);
+        return userRepository.save(member);
+    }
+}
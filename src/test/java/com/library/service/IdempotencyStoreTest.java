@@ -0,0 +1,143 @@
+package com.library.service;
+
+import com.library.exception.IdempotencyKeyConflictException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("IdempotencyStore 單元測試")
+class IdempotencyStoreTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private MutableClock clock;
+    private IdempotencyStore store;
+    private AtomicInteger executions;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        clock = new MutableClock();
+        store = new IdempotencyStore(meterRegistry, 2, Duration.ofHours(24), clock);
+        executions = new AtomicInteger();
+    }
+
+    @Test
+    @DisplayName("相同的鍵重送時回傳原本的回應，不再執行")
+    void execute_SameKey_ReplaysStoredResponse() {
+        assertThat(store.execute("member", "borrow", "key-1", 10L, this::run)).isEqualTo("response-1");
+        assertThat(store.execute("member", "borrow", "key-1", 10L, this::run)).isEqualTo("response-1");
+
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(meterRegistry.counter("library.idempotency.requests", "result", "replay").count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("沒有鍵、不同用戶或不同操作各自執行")
+    void execute_DifferentScope_Executes() {
+        store.execute("member", "borrow", null, 10L, this::run);
+        store.execute("member", "borrow", null, 10L, this::run);
+        store.execute("member", "borrow", "key-1", 10L, this::run);
+        store.execute("other", "borrow", "key-1", 10L, this::run);
+
+        assertThat(executions.get()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("相同的鍵用於不同的請求內容時拒絕")
+    void execute_SameKeyDifferentRequest_ThrowsConflict() {
+        store.execute("member", "borrow", "key-1", 10L, this::run);
+
+        assertThatThrownBy(() -> store.execute("member", "borrow", "key-1", 11L, this::run))
+                .isInstanceOf(IdempotencyKeyConflictException.class)
+                .hasMessage("此 Idempotency-Key 已用於不同的請求");
+        assertThat(executions.get()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("原請求仍在處理中時，相同的鍵拒絕重送")
+    void execute_InFlight_ThrowsConflict() {
+        assertThatThrownBy(() -> store.execute("member", "borrow", "key-1", 10L,
+                () -> store.execute("member", "borrow", "key-1", 10L, this::run)))
+                .isInstanceOf(IdempotencyKeyConflictException.class)
+                .hasMessage("相同 Idempotency-Key 的請求仍在處理中，請稍後再試");
+
+        // 失敗的請求不保存，之後可以重送
+        assertThat(store.execute("member", "borrow", "key-1", 10L, this::run)).isEqualTo("response-1");
+    }
+
+    @Test
+    @DisplayName("執行失敗時不保存，重送時重新執行")
+    void execute_Failure_NotStored() {
+        assertThatThrownBy(() -> store.execute("member", "return", "key-1", 10L, () -> {
+            throw new IllegalStateException("資料庫錯誤");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(store.execute("member", "return", "key-1", 10L, this::run)).isEqualTo("response-1");
+        assertThat(store.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("超過存活時間或容量時淘汰最舊的項目")
+    void execute_ExpiredOrOverCapacity_Evicts() {
+        store.execute("member", "borrow", "key-1", 10L, this::run);
+        clock.advance(Duration.ofHours(12));
+        store.execute("member", "borrow", "key-2", 10L, this::run);
+        store.execute("member", "borrow", "key-3", 10L, this::run);
+
+        // 容量 2：key-1 已被淘汰
+        assertThat(store.size()).isEqualTo(2);
+        assertThat(store.execute("member", "borrow", "key-1", 10L, this::run)).isEqualTo("response-4");
+
+        // key-2 建立已滿 24 小時
+        clock.advance(Duration.ofHours(12));
+        assertThat(store.execute("member", "borrow", "key-2", 10L, this::run)).isEqualTo("response-5");
+        assertThat(executions.get()).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("鍵為空白或超過長度上限時拒絕")
+    void execute_InvalidKey_ThrowsIllegalArgumentException() {
+        assertThatThrownBy(() -> store.execute("member", "borrow", " ", 10L, this::run))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> store.execute("member", "borrow", "k".repeat(65), 10L, this::run))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(executions.get()).isZero();
+    }
+
+    private String run() {
+        return "response-" + executions.incrementAndGet();
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2024-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.library.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.library.dto.OverdueRecordRow;
+import com.library.entity.BorrowRecord;
+import com.library.repository.BorrowRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("OverdueReportService 單元測試")
+class OverdueReportServiceTest {
+
+    @Mock
+    private BorrowRecordRepository borrowRecordRepository;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private OverdueReportService overdueReportService;
+
+    @BeforeEach
+    void setUp() {
+        overdueReportService = new OverdueReportService(borrowRecordRepository, objectMapper);
+    }
+
+    @Test
+    @DisplayName("CSV：第一行為欄位名稱，含逗號或雙引號的欄位加上引號")
+    void exportOverdue_Csv_WritesHeaderAndEscapesFields() throws Exception {
+        // Given
+        LocalDate dueDate = LocalDate.now().minusDays(3);
+        when(borrowRecordRepository.streamOverdueRows(any(LocalDate.class), eq(10L)))
+                .thenReturn(Stream.of(row(1L, "Java, \"進階\"", dueDate)));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        // When
+        long count = overdueReportService.exportOverdue(10L, OverdueExportFormat.CSV, output);
+
+        // Then
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(count).isEqualTo(1);
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).startsWith("borrowRecordId,userId,username");
+        assertThat(lines[1]).isEqualTo("1,2,member,一般會員,member@test.com,3,\"Java, \"\"進階\"\"\",張三,,10,中央圖書館,"
+                + dueDate.minusMonths(1) + "," + dueDate + ",3");
+    }
+
+    @Test
+    @DisplayName("NDJSON：每筆逾期記錄輸出一行 JSON")
+    void exportOverdue_Ndjson_WritesOneLinePerRecord() throws Exception {
+        // Given
+        LocalDate dueDate = LocalDate.now().minusDays(5);
+        when(borrowRecordRepository.streamOverdueRows(any(LocalDate.class), isNull()))
+                .thenReturn(Stream.of(row(1L, "Java程式設計", dueDate), row(2L, "Python入門", dueDate)));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        // When
+        long count = overdueReportService.exportOverdue(null, OverdueExportFormat.NDJSON, output);
+
+        // Then
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(count).isEqualTo(2);
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertThat(first.get("borrowRecordId").asLong()).isEqualTo(1L);
+        assertThat(first.get("bookTitle").asText()).isEqualTo("Java程式設計");
+        assertThat(first.get("daysOverdue").asLong()).isEqualTo(5);
+        assertThat(objectMapper.readTree(lines[1]).get("bookTitle").asText()).isEqualTo("Python入門");
+    }
+
+    private OverdueRecordRow row(Long id, String title, LocalDate dueDate) {
+        return new OverdueRecordRow(id, 2L, "member", "一般會員", "member@test.com", 3L, title, "張三", null,
+                10L, "中央圖書館", dueDate.minusMonths(1), dueDate, BorrowRecord.BorrowStatus.OVERDUE);
+    }
+}